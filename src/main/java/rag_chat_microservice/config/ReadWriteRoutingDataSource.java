@@ -0,0 +1,36 @@
+package rag_chat_microservice.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import rag_chat_microservice.service.ReadYourWrites;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the replica pool and everything else to the
+ * primary. Must sit behind a LazyConnectionDataSourceProxy: the transaction's
+ * read-only flag is only set after the transaction manager has asked for a
+ * connection, so the physical one has to be fetched at the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+	enum Route { PRIMARY, REPLICA }
+
+	private final ReadYourWrites readYourWrites;
+
+	public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReadYourWrites readYourWrites) {
+		this.readYourWrites = readYourWrites;
+		setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+		setDefaultTargetDataSource(primary);
+		afterPropertiesSet();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !readYourWrites.isCurrentSticky()) {
+			return Route.REPLICA;
+		}
+		return Route.PRIMARY;
+	}
+}
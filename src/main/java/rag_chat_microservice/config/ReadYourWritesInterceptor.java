@@ -0,0 +1,86 @@
+package rag_chat_microservice.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import rag_chat_microservice.service.ReadYourWrites;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binds the {sessionId}/{userId} path variables of each request to
+ * {@link ReadYourWrites}. Non-GET requests mark them as written both when they
+ * start (so reads racing the write already avoid the replica) and when they
+ * finish (so the window runs from the commit, however long the request took).
+ * The marks are per instance (see ReadYourWrites for the deployment this needs).
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ReadYourWritesInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+
+	private final ReadYourWrites readYourWrites;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(this).addPathPatterns("/api/**");
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		@SuppressWarnings("unchecked")
+		Map<String, String> vars = (Map<String, String>) request
+				.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		List<String> keys = new ArrayList<>(2);
+		if (vars != null) {
+			String sessionId = vars.get("sessionId");
+			if (sessionId != null) {
+				try {
+					keys.add(ReadYourWrites.sessionKey(UUID.fromString(sessionId)));
+				} catch (IllegalArgumentException ignored) {
+					// malformed id: the handler rejects it
+				}
+			}
+			String userId = vars.get("userId");
+			if (userId != null) {
+				keys.add(ReadYourWrites.userKey(userId));
+			}
+		}
+		readYourWrites.bind(keys);
+		if (isWrite(request)) {
+			readYourWrites.markCurrentWritten();
+		}
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		if (isWrite(request)) {
+			readYourWrites.markCurrentWritten();
+		}
+		readYourWrites.unbind();
+	}
+
+	// an async handler (long poll, streamed export) releases the thread before afterCompletion
+	// runs, which happens on the thread of the async dispatch after preHandle binds it again
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+			Object handler) {
+		readYourWrites.unbind();
+	}
+
+	private static boolean isWrite(HttpServletRequest request) {
+		String method = request.getMethod();
+		return !HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method)
+				&& !HttpMethod.OPTIONS.matches(method);
+	}
+}
@@ -0,0 +1,58 @@
+package rag_chat_microservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import rag_chat_microservice.service.ReadYourWrites;
+
+import javax.sql.DataSource;
+
+/**
+ * Primary + replica connection pools behind a routing DataSource, active only
+ * when DB_REPLICA_URL is set. Both pools are beans of their own, so the actuator
+ * publishes hikaricp.* metrics for each (tag pool=primary|replica). Not combined
+ * with sharding (DB_SHARD_URLS), which replaces the single primary.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("!'${chat.datasource.replica.url:}'.isBlank() && '${chat.sharding.urls:}'.isBlank()")
+public class ReplicaRoutingConfig {
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		HikariDataSource ds = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		ds.setPoolName("primary");
+		return ds;
+	}
+
+	@Bean
+	@ConfigurationProperties("chat.datasource.replica.hikari")
+	public HikariDataSource replicaDataSource(@Value("${chat.datasource.replica.url}") String url,
+			@Value("${chat.datasource.replica.username}") String username,
+			@Value("${chat.datasource.replica.password}") String password) {
+		HikariDataSource ds = DataSourceBuilder.create().type(HikariDataSource.class).url(url).username(username)
+				.password(password).build();
+		ds.setPoolName("replica");
+		// a routing mistake fails loudly instead of writing to the replica
+		ds.setReadOnly(true);
+		return ds;
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource,
+			ReadYourWrites readYourWrites) {
+		log.info("Routing read-only transactions to replica {}", replicaDataSource.getJdbcUrl());
+		return new LazyConnectionDataSourceProxy(
+				new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource, readYourWrites));
+	}
+}
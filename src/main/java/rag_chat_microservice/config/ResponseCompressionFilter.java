@@ -0,0 +1,386 @@
+package rag_chat_microservice.config;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Brotli or gzip for responses of a compressible type that reach
+ * {@code chat.http.compression.min-size}, whichever the client's
+ * Accept-Encoding allows (Brotli first). Bodies are held back until they reach
+ * the threshold, so small answers go out as they are, with their length. Every
+ * response of a compressible type carries {@code Vary: Accept-Encoding}, encoded
+ * or not, so shared caches keep the variants apart.
+ * <p>
+ * This replaces Tomcat's server.compression, which skips every response with a
+ * strong ETag, i.e. all message reads. Here the ETag of an encoded response is
+ * made weak instead; If-None-Match compares weakly, so revalidation still
+ * matches, and a 304 to a client that accepts an encoding carries the weak tag
+ * too, as the 200 it revalidates may have been encoded. Async requests are finished on their last dispatch. A body that
+ * switches to non-blocking writes goes out unencoded, straight to the container.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ResponseCompressionFilter extends OncePerRequestFilter {
+
+	static final String BROTLI = "br";
+	static final String GZIP = "gzip";
+
+	@Value("${chat.http.compression.enabled:true}")
+	private boolean enabled;
+
+	@Value("${chat.http.compression.min-size:1KB}")
+	private DataSize minSize;
+
+	@Value("${chat.http.compression.mime-types:application/json,application/problem+json,application/cbor,application/x-jackson-smile,text/plain}")
+	private List<MediaType> mimeTypes;
+
+	// dynamic content: 4 is close to gzip's CPU cost at a clearly better ratio; 11 is for static files
+	@Value("${chat.http.compression.brotli-quality:4}")
+	private int brotliQuality;
+
+	@Value("${chat.http.compression.gzip-level:6}")
+	private int gzipLevel;
+
+	private boolean brotli;
+
+	@PostConstruct
+	void init() {
+		brotli = Brotli4jLoader.isAvailable();
+		if (enabled && !brotli) {
+			log.warn("Brotli is not available on this platform ({}); responses are gzip-compressed only",
+					Brotli4jLoader.getUnavailabilityCause().toString());
+		}
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !enabled || "HEAD".equals(request.getMethod());
+	}
+
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		// the body of an async request is written on a later dispatch; finish it there
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		CompressingResponse compressing = WebUtils.getNativeResponse(response, CompressingResponse.class);
+		if (compressing == null) {
+			// an async dispatch without a wrapper belongs to a response that is not encoded
+			if (isAsyncDispatch(request)) {
+				chain.doFilter(request, response);
+				return;
+			}
+			// wrapped even when nothing can be encoded: the response still varies on Accept-Encoding
+			compressing = new CompressingResponse(response,
+					negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING)));
+		}
+		try {
+			chain.doFilter(request, compressing);
+		} finally {
+			if (!isAsyncStarted(request)) {
+				compressing.finish();
+			}
+		}
+	}
+
+	/** The content coding to use for an Accept-Encoding header, or null for none. */
+	String negotiate(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		boolean gzip = false;
+		for (String entry : acceptEncoding.split(",")) {
+			String[] parts = entry.trim().split(";");
+			String coding = parts[0].trim().toLowerCase();
+			if (parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?")) {
+				continue; // explicitly refused
+			}
+			if (brotli && coding.equals(BROTLI)) {
+				return BROTLI;
+			}
+			gzip |= coding.equals(GZIP) || coding.equals("x-gzip");
+		}
+		return gzip ? GZIP : null;
+	}
+
+	private boolean compressible(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		try {
+			MediaType type = MediaType.parseMediaType(contentType);
+			return mimeTypes.stream().anyMatch(t -> t.includes(type));
+		} catch (InvalidMediaTypeException e) {
+			return false;
+		}
+	}
+
+	private OutputStream encoder(OutputStream out, String coding) throws IOException {
+		if (coding.equals(BROTLI)) {
+			return new BrotliOutputStream(out, new Encoder.Parameters().setQuality(brotliQuality));
+		}
+		// sync flush, so a flushed part of a streamed body reaches the client
+		return new GZIPOutputStream(out, 8192, true) {
+			{
+				def.setLevel(gzipLevel);
+			}
+		};
+	}
+
+	/**
+	 * Buffers the body up to the threshold, then decides once: encode from there
+	 * on, or pass everything through unchanged. Without a coding (null) the body
+	 * is passed through from the first write.
+	 */
+	private final class CompressingResponse extends HttpServletResponseWrapper {
+
+		private final String coding;
+		private final BufferingStream stream = new BufferingStream();
+		private PrintWriter writer;
+		private Long contentLength;
+
+		CompressingResponse(HttpServletResponse response, String coding) {
+			super(response);
+			this.coding = coding;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			if (writer != null) {
+				throw new IllegalStateException("getWriter() has already been called");
+			}
+			return stream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+			}
+			return writer;
+		}
+
+		@Override
+		public void setContentLength(int len) {
+			contentLength = (long) len;
+		}
+
+		@Override
+		public void setContentLengthLong(long len) {
+			contentLength = len;
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+				contentLength = (value != null) ? Long.parseLong(value) : null;
+			} else {
+				super.setHeader(name, value);
+			}
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+				contentLength = Long.parseLong(value);
+			} else {
+				super.addHeader(name, value);
+			}
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			if (writer != null) {
+				writer.flush();
+			}
+			stream.flush();
+		}
+
+		@Override
+		public void resetBuffer() {
+			stream.reset();
+			super.resetBuffer();
+		}
+
+		@Override
+		public void reset() {
+			stream.reset();
+			contentLength = null;
+			super.reset();
+		}
+
+		void finish() throws IOException {
+			if (writer != null) {
+				writer.flush();
+			}
+			stream.finish();
+		}
+
+		private final class BufferingStream extends ServletOutputStream {
+
+			private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			private ServletOutputStream raw;
+			private OutputStream target;
+			private boolean encoding;
+			private boolean finished;
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] {(byte) b}, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (target == null && (coding == null || !compressible(getContentType()))) {
+					decide(false, false);
+				}
+				if (target != null) {
+					target.write(b, off, len);
+					return;
+				}
+				buffer.write(b, off, len);
+				if (buffer.size() >= minSize.toBytes()) {
+					decide(true, false);
+				}
+			}
+
+			@Override
+			public void flush() throws IOException {
+				// the message converters flush once the body is complete: no reason to decide early
+				if (target != null) {
+					target.flush();
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				finish();
+			}
+
+			@Override
+			public boolean isReady() {
+				// buffered bytes never block
+				return raw == null || raw.isReady();
+			}
+
+			@Override
+			public void setWriteListener(WriteListener listener) {
+				if (encoding) {
+					throw new IllegalStateException("Non-blocking writes cannot start once the body is being encoded");
+				}
+				if (target == null) {
+					try {
+						decide(false, false); // the encoders block
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				raw.setWriteListener(listener);
+			}
+
+			void reset() {
+				if (target == null) {
+					buffer.reset();
+				}
+			}
+
+			/** large: the threshold was reached; complete: the buffer holds the whole body. */
+			private void decide(boolean large, boolean complete) throws IOException {
+				raw = CompressingResponse.super.getOutputStream();
+				boolean compressible = compressible(getContentType());
+				if (compressible) {
+					vary();
+				}
+				if (large && compressible && getHeader(HttpHeaders.CONTENT_ENCODING) == null) {
+					CompressingResponse.super.setHeader(HttpHeaders.CONTENT_ENCODING, coding);
+					weakenETag();
+					target = encoder(raw, coding);
+					encoding = true;
+				} else {
+					if (complete) {
+						CompressingResponse.super.setContentLengthLong(buffer.size());
+					} else if (contentLength != null) {
+						CompressingResponse.super.setContentLengthLong(contentLength);
+					}
+					target = raw;
+				}
+				buffer.writeTo(target);
+				buffer = null;
+			}
+
+			// the encoded bytes differ from the identity ones a strong tag stands for
+			private void weakenETag() {
+				String etag = getHeader(HttpHeaders.ETAG);
+				if (etag != null && !etag.startsWith("W/")) {
+					CompressingResponse.super.setHeader(HttpHeaders.ETAG, "W/" + etag);
+				}
+			}
+
+			private void vary() {
+				for (String vary : getHeaders(HttpHeaders.VARY)) {
+					String lower = vary.toLowerCase();
+					if (lower.contains("accept-encoding") || lower.trim().equals("*")) {
+						return;
+					}
+				}
+				CompressingResponse.super.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			}
+
+			void finish() throws IOException {
+				if (finished) {
+					return;
+				}
+				finished = true;
+				if (target == null) {
+					if (buffer.size() == 0) {
+						// no body (304, 204); a 304 repeats the validators of the 200 it stands for
+						if (getStatus() == HttpServletResponse.SC_NOT_MODIFIED && coding != null) {
+							vary();
+							weakenETag();
+						}
+						return;
+					}
+					decide(false, true);
+				}
+				if (encoding) {
+					target.close(); // writes the encoder's trailer
+				} else {
+					target.flush();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package rag_chat_microservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// background jobs (e.g. SessionPurgeJob); each job bean is itself opt-in
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,41 @@
+package rag_chat_microservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+import rag_chat_microservice.model.ChatSession;
+
+/**
+ * Hit ratios next to the raw hibernate.* hit/miss counters: one gauge for the
+ * ChatSession entity region and one for the query cache, both since startup.
+ */
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCacheMetrics implements MeterBinder {
+
+	private final EntityManagerFactory entityManagerFactory;
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		Gauge.builder("hibernate.second.level.cache.hit_ratio", stats, s -> {
+			CacheRegionStatistics region = s.getDomainDataRegionStatistics(ChatSession.CACHE_REGION);
+			return (region == null) ? Double.NaN : ratio(region.getHitCount(), region.getMissCount());
+		}).tag("region", ChatSession.CACHE_REGION).description("Share of ChatSession lookups answered by the L2 cache")
+				.register(registry);
+		Gauge.builder("hibernate.cache.query.hit_ratio", stats,
+				s -> ratio(s.getQueryCacheHitCount(), s.getQueryCacheMissCount()))
+				.description("Share of cacheable queries answered by the query cache").register(registry);
+	}
+
+	private static double ratio(long hits, long misses) {
+		long total = hits + misses;
+		return (total == 0) ? Double.NaN : (double) hits / total;
+	}
+}
@@ -0,0 +1,93 @@
+package rag_chat_microservice.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binds each request to the shard of its {sessionId} (or else {userId}) path
+ * variable before the handler opens a transaction. Writes to a bucket that is
+ * being moved are refused with 503 and Retry-After; reads go on against the
+ * source shard, which keeps the rows until the move completes.
+ * <p>
+ * Requests without either variable bind themselves (session creation, import);
+ * /api/admin/** fans out explicitly.
+ */
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnExpression("!'${chat.sharding.urls:}'.isBlank()")
+public class ShardRoutingInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+
+	private final ShardRouter shardRouter;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(this).addPathPatterns("/api/**").excludePathPatterns("/api/admin/**");
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		@SuppressWarnings("unchecked")
+		Map<String, String> vars = (Map<String, String>) request
+				.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		if (vars == null) {
+			return true;
+		}
+		ShardRouter.Placement placement = null;
+		String sessionId = vars.get("sessionId");
+		if (sessionId != null) {
+			try {
+				placement = shardRouter.bindSession(UUID.fromString(sessionId));
+			} catch (IllegalArgumentException ignored) {
+				// malformed id: the handler rejects it
+			}
+		}
+		String userId = vars.get("userId");
+		if (placement == null && userId != null) {
+			placement = shardRouter.bindUser(userId);
+		}
+		if (placement != null && placement.moving() && isWrite(request)) {
+			// afterCompletion is skipped when preHandle fails
+			shardRouter.unbind();
+			response.setHeader(HttpHeaders.RETRY_AFTER,
+					String.valueOf(Math.max(1, shardRouter.refreshInterval().toSeconds() * 2)));
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+					"Data is being moved to another shard, retry shortly");
+		}
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		shardRouter.unbind();
+	}
+
+	// an async handler (long poll, streamed export) releases the thread before afterCompletion
+	// runs, which happens on the thread of the async dispatch after preHandle binds it again
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+			Object handler) {
+		shardRouter.unbind();
+	}
+
+	private static boolean isWrite(HttpServletRequest request) {
+		String method = request.getMethod();
+		return !HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method)
+				&& !HttpMethod.OPTIONS.matches(method);
+	}
+}
@@ -0,0 +1,136 @@
+package rag_chat_microservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.tool.schema.spi.DelayedDropRegistryNotAvailableImpl;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.CompositeHealthContributor;
+import org.springframework.boot.actuate.health.HealthContributor;
+import org.springframework.boot.actuate.jdbc.DataSourceHealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import rag_chat_microservice.sharding.ShardContext;
+import rag_chat_microservice.sharding.ShardRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One connection pool per database listed in DB_SHARD_URLS, behind a routing
+ * DataSource that follows {@link ShardContext}. The first database is the catalog
+ * shard: it keeps the shard directory, import checkpoints and every session
+ * created before sharding was enabled. Pools are named shard-0..n-1, for the
+ * hikaricp.* metrics (tag pool) and the db health component.
+ * <p>
+ * Hibernate manages the catalog schema as before ({@code ddl-auto}); with
+ * {@code update} the same schema update then runs on every other shard before
+ * the routing DataSource turns strict.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("!'${chat.sharding.urls:}'.isBlank()")
+public class ShardingConfig {
+
+	// the mapping model, captured while Hibernate boots, for updating the other shards
+	private final AtomicReference<Metadata> metadata = new AtomicReference<>();
+
+	@Bean
+	public ShardRoutingDataSource shardRoutingDataSource(@Value("${chat.sharding.urls}") List<String> urls,
+			@Value("${chat.sharding.username}") String username, @Value("${chat.sharding.password}") String password,
+			@Value("${chat.sharding.pool-size:10}") int poolSize, MeterRegistry meterRegistry) {
+		List<DataSource> shards = new ArrayList<>();
+		for (String url : urls) {
+			if (url.isBlank()) {
+				continue;
+			}
+			HikariDataSource ds = DataSourceBuilder.create().type(HikariDataSource.class).url(url.trim())
+					.username(username).password(password).build();
+			ds.setPoolName("shard-" + shards.size());
+			ds.setMaximumPoolSize(poolSize);
+			ds.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+			shards.add(ds);
+		}
+		log.info("Sharding over {} databases; catalog shard is {}", shards.size(),
+				((HikariDataSource) shards.get(0)).getJdbcUrl());
+		return new ShardRoutingDataSource(shards);
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+		// the physical connection is fetched at the first statement, after the shard is bound
+		return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+	}
+
+	@Bean
+	public HealthContributor dbHealthContributor(ShardRoutingDataSource shardRoutingDataSource) {
+		Map<String, HealthContributor> shards = new LinkedHashMap<>();
+		List<DataSource> pools = shardRoutingDataSource.shards();
+		for (int i = 0; i < pools.size(); i++) {
+			shards.put("shard-" + i, new DataSourceHealthIndicator(pools.get(i)));
+		}
+		return CompositeHealthContributor.fromMap(shards);
+	}
+
+	@Bean
+	public HibernatePropertiesCustomizer shardMetadataCapture() {
+		Integrator capture = new Integrator() {
+			@Override
+			public void integrate(Metadata bootMetadata, BootstrapContext bootstrapContext,
+					SessionFactoryImplementor sessionFactory) {
+				metadata.set(bootMetadata);
+			}
+
+			@Override
+			public void disintegrate(SessionFactoryImplementor sessionFactory,
+					SessionFactoryServiceRegistry serviceRegistry) {
+			}
+		};
+		return properties -> properties.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(capture));
+	}
+
+	@Bean
+	public SmartInitializingSingleton shardSchemaUpdate(ShardRoutingDataSource shardRoutingDataSource,
+			EntityManagerFactory entityManagerFactory, @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+		return () -> {
+			int count = shardRoutingDataSource.shards().size();
+			if ("update".equals(ddlAuto) && metadata.get() != null) {
+				SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+				Map<String, Object> settings = new HashMap<>(sessionFactory.getProperties());
+				settings.put(AvailableSettings.HBM2DDL_AUTO, "update");
+				for (int shard = 1; shard < count; shard++) {
+					// the schema tool's connections come from the routing DataSource too
+					ShardContext.run(shard, () -> SchemaManagementToolCoordinator.process(metadata.get(),
+							sessionFactory.getServiceRegistry(), settings, DelayedDropRegistryNotAvailableImpl.INSTANCE));
+				}
+				log.info("Schema updated on shards 1..{}", count - 1);
+			} else if (count > 1) {
+				log.info("ddl-auto={}: apply db/migration scripts to every shard", ddlAuto);
+			}
+			// from here on, a statement without a bound shard is a bug
+			shardRoutingDataSource.setStrict(true);
+		};
+	}
+}
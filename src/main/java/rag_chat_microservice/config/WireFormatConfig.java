@@ -0,0 +1,140 @@
+package rag_chat_microservice.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.exception.ApiError;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * CBOR (application/cbor) and Smile (application/x-jackson-smile) next to
+ * JSON, for clients that ask for them in Accept. Only the API DTOs (and
+ * ApiError, so such a client can read its errors) are offered in these formats;
+ * everything else stays JSON, which is also what a client gets that accepts
+ * anything. The mappers come from the same builder as the JSON one, so field
+ * names and date formats are identical.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+	private static final String DTO_PACKAGE = ChatMessageDto.class.getPackageName();
+
+	private final ObjectProvider<Jackson2ObjectMapperBuilder> mapperBuilder;
+	private final boolean binaryFormats;
+
+	public WireFormatConfig(ObjectProvider<Jackson2ObjectMapperBuilder> mapperBuilder,
+			@Value("${chat.http.binary-formats:true}") boolean binaryFormats) {
+		this.mapperBuilder = mapperBuilder;
+		this.binaryFormats = binaryFormats;
+	}
+
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		// Spring registers both for every type as soon as the data formats are on the classpath
+		converters.removeIf(c -> c instanceof MappingJackson2CborHttpMessageConverter
+				|| c instanceof MappingJackson2SmileHttpMessageConverter);
+		if (!binaryFormats) {
+			return;
+		}
+		converters.add(new DtoOnly(new MappingJackson2CborHttpMessageConverter(
+				mapperBuilder.getObject().factory(new CBORFactory()).build())));
+		converters.add(new DtoOnly(new MappingJackson2SmileHttpMessageConverter(
+				mapperBuilder.getObject().factory(new SmileFactory()).build())));
+	}
+
+	/** A DTO, or an array or collection of them. */
+	static boolean isWireDto(Type type) {
+		ResolvableType t = ResolvableType.forType(type);
+		if (t.isArray()) {
+			t = t.getComponentType();
+		} else if (Collection.class.isAssignableFrom(t.toClass())) {
+			t = t.asCollection().getGeneric(0);
+		}
+		Class<?> c = t.resolve();
+		return c != null && (c.getPackageName().equals(DTO_PACKAGE) || c == ApiError.class);
+	}
+
+	/** Restricts a Jackson converter to {@link #isWireDto} types. */
+	private static final class DtoOnly implements GenericHttpMessageConverter<Object> {
+
+		private final AbstractJackson2HttpMessageConverter delegate;
+
+		DtoOnly(AbstractJackson2HttpMessageConverter delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public boolean canRead(Class<?> clazz, MediaType mediaType) {
+			return isWireDto(clazz) && delegate.canRead(clazz, mediaType);
+		}
+
+		@Override
+		public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+			return isWireDto(type) && delegate.canRead(type, contextClass, mediaType);
+		}
+
+		@Override
+		public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+			return isWireDto(clazz) && delegate.canWrite(clazz, mediaType);
+		}
+
+		@Override
+		public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+			return isWireDto((type != null) ? type : clazz) && delegate.canWrite(type, clazz, mediaType);
+		}
+
+		@Override
+		public List<MediaType> getSupportedMediaTypes() {
+			return delegate.getSupportedMediaTypes();
+		}
+
+		@Override
+		public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+			// asked with the raw class of a body already checked through its generic type
+			return delegate.getSupportedMediaTypes(clazz);
+		}
+
+		@Override
+		public Object read(Class<?> clazz, HttpInputMessage input) throws IOException, HttpMessageNotReadableException {
+			return delegate.read(clazz, input);
+		}
+
+		@Override
+		public Object read(Type type, Class<?> contextClass, HttpInputMessage input)
+				throws IOException, HttpMessageNotReadableException {
+			return delegate.read(type, contextClass, input);
+		}
+
+		@Override
+		public void write(Object body, MediaType contentType, HttpOutputMessage output)
+				throws IOException, HttpMessageNotWritableException {
+			delegate.write(body, contentType, output);
+		}
+
+		@Override
+		public void write(Object body, Type type, MediaType contentType, HttpOutputMessage output)
+				throws IOException, HttpMessageNotWritableException {
+			delegate.write(body, type, contentType, output);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package rag_chat_microservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import rag_chat_microservice.dto.ShardMoveReport;
+import rag_chat_microservice.dto.ShardStats;
+import rag_chat_microservice.service.ReshardService;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.util.List;
+
+// Operator endpoints, present only with sharding enabled. Moves block until done;
+// a move that failed leaves the bucket read-only until it is run again.
+@RestController
+@RequestMapping("/api/admin/shards")
+@RequiredArgsConstructor
+@ConditionalOnExpression("!'${chat.sharding.urls:}'.isBlank()")
+public class AdminShardController {
+
+    private final ReshardService reshardService;
+
+    @GetMapping
+    public ResponseEntity<List<ShardStats>> stats() {
+        return ResponseEntity.ok(reshardService.stats());
+    }
+
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<ShardRouter.Placement> placement(@PathVariable String userId) {
+        return ResponseEntity.ok(reshardService.placement(userId));
+    }
+
+    @PostMapping("/buckets/{bucket}/move")
+    public ResponseEntity<ShardMoveReport> moveBucket(@PathVariable int bucket, @RequestParam("to") int target) {
+        try {
+            return ResponseEntity.ok(reshardService.moveBucket(bucket, target));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // moves every bucket whose placement differs on a ring of ringShards shards
+    @PostMapping("/rebalance")
+    public ResponseEntity<List<ShardMoveReport>> rebalance(@RequestParam int ringShards) {
+        try {
+            return ResponseEntity.ok(reshardService.rebalance(ringShards));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
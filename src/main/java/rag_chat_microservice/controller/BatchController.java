@@ -0,0 +1,44 @@
+package rag_chat_microservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import rag_chat_microservice.dto.BatchOperation;
+import rag_chat_microservice.dto.BatchResult;
+import rag_chat_microservice.service.BatchService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/batch")
+@RequiredArgsConstructor
+public class BatchController {
+
+    private final BatchService batchService;
+
+    @Value("${chat.batch.max-operations:100}")
+    private int maxOperations;
+
+    // "Select many" actions on one user's sessions in a single request and transaction.
+    // The user is in the path so the request is routed like the other per-user calls
+    // (shard, read-your-writes). Always 200: each item carries its own status.
+    @PostMapping("/users/{userId}")
+    public ResponseEntity<List<BatchResult>> apply(@PathVariable String userId,
+            @RequestBody List<BatchOperation> operations) {
+        if (userId.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "userId must not be blank");
+        }
+        if (operations.size() > maxOperations) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "at most " + maxOperations + " operations per batch");
+        }
+        return ResponseEntity.ok(batchService.apply(userId, operations));
+    }
+}
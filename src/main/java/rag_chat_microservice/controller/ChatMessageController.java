@@ -2,26 +2,30 @@ package rag_chat_microservice.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import rag_chat_microservice.dto.AddMessageRequest;
 import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.dto.ChatMessageSummaryDto;
+import rag_chat_microservice.dto.MessageCursor;
 import rag_chat_microservice.dto.UpdateMessageRequest;
 import rag_chat_microservice.model.ChatMessage;
-import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.service.MessagePoller;
 import rag_chat_microservice.service.MessageService;
 import rag_chat_microservice.service.SessionService;
+import rag_chat_microservice.service.SessionVersions;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/sessions/{sessionId}/messages")
@@ -29,8 +33,13 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ChatMessageController {
 
+	static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+	static final int MAX_MESSAGE_PAGE = 100;
+
 	private final MessageService messageService;
 	private final SessionService sessionService;
+	private final MessagePoller messagePoller;
+	private final SessionVersions sessionVersions;
 
 	// Add a new message to a session and get an AI response
 	@PostMapping
@@ -59,27 +68,76 @@ public class ChatMessageController {
 		}
 
 		// Return the full conversation history (first page size 10)
-		return ResponseEntity.status(HttpStatus.CREATED).body(getMessages(sessionId, 0, 10).getBody());
+		Slice<ChatMessageDto> firstPage = messageService.getMessageViews(sessionId, null, 0, 10);
+		return ResponseEntity.status(HttpStatus.CREATED)
+				.body(page(sessionId, null, firstPage, ChatMessageDto::getSeq).getBody());
 	}
 
-	// Get all messages in a session (paginated or not)
+	// Get messages in a session. Pass the X-Next-Cursor header of the previous
+	// response as ?cursor= to continue; ?page=N is still accepted but deep pages
+	// cost an OFFSET scan. Answers If-None-Match with 304 while the session is unchanged.
 	@GetMapping
 	public ResponseEntity<List<ChatMessageDto>> getMessages(@PathVariable UUID sessionId,
-			@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size) {
+			@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "0") int page,
+			@RequestParam(defaultValue = "10") int size, WebRequest request) {
 
-		ChatSession session = sessionService.getSession(sessionId);
+		MessageCursor after = parseCursor(cursor, page, size);
+		if (notModified(sessionId, request)) {
+			return null;
+		}
+		sessionService.getSession(sessionId); // 404 if the session doesn't exist
 
-		Page<ChatMessage> messages = messageService.getMessagesBySession(session, PageRequest.of(page, size));
+		Slice<ChatMessageDto> messages = messageService.getMessageViews(sessionId, after, page, size);
+		return page(sessionId, after, messages, ChatMessageDto::getSeq);
+	}
 
-		if (messages.isEmpty()) {
-			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No messages found for session: " + sessionId);
+	// Delta sync for polling clients: the messages after ?since= (an X-Next-Cursor; empty
+	// starts from the first message). X-Next-Cursor is always set on the answer, to pass as
+	// the next since. With ?wait=N (seconds) an empty answer is held back until a message is
+	// appended to the session or N seconds pass, without tying up a request thread.
+	@GetMapping(params = "since")
+	public CompletableFuture<ResponseEntity<List<ChatMessageDto>>> getNewMessages(@PathVariable UUID sessionId,
+			@RequestParam String since, @RequestParam(defaultValue = "0") int wait,
+			@RequestParam(defaultValue = "100") int size) {
+
+		MessageCursor after = since.isBlank() ? new MessageCursor(0) : parseCursor(since, 0, size);
+		if (size < 1 || size > MAX_MESSAGE_PAGE || wait < 0 || wait > messagePoller.maxWait().toSeconds()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and "
+					+ MAX_MESSAGE_PAGE + " and wait between 0 and " + messagePoller.maxWait().toSeconds());
+		}
+		sessionService.getSession(sessionId);
+
+		return messagePoller.poll(sessionId, after, size, Duration.ofSeconds(wait)).thenApply(messages -> {
+			List<ChatMessageDto> content = messages.getContent();
+			long last = lastSeq(content, ChatMessageDto::getSeq, after.seq());
+			return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, new MessageCursor(last).encode()).body(content);
+		});
+	}
+
+	// Same paging as getMessages, but only a preview of each message's content
+	@GetMapping("/summaries")
+	public ResponseEntity<List<ChatMessageSummaryDto>> getMessageSummaries(@PathVariable UUID sessionId,
+			@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "0") int page,
+			@RequestParam(defaultValue = "10") int size, WebRequest request) {
+
+		MessageCursor after = parseCursor(cursor, page, size);
+		if (notModified(sessionId, request)) {
+			return null;
 		}
+		sessionService.getSession(sessionId);
 
-		List<ChatMessageDto> dtoList = messages.getContent().stream() // 👈 use getContent()
-				.map(this::toDto) // 👈 instance method ref
-				.toList();
+		Slice<ChatMessageSummaryDto> messages = messageService.getMessageSummaries(sessionId, after, page, size);
+		return page(sessionId, after, messages, ChatMessageSummaryDto::getSeq);
+	}
 
-		return ResponseEntity.ok(dtoList);
+	// Full content and context of a single message
+	@GetMapping("/{messageId}")
+	public ResponseEntity<ChatMessageDto> getMessage(@PathVariable UUID sessionId, @PathVariable UUID messageId,
+			WebRequest request) {
+		if (notModified(sessionId, request)) {
+			return null;
+		}
+		return ResponseEntity.ok(messageService.getMessageView(sessionId, messageId));
 	}
 
 	@DeleteMapping("/{messageId}")
@@ -102,6 +160,56 @@ public class ChatMessageController {
 	// Convert entity to DTO
 	private ChatMessageDto toDto(ChatMessage message) {
 		return new ChatMessageDto(message.getId(), message.getChatSession().getId(), message.getSender().name(),
-				message.getContent(), message.getContext());
+				message.getContent(), message.getContext(), message.getCreatedAt(), message.getSeq(),
+				message.getReplyTo());
+	}
+
+	// Sets the session's ETag on the response; true when the client's copy is current
+	// and a 304 has been prepared, before any message is read. A session that does not
+	// exist (or is deleted) has no tag: never 304, the lookup that follows answers it
+	private boolean notModified(UUID sessionId, WebRequest request) {
+		String etag = sessionVersions.messagesTag(sessionId);
+		return etag != null && request.checkNotModified(etag);
+	}
+
+	private MessageCursor parseCursor(String cursor, int page, int size) {
+		if (size < 1 || size > MAX_MESSAGE_PAGE || page < 0) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"page must be >= 0 and size between 1 and " + MAX_MESSAGE_PAGE);
+		}
+		if (cursor == null) {
+			return null;
+		}
+		try {
+			return MessageCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor");
+		}
+	}
+
+	// Body is the slice content; X-Next-Cursor points after its last row when more exist
+	private <T> ResponseEntity<List<T>> page(UUID sessionId, MessageCursor after, Slice<T> messages,
+			Function<T, Long> seq) {
+		if (messages.isEmpty() && after == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No messages found for session: " + sessionId);
+		}
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+		if (messages.hasNext()) {
+			long last = lastSeq(messages.getContent(), seq, (after == null) ? 0 : after.seq());
+			response.header(NEXT_CURSOR_HEADER, new MessageCursor(last).encode());
+		}
+		return response.body(messages.getContent());
+	}
+
+	// seq of the last row that has one; rows written before sequencing (no seq until
+	// the 004 backfill) are skipped, and a page of only those continues from fallback
+	private static <T> long lastSeq(List<T> rows, Function<T, Long> seq, long fallback) {
+		for (int i = rows.size() - 1; i >= 0; i--) {
+			Long value = seq.apply(rows.get(i));
+			if (value != null) {
+				return value;
+			}
+		}
+		return fallback;
 	}
 }
@@ -2,32 +2,42 @@ package rag_chat_microservice.controller;
 
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import rag_chat_microservice.dto.ChatSessionDto;
 import rag_chat_microservice.dto.ChatSessionResponseDto;
+import rag_chat_microservice.dto.ChatSessionSummaryDto;
 import rag_chat_microservice.dto.CreateSessionRequest;
+import rag_chat_microservice.dto.SessionCursor;
 import rag_chat_microservice.model.ChatSession;
 import rag_chat_microservice.repository.SessionRepository;
 import rag_chat_microservice.service.SessionService;
+import rag_chat_microservice.service.SessionVersions;
+import rag_chat_microservice.sharding.ShardRouter;
 
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/sessions")
 @RequiredArgsConstructor
 public class ChatSessionController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_SUMMARY_PAGE = 100;
+
     private final SessionService sessionService;
     private final SessionRepository sessionRepository;
+    private final ShardRouter shardRouter;
+    private final SessionVersions sessionVersions;
 
     @PostMapping("/api/sessions")
     public ResponseEntity<ChatSessionDto> create(@RequestBody CreateSessionRequest req, UriComponentsBuilder uri) {
@@ -39,6 +49,11 @@ public class ChatSessionController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "title must not be empty");
         }
 
+        // the body names the user, so the shard is picked here rather than by the interceptor
+        if (shardRouter.bindUser(req.getUserId()).moving()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "User is being moved to another shard, retry shortly");
+        }
+
         String normTitle = req.getTitle().trim().replaceAll("\\s+", " ");
         boolean existed = sessionRepository.existsByUserIdAndTitleAndDeletedFalse(req.getUserId(), normTitle);
 
@@ -56,24 +71,55 @@ public class ChatSessionController {
 
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<ChatSessionResponseDto>> getUserSessions(@PathVariable String userId) {
+    public ResponseEntity<List<ChatSessionResponseDto>> getUserSessions(@PathVariable String userId,
+            WebRequest request) {
     	if (userId == null || userId.isBlank()) {
     	    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "userId must not be blank");
     	}
-        List<ChatSession> sessions = sessionService.getUserSessions(userId);
-        List<ChatSessionResponseDto> responseDtos = sessions.stream()
-                .map(ChatSessionResponseDto::fromEntity)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(responseDtos);
+        if (request.checkNotModified(sessionVersions.userSessionsTag(userId))) {
+            return null;
+        }
+        return ResponseEntity.ok(sessionService.getUserSessions(userId));
+    }
+
+    // Sidebar listing, most recent activity first. Pass the X-Next-Cursor header of the
+    // previous response as ?cursor= to continue; an unknown user gets an empty list.
+    // The listings answer If-None-Match with 304 while none of the user's sessions changed.
+    @GetMapping("/user/{userId}/summaries")
+    public ResponseEntity<List<ChatSessionSummaryDto>> getSessionSummaries(@PathVariable String userId,
+            @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int size,
+            WebRequest request) {
+        if (size < 1 || size > MAX_SUMMARY_PAGE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + MAX_SUMMARY_PAGE);
+        }
+        SessionCursor after = null;
+        if (cursor != null) {
+            try {
+                after = SessionCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor");
+            }
+        }
+
+        if (request.checkNotModified(sessionVersions.userSessionsTag(userId))) {
+            return null;
+        }
+        Slice<ChatSessionSummaryDto> summaries = sessionService.getSessionSummaries(userId, after, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (summaries.hasNext()) {
+            ChatSessionSummaryDto last = summaries.getContent().get(summaries.getNumberOfElements() - 1);
+            response.header(NEXT_CURSOR_HEADER, new SessionCursor(last.getLastActivityAt(), last.getSessionId()).encode());
+        }
+        return response.body(summaries.getContent());
     }
 
     @GetMapping("/user/{userId}/favorites")
-    public ResponseEntity<List<ChatSessionResponseDto>> getFavoriteSessions(@PathVariable String userId) {
-        List<ChatSession> favoriteSessions = sessionService.getFavoriteSessions(userId);
-        List<ChatSessionResponseDto> responseDtos = favoriteSessions.stream()
-                .map(ChatSessionResponseDto::fromEntity)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(responseDtos);
+    public ResponseEntity<List<ChatSessionResponseDto>> getFavoriteSessions(@PathVariable String userId,
+            WebRequest request) {
+        if (request.checkNotModified(sessionVersions.userSessionsTag(userId))) {
+            return null;
+        }
+        return ResponseEntity.ok(sessionService.getUserSessions(userId));
     }
 
     @PatchMapping("/{sessionId}/rename")
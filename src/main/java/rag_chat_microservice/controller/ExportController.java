@@ -0,0 +1,78 @@
+package rag_chat_microservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.ExportService;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/export")
+@RequiredArgsConstructor
+@Slf4j
+public class ExportController {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ExportService exportService;
+    private final SessionRepository sessionRepository;
+    private final ShardRouter shardRouter;
+
+    // Full history of a user as NDJSON, optionally only messages with from <= createdAt < to.
+    // The body is written while the rows are read, so the response has no Content-Length;
+    // a missing trailing {"type":"end"} line means the export was cut short.
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<StreamingResponseBody> exportUser(@PathVariable String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+        // the status is sent with the first bytes; check before streaming starts
+        if (!sessionRepository.existsByUserId(userId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No sessions found for user: " + userId);
+        }
+
+        StreamingResponseBody body = out -> {
+            // written on an async thread, which the request's shard binding does not reach
+            shardRouter.bindUser(userId);
+            try {
+                if (gzip) {
+                    GZIPOutputStream zipped = new GZIPOutputStream(out, 1 << 16);
+                    exportService.exportUser(userId, from, to, zipped);
+                    zipped.finish();
+                } else {
+                    exportService.exportUser(userId, from, to, out);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Export for user {} aborted: {}", userId, e.toString());
+                throw e;
+            } finally {
+                shardRouter.unbind();
+            }
+        };
+
+        String filename = userId + "-export.ndjson" + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+}
@@ -0,0 +1,46 @@
+package rag_chat_microservice.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import rag_chat_microservice.dto.ImportReport;
+import rag_chat_microservice.service.ImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+@RestController
+@RequestMapping("/api/import")
+@RequiredArgsConstructor
+public class ImportController {
+
+    private final ImportService importService;
+
+    // Bulk load of NDJSON transcripts (the export format), read from the body as it arrives.
+    // Send Content-Encoding: gzip for a compressed body. With ?checkpoint=name a failed or
+    // interrupted upload can be sent again in full: lines committed earlier are skipped.
+    // form content types are excluded: the container would consume the body as parameters
+    @PostMapping(consumes = { "application/x-ndjson", MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE,
+            MediaType.APPLICATION_OCTET_STREAM_VALUE })
+    public ResponseEntity<ImportReport> importNdjson(HttpServletRequest request,
+            @RequestParam(defaultValue = "false") boolean dryRun,
+            @RequestParam(required = false) String checkpoint,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String encoding) throws IOException {
+
+        try (InputStream body = "gzip".equalsIgnoreCase(encoding)
+                ? new GZIPInputStream(request.getInputStream(), 1 << 16)
+                : request.getInputStream()) {
+            ImportReport report = importService.importNdjson(body, dryRun,
+                    (checkpoint == null || checkpoint.isBlank()) ? null : checkpoint);
+            // a stopped import still reports how far it got
+            return ResponseEntity.status(report.getFailure() == null ? HttpStatus.OK : HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(report);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package rag_chat_microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * One item of POST /api/batch/users/{userId}. Fields besides {@code op} and
+ * {@code sessionId} depend on the operation: {@code favorite} for FAVORITE,
+ * {@code title} for RENAME, {@code messageId} for DELETE_MESSAGE.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperation {
+
+    public enum Op { FAVORITE, RENAME, DELETE, DELETE_MESSAGE }
+
+    private Op op;
+    private UUID sessionId;
+    private UUID messageId;
+    private Boolean favorite;
+    private String title;
+}
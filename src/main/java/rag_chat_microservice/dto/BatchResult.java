@@ -0,0 +1,15 @@
+package rag_chat_microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Outcome of one batch item, as the HTTP status its own request would have had. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResult {
+    private int index;    // position in the request
+    private int status;   // 200, 400, 404 or 409
+    private String error; // null on success
+}
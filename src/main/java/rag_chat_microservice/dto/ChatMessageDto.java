@@ -3,7 +3,9 @@ package rag_chat_microservice.dto;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import rag_chat_microservice.model.ChatMessage;
 
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
@@ -15,4 +17,14 @@ public class ChatMessageDto {
     private String sender;   // "USER" or "AI"
     private String content;
     private String context;  // Optional context
+    private LocalDateTime createdAt;
+    private Long seq;        // position in the session
+    private UUID replyTo;    // USER message an AI reply answers
+
+    // used by JPQL constructor projections (see MessageRepository)
+    public ChatMessageDto(UUID id, UUID sessionId, ChatMessage.Sender sender, String content, String context,
+                          String legacyContext, LocalDateTime createdAt, Long seq, UUID replyTo) {
+        this(id, sessionId, sender.name(), content, (context != null) ? context : legacyContext, createdAt, seq,
+                replyTo);
+    }
 }
@@ -0,0 +1,35 @@
+package rag_chat_microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import rag_chat_microservice.model.ChatMessage;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Listing row for a message: the stored preview instead of the full content and
+ * context. Fetch GET /api/sessions/{sessionId}/messages/{messageId} for the body.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageSummaryDto {
+    private UUID id;
+    private UUID sessionId;
+    private String sender;
+    private String preview;
+    private int contentLength;
+    private boolean truncated;
+    private boolean hasContext;
+    private LocalDateTime createdAt;
+    private Long seq;
+
+    // used by JPQL constructor projections (see MessageRepository)
+    public ChatMessageSummaryDto(UUID id, UUID sessionId, ChatMessage.Sender sender, String preview,
+                                 Integer contentLength, Boolean hasContext, LocalDateTime createdAt, Long seq) {
+        this(id, sessionId, sender.name(), preview, contentLength,
+                contentLength > preview.codePointCount(0, preview.length()), hasContext, createdAt, seq);
+    }
+}
@@ -0,0 +1,35 @@
+package rag_chat_microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import rag_chat_microservice.model.ChatMessage;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Sidebar row for a session, read straight from the denormalized activity
+ * columns of chat_sessions (no join over chat_messages).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSessionSummaryDto {
+    private UUID sessionId;
+    private String title;
+    private boolean favorite;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastActivityAt;
+    private long messageCount;
+    private String lastMessagePreview; // first 200 characters of the newest message
+    private String lastSender;         // null while the session is empty
+
+    // used by JPQL constructor projections (see SessionRepository)
+    public ChatSessionSummaryDto(UUID sessionId, String title, Boolean favorite, LocalDateTime createdAt,
+                                 LocalDateTime lastActivityAt, Long messageCount, String lastMessagePreview,
+                                 ChatMessage.Sender lastSender) {
+        this(sessionId, title, favorite, createdAt, lastActivityAt, messageCount, lastMessagePreview,
+                (lastSender != null) ? lastSender.name() : null);
+    }
+}
@@ -0,0 +1,24 @@
+package rag_chat_microservice.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Outcome of one bulk import run (see ImportService). */
+@Data
+public class ImportReport {
+    private boolean dryRun;
+    private String checkpoint;       // null when the run was not checkpointed
+    private long resumedAfterLine;   // lines skipped because an earlier run committed them
+    private long lastLine;           // last line committed (or validated, in a dry run)
+    private long sessionsImported;
+    private long sessionsSkipped;     // id already present, e.g. from an earlier run
+    private long messagesImported;
+    private long messagesSkipped;     // belong to a skipped session
+    private long rejected;            // invalid lines, and messages of rejected sessions
+    private List<String> errors = new ArrayList<>(); // first rejections, "line N: reason"
+    private double seconds;
+    private long rowsPerSecond;       // sessions + messages written (or validated) per second
+    private String failure;           // set when the run stopped early; resume from lastLine
+}
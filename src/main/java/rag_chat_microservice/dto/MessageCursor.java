@@ -0,0 +1,35 @@
+package rag_chat_microservice.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a session's message history: the seq of the last message a client
+ * has seen. Clients treat the encoded form as an opaque token.
+ */
+public record MessageCursor(long seq) {
+
+    // v1 tokens carried (createdAt, id) and are no longer accepted
+    private static final String VERSION = "v2";
+
+    public String encode() {
+        String raw = VERSION + "|" + seq;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static MessageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 2 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Unsupported cursor");
+            }
+            return new MessageCursor(Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
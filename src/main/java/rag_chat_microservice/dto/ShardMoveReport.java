@@ -0,0 +1,17 @@
+package rag_chat_microservice.dto;
+
+import lombok.Data;
+
+/** Outcome of moving one bucket between shards (see ReshardService). */
+@Data
+public class ShardMoveReport {
+    private int bucket;
+    private int fromShard;
+    private int toShard;
+    private long users;
+    private long sessions;
+    private long legacySessions;   // ids without an embedded bucket; tracked in the directory
+    private long messages;
+    private long contextBlobs;     // copied because the target had no row with that hash
+    private double seconds;
+}
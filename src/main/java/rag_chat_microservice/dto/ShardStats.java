@@ -0,0 +1,16 @@
+package rag_chat_microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Row counts of one shard (GET /api/admin/shards). */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardStats {
+    private int shard;
+    private long sessions;
+    private long messages;
+    private long movedBuckets;    // buckets the directory places here instead of the ring
+}
@@ -0,0 +1,33 @@
+package rag_chat_microservice.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * ApiKeyFilter for gRPC: calls without the configured key in the
+ * {@code x-api-key} metadata fail with UNAUTHENTICATED.
+ */
+class ApiKeyInterceptor implements ServerInterceptor {
+
+    static final Metadata.Key<String> API_KEY = Metadata.Key.of("x-api-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final String apiKeyValue;
+
+    ApiKeyInterceptor(String apiKeyValue) {
+        this.apiKeyValue = apiKeyValue;
+    }
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+            ServerCallHandler<Q, R> next) {
+        if (apiKeyValue.equals(headers.get(API_KEY))) {
+            return next.startCall(call, headers);
+        }
+        call.close(Status.UNAUTHENTICATED.withDescription("Invalid or missing API key"), new Metadata());
+        return new ServerCall.Listener<>() {
+        };
+    }
+}
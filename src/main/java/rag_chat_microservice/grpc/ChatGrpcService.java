@@ -0,0 +1,317 @@
+package rag_chat_microservice.grpc;
+
+import com.google.protobuf.Timestamp;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.dto.ChatSessionSummaryDto;
+import rag_chat_microservice.dto.CreateSessionRequest;
+import rag_chat_microservice.dto.MessageCursor;
+import rag_chat_microservice.dto.SessionCursor;
+import rag_chat_microservice.exception.MessageNotFoundException;
+import rag_chat_microservice.exception.SessionNotFoundException;
+import rag_chat_microservice.grpc.v1.ChatServiceGrpc;
+import rag_chat_microservice.grpc.v1.ListMessagesRequest;
+import rag_chat_microservice.grpc.v1.ListMessagesResponse;
+import rag_chat_microservice.grpc.v1.ListSessionsRequest;
+import rag_chat_microservice.grpc.v1.ListSessionsResponse;
+import rag_chat_microservice.grpc.v1.Message;
+import rag_chat_microservice.grpc.v1.SendMessageEvent;
+import rag_chat_microservice.grpc.v1.SendMessageRequest;
+import rag_chat_microservice.grpc.v1.Session;
+import rag_chat_microservice.grpc.v1.SessionSummary;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.MessageService;
+import rag_chat_microservice.service.ReadYourWrites;
+import rag_chat_microservice.service.SessionService;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The gRPC face of the chat API, on the same services as the REST controllers
+ * and with the same validation, shard routing and read-your-writes marks as
+ * ShardRoutingInterceptor and ReadYourWritesInterceptor apply to a request.
+ * Failures map to status codes the way GlobalExceptionHandler maps them to HTTP.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatGrpcService extends ChatServiceGrpc.ChatServiceImplBase {
+
+    private static final int MAX_SESSION_PAGE = 100;
+    private static final int MAX_MESSAGE_PAGE = 100;
+
+    private final SessionService sessionService;
+    private final SessionRepository sessionRepository;
+    private final MessageService messageService;
+    private final ShardRouter shardRouter;
+    private final ReadYourWrites readYourWrites;
+
+    @Override
+    public void createSession(rag_chat_microservice.grpc.v1.CreateSessionRequest request,
+            StreamObserver<Session> response) {
+        unary(response, () -> {
+            String userId = request.getUserId();
+            if (userId.isBlank()) {
+                throw invalid("user_id must not be empty");
+            }
+            if (request.getTitle().isBlank()) {
+                throw invalid("title must not be empty");
+            }
+            return routed(null, userId, true, () -> {
+                String title = request.getTitle().trim().replaceAll("\\s+", " ");
+                boolean existed = sessionRepository.existsByUserIdAndTitleAndDeletedFalse(userId, title);
+                CreateSessionRequest create = new CreateSessionRequest();
+                create.setUserId(userId);
+                create.setTitle(request.getTitle());
+                return toProto(sessionService.createSession(create), !existed);
+            });
+        });
+    }
+
+    @Override
+    public void listSessions(ListSessionsRequest request, StreamObserver<ListSessionsResponse> response) {
+        unary(response, () -> {
+            int size = (request.getPageSize() == 0) ? 20 : request.getPageSize();
+            if (size < 1 || size > MAX_SESSION_PAGE) {
+                throw invalid("page_size must be between 1 and " + MAX_SESSION_PAGE);
+            }
+            SessionCursor after = request.getPageToken().isEmpty() ? null : decode(request.getPageToken(),
+                    SessionCursor::decode);
+            return routed(null, request.getUserId(), false, () -> {
+                Slice<ChatSessionSummaryDto> page = sessionService.getSessionSummaries(request.getUserId(), after,
+                        size);
+                ListSessionsResponse.Builder out = ListSessionsResponse.newBuilder();
+                page.forEach(s -> out.addSessions(toProto(s)));
+                if (page.hasNext()) {
+                    ChatSessionSummaryDto last = page.getContent().get(page.getNumberOfElements() - 1);
+                    out.setNextPageToken(new SessionCursor(last.getLastActivityAt(), last.getSessionId()).encode());
+                }
+                return out.build();
+            });
+        });
+    }
+
+    @Override
+    public void listMessages(ListMessagesRequest request, StreamObserver<ListMessagesResponse> response) {
+        unary(response, () -> {
+            UUID sessionId = sessionId(request.getSessionId());
+            int size = (request.getPageSize() == 0) ? 10 : request.getPageSize();
+            if (size < 1 || size > MAX_MESSAGE_PAGE) {
+                throw invalid("page_size must be between 1 and " + MAX_MESSAGE_PAGE);
+            }
+            MessageCursor after = request.getPageToken().isEmpty() ? null : decode(request.getPageToken(),
+                    MessageCursor::decode);
+            return routed(sessionId, null, false, () -> {
+                sessionService.getSession(sessionId);
+                Slice<ChatMessageDto> page = messageService.getMessageViews(sessionId, after, 0, size);
+                ListMessagesResponse.Builder out = ListMessagesResponse.newBuilder();
+                page.forEach(m -> out.addMessages(toProto(m)));
+                if (page.hasNext()) {
+                    // rows written before sequencing have no seq; continue after the last that has one
+                    long last = page.getContent().stream().map(ChatMessageDto::getSeq)
+                            .filter(Objects::nonNull).reduce((a, b) -> b)
+                            .orElse((after == null) ? 0L : after.seq());
+                    out.setNextPageToken(new MessageCursor(last).encode());
+                }
+                return out.build();
+            });
+        });
+    }
+
+    /**
+     * The REST POST of a message, streamed: the stored USER message, the reply as
+     * the model produces it, then the stored AI message. A client that cancels stops
+     * receiving chunks; the reply is still generated and stored, as it would be for a
+     * REST client that hung up.
+     */
+    @Override
+    public void sendMessage(SendMessageRequest request, StreamObserver<SendMessageEvent> response) {
+        ServerCallStreamObserver<SendMessageEvent> call = (ServerCallStreamObserver<SendMessageEvent>) response;
+        try {
+            UUID sessionId = sessionId(request.getSessionId());
+            if (request.getContent().isBlank()) {
+                throw invalid("content must not be empty");
+            }
+            String content = request.getContent().trim().replaceAll("\\s+", " ");
+            String context = request.hasContext() ? request.getContext() : null;
+            routed(sessionId, null, true, () -> {
+                sessionService.getSession(sessionId); // NOT_FOUND rather than addMessage's IllegalArgumentException
+                ChatMessage user = messageService.addMessage(sessionId, ChatMessage.Sender.USER, content, context);
+                call.onNext(SendMessageEvent.newBuilder().setUserMessage(toProto(user, sessionId)).build());
+
+                // the stored message itself, rather than the content, which would be looked up again
+                ChatMessage ai = messageService.streamAIResponse(sessionId, user, chunk -> {
+                    if (!call.isCancelled()) {
+                        call.onNext(SendMessageEvent.newBuilder().setChunk(chunk).build());
+                    }
+                });
+                if (!call.isCancelled()) {
+                    call.onNext(SendMessageEvent.newBuilder().setAiMessage(toProto(ai, sessionId)).build());
+                }
+                return null;
+            });
+            if (!call.isCancelled()) {
+                call.onCompleted();
+            }
+        } catch (RuntimeException e) {
+            if (!call.isCancelled()) {
+                call.onError(status(e));
+            }
+        }
+    }
+
+    // ---- helpers ----
+
+    private <T> void unary(StreamObserver<T> response, Supplier<T> work) {
+        T result;
+        try {
+            result = work.get();
+        } catch (RuntimeException e) {
+            response.onError(status(e));
+            return;
+        }
+        response.onNext(result);
+        response.onCompleted();
+    }
+
+    /** Runs work bound to the shard of the session (or else the user), as the REST interceptors do. */
+    private <T> T routed(UUID sessionId, String userId, boolean write, Supplier<T> work) {
+        ShardRouter.Placement placement = (sessionId != null) ? shardRouter.bindSession(sessionId)
+                : shardRouter.bindUser(userId);
+        List<String> keys = new ArrayList<>(1);
+        keys.add((sessionId != null) ? ReadYourWrites.sessionKey(sessionId) : ReadYourWrites.userKey(userId));
+        readYourWrites.bind(keys);
+        try {
+            if (placement.moving() && write) {
+                throw Status.UNAVAILABLE.withDescription("Data is being moved to another shard, retry shortly")
+                        .asRuntimeException();
+            }
+            if (write) {
+                readYourWrites.markCurrentWritten();
+            }
+            T result = work.get();
+            if (write) {
+                readYourWrites.markCurrentWritten();
+            }
+            return result;
+        } finally {
+            readYourWrites.unbind();
+            shardRouter.unbind();
+        }
+    }
+
+    private static StatusRuntimeException status(RuntimeException e) {
+        if (e instanceof StatusRuntimeException s) {
+            return s;
+        }
+        Status status;
+        if (e instanceof SessionNotFoundException || e instanceof MessageNotFoundException) {
+            status = Status.NOT_FOUND;
+        } else if (e instanceof ResponseStatusException r) {
+            status = switch (r.getStatusCode().value()) {
+                case 400 -> Status.INVALID_ARGUMENT;
+                case 404 -> Status.NOT_FOUND;
+                case 409 -> Status.ALREADY_EXISTS;
+                case 429 -> Status.RESOURCE_EXHAUSTED;
+                case 502, 503, 504 -> Status.UNAVAILABLE;
+                default -> Status.INTERNAL;
+            };
+            return status.withDescription(r.getReason()).asRuntimeException();
+        } else if (e instanceof IllegalArgumentException) {
+            status = Status.INVALID_ARGUMENT;
+        } else {
+            log.error("gRPC call failed", e);
+            return Status.INTERNAL.withDescription("An unexpected error occurred: " + e.getMessage())
+                    .asRuntimeException();
+        }
+        return status.withDescription(e.getMessage()).asRuntimeException();
+    }
+
+    private static StatusRuntimeException invalid(String description) {
+        return Status.INVALID_ARGUMENT.withDescription(description).asRuntimeException();
+    }
+
+    private static UUID sessionId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            throw invalid("session_id is not a UUID: " + id);
+        }
+    }
+
+    private static <T> T decode(String token, Function<String, T> decoder) {
+        try {
+            return decoder.apply(token);
+        } catch (IllegalArgumentException e) {
+            throw invalid("invalid page_token");
+        }
+    }
+
+    // ---- mapping ----
+
+    private static Timestamp timestamp(LocalDateTime at) {
+        if (at == null) {
+            return Timestamp.getDefaultInstance();
+        }
+        // stored as local date-times of the server's zone, like the JSON the REST API returns
+        var instant = at.atZone(ZoneId.systemDefault()).toInstant();
+        return Timestamp.newBuilder().setSeconds(instant.getEpochSecond()).setNanos(instant.getNano()).build();
+    }
+
+    private static Session toProto(ChatSession s, boolean created) {
+        return Session.newBuilder().setId(s.getId().toString()).setUserId(s.getUserId()).setTitle(s.getTitle())
+                .setFavorite(s.isFavorite()).setCreatedAt(timestamp(s.getCreatedAt())).setCreated(created).build();
+    }
+
+    private static SessionSummary toProto(ChatSessionSummaryDto s) {
+        SessionSummary.Builder b = SessionSummary.newBuilder().setId(s.getSessionId().toString())
+                .setTitle(s.getTitle()).setFavorite(s.isFavorite()).setCreatedAt(timestamp(s.getCreatedAt()))
+                .setLastActivityAt(timestamp(s.getLastActivityAt())).setMessageCount(s.getMessageCount());
+        if (s.getLastMessagePreview() != null) {
+            b.setLastMessagePreview(s.getLastMessagePreview());
+        }
+        if (s.getLastSender() != null) {
+            b.setLastSender(s.getLastSender());
+        }
+        return b.build();
+    }
+
+    private static Message toProto(ChatMessageDto m) {
+        Message.Builder b = Message.newBuilder().setId(m.getId().toString())
+                .setSessionId(m.getSessionId().toString()).setSender(m.getSender()).setContent(m.getContent())
+                .setCreatedAt(timestamp(m.getCreatedAt()));
+        if (m.getSeq() != null) {
+            b.setSeq(m.getSeq());
+        }
+        if (m.getContext() != null) {
+            b.setContext(m.getContext());
+        }
+        if (m.getReplyTo() != null) {
+            b.setReplyTo(m.getReplyTo().toString());
+        }
+        return b.build();
+    }
+
+    private static Message toProto(ChatMessage m, UUID sessionId) {
+        return toProto(new ChatMessageDto(m.getId(), sessionId, m.getSender().name(), m.getContent(), m.getContext(),
+                m.getCreatedAt(), m.getSeq(), m.getReplyTo()));
+    }
+}
@@ -0,0 +1,114 @@
+package rag_chat_microservice.grpc;
+
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import rag_chat_microservice.security.RateLimitBackend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves {@link ChatGrpcService} on its own port (plaintext HTTP/2) next to
+ * the REST API. Calls run on a fixed pool: each holds a thread while it talks to
+ * the database or streams a reply, as a Tomcat request does. Started after the
+ * rest of the context and drained on shutdown like the web server.
+ * <p>
+ * Off unless {@code chat.grpc.enabled=true}. Calls need the API key and count
+ * against its rate limit, as REST requests do.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.grpc.enabled", havingValue = "true")
+public class GrpcServer implements SmartLifecycle {
+
+    private final ChatGrpcService service;
+    private final RateLimitBackend rateLimitBackend;
+
+    @Value("${api.key}")
+    private String apiKeyValue;
+
+    // 0 picks a free port (tests, benchmarks)
+    @Value("${chat.grpc.port:9090}")
+    private int port;
+
+    @Value("${chat.grpc.threads:32}")
+    private int threads;
+
+    @Value("${chat.grpc.max-message-size:4MB}")
+    private DataSize maxMessageSize;
+
+    @Value("${chat.grpc.shutdown-grace:PT20S}")
+    private Duration shutdownGrace;
+
+    private Server server;
+    private ExecutorService executor;
+
+    public GrpcServer(ChatGrpcService service, RateLimitBackend rateLimitBackend) {
+        this.service = service;
+        this.rateLimitBackend = rateLimitBackend;
+    }
+
+    @Override
+    public synchronized void start() {
+        AtomicInteger n = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "grpc-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            server = NettyServerBuilder.forAddress(new InetSocketAddress(port))
+                    .executor(executor)
+                    .maxInboundMessageSize((int) maxMessageSize.toBytes())
+                    .addService(ServerInterceptors.intercept(service, // the last one runs first
+                            new RateLimitInterceptor(rateLimitBackend), new ApiKeyInterceptor(apiKeyValue)))
+                    .build()
+                    .start();
+        } catch (IOException e) {
+            executor.shutdownNow();
+            throw new UncheckedIOException("gRPC server could not bind port " + port, e);
+        }
+        log.info("gRPC server started on port {}", server.getPort());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(shutdownGrace.toMillis(), TimeUnit.MILLISECONDS)) {
+                server.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+        server = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /** The bound port, or -1 while stopped. */
+    public synchronized int port() {
+        return (server != null) ? server.getPort() : -1;
+    }
+}
@@ -0,0 +1,42 @@
+package rag_chat_microservice.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import rag_chat_microservice.security.RateLimitBackend;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimitingFilter for gRPC, on the same backend: a call takes a token from
+ * its API key's bucket, shared with the REST requests of that key, and fails
+ * with RESOURCE_EXHAUSTED when there is none. Runs after {@link ApiKeyInterceptor}.
+ */
+class RateLimitInterceptor implements ServerInterceptor {
+
+    // as the Retry-After header, but as metadata
+    static final Metadata.Key<String> RETRY_AFTER = Metadata.Key.of("retry-after", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final RateLimitBackend backend;
+
+    RateLimitInterceptor(RateLimitBackend backend) {
+        this.backend = backend;
+    }
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+            ServerCallHandler<Q, R> next) {
+        RateLimitBackend.Decision decision = backend.tryConsume(headers.get(ApiKeyInterceptor.API_KEY));
+        if (decision.allowed()) {
+            return next.startCall(call, headers);
+        }
+        Metadata trailers = new Metadata();
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(decision.nanosToRetry() + 999_999_999));
+        trailers.put(RETRY_AFTER, String.valueOf(retryAfter));
+        call.close(Status.RESOURCE_EXHAUSTED.withDescription("Too many requests - rate limit exceeded"), trailers);
+        return new ServerCall.Listener<>() {
+        };
+    }
+}
@@ -0,0 +1,287 @@
+package rag_chat_microservice.invalidation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the in-process caches of several instances coherent through the
+ * database. A transaction that changes cached data appends the changed keys to
+ * cache_invalidations just before it commits, on its own connection, so the
+ * entries exist exactly when the change does. Every instance tails the table by
+ * id and hands the keys written by other instances to the subscribers of their
+ * topic; its own changes it has already applied locally.
+ * <p>
+ * Ids are taken at insert but become visible at commit, so a smaller id can
+ * show up after a larger one. Skipped ids are remembered and looked up again
+ * until {@code chat.invalidation.gap-timeout}, which only needs to outlast the
+ * longest transaction; rolled-back inserts leave gaps that simply expire. With
+ * sharding each shard has its own table (written by the transactions on that
+ * shard) and is tailed on its own.
+ * <p>
+ * A change becomes visible on the other instances after at most one
+ * {@code chat.invalidation.poll-interval}. Off by default: one instance does not
+ * need it, and it costs an insert per changed key.
+ */
+@Slf4j
+@Component
+public class InvalidationBus {
+
+    private static final String INSERT = "insert into cache_invalidations (topic, cache_key, origin, created_at)"
+            + " values (?, ?, ?, ?)";
+    private static final String TAIL = "select id, topic, cache_key, origin from cache_invalidations"
+            + " where id > ? order by id limit ?";
+    private static final String LOOKUP = "select id, topic, cache_key, origin from cache_invalidations where id in (%s)";
+    private static final int MAX_GAPS = 10_000;
+
+    private record Entry(long id, String topic, String key, String origin) {
+    }
+
+    /** Read position in one shard's log. */
+    private static final class Tail {
+        long last = -1;
+        final TreeMap<Long, Long> gaps = new TreeMap<>(); // id -> nanoTime it is given up at
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.invalidation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.invalidation.poll-interval:PT0.25S}")
+    private Duration pollInterval;
+
+    @Value("${chat.invalidation.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${chat.invalidation.gap-timeout:PT30S}")
+    private Duration gapTimeout;
+
+    // entries are only needed until every instance has read them
+    @Value("${chat.invalidation.retention:PT1H}")
+    private Duration retention;
+
+    @Value("${chat.invalidation.prune-interval:PT5M}")
+    private Duration pruneInterval;
+
+    // identifies this instance's entries; a restarted instance starts with empty caches anyway
+    private final String origin = UUID.randomUUID().toString();
+    private final Map<String, List<Consumer<Set<String>>>> subscribers = new ConcurrentHashMap<>();
+    private final Map<Integer, Tail> tails = new HashMap<>();
+
+    private ScheduledExecutorService executor;
+    private Counter published;
+    private Counter received;
+
+    public InvalidationBus(JdbcTemplate jdbcTemplate, ShardRouter shardRouter, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        published = Counter.builder("chat.invalidation.entries").tag("direction", "published")
+                .description("Cache invalidations written to or read from the log").register(meterRegistry);
+        received = Counter.builder("chat.invalidation.entries").tag("direction", "received")
+                .description("Cache invalidations written to or read from the log").register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+        // its own thread: the shared scheduler also runs jobs that take minutes
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "invalidation-tail");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::prune, pruneInterval.toMillis(), pruneInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        log.info("Cache invalidation log enabled (node {}, every {})", origin, pollInterval);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Calls {@code listener} with the keys of {@code topic} that other instances
+     * changed, a batch at a time, on the tailing thread.
+     */
+    public void subscribe(String topic, Consumer<Set<String>> listener) {
+        subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /** Records that the current transaction changes these keys. */
+    public void publish(String topic, Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Invalidations are published from within the changing transaction");
+        }
+        publish(entityManager.unwrap(SessionImplementor.class), topic, keys);
+    }
+
+    /** Same, for Hibernate event listeners, which are handed the session. */
+    public void publish(SessionImplementor session, String topic, Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        List<String> copy = List.copyOf(keys);
+        // runs after the final flush, on the transaction's connection; a failure rolls it back
+        session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) s -> insert(s, topic, copy));
+    }
+
+    private void insert(SessionImplementor session, String topic, List<String> keys) {
+        Connection connection = session.getJdbcCoordinator().getLogicalConnection().getPhysicalConnection();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement ps = connection.prepareStatement(INSERT)) {
+            for (String key : keys) {
+                ps.setString(1, topic);
+                ps.setString(2, key);
+                ps.setString(3, origin);
+                ps.setTimestamp(4, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not record cache invalidations for " + topic, e);
+        }
+        published.increment(keys.size());
+    }
+
+    // ---- tailing ----
+
+    synchronized void poll() {
+        try {
+            shardRouter.fanOut(shard -> {
+                Map<String, Set<String>> changed = read(tails.computeIfAbsent(shard, s -> new Tail()));
+                changed.forEach(this::deliver);
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Reading the invalidation log failed, retrying: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Reading the invalidation log failed, retrying", e);
+        }
+    }
+
+    private Map<String, Set<String>> read(Tail tail) {
+        if (tail.last < 0) {
+            // older entries cannot concern caches that are only being filled now; starting a
+            // little before the end turns the ids of transactions still in flight into gaps
+            long max = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from cache_invalidations",
+                    Long.class);
+            tail.last = Math.max(0, max - batchSize);
+        }
+        Map<String, Set<String>> changed = new HashMap<>();
+        long now = System.nanoTime();
+        if (!tail.gaps.isEmpty()) {
+            tail.gaps.values().removeIf(deadline -> deadline - now < 0);
+            List<Long> ids = new ArrayList<>(tail.gaps.keySet()).subList(0, Math.min(tail.gaps.size(), batchSize));
+            if (!ids.isEmpty()) {
+                String sql = String.format(LOOKUP, String.join(",", Collections.nCopies(ids.size(), "?")));
+                for (Entry e : jdbcTemplate.query(sql, this::entry, ids.toArray())) {
+                    tail.gaps.remove(e.id());
+                    collect(e, changed);
+                }
+            }
+        }
+        List<Entry> entries;
+        do {
+            entries = jdbcTemplate.query(TAIL, this::entry, tail.last, batchSize);
+            for (Entry e : entries) {
+                for (long id = tail.last + 1; id < e.id() && tail.gaps.size() < MAX_GAPS; id++) {
+                    tail.gaps.put(id, now + gapTimeout.toNanos());
+                }
+                tail.last = e.id();
+                collect(e, changed);
+            }
+        } while (entries.size() == batchSize);
+        return changed;
+    }
+
+    private Entry entry(ResultSet rs, int row) throws SQLException {
+        return new Entry(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4));
+    }
+
+    private void collect(Entry e, Map<String, Set<String>> changed) {
+        if (!origin.equals(e.origin())) {
+            changed.computeIfAbsent(e.topic(), t -> new HashSet<>()).add(e.key());
+            received.increment();
+        }
+    }
+
+    private void deliver(String topic, Set<String> keys) {
+        for (Consumer<Set<String>> listener : subscribers.getOrDefault(topic, List.of())) {
+            try {
+                listener.accept(keys);
+            } catch (RuntimeException e) {
+                log.error("Invalidation listener for {} failed", topic, e);
+            }
+        }
+    }
+
+    void prune() {
+        try {
+            Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+            int removed = shardRouter.fanOut(shard -> jdbcTemplate.update(
+                    "delete from cache_invalidations where created_at < ?", cutoff)).stream()
+                    .mapToInt(Integer::intValue).sum();
+            if (removed > 0) {
+                log.debug("Pruned {} invalidation log entries", removed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Pruning the invalidation log failed: {}", e.getMessage());
+        }
+    }
+}
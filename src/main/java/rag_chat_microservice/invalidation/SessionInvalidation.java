@@ -0,0 +1,107 @@
+package rag_chat_microservice.invalidation;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.service.MessageNotifier;
+import rag_chat_microservice.service.SessionVersions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Session rows on the invalidation log. Every insert, update and delete of a
+ * ChatSession (an append, edit or recount included) is published under
+ * {@link #TOPIC} with the session id; bulk updates publish through
+ * {@link SessionVersions#evictAfterCommit}. What another instance changed is
+ * dropped here from the caches that hold sessions: the second-level cache entry,
+ * the cached listings (through the chat_sessions query space, as a local change
+ * would retire them; cached results over other tables are kept), the ETag version. Requests parked on the session are
+ * woken as an append on this instance would wake them.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionInvalidation implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener {
+
+    public static final String TOPIC = "chat_sessions";
+
+    private final InvalidationBus bus;
+    private final EntityManagerFactory entityManagerFactory;
+    private final SessionVersions sessionVersions;
+    private final MessageNotifier messageNotifier;
+
+    private String[] querySpaces;
+
+    @PostConstruct
+    void init() {
+        if (!bus.isEnabled()) {
+            return;
+        }
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        querySpaces = Arrays.stream(sessionFactory.getMappingMetamodel().getEntityDescriptor(ChatSession.class)
+                .getQuerySpaces()).map(String::valueOf).toArray(String[]::new);
+        EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_INSERT, this);
+        listeners.appendListeners(EventType.POST_UPDATE, this);
+        listeners.appendListeners(EventType.POST_DELETE, this);
+        bus.subscribe(TOPIC, this::evict);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof ChatSession session) {
+            bus.publish(event.getSession(), TOPIC, List.of(session.getId().toString()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof ChatSession session) {
+            bus.publish(event.getSession(), TOPIC, List.of(session.getId().toString()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof ChatSession session) {
+            bus.publish(event.getSession(), TOPIC, List.of(session.getId().toString()));
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void evict(Set<String> keys) {
+        List<UUID> ids = keys.stream().map(UUID::fromString).toList();
+        sessionVersions.invalidate(ids);
+        jakarta.persistence.Cache cache = entityManagerFactory.getCache();
+        ids.forEach(id -> cache.evict(ChatSession.class, id));
+        // bump the table's timestamp as a local change does: cached results over chat_sessions
+        // are stale from now on, the others stay
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        try (Session session = sessionFactory.openSession()) {
+            sessionFactory.getCache().getTimestampsCache().invalidate(querySpaces,
+                    session.unwrap(SharedSessionContractImplementor.class));
+        }
+        ids.forEach(messageNotifier::publish);
+    }
+}
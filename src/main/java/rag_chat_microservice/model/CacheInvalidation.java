@@ -0,0 +1,44 @@
+package rag_chat_microservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the invalidation log (InvalidationBus): a key of some cache that
+ * a committed transaction changed. Mapped for the schema only; rows are written
+ * and tailed with plain JDBC.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@Table(name = "cache_invalidations", indexes = @Index(name = "idx_cache_invalidations_created_at",
+        columnList = "created_at"))
+public class CacheInvalidation {
+
+    // tailed in id order: must grow with every insert (auto_increment_increment 1)
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "topic", length = 64, nullable = false)
+    private String topic;
+
+    @Column(name = "cache_key", length = 191, nullable = false)
+    private String key;
+
+    // node that wrote it; a node skips its own entries
+    @Column(name = "origin", length = 36, nullable = false)
+    private String origin;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
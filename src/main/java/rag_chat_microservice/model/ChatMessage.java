@@ -2,11 +2,13 @@ package rag_chat_microservice.model;
 
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @Entity
@@ -14,34 +16,71 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "chat_messages")
+@Table(
+  name = "chat_messages",
+  uniqueConstraints = @UniqueConstraint(name = "uk_chat_messages_session_seq", columnNames = {"session_id", "seq"}),
+  indexes = {
+    @Index(name = "idx_chat_messages_reply_to", columnList = "reply_to"),
+    // USER de-duplication lookup on every insert (MessageServiceImpl.addMessage)
+    @Index(name = "idx_chat_messages_session_hash", columnList = "session_id, content_hash")
+  }
+)
 public class ChatMessage {
 
     @Id
-    @UuidGenerator
-    @Column(name = "id", nullable = false, updatable = false)
+    @UuidV7
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "id", length = 16, nullable = false, updatable = false)
     private UUID id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "session_id", nullable = false)
     private ChatSession chatSession;
 
+    // position in the session, allocated from chat_sessions.last_seq (see SequenceService);
+    // null only on rows written before sequencing until 004_message_seq_backfill.sql runs
+    @Column(name = "seq")
+    private Long seq;
+
+    // the USER message an AI reply answers
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "reply_to", length = 16)
+    private UUID replyTo;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "sender", nullable = false)
     private Sender sender; // USER / ASSISTANT / SYSTEM / AI
 
-    @Lob
-    @Column(name = "content", columnDefinition = "LONGTEXT", nullable = false)
+    public static final int PREVIEW_CHARS = 200;
+
+    // compressed above chat.compression.threshold (see TextCodec), so SQL cannot look
+    // inside it; listings read the preview and length columns below instead
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "content", columnDefinition = "LONGBLOB", nullable = false)
     private String content;
 
+    // first PREVIEW_CHARS code points and total code points of content, kept in step with it
+    @Column(name = "content_preview", length = PREVIEW_CHARS)
+    private String contentPreview;
+
+    @Column(name = "content_chars")
+    private Integer contentChars;
+
+    // shared, content-addressed copy of the context sent with this message
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "context_hash")
+    private ContextBlob contextBlob;
+
+    // inline copy written before context_blobs existed; read-only fallback
     @Lob
-    @Column(name = "context", columnDefinition = "LONGTEXT")
-    private String context;
+    @Column(name = "context", columnDefinition = "LONGTEXT", insertable = false, updatable = false)
+    private String legacyContext;
 
 
-    // 👇 add this column and keep it NOT NULL in DB
-    @Column(name = "content_hash", length = 64, nullable = false)
-    private String contentHash;
+    // 👇 add this column and keep it NOT NULL in DB (raw SHA-256, BINARY(32))
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "content_hash", length = 32, nullable = false)
+    private byte[] contentHash;
 
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -58,23 +97,31 @@ public class ChatMessage {
     }
 
     private void recomputeHash() {
-        // normalize content and compute SHA-256
+        // normalize content, compute SHA-256 over the plaintext, derive the preview
         String normalized = normalize(this.content);
         this.content = normalized;
-        this.contentHash = sha256(normalized);
+        this.contentHash = hashOf(normalized);
+        this.contentChars = normalized.codePointCount(0, normalized.length());
+        this.contentPreview = previewOf(normalized);
     }
 
-    private static String normalize(String s) {
+    /** Content as stored: trimmed, whitespace runs collapsed to one space. */
+    public static String normalize(String s) {
         return (s == null) ? "" : s.trim().replaceAll("\\s+", " ");
     }
 
-    private static String sha256(String s) {
+    /** First {@link #PREVIEW_CHARS} code points of already-normalized content. */
+    public static String previewOf(String normalized) {
+        int chars = normalized.codePointCount(0, normalized.length());
+        return (chars <= PREVIEW_CHARS) ? normalized
+                : normalized.substring(0, normalized.offsetByCodePoints(0, PREVIEW_CHARS));
+    }
+
+    /** SHA-256 of already-normalized content, as stored in {@code content_hash}. */
+    public static byte[] hashOf(String normalized) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] bytes = md.digest(s.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(64);
-            for (byte b : bytes) sb.append(String.format("%02x", b));
-            return sb.toString();
+            return md.digest(normalized.getBytes(StandardCharsets.UTF_8));
         } catch (Exception e) {
             throw new RuntimeException("Failed to compute content hash", e);
         }
@@ -84,5 +131,16 @@ public class ChatMessage {
     private boolean deleted;
 
 
+    public String getContext() {
+        return (contextBlob != null) ? contextBlob.getContent() : legacyContext;
+    }
+
+    /** Key identifying this message's context for de-duplication (hex SHA-256); {@code null} when there is none. */
+    public String getContextKey() {
+        if (contextBlob != null) return HexFormat.of().formatHex(contextBlob.getHash());
+        return (legacyContext == null || legacyContext.isEmpty()) ? null
+                : HexFormat.of().formatHex(ContextBlob.hashOf(legacyContext));
+    }
+
     public enum Sender { USER, ASSISTANT, SYSTEM, AI }
 }
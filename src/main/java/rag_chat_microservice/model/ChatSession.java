@@ -2,7 +2,10 @@ package rag_chat_microservice.model;
 
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -18,13 +21,27 @@ import java.util.UUID;
   uniqueConstraints = @UniqueConstraint(
     name = "uk_chat_session_user_title_deleted",
     columnNames = {"user_id", "title", "is_deleted"}   // 👈 must match @Column names below
-  )
+  ),
+  // purge scan for soft-deleted sessions past retention (SessionPurgeJob)
+  indexes = {
+    @Index(name = "idx_chat_sessions_deleted_at", columnList = "is_deleted, deleted_at"),
+    // sidebar listing: a user's sessions by last activity, keyset on (last_activity_at, id)
+    @Index(name = "idx_chat_sessions_user_activity", columnList = "user_id, is_deleted, last_activity_at, id"),
+    // tiering scan for idle hot sessions, and the references still held on a segment (ColdTieringJob)
+    @Index(name = "idx_chat_sessions_tiering", columnList = "cold_segment, is_deleted, last_activity_at")
+  }
 )
+// second-level cache (region config in caffeine-jcache.conf); updates and deletes through
+// Hibernate refresh the entry, bulk JPQL updates evict the region
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = ChatSession.CACHE_REGION)
 public class ChatSession {
 
+    public static final String CACHE_REGION = "chat-sessions";
+
     @Id
-    @UuidGenerator
-    @Column(name = "id", updatable = false, nullable = false)
+    @UuidV7
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "id", length = 16, updatable = false, nullable = false)
     private UUID id;
 
     @Column(name = "user_id", nullable = false)   // 👈 make explicit
@@ -36,12 +53,46 @@ public class ChatSession {
     @Version
     private Long version;
 
+    // seq of the newest message; incremented under a row lock for every append
+    @Column(name = "last_seq", nullable = false)
+    private long lastSeq;
+
+    // turn activity, kept up to date with every append under the same row lock as
+    // last_seq, so the sidebar needs no aggregate over chat_messages
+    @Column(name = "message_count", nullable = false)
+    private long messageCount;
+
+    @Column(name = "last_activity_at")
+    private LocalDateTime lastActivityAt;
+
+    @Column(name = "last_message_preview", length = ChatMessage.PREVIEW_CHARS)
+    private String lastMessagePreview;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_sender", length = 16)
+    private ChatMessage.Sender lastSender;
+
     @Column(name = "favorite")
     private boolean favorite;
 
     @Column(name = "is_deleted", columnDefinition = "boolean default false") // 👈 already explicit
     private Boolean deleted;
 
+    // when the session was soft deleted; the purge retention window counts from here
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
+    // set while the session's messages live in a cold segment file instead of chat_messages
+    // (see ColdTieringJob); a session's history is either all in the table or all in one record
+    @Column(name = "cold_segment", length = 64)
+    private String coldSegment;
+
+    @Column(name = "cold_offset")
+    private Long coldOffset;
+
+    @Column(name = "cold_length")
+    private Integer coldLength;
+
     @OneToMany(mappedBy = "chatSession", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ChatMessage> messages;
 
@@ -56,6 +107,17 @@ public class ChatSession {
         LocalDateTime now = LocalDateTime.now();
         this.createdAt = now;
         this.updatedAt = now;
+        if (this.lastActivityAt == null) {
+            this.lastActivityAt = now;
+        }
+    }
+
+    /** Counts a message just persisted into this session; the caller holds the session row lock. */
+    public void recordMessage(ChatMessage message) {
+        this.messageCount++;
+        this.lastActivityAt = (message.getCreatedAt() != null) ? message.getCreatedAt() : LocalDateTime.now();
+        this.lastMessagePreview = message.getContentPreview();
+        this.lastSender = message.getSender();
     }
 
     @PreUpdate
@@ -0,0 +1,41 @@
+package rag_chat_microservice.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Stores a String attribute as {@link TextCodec} bytes (LONGBLOB). The entity
+ * keeps seeing plaintext, so hashes and normalization are computed as before.
+ * Hibernate obtains the instance from Spring, which supplies the settings.
+ */
+@Component
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    private final TextCodec codec;
+    private final int maxPlainBytes;
+
+    @Autowired
+    public CompressedTextConverter(@Value("${chat.compression.codec:deflate}") String codec,
+                                   @Value("${chat.compression.threshold:512}") int threshold,
+                                   @Value("${chat.compression.level:1}") int level,
+                                   @Value("${chat.compression.max-plain-size:64MB}") DataSize maxPlainSize) {
+        this.maxPlainBytes = (int) Math.min(maxPlainSize.toBytes(), Integer.MAX_VALUE - 8);
+        this.codec = new TextCodec(TextCodec.Codec.valueOf(codec.trim().toUpperCase()), threshold, level,
+                maxPlainBytes);
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return codec.encode(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        return TextCodec.decode(dbData, maxPlainBytes);
+    }
+}
@@ -0,0 +1,83 @@
+package rag_chat_microservice.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.springframework.data.domain.Persistable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+
+/**
+ * Content-addressed copy of a message context. Identical contexts resent on
+ * many turns are stored once and referenced from {@link ChatMessage} by hash.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "context_blobs")
+public class ContextBlob implements Persistable<byte[]> {
+
+    // raw SHA-256 of the exact content, BINARY(32) like chat_messages.content_hash
+    @Id
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "hash", length = 32, nullable = false, updatable = false)
+    private byte[] hash;
+
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "content", columnDefinition = "LONGBLOB", nullable = false, updatable = false)
+    private String content;
+
+    @Column(name = "size_bytes", nullable = false, updatable = false)
+    private long sizeBytes; // plaintext UTF-8 size
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // assigned ids make Spring Data treat every save as a merge; track newness ourselves
+    @Transient
+    private boolean fresh = true;
+
+    public static ContextBlob of(String content) {
+        ContextBlob blob = new ContextBlob();
+        blob.hash = hashOf(content);
+        blob.content = content;
+        blob.sizeBytes = content.getBytes(StandardCharsets.UTF_8).length;
+        return blob;
+    }
+
+    public static byte[] hashOf(String content) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return md.digest(content.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to compute context hash", e);
+        }
+    }
+
+    @Override
+    public byte[] getId() {
+        return hash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PrePersist
+    void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.fresh = false;
+    }
+}
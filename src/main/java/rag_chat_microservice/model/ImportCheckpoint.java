@@ -0,0 +1,42 @@
+package rag_chat_microservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Resume point of a named bulk import, written in the same transaction as the
+ * rows of each batch, so a restarted import neither skips nor repeats lines.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "import_checkpoints")
+public class ImportCheckpoint {
+
+    @Id
+    @Column(name = "name", length = 191, nullable = false, updatable = false)
+    private String name;
+
+    // last input line whose rows are committed
+    @Column(name = "line_no", nullable = false)
+    private long line;
+
+    // session the next message lines belong to, if the batch ended inside one
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "session_id", length = 16)
+    private UUID sessionId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
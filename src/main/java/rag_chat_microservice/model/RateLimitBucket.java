@@ -0,0 +1,41 @@
+package rag_chat_microservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A rate limit bucket shared by all instances (ratelimit.backend=jdbc). Mapped
+ * for the schema only; rows are read and swapped with plain JDBC by
+ * JdbcBucketProxyManager.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@Table(name = "rate_limit_buckets", indexes = @Index(name = "idx_rate_limit_buckets_expires_at",
+        columnList = "expires_at"))
+public class RateLimitBucket {
+
+    // SHA-256 of the API key, hex
+    @Id
+    @Column(name = "bucket_key", length = 64)
+    private String key;
+
+    // Bucket4j's serialized bucket state
+    @Column(name = "state", length = 1024, nullable = false)
+    private byte[] state;
+
+    // compared and bumped by every write
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    // when the bucket is full again; the row can go after that
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,47 @@
+package rag_chat_microservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Placement that overrides the hash ring, kept on the catalog shard (shard 0).
+ * Keys are {@code bucket:<n>} for a moved bucket and {@code session:<uuid>} for
+ * a moved session whose id predates sharding and so carries no bucket.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "shard_directory")
+public class ShardDirectoryEntry {
+
+    @Id
+    @Column(name = "entry_key", length = 64, nullable = false, updatable = false)
+    private String key;
+
+    @Column(name = "shard", nullable = false)
+    private int shard;
+
+    // writes are refused while the rows are being copied elsewhere
+    @Column(name = "moving", nullable = false)
+    private boolean moving;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public static ShardDirectoryEntry of(String key, int shard, boolean moving) {
+        ShardDirectoryEntry entry = new ShardDirectoryEntry();
+        entry.key = key;
+        entry.shard = shard;
+        entry.moving = moving;
+        entry.updatedAt = LocalDateTime.now();
+        return entry;
+    }
+}
@@ -0,0 +1,29 @@
+package rag_chat_microservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A bucket being moved off the shard this row is on. Kept on the source shard
+ * itself, so that the append path sees it in its own transaction; rows are
+ * written and removed with plain JDBC by ReshardServiceImpl.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@Table(name = "shard_fences")
+public class ShardFence {
+
+    @Id
+    @Column(name = "bucket", nullable = false, updatable = false)
+    private Integer bucket;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
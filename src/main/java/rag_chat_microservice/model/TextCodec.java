@@ -0,0 +1,173 @@
+package rag_chat_microservice.model;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Byte format of compressed text columns. A stored value is either plain UTF-8
+ * or {@code 0xFF, codec id, plaintext length (int32 BE), payload}. 0xFF never
+ * occurs in UTF-8, so rows written before compression (and short values kept
+ * below the threshold) decode unchanged.
+ * <p>
+ * Decoding understands every codec regardless of the one configured for writes,
+ * so switching codecs never strands existing rows. The length in the header is
+ * checked before anything is allocated for it: it must be within the plaintext
+ * limit and within what the payload can expand to, so a damaged row fails with an
+ * exception instead of an OutOfMemoryError.
+ */
+public final class TextCodec {
+
+    public enum Codec { NONE, DEFLATE, LZ4 }
+
+    static final byte MARKER = (byte) 0xFF;
+    static final byte DEFLATE_ID = 1;
+    static final byte LZ4_ID = 2;
+    static final int HEADER_BYTES = 6;
+
+    /** Default plaintext limit: 16M characters of 4-byte UTF-8. */
+    public static final int DEFAULT_MAX_PLAIN_BYTES = 64 << 20;
+    // the most output one payload byte can expand to
+    private static final int DEFLATE_MAX_RATIO = 1032;
+    private static final int LZ4_MAX_RATIO = 255;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+    // bounds-checked: a damaged row fails instead of reading past the buffer
+    private static final LZ4SafeDecompressor LZ4_DECOMPRESSOR = LZ4.safeDecompressor();
+    // zlib streams are costly to set up; keep one per thread and reset it
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final Codec codec;
+    private final int threshold;
+    private final int maxPlainBytes;
+    private final ThreadLocal<Deflater> deflater;
+    private final LZ4Compressor lz4 = LZ4.fastCompressor();
+
+    /**
+     * @param codec     codec for new values
+     * @param threshold UTF-8 size in bytes below which values are stored plain
+     * @param level     Deflate level (1 fastest .. 9 smallest); ignored by LZ4
+     */
+    public TextCodec(Codec codec, int threshold, int level) {
+        this(codec, threshold, level, DEFAULT_MAX_PLAIN_BYTES);
+    }
+
+    /**
+     * @param maxPlainBytes largest UTF-8 size stored compressed and accepted from a
+     *                      header by {@link #decode(byte[], int)}; larger values stay plain
+     */
+    public TextCodec(Codec codec, int threshold, int level, int maxPlainBytes) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Deflate level must be 1..9, was " + level);
+        }
+        this.codec = codec;
+        this.threshold = threshold;
+        this.maxPlainBytes = maxPlainBytes;
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    public byte[] encode(String text) {
+        if (text == null) return null;
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (codec == Codec.NONE || raw.length < threshold || raw.length <= HEADER_BYTES) return raw;
+        // beyond the limit decode would refuse the header; plain bytes need no header
+        if (raw.length > maxPlainBytes) return raw;
+        byte[] packed = (codec == Codec.LZ4) ? lz4(raw) : deflate(raw);
+        // incompressible input stays plain rather than growing by the header
+        return (packed != null) ? packed : raw;
+    }
+
+    public static String decode(byte[] stored) {
+        return decode(stored, DEFAULT_MAX_PLAIN_BYTES);
+    }
+
+    /** Plaintext of a stored value; compressed values may claim at most {@code maxPlainBytes}. */
+    public static String decode(byte[] stored, int maxPlainBytes) {
+        if (stored == null) return null;
+        if (stored.length == 0 || stored[0] != MARKER) {
+            return new String(stored, StandardCharsets.UTF_8);
+        }
+        if (stored.length < HEADER_BYTES) {
+            throw new IllegalStateException("Truncated compressed value (" + stored.length + " bytes)");
+        }
+        int length = ByteBuffer.wrap(stored, 2, 4).getInt();
+        int ratio = switch (stored[1]) {
+            case DEFLATE_ID -> DEFLATE_MAX_RATIO;
+            case LZ4_ID -> LZ4_MAX_RATIO;
+            default -> throw new IllegalStateException("Unknown text codec id " + stored[1]);
+        };
+        long possible = Math.min(maxPlainBytes, (long) (stored.length - HEADER_BYTES) * ratio);
+        if (length < 0 || length > possible) {
+            throw new IllegalStateException("Corrupt compressed value: header claims " + length + " bytes, at most "
+                    + possible + " possible");
+        }
+        byte[] raw = switch (stored[1]) {
+            case DEFLATE_ID -> inflate(stored, length);
+            case LZ4_ID -> unlz4(stored, length);
+            default -> throw new IllegalStateException("Unknown text codec id " + stored[1]);
+        };
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private byte[] deflate(byte[] raw) {
+        Deflater d = deflater.get();
+        try {
+            d.setInput(raw);
+            d.finish();
+            // output capped at the input size: anything larger is not worth storing
+            byte[] out = new byte[raw.length];
+            int n = d.deflate(out, HEADER_BYTES, out.length - HEADER_BYTES);
+            if (!d.finished()) return null;
+            return withHeader(out, DEFLATE_ID, raw.length, n);
+        } finally {
+            d.reset();
+        }
+    }
+
+    private byte[] lz4(byte[] raw) {
+        byte[] out = new byte[HEADER_BYTES + lz4.maxCompressedLength(raw.length)];
+        int n = lz4.compress(raw, 0, raw.length, out, HEADER_BYTES);
+        if (HEADER_BYTES + n >= raw.length) return null;
+        return withHeader(out, LZ4_ID, raw.length, n);
+    }
+
+    private static byte[] withHeader(byte[] out, byte id, int length, int payload) {
+        out[0] = MARKER;
+        out[1] = id;
+        ByteBuffer.wrap(out, 2, 4).putInt(length);
+        return Arrays.copyOf(out, HEADER_BYTES + payload);
+    }
+
+    private static byte[] unlz4(byte[] stored, int length) {
+        byte[] raw = new byte[length];
+        int n = LZ4_DECOMPRESSOR.decompress(stored, HEADER_BYTES, stored.length - HEADER_BYTES, raw, 0);
+        if (n != length) {
+            throw new IllegalStateException("Corrupt compressed value: " + n + " of " + length + " bytes");
+        }
+        return raw;
+    }
+
+    private static byte[] inflate(byte[] stored, int length) {
+        Inflater inf = INFLATER.get();
+        try {
+            inf.setInput(stored, HEADER_BYTES, stored.length - HEADER_BYTES);
+            byte[] raw = new byte[length];
+            int n = inf.inflate(raw);
+            if (n != length || !inf.finished()) {
+                throw new IllegalStateException("Corrupt compressed value: " + n + " of " + length + " bytes");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed value", e);
+        } finally {
+            inf.reset();
+        }
+    }
+}
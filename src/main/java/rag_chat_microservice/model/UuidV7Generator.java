@@ -0,0 +1,74 @@
+package rag_chat_microservice.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import rag_chat_microservice.sharding.ShardContext;
+import rag_chat_microservice.sharding.ShardKeys;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UUIDv7 layout: 48-bit unix millis | version 7 | 12-bit counter | variant | 62 random bits.
+ * <p>
+ * The 12-bit field is a per-JVM counter within the same millisecond (RFC 9562,
+ * method 3), so ids from one instance are strictly increasing even under bursts.
+ * If the counter overflows the timestamp is borrowed forward by a millisecond.
+ * <p>
+ * An id already set on the entity is kept, so callers can hand out the id of a
+ * row before it is inserted (see {@code MessageWriteBuffer}).
+ */
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    // (millis << 12) | counter of the last id handed out
+    private static final AtomicLong LAST = new AtomicLong();
+
+    /** Next id; tagged with the bucket bound in {@link ShardContext}, if any. */
+    public static UUID next() {
+        ShardContext.Binding binding = ShardContext.current();
+        return next((binding != null) ? binding.bucket() : null);
+    }
+
+    /** Next id; with a bucket, 10 of the random bits carry it (see {@link ShardKeys}). */
+    public static UUID next(Integer bucket) {
+        long now = System.currentTimeMillis() << 12;
+        long stamp = LAST.updateAndGet(prev -> Math.max(now, prev + 1));
+        long millis = stamp >>> 12;
+        long counter = stamp & 0xFFFL;
+
+        long msb = (millis << 16) | 0x7000L | counter;
+        long random = ThreadLocalRandom.current().nextLong();
+        long lsb = (bucket != null) ? ShardKeys.tag(random, bucket)
+                : (random & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    /** Millisecond timestamp embedded in a UUIDv7. */
+    public static long timestampOf(UUID id) {
+        if (id.version() != 7) {
+            throw new IllegalArgumentException("Not a UUIDv7: " + id);
+        }
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        Object assigned = (owner == null) ? null
+                : session.getEntityPersister(null, owner).getIdentifier(owner, session);
+        return assigned != null ? assigned : next();
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EnumSet.of(EventType.INSERT);
+    }
+}
@@ -0,0 +1,7 @@
+package rag_chat_microservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import rag_chat_microservice.model.ContextBlob;
+
+public interface ContextBlobRepository extends JpaRepository<ContextBlob, byte[]> {
+}
@@ -0,0 +1,7 @@
+package rag_chat_microservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import rag_chat_microservice.model.ImportCheckpoint;
+
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, String> {
+}
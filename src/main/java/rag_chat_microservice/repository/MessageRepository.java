@@ -2,14 +2,18 @@ package rag_chat_microservice.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.dto.ChatMessageSummaryDto;
 import rag_chat_microservice.model.ChatMessage;
 import rag_chat_microservice.model.ChatSession;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -25,20 +29,103 @@ public interface MessageRepository extends JpaRepository<ChatMessage, UUID> {
  
     List<ChatMessage> findByChatSession_IdOrderByCreatedAtAsc(UUID sessionId);
 
+    // --- per-session turn order (seq) ---
 
-    Optional<ChatMessage> findByChatSession_IdAndSenderAndContentHash(
-            UUID sessionId, ChatMessage.Sender sender, String contentHash);
+    List<ChatMessage> findByChatSession_IdOrderBySeqAsc(UUID sessionId);
+
+    Page<ChatMessage> findByChatSessionOrderBySeqAsc(ChatSession chatSession, Pageable pageable);
+
+    // seq of the first USER/SYSTEM message after :seq, i.e. where the next turn starts
+    @Query("select min(m.seq) from ChatMessage m where m.chatSession.id = :sessionId and m.seq > :seq"
+            + " and m.sender in :turnStarts")
+    Long findNextTurnSeq(@Param("sessionId") UUID sessionId, @Param("seq") long seq,
+            @Param("turnStarts") List<ChatMessage.Sender> turnStarts);
+
+    // replies inside the seq range that answer :messageId or are unlinked (pre-reply_to);
+    // a USER message is reused for repeats of its question, so replies linked to it can
+    // sit in later turns too, and those stay. Unsequenced rows match by reply_to alone.
+    @Modifying
+    @Query("delete from ChatMessage m where m.chatSession.id = :sessionId and m.sender = :sender"
+            + " and ((m.seq > :fromSeq and m.seq < :toSeq and (m.replyTo = :messageId or m.replyTo is null))"
+            + " or (m.seq is null and m.replyTo = :messageId))")
+    int deleteReplies(@Param("sessionId") UUID sessionId, @Param("messageId") UUID messageId,
+            @Param("sender") ChatMessage.Sender sender, @Param("fromSeq") long fromSeq, @Param("toSeq") long toSeq);
+
+    // --- read projections: DTOs built in the query, no entity hydration ---
+
+    // content and cb.content are selected as-is so their converter decompresses them
+    String FULL_VIEW = "select new rag_chat_microservice.dto.ChatMessageDto(m.id, m.chatSession.id, m.sender,"
+            + " m.content, cb.content, m.legacyContext, m.createdAt, m.seq, m.replyTo)"
+            + " from ChatMessage m left join m.contextBlob cb";
+
+    // the compressed body is never read here: previews come from their own column
+    String SUMMARY_VIEW = "select new rag_chat_microservice.dto.ChatMessageSummaryDto(m.id, m.chatSession.id,"
+            + " m.sender, m.contentPreview, m.contentChars,"
+            + " case when (m.contextBlob is not null or m.legacyContext is not null) then true else false end,"
+            + " m.createdAt, m.seq) from ChatMessage m";
+
+    // keyset pagination on (session_id, seq); Slice return types skip the COUNT query
+    String IN_SESSION = " where m.chatSession.id = :sessionId";
+    String AFTER_CURSOR = " and m.seq > :seq";
+    String HISTORY_ORDER = " order by m.seq asc";
+
+    @Query(FULL_VIEW + IN_SESSION + HISTORY_ORDER)
+    Slice<ChatMessageDto> findViews(@Param("sessionId") UUID sessionId, Pageable pageable);
+
+    @Query(FULL_VIEW + IN_SESSION + AFTER_CURSOR + HISTORY_ORDER)
+    Slice<ChatMessageDto> findViewsAfter(@Param("sessionId") UUID sessionId, @Param("seq") long seq,
+            Pageable pageable);
+
+    @Query(SUMMARY_VIEW + IN_SESSION + HISTORY_ORDER)
+    Slice<ChatMessageSummaryDto> findSummaries(@Param("sessionId") UUID sessionId, Pageable pageable);
+
+    @Query(SUMMARY_VIEW + IN_SESSION + AFTER_CURSOR + HISTORY_ORDER)
+    Slice<ChatMessageSummaryDto> findSummariesAfter(@Param("sessionId") UUID sessionId, @Param("seq") long seq,
+            Pageable pageable);
+
+    @Query(FULL_VIEW + IN_SESSION + " and m.id = :messageId")
+    Optional<ChatMessageDto> findView(@Param("sessionId") UUID sessionId, @Param("messageId") UUID messageId);
+
+    // imports keep repeated questions as rows of their own; the earliest one is the duplicate
+    Optional<ChatMessage> findFirstByChatSession_IdAndSenderAndContentHashOrderBySeqAsc(
+            UUID sessionId, ChatMessage.Sender sender, byte[] contentHash);
     
  
     @Modifying
     @Query("update ChatMessage m set m.deleted = true where m.chatSession.id = :sessionId")
     int softDeleteBySessionId(@Param("sessionId") UUID sessionId);
+
+    @Modifying
+    @Query("update ChatMessage m set m.deleted = true where m.chatSession.id in :sessionIds")
+    int softDeleteBySessionIds(@Param("sessionIds") Collection<UUID> sessionIds);
+
+    List<ChatMessage> findByChatSession_IdAndIdIn(UUID sessionId, Collection<UUID> ids);
     
+    // --- hard delete in seq ranges (SessionPurgeJob): each range is one short transaction ---
+
+    @Query("select m.seq from ChatMessage m" + IN_SESSION + AFTER_CURSOR + HISTORY_ORDER)
+    List<Long> findSeqsAfter(@Param("sessionId") UUID sessionId, @Param("seq") long seq, Pageable pageable);
+
+    @Modifying
+    @Query("delete from ChatMessage m where m.chatSession.id = :sessionId and m.seq > :fromSeq and m.seq <= :toSeq")
+    int deleteSeqRange(@Param("sessionId") UUID sessionId, @Param("fromSeq") long fromSeq,
+            @Param("toSeq") long toSeq);
+
+    // every row of a session whose history was written to a cold segment (ColdTieringJob)
+    @Modifying
+    @Query("delete from ChatMessage m where m.chatSession.id = :sessionId")
+    int deleteBySessionId(@Param("sessionId") UUID sessionId);
+
     List<ChatMessage> findByChatSession_IdAndDeletedFalseOrderByCreatedAtAsc(UUID sessionId);
 
     Page<ChatMessage> findByChatSessionAndDeletedFalseOrderByCreatedAtAsc(ChatSession session, Pageable pageable);
     
     Optional<ChatMessage> findByIdAndChatSession_Id(UUID messageId, UUID sessionId);
+
+    // activity columns of the session after deletes (SequenceService.recount)
+    long countByChatSession_Id(UUID sessionId);
+
+    Optional<ChatMessage> findFirstByChatSession_IdOrderBySeqDesc(UUID sessionId);
     boolean existsByIdAndChatSession_Id(UUID messageId, UUID sessionId);
 
 
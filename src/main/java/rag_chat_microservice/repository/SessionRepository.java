@@ -1,12 +1,25 @@
 package rag_chat_microservice.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import rag_chat_microservice.dto.ChatSessionResponseDto;
+import rag_chat_microservice.dto.ChatSessionSummaryDto;
 import rag_chat_microservice.model.ChatSession;
 
 @Repository
@@ -16,12 +29,120 @@ public interface SessionRepository extends JpaRepository<ChatSession, UUID> {
 
     List<ChatSession> findByUserIdAndFavoriteTrueAndDeletedFalse(String userId);
 
+    // listing projections: DTOs built in the query, the messages relation is never touched
+    String SESSION_VIEW = "select new rag_chat_microservice.dto.ChatSessionResponseDto("
+            + "s.id, s.userId, s.title, s.favorite, s.createdAt) from ChatSession s";
+
+    // query cache: results are dropped whenever chat_sessions changes, which includes the
+    // last_seq bump of every message append, so they mostly help between bursts of writes
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query(SESSION_VIEW + " where s.userId = :userId and s.deleted = false")
+    List<ChatSessionResponseDto> findViewsByUserId(@Param("userId") String userId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query(SESSION_VIEW + " where s.userId = :userId and s.favorite = true and s.deleted = false")
+    List<ChatSessionResponseDto> findFavoriteViewsByUserId(@Param("userId") String userId);
+
+    // sidebar: one indexed range scan on (user_id, is_deleted, last_activity_at, id), newest first
+    String SUMMARY_VIEW = "select new rag_chat_microservice.dto.ChatSessionSummaryDto(s.id, s.title, s.favorite,"
+            + " s.createdAt, s.lastActivityAt, s.messageCount, s.lastMessagePreview, s.lastSender)"
+            + " from ChatSession s where s.userId = :userId and s.deleted = false";
+    String BEFORE_CURSOR = " and (s.lastActivityAt < :at or (s.lastActivityAt = :at and s.id < :id))";
+    String ACTIVITY_ORDER = " order by s.lastActivityAt desc, s.id desc";
+
+    @Query(SUMMARY_VIEW + ACTIVITY_ORDER)
+    Slice<ChatSessionSummaryDto> findSummaries(@Param("userId") String userId, Pageable pageable);
+
+    @Query(SUMMARY_VIEW + BEFORE_CURSOR + ACTIVITY_ORDER)
+    Slice<ChatSessionSummaryDto> findSummariesBefore(@Param("userId") String userId,
+            @Param("at") LocalDateTime lastActivityAt, @Param("id") UUID id, Pageable pageable);
+
+    // --- validators for conditional GETs (SessionVersions): scalars only, no entity is loaded ---
+    // read-write transactions, so they are answered by the primary: a version read from a
+    // lagging replica would validate a client's copy that a committed write made stale
+
+    @Transactional
+    @Query("select s.version from ChatSession s where s.id = :id and s.deleted = false")
+    Long findLiveVersion(@Param("id") UUID id);
+
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select s.id, s.version from ChatSession s where s.userId = :userId and s.deleted = false order by s.id")
+    List<Object[]> findLiveVersionsByUserId(@Param("userId") String userId);
+
     Optional<ChatSession> findByUserIdAndTitleAndDeletedFalse(String userId, String title);
     boolean existsByUserIdAndTitleAndDeletedFalse(String userId, String title);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     boolean existsByUserId(String userId);
     @Query("SELECT s FROM ChatSession s WHERE s.id = :id AND s.deleted = false")
     Optional<ChatSession> findActiveById(@Param("id") UUID id);
 
+    // row lock serializing seq allocation for the session (SequenceService)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ChatSession s WHERE s.id = :id")
+    Optional<ChatSession> findByIdForUpdate(@Param("id") UUID id);
+
+    // same lock for a whole write-behind batch; id order keeps lock acquisition consistent
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ChatSession s WHERE s.id IN :ids ORDER BY s.id")
+    List<ChatSession> findAllByIdForUpdate(@Param("ids") Collection<UUID> ids);
+
+    // --- batch operations (BatchService): one statement per kind of change, whatever the batch size ---
+
+    @Query("select s.id, s.title from ChatSession s where s.userId = :userId and s.id in :ids and s.deleted = false")
+    List<Object[]> findLiveTitles(@Param("userId") String userId, @Param("ids") Collection<UUID> ids);
+
+    @Query("select s.title from ChatSession s where s.userId = :userId and s.title in :titles and s.deleted = false")
+    List<String> findTakenTitles(@Param("userId") String userId, @Param("titles") Collection<String> titles);
+
+    // the version bump stands in for the @Version increment a managed update would do (ETags)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ChatSession s set s.favorite = :favorite, s.updatedAt = :now, s.version = s.version + 1"
+            + " where s.userId = :userId and s.id in :ids and s.deleted = false")
+    int updateFavorite(@Param("userId") String userId, @Param("ids") Collection<UUID> ids,
+            @Param("favorite") boolean favorite, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ChatSession s set s.title = :title, s.updatedAt = :now, s.version = s.version + 1"
+            + " where s.userId = :userId and s.id = :id and s.deleted = false")
+    int updateTitle(@Param("userId") String userId, @Param("id") UUID id, @Param("title") String title,
+            @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ChatSession s set s.deleted = true, s.deletedAt = :now, s.updatedAt = :now,"
+            + " s.version = s.version + 1 where s.userId = :userId and s.id in :ids and s.deleted = false")
+    int softDeleteAll(@Param("userId") String userId, @Param("ids") Collection<UUID> ids,
+            @Param("now") LocalDateTime now);
+
+    // --- purge of soft-deleted sessions (SessionPurgeJob) ---
+
+    // a range on idx_chat_sessions_deleted_at; every soft delete sets deleted_at (backfilled by 005 and 014)
+    String PURGEABLE = " where s.deleted = true and s.deletedAt < :cutoff";
+
+    // keyset over the primary key, so each batch starts where the previous one stopped
+    @Query("SELECT s FROM ChatSession s" + PURGEABLE + " AND s.id > :after ORDER BY s.id")
+    List<ChatSession> findPurgeable(@Param("cutoff") LocalDateTime cutoff, @Param("after") UUID after,
+            Pageable pageable);
+
+    @Query("SELECT min(s.deletedAt) FROM ChatSession s WHERE s.deleted = true")
+    LocalDateTime findOldestDeletedAt();
+
+    @Modifying
+    @Query("DELETE FROM ChatSession s WHERE s.id = :id AND s.deleted = true")
+    int deletePurged(@Param("id") UUID id);
+
+    // --- tiering of idle sessions to cold segment files (ColdTieringJob) ---
+
+    // keyset on (last_activity_at, id): sessions skipped by one batch are not returned again
+    @Query("SELECT s FROM ChatSession s WHERE s.coldSegment IS NULL AND s.deleted = false AND s.messageCount > 0"
+            + " AND s.lastActivityAt < :cutoff"
+            + " AND (s.lastActivityAt > :at OR (s.lastActivityAt = :at AND s.id > :id))"
+            + " ORDER BY s.lastActivityAt, s.id")
+    List<ChatSession> findTierable(@Param("cutoff") LocalDateTime cutoff, @Param("at") LocalDateTime lastActivityAt,
+            @Param("id") UUID id, Pageable pageable);
+
+    long countByColdSegment(String coldSegment);
+
 
 }
 
@@ -0,0 +1,16 @@
+package rag_chat_microservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import rag_chat_microservice.model.ShardDirectoryEntry;
+
+import java.util.List;
+
+// lives on the catalog shard; callers bind it (ShardRouter)
+public interface ShardDirectoryRepository extends JpaRepository<ShardDirectoryEntry, String> {
+
+    // no ESCAPE clause (unlike a derived StartingWith): prefixes are fixed and wildcard-free
+    @Query("SELECT e FROM ShardDirectoryEntry e WHERE e.key LIKE CONCAT(:prefix, '%')")
+    List<ShardDirectoryEntry> findByKeyPrefix(@Param("prefix") String prefix);
+}
@@ -0,0 +1,21 @@
+package rag_chat_microservice.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import rag_chat_microservice.model.ShardFence;
+
+import java.util.Optional;
+
+// on every shard; read on the shard the caller's transaction is bound to
+public interface ShardFenceRepository extends JpaRepository<ShardFence, Integer> {
+
+    // a locking read, so it sees a fence committed after this transaction's snapshot was
+    // taken; FOR UPDATE rather than FOR SHARE, which H2 does not parse. Only a fenced
+    // bucket has a row to lock, and its appends are refused anyway
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM ShardFence f WHERE f.bucket = :bucket")
+    Optional<ShardFence> findLocked(@Param("bucket") int bucket);
+}
@@ -0,0 +1,142 @@
+package rag_chat_microservice.security;
+
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AbstractCompareAndSwapBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rag_chat_microservice.sharding.ShardContext;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Bucket4j buckets in the rate_limit_buckets table of the catalog database.
+ * Bucket4j reads the state, applies the request locally and writes it back
+ * only if the row still has the version it read, retrying otherwise; no row
+ * locks are held between the two statements. Bucket times come from the
+ * instances' clocks, which therefore have to be in sync (NTP).
+ * <p>
+ * Each write records when the bucket will be full again; from then on the row
+ * says nothing a missing row would not, and {@link #deleteExpired} drops it.
+ */
+public class JdbcBucketProxyManager extends AbstractCompareAndSwapBasedProxyManager<String> {
+
+    private static final String SELECT = "select state, version from rate_limit_buckets where bucket_key = ?";
+    private static final String INSERT = "insert into rate_limit_buckets (bucket_key, state, version, expires_at)"
+            + " values (?, ?, 0, ?)";
+    private static final String UPDATE = "update rate_limit_buckets set state = ?, version = version + 1,"
+            + " expires_at = ? where bucket_key = ? and version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExpirationAfterWriteStrategy expiration =
+            ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(Duration.ZERO);
+
+    public JdbcBucketProxyManager(JdbcTemplate jdbcTemplate) {
+        super(ClientSideConfig.getDefault());
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    protected CompareAndSwapOperation beginCompareAndSwapOperation(String key) {
+        return new CompareAndSwapOperation() {
+            // version of the row read by getStateData, null when there was none
+            private Long version;
+
+            @Override
+            public Optional<byte[]> getStateData(Optional<Long> timeoutNanos) {
+                return catalog(() -> jdbcTemplate.query(SELECT, rs -> {
+                    if (!rs.next()) {
+                        version = null;
+                        return Optional.<byte[]>empty();
+                    }
+                    version = rs.getLong(2);
+                    return Optional.of(rs.getBytes(1));
+                }, key));
+            }
+
+            @Override
+            public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState,
+                                          Optional<Long> timeoutNanos) {
+                long nowMillis = System.currentTimeMillis();
+                Timestamp expiresAt = new Timestamp(nowMillis
+                        + expiration.calculateTimeToLiveMillis(newState, nowMillis * 1_000_000));
+                return catalog(() -> {
+                    if (version == null) {
+                        try {
+                            jdbcTemplate.update(INSERT, key, newData, expiresAt);
+                            return true;
+                        } catch (DuplicateKeyException e) {
+                            return false; // another instance created it first
+                        }
+                    }
+                    return jdbcTemplate.update(UPDATE, newData, expiresAt, key, version) == 1;
+                });
+            }
+        };
+    }
+
+    // JDBC blocks: the async view is refused (isAsyncModeSupported), and should bucket4j
+    // take these paths anyway they do the same work on the caller's thread
+    @Override
+    protected AsyncCompareAndSwapOperation beginAsyncCompareAndSwapOperation(String key) {
+        CompareAndSwapOperation operation = beginCompareAndSwapOperation(key);
+        return new AsyncCompareAndSwapOperation() {
+            @Override
+            public CompletableFuture<Optional<byte[]>> getStateData(Optional<Long> timeoutNanos) {
+                return completed(() -> operation.getStateData(timeoutNanos));
+            }
+
+            @Override
+            public CompletableFuture<Boolean> compareAndSwap(byte[] originalData, byte[] newData,
+                                                             RemoteBucketState newState, Optional<Long> timeoutNanos) {
+                return completed(() -> operation.compareAndSwap(originalData, newData, newState, timeoutNanos));
+            }
+        };
+    }
+
+    @Override
+    protected CompletableFuture<Void> removeAsync(String key) {
+        return completed(() -> {
+            removeProxy(key);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isAsyncModeSupported() {
+        return false;
+    }
+
+    @Override
+    public void removeProxy(String key) {
+        catalog(() -> jdbcTemplate.update("delete from rate_limit_buckets where bucket_key = ?", key));
+    }
+
+    /** Drops buckets that have refilled completely; returns how many. */
+    public int deleteExpired() {
+        Timestamp now = Timestamp.from(Instant.now());
+        return catalog(() -> jdbcTemplate.update("delete from rate_limit_buckets where expires_at < ?", now));
+    }
+
+    private static <T> CompletableFuture<T> completed(Supplier<T> work) {
+        try {
+            return CompletableFuture.completedFuture(work.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // filters run before the request is bound to a shard; buckets live with the catalog
+    private static <T> T catalog(Supplier<T> work) {
+        return ShardContext.on(ShardRouter.CATALOG, work);
+    }
+}
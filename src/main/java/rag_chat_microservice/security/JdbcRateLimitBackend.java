@@ -0,0 +1,147 @@
+package rag_chat_microservice.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.VerboseResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One bucket per key for the whole cluster, in the database
+ * ({@link JdbcBucketProxyManager}), so the limit holds however many instances
+ * share the traffic and does not reset when an instance forgets a key.
+ * <p>
+ * To keep the database off the hot path an instance claims a lease of up to
+ * {@code ratelimit.lease-size} tokens at once and hands them out locally. A
+ * lease is only good until the end of the window it was claimed in, so an
+ * instance never spends tokens of a window that is over, and the cluster never
+ * lets through more than {@code ratelimit.permits} per window. The cost is on
+ * the other side: tokens leased by an instance the client stops reaching are
+ * lost for the rest of the window, at most lease-size per instance; leases
+ * shrink to half of what is left in the bucket as it runs low. Once a claim
+ * finds the bucket empty, requests are rejected locally until the window ends,
+ * as nothing can refill it earlier.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ratelimit.backend", havingValue = "jdbc")
+public class JdbcRateLimitBackend implements RateLimitBackend {
+
+    /** Tokens this instance holds for a key. */
+    private static final class Lease {
+        long tokens;       // claimed and not handed out yet
+        long shared;       // left in the shared bucket at the last claim
+        long windowEnd;    // nanoTime the claimed window ends at
+    }
+
+    private final JdbcBucketProxyManager proxyManager;
+    private final BucketConfiguration configuration;
+    private final int leaseSize;
+    private final Cache<String, Lease> leases;
+    private final Counter leased;
+    private final Counter claimed;
+    private final Counter blocked;
+
+    public JdbcRateLimitBackend(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                                @Value("${ratelimit.permits:10}") int permits,
+                                @Value("${ratelimit.window-seconds:60}") int windowSeconds,
+                                @Value("${ratelimit.lease-size:0}") int leaseSize,
+                                @Value("${ratelimit.cache-max-size:1000}") int cacheMaxSize) {
+        this.proxyManager = new JdbcBucketProxyManager(jdbcTemplate);
+        this.configuration = BucketConfiguration.builder()
+                .addLimit(RateLimitBackend.limit(permits, windowSeconds))
+                .build();
+        // 0: a twentieth of the window's permits, so a few instances cannot strand much of them
+        this.leaseSize = (leaseSize > 0) ? leaseSize : Math.max(1, Math.min(50, permits / 20));
+        // a lease dropped here only loses its tokens, never hands out new ones
+        this.leases = Caffeine.newBuilder()
+                .expireAfterAccess(windowSeconds, TimeUnit.SECONDS)
+                .maximumSize(cacheMaxSize)
+                .build();
+        this.leased = decisions(meterRegistry, "lease");
+        this.claimed = decisions(meterRegistry, "database");
+        this.blocked = decisions(meterRegistry, "blocked");
+        log.info("Rate limits shared through the database ({} per {}s, leases of {})", permits, windowSeconds,
+                this.leaseSize);
+    }
+
+    private static Counter decisions(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("ratelimit.decisions").tag("source", source)
+                .description("Rate limit decisions by where they were taken").register(meterRegistry);
+    }
+
+    @Override
+    public Decision tryConsume(String key) {
+        Lease lease = leases.get(key, k -> new Lease());
+        synchronized (lease) {
+            long now = System.nanoTime();
+            if (now - lease.windowEnd < 0) {
+                if (lease.tokens > 0) {
+                    lease.tokens--;
+                    leased.increment();
+                    return new Decision(true, lease.tokens + lease.shared, 0);
+                }
+                if (lease.shared == 0) {
+                    blocked.increment();
+                    return new Decision(false, 0, lease.windowEnd - now);
+                }
+            }
+            return claim(key, lease, now);
+        }
+    }
+
+    private Decision claim(String key, Lease lease, long now) {
+        long want = (now - lease.windowEnd < 0) ? Math.max(1, Math.min(leaseSize, lease.shared / 2)) : leaseSize;
+        VerboseResult<Long> result = proxyManager.builder()
+                .build(bucketKey(key), () -> configuration)
+                .asVerbose()
+                .tryConsumeAsMuchAsPossible(want);
+        claimed.increment();
+        long got = result.getValue();
+        // intervally refilled: the bucket is full again exactly when the window ends
+        lease.windowEnd = now + result.getDiagnostics().calculateFullRefillingTime();
+        lease.shared = result.getDiagnostics().getAvailableTokens();
+        if (got == 0) {
+            lease.tokens = 0;
+            return new Decision(false, 0, lease.windowEnd - now);
+        }
+        lease.tokens = got - 1;
+        return new Decision(true, lease.tokens + lease.shared, 0);
+    }
+
+    // rows are named by a digest, so the table holds no API keys
+    private static String bucketKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${ratelimit.jdbc.cleanup-interval:PT10M}",
+            fixedDelayString = "${ratelimit.jdbc.cleanup-interval:PT10M}")
+    void deleteExpired() {
+        try {
+            int removed = proxyManager.deleteExpired();
+            if (removed > 0) {
+                log.debug("Removed {} refilled rate limit buckets", removed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Removing refilled rate limit buckets failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package rag_chat_microservice.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buckets in this JVM. Each instance counts on its own, so behind N instances a
+ * key gets up to N times the limit, and a key evicted from the cache
+ * ({@code ratelimit.cache-max-size}) starts over with a full bucket.
+ */
+@Component
+@ConditionalOnProperty(name = "ratelimit.backend", havingValue = "local", matchIfMissing = true)
+public class LocalRateLimitBackend implements RateLimitBackend {
+
+    private final Bandwidth limit;
+    private final Cache<String, Bucket> cache;
+
+    public LocalRateLimitBackend(@Value("${ratelimit.permits:10}") int permits,
+                                 @Value("${ratelimit.window-seconds:60}") int windowSeconds,
+                                 @Value("${ratelimit.cache-max-size:1000}") int cacheMaxSize) {
+        this.limit = RateLimitBackend.limit(permits, windowSeconds);
+        this.cache = Caffeine.newBuilder()
+                .expireAfterAccess(1, TimeUnit.DAYS)
+                .maximumSize(cacheMaxSize)
+                .build();
+    }
+
+    @Override
+    public Decision tryConsume(String key) {
+        Bucket bucket = cache.get(key, k -> Bucket.builder().addLimit(limit).build());
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        return new Decision(probe.isConsumed(), probe.getRemainingTokens(), probe.getNanosToWaitForRefill());
+    }
+}
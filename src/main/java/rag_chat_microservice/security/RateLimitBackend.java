@@ -0,0 +1,29 @@
+package rag_chat_microservice.security;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Refill;
+
+import java.time.Duration;
+
+/**
+ * Where RateLimitingFilter keeps its token buckets, chosen with
+ * {@code ratelimit.backend}: {@code local} (per instance, the default) or
+ * {@code jdbc} (one bucket per key shared by all instances).
+ */
+public interface RateLimitBackend {
+
+    /**
+     * @param remaining    tokens left for the key after this request
+     * @param nanosToRetry when rejected, how long until a token is back
+     */
+    record Decision(boolean allowed, long remaining, long nanosToRetry) {
+    }
+
+    /** Takes one token from {@code key}'s bucket. */
+    Decision tryConsume(String key);
+
+    /** {@code permits} per window, all given back at once when the window ends. */
+    static Bandwidth limit(int permits, int windowSeconds) {
+        return Bandwidth.classic(permits, Refill.intervally(permits, Duration.ofSeconds(windowSeconds)));
+    }
+}
@@ -1,10 +1,5 @@
 package rag_chat_microservice.security;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Refill;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,7 +13,6 @@ import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.TimeUnit;
 
@@ -48,18 +42,10 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     @Value("${ratelimit.window-seconds:60}")
     private int windowSeconds;
 
-    @Value("${ratelimit.cache-max-size:1000}")
-    private int cacheMaxSize;
+    private final RateLimitBackend backend;
 
-    private final Cache<String, Bucket> cache = Caffeine.newBuilder()
-            .expireAfterAccess(1, TimeUnit.DAYS)
-            .maximumSize(1000) // will be reset in @PostConstruct
-            .build();
-
-    @jakarta.annotation.PostConstruct
-    void init() {
-        // reconfigure cache size from property
-        cache.policy().eviction().ifPresent(ev -> ev.setMaximum(cacheMaxSize));
+    public RateLimitingFilter(RateLimitBackend backend) {
+        this.backend = backend;
     }
 
     @Override
@@ -88,28 +74,22 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             return;
         }
 
-        Bucket bucket = cache.get(apiKey, k -> createNewBucket());
+        RateLimitBackend.Decision decision = backend.tryConsume(apiKey);
 
         // Expose rate-limit headers (best effort)
-        long available = bucket.getAvailableTokens();
-        setRateHeaders(response, available, permits, windowSeconds);
+        setRateHeaders(response, decision.remaining(), permits, windowSeconds);
 
-        if (bucket.tryConsume(1)) {
+        if (decision.allowed()) {
             chain.doFilter(request, response);
         } else {
-            // RFC-friendly 429 with Retry-After (seconds)
+            // RFC-friendly 429 with Retry-After (seconds until a token is back)
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(decision.nanosToRetry() + 999_999_999));
             response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            response.setHeader("Retry-After", String.valueOf(windowSeconds));
+            response.setHeader("Retry-After", String.valueOf(retryAfter));
             response.getWriter().write("Too many requests - rate limit exceeded");
         }
     }
 
-    private Bucket createNewBucket() {
-        Refill refill = Refill.intervally(permits, Duration.ofSeconds(windowSeconds));
-        Bandwidth limit = Bandwidth.classic(permits, refill);
-        return Bucket.builder().addLimit(limit).build();
-    }
-
     private void setRateHeaders(HttpServletResponse resp, long remaining, int limit, int windowSec) {
         resp.setHeader("X-RateLimit-Limit", String.valueOf(limit));
         resp.setHeader("X-RateLimit-Remaining", String.valueOf(Math.max(remaining, 0)));
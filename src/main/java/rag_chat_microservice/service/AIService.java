@@ -1,7 +1,19 @@
 package rag_chat_microservice.service;
 
+import java.util.function.Consumer;
+
 public interface AIService {
 	
 	String getAIResponse(String prompt);
 
+	/**
+	 * Same reply as {@link #getAIResponse}, handed to {@code onChunk} piece by
+	 * piece as the model produces it; returns the whole text.
+	 */
+	default String streamAIResponse(String prompt, Consumer<String> onChunk) {
+		String text = getAIResponse(prompt);
+		onChunk.accept(text);
+		return text;
+	}
+
 }
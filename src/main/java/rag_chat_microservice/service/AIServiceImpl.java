@@ -10,7 +10,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -48,12 +52,7 @@ public class AIServiceImpl implements AIService {
                     .toUriString();
 
             // Create the JSON payload for the API request
-            String payload = String.format(
-                "{"
-                    + "  \"contents\": [{\"parts\": [{\"text\": \"%s\"}]}], "
-                    + "  \"tools\": [{\"google_search\": {}}], "
-                    + "  \"systemInstruction\": {\"parts\": [{\"text\": \"You are a helpful chat assistant.\"}]} "
-                + "}", prompt.replace("\"", "\\\"").replace("\n", "\\n"));
+            String payload = payload(prompt);
 
             // Set the headers
             HttpHeaders headers = new HttpHeaders();
@@ -73,10 +72,7 @@ public class AIServiceImpl implements AIService {
 
                 if (!contentNode.isMissingNode() && contentNode.has("parts")) {
                     // Extract all text parts and join them
-                    String aiText = StreamSupport.stream(contentNode.path("parts").spliterator(), false)
-                            .filter(part -> part.has("text"))
-                            .map(part -> part.path("text").asText())
-                            .collect(Collectors.joining(" "));
+                    String aiText = text(contentNode, " ");
 
                     if (aiText == null || aiText.isEmpty()) {
                         log.warn("AI service returned empty response");
@@ -98,4 +94,73 @@ public class AIServiceImpl implements AIService {
             return "[AI ERROR: " + e.getMessage() + "]";
         }
     }
+
+    /**
+     * Streams the reply through Gemini's streamGenerateContent (server-sent events,
+     * one partial candidate per event). Without a :generateContent URL to derive it
+     * from, falls back to one chunk holding the whole reply.
+     */
+    @Override
+    public String streamAIResponse(String prompt, Consumer<String> onChunk) {
+        if (!apiUrl.endsWith(":generateContent")) {
+            return AIService.super.streamAIResponse(prompt, onChunk);
+        }
+        String streamUrl = UriComponentsBuilder
+                .fromHttpUrl(apiUrl.replace(":generateContent", ":streamGenerateContent"))
+                .queryParam("alt", "sse")
+                .queryParam("key", apiKey)
+                .toUriString();
+        StringBuilder reply = new StringBuilder();
+        try {
+            restTemplate.execute(streamUrl, HttpMethod.POST, request -> {
+                request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                request.getHeaders().setAccept(Collections.singletonList(MediaType.TEXT_EVENT_STREAM));
+                request.getBody().write(payload(prompt).getBytes(StandardCharsets.UTF_8));
+            }, response -> {
+                BufferedReader events = new BufferedReader(
+                        new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                for (String line = events.readLine(); line != null; line = events.readLine()) {
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    JsonNode event = objectMapper.readTree(line.substring(5));
+                    String chunk = text(event.path("candidates").path(0).path("content"), "");
+                    if (!chunk.isEmpty()) {
+                        reply.append(chunk);
+                        onChunk.accept(chunk);
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Error streaming from AI service", e);
+            // what was streamed stays part of the reply; the error is appended like a last chunk
+            String error = "[AI ERROR: " + e.getMessage() + "]";
+            onChunk.accept(reply.isEmpty() ? error : " " + error);
+            reply.append(reply.isEmpty() ? error : " " + error);
+        }
+        if (reply.isEmpty()) {
+            log.warn("AI service returned empty response");
+            reply.append("[AI returned no response]");
+            onChunk.accept(reply.toString());
+        }
+        return reply.toString().trim();
+    }
+
+    private static String payload(String prompt) {
+        return String.format(
+            "{"
+                + "  \"contents\": [{\"parts\": [{\"text\": \"%s\"}]}], "
+                + "  \"tools\": [{\"google_search\": {}}], "
+                + "  \"systemInstruction\": {\"parts\": [{\"text\": \"You are a helpful chat assistant.\"}]} "
+            + "}", prompt.replace("\"", "\\\"").replace("\n", "\\n"));
+    }
+
+    // the text parts of a candidate's content, joined
+    private static String text(JsonNode content, String separator) {
+        return StreamSupport.stream(content.path("parts").spliterator(), false)
+                .filter(part -> part.has("text"))
+                .map(part -> part.path("text").asText())
+                .collect(Collectors.joining(separator));
+    }
 }
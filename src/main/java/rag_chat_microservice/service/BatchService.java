@@ -0,0 +1,18 @@
+package rag_chat_microservice.service;
+
+import rag_chat_microservice.dto.BatchOperation;
+import rag_chat_microservice.dto.BatchResult;
+
+import java.util.List;
+
+public interface BatchService {
+
+	/**
+	 * Applies a user's batch in one transaction, with one statement per kind of
+	 * change where the change allows it. Items that fail (invalid, not found,
+	 * title conflict) are reported and skipped; the others are applied.
+	 *
+	 * @return one result per operation, in request order
+	 */
+	List<BatchResult> apply(String userId, List<BatchOperation> operations);
+}
@@ -0,0 +1,180 @@
+package rag_chat_microservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import rag_chat_microservice.dto.BatchOperation;
+import rag_chat_microservice.dto.BatchOperation.Op;
+import rag_chat_microservice.dto.BatchResult;
+import rag_chat_microservice.repository.MessageRepository;
+import rag_chat_microservice.repository.SessionRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Set-based execution of "select many" actions: favorites and deletes are one
+ * UPDATE per kind whatever the number of sessions, renames one small UPDATE
+ * each after a single conflict lookup, message deletes one DELETE and recount
+ * per session. Bulk updates skip the entity listeners, so the ETag versions of
+ * the changed sessions are dropped here.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+@Slf4j
+public class BatchServiceImpl implements BatchService {
+
+    private final SessionRepository sessionRepository;
+    private final MessageRepository messageRepository;
+    private final MessageService messageService;
+    private final SessionVersions sessionVersions;
+    private final ReadYourWrites readYourWrites;
+
+    @Override
+    public List<BatchResult> apply(String userId, List<BatchOperation> operations) {
+        log.info("Applying batch of {} operations for user {}", operations.size(), userId);
+        BatchResult[] results = new BatchResult[operations.size()];
+
+        Set<String> seen = new HashSet<>();
+        Set<UUID> sessionIds = new HashSet<>();
+        for (int i = 0; i < operations.size(); i++) {
+            BatchOperation op = operations.get(i);
+            String problem = validate(op);
+            if (problem == null && !seen.add(op.getOp() + "/" + op.getSessionId() + "/" + op.getMessageId())) {
+                problem = "duplicate operation";
+            }
+            if (problem != null) {
+                results[i] = failed(i, HttpStatus.BAD_REQUEST, problem);
+            } else {
+                sessionIds.add(op.getSessionId());
+            }
+        }
+
+        // one lookup for ownership and current titles; other users' sessions read as missing
+        Map<UUID, String> titles = new HashMap<>();
+        if (!sessionIds.isEmpty()) {
+            for (Object[] row : sessionRepository.findLiveTitles(userId, sessionIds)) {
+                titles.put((UUID) row[0], (String) row[1]);
+            }
+        }
+        for (int i = 0; i < results.length; i++) {
+            UUID sessionId = operations.get(i).getSessionId();
+            if (results[i] == null && !titles.containsKey(sessionId)) {
+                results[i] = failed(i, HttpStatus.NOT_FOUND, "Session not found with id: " + sessionId);
+            }
+        }
+
+        Map<UUID, List<Integer>> messageDeletes = new LinkedHashMap<>();
+        Map<Integer, String> renames = new LinkedHashMap<>();
+        Map<Boolean, List<Integer>> favorites = new HashMap<>();
+        List<Integer> deletes = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            BatchOperation op = operations.get(i);
+            switch (op.getOp()) {
+                case DELETE_MESSAGE -> messageDeletes.computeIfAbsent(op.getSessionId(), k -> new ArrayList<>()).add(i);
+                case RENAME -> renames.put(i, normalize(op.getTitle()));
+                case FAVORITE -> favorites.computeIfAbsent(op.getFavorite(), k -> new ArrayList<>()).add(i);
+                case DELETE -> deletes.add(i);
+            }
+        }
+
+        Set<UUID> changed = new HashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        // messages first: the sessions they belong to may be deleted further down
+        messageDeletes.forEach((sessionId, items) -> {
+            List<UUID> ids = items.stream().map(i -> operations.get(i).getMessageId()).toList();
+            Set<UUID> deleted = messageService.deleteMessages(sessionId, ids);
+            for (int i : items) {
+                UUID messageId = operations.get(i).getMessageId();
+                results[i] = deleted.contains(messageId) ? ok(i) : failed(i, HttpStatus.NOT_FOUND,
+                        "Message " + messageId + " not found in session " + sessionId);
+            }
+            if (!deleted.isEmpty()) {
+                changed.add(sessionId);
+            }
+        });
+
+        if (!renames.isEmpty()) {
+            Set<String> taken = new HashSet<>(sessionRepository.findTakenTitles(userId, renames.values()));
+            Set<String> claimed = new HashSet<>();
+            renames.forEach((i, title) -> {
+                UUID sessionId = operations.get(i).getSessionId();
+                if (title.equals(titles.get(sessionId))) {
+                    results[i] = ok(i);
+                } else if (taken.contains(title) || !claimed.add(title)) {
+                    results[i] = failed(i, HttpStatus.CONFLICT,
+                            "Another session with the same title already exists for this user");
+                } else {
+                    sessionRepository.updateTitle(userId, sessionId, title, now);
+                    changed.add(sessionId);
+                    results[i] = ok(i);
+                }
+            });
+        }
+
+        favorites.forEach((favorite, items) -> {
+            List<UUID> ids = items.stream().map(i -> operations.get(i).getSessionId()).toList();
+            sessionRepository.updateFavorite(userId, ids, favorite, now);
+            changed.addAll(ids);
+            items.forEach(i -> results[i] = ok(i));
+        });
+
+        if (!deletes.isEmpty()) {
+            List<UUID> ids = deletes.stream().map(i -> operations.get(i).getSessionId()).toList();
+            log.warn("Soft deleting {} sessions of user {}", ids.size(), userId);
+            sessionRepository.softDeleteAll(userId, ids, now);
+            messageRepository.softDeleteBySessionIds(ids);
+            changed.addAll(ids);
+            deletes.forEach(i -> results[i] = ok(i));
+        }
+
+        if (!changed.isEmpty()) {
+            sessionVersions.evictAfterCommit(changed);
+            changed.forEach(id -> readYourWrites.markWritten(ReadYourWrites.sessionKey(id)));
+            readYourWrites.markWritten(ReadYourWrites.userKey(userId));
+        }
+        return Arrays.asList(results);
+    }
+
+    private static String validate(BatchOperation op) {
+        if (op == null || op.getOp() == null) {
+            return "op must be one of " + Arrays.toString(Op.values());
+        }
+        if (op.getSessionId() == null) {
+            return "sessionId must not be empty";
+        }
+        return switch (op.getOp()) {
+            case FAVORITE -> (op.getFavorite() == null) ? "favorite must be true or false" : null;
+            case RENAME -> (op.getTitle() == null || op.getTitle().isBlank()) ? "title must not be empty" : null;
+            case DELETE_MESSAGE -> (op.getMessageId() == null) ? "messageId must not be empty" : null;
+            case DELETE -> null;
+        };
+    }
+
+    private static String normalize(String s) {
+        return s.trim().replaceAll("\\s+", " ");
+    }
+
+    private static BatchResult ok(int index) {
+        return new BatchResult(index, HttpStatus.OK.value(), null);
+    }
+
+    private static BatchResult failed(int index, HttpStatus status, String error) {
+        return new BatchResult(index, status.value(), error);
+    }
+}
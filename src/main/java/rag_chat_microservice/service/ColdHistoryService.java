@@ -0,0 +1,30 @@
+package rag_chat_microservice.service;
+
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.tiering.ColdMessage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ColdHistoryService {
+
+	/** Whether the session's history is in a cold segment; answered from the session cache. */
+	boolean isCold(UUID sessionId);
+
+	/**
+	 * The session's messages in seq order when its history is in a cold segment,
+	 * empty while they are in chat_messages.
+	 */
+	Optional<List<ColdMessage>> coldMessages(UUID sessionId);
+
+	/**
+	 * Moves a tiered session's history back into chat_messages, keeping ids, seqs
+	 * and timestamps. Locks the session row in the caller's transaction (or its
+	 * own), the same lock every append takes; a no-op for a session that is not cold.
+	 */
+	void thaw(UUID sessionId);
+
+	/** Same as {@link #thaw(UUID)} for a session the caller has already locked. */
+	void thawLocked(ChatSession session);
+}
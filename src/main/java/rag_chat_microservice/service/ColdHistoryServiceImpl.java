@@ -0,0 +1,120 @@
+package rag_chat_microservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.model.CompressedTextConverter;
+import rag_chat_microservice.model.ContextBlob;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.tiering.ColdMessage;
+import rag_chat_microservice.tiering.ColdRef;
+import rag_chat_microservice.tiering.ColdStore;
+
+import java.nio.ByteBuffer;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ColdHistoryServiceImpl implements ColdHistoryService {
+
+	// rows keep their original id, seq and created_at, which ChatMessage's @PrePersist would overwrite
+	private static final String INSERT_MESSAGE = "insert into chat_messages (id, session_id, seq, reply_to, sender,"
+			+ " content, content_preview, content_chars, context_hash, content_hash, created_at, is_deleted)"
+			+ " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final int[] MESSAGE_TYPES = { Types.BINARY, Types.BINARY, Types.BIGINT, Types.BINARY,
+			Types.VARCHAR, Types.LONGVARBINARY, Types.VARCHAR, Types.INTEGER, Types.BINARY, Types.BINARY,
+			Types.TIMESTAMP, Types.BOOLEAN };
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final SessionRepository sessionRepository;
+	private final ContextService contextService;
+	private final CompressedTextConverter textConverter;
+	private final JdbcTemplate jdbcTemplate;
+	private final ColdStore coldStore;
+	private final MeterRegistry meterRegistry;
+
+	private Counter sessionsThawed;
+	private Counter messagesThawed;
+
+	@PostConstruct
+	void init() {
+		sessionsThawed = Counter.builder("chat.tiering.sessions").tag("action", "thawed")
+				.description("Sessions moved between chat_messages and cold segments").register(meterRegistry);
+		messagesThawed = Counter.builder("chat.tiering.messages").tag("action", "thawed")
+				.description("Messages moved between chat_messages and cold segments").register(meterRegistry);
+	}
+
+	@Override
+	public boolean isCold(UUID sessionId) {
+		return sessionRepository.findById(sessionId).map(s -> s.getColdSegment() != null).orElse(false);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Optional<List<ColdMessage>> coldMessages(UUID sessionId) {
+		return sessionRepository.findById(sessionId).map(ColdRef::of)
+				.map(ref -> coldStore.read(sessionId, ref));
+	}
+
+	@Override
+	@Transactional
+	public void thaw(UUID sessionId) {
+		// the first load of the session in this transaction, so its state is current
+		sessionRepository.findByIdForUpdate(sessionId).ifPresent(this::thawLocked);
+	}
+
+	@Override
+	@Transactional
+	public void thawLocked(ChatSession session) {
+		ColdRef ref = ColdRef.of(session);
+		if (ref == null) {
+			return;
+		}
+		List<ColdMessage> messages = coldStore.read(session.getId(), ref);
+		List<Object[]> rows = new ArrayList<>(messages.size());
+		for (ColdMessage m : messages) {
+			// contexts come back as blobs, including those that were in the legacy column
+			ContextBlob blob = contextService.intern(m.context());
+			String content = m.content();
+			rows.add(new Object[] { bytes(m.id()), bytes(session.getId()), m.seq(), bytes(m.replyTo()),
+					m.sender().name(), textConverter.convertToDatabaseColumn(content), ChatMessage.previewOf(content),
+					content.codePointCount(0, content.length()), (blob != null) ? blob.getHash() : null,
+					ChatMessage.hashOf(content), m.createdAt(), m.deleted() });
+		}
+		// new blobs are inserted before the rows that reference them
+		entityManager.flush();
+		jdbcTemplate.batchUpdate(INSERT_MESSAGE, rows, MESSAGE_TYPES);
+
+		// the segment keeps the record until the tiering job finds it unreferenced
+		session.setColdSegment(null);
+		session.setColdOffset(null);
+		session.setColdLength(null);
+		sessionsThawed.increment();
+		messagesThawed.increment(messages.size());
+		log.debug("Thawed {} messages of session {} from {}", messages.size(), session.getId(), ref.segment());
+	}
+
+	private static byte[] bytes(UUID id) {
+		if (id == null) {
+			return null;
+		}
+		return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits())
+				.array();
+	}
+}
@@ -0,0 +1,243 @@
+package rag_chat_microservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.MessageRepository;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.sharding.ShardRouter;
+import rag_chat_microservice.tiering.ColdMessage;
+import rag_chat_microservice.tiering.ColdRef;
+import rag_chat_microservice.tiering.ColdSegmentWriter;
+import rag_chat_microservice.tiering.ColdStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Moves the history of sessions idle for longer than {@code chat.tiering.after}
+ * out of chat_messages into append-only segment files ({@link ColdStore}). Each
+ * batch of sessions is written to a new segment and forced to disk; then, per
+ * session and under its row lock, the session is pointed at its record and its
+ * rows are deleted, provided nothing was appended since the rows were read.
+ * A crash in between leaves an unreferenced record, never a lost message.
+ * <p>
+ * Reads of a tiered session are served from its record; the first write moves
+ * the history back ({@link ColdHistoryService#thaw}). Segments no session refers
+ * to any more are deleted once older than {@code chat.tiering.segment-grace}.
+ * Run it on one instance only. With sharding, each shard is tiered in turn.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "chat.tiering.enabled", havingValue = "true")
+public class ColdTieringJob {
+
+	private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+	private static final UUID FIRST = new UUID(0L, 0L);
+
+	private final SessionRepository sessionRepository;
+	private final MessageRepository messageRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final ColdStore coldStore;
+	private final MeterRegistry meterRegistry;
+	private final ShardRouter shardRouter;
+
+	@Value("${chat.tiering.after:P7D}")
+	private Duration after;
+
+	@Value("${chat.tiering.session-batch:100}")
+	private int sessionBatch;
+
+	@Value("${chat.tiering.max-sessions-per-run:10000}")
+	private int maxSessionsPerRun;
+
+	// a segment is closed and a new one started once it reaches this size
+	@Value("${chat.tiering.segment-bytes:268435456}")
+	private long segmentBytes;
+
+	// unreferenced segments younger than this may belong to a run still in progress
+	@Value("${chat.tiering.segment-grace:P1D}")
+	private Duration segmentGrace;
+
+	private Timer runTimer;
+	private Counter sessionsFrozen;
+	private Counter messagesFrozen;
+	private Counter bytesWritten;
+
+	/** A session as read for tiering: its version tells whether anything changed since. */
+	private record Candidate(UUID id, Long version, List<ColdMessage> messages) {
+	}
+
+	@PostConstruct
+	void init() {
+		runTimer = Timer.builder("chat.tiering.run").description("Duration of one tiering run").register(meterRegistry);
+		sessionsFrozen = Counter.builder("chat.tiering.sessions").tag("action", "frozen")
+				.description("Sessions moved between chat_messages and cold segments").register(meterRegistry);
+		messagesFrozen = Counter.builder("chat.tiering.messages").tag("action", "frozen")
+				.description("Messages moved between chat_messages and cold segments").register(meterRegistry);
+		bytesWritten = Counter.builder("chat.tiering.segment_bytes").baseUnit("bytes")
+				.description("Compressed bytes appended to cold segments").register(meterRegistry);
+		log.info("Cold tiering enabled: after={}, segment-bytes={}", after, segmentBytes);
+	}
+
+	@Scheduled(initialDelayString = "${chat.tiering.initial-delay:PT10M}",
+			fixedDelayString = "${chat.tiering.interval:PT1H}")
+	public void run() {
+		runTimer.record(this::tier);
+	}
+
+	/** One pass over the idle sessions, bounded by max-sessions-per-run, then segment cleanup. */
+	void tier() {
+		LocalDateTime cutoff = LocalDateTime.now().minus(after);
+		long started = System.nanoTime();
+		// sessions, messages; shards are tiered one after the other and share the per-run budget
+		long[] done = new long[2];
+		shardRouter.fanOut(shard -> tierShard(shard, cutoff, done));
+		int deleted = collectSegments();
+		if (done[0] > 0 || deleted > 0) {
+			log.info("Tiering run: {} sessions, {} messages to cold segments, {} segments deleted in {} ms", done[0],
+					done[1], deleted, (System.nanoTime() - started) / 1_000_000);
+		}
+	}
+
+	private Void tierShard(int shard, LocalDateTime cutoff, long[] done) {
+		LocalDateTime at = BEGINNING;
+		UUID id = FIRST;
+		try {
+			while (done[0] < maxSessionsPerRun && !Thread.currentThread().isInterrupted()) {
+				int limit = (int) Math.min(sessionBatch, maxSessionsPerRun - done[0]);
+				List<ChatSession> batch = sessionRepository.findTierable(cutoff, at, id, PageRequest.of(0, limit));
+				if (batch.isEmpty()) {
+					break;
+				}
+				ChatSession last = batch.get(batch.size() - 1);
+				at = last.getLastActivityAt();
+				id = last.getId();
+				freeze(batch, done);
+			}
+		} catch (RuntimeException e) {
+			// the sessions stay hot and are retried on the next run; other shards go on
+			log.error("Tiering of shard {} failed after {} sessions", shard, done[0], e);
+		}
+		return null;
+	}
+
+	private void freeze(List<ChatSession> batch, long[] done) {
+		List<Candidate> candidates = new ArrayList<>(batch.size());
+		for (ChatSession session : batch) {
+			List<ChatMessage> rows = messageRepository.findByChatSession_IdOrderBySeqAsc(session.getId());
+			// rows without a seq predate 004_message_seq_backfill.sql and cannot be paged from a record
+			if (rows.isEmpty() || rows.stream().anyMatch(m -> m.getSeq() == null)) {
+				continue;
+			}
+			candidates.add(new Candidate(session.getId(), session.getVersion(),
+					rows.stream().map(ColdMessage::of).toList()));
+		}
+		if (candidates.isEmpty()) {
+			return;
+		}
+
+		List<ColdRef> refs = write(candidates);
+		for (int i = 0; i < candidates.size(); i++) {
+			Candidate c = candidates.get(i);
+			ColdRef ref = refs.get(i);
+			Boolean frozen = transactionTemplate.execute(status -> {
+				ChatSession session = sessionRepository.findByIdForUpdate(c.id()).orElse(null);
+				if (session == null || !Objects.equals(session.getVersion(), c.version())
+						|| session.getColdSegment() != null || Boolean.TRUE.equals(session.getDeleted())) {
+					return false;
+				}
+				if (messageRepository.deleteBySessionId(c.id()) != c.messages().size()) {
+					// a row changed without touching the session: keep it hot
+					status.setRollbackOnly();
+					return false;
+				}
+				session.setColdSegment(ref.segment());
+				session.setColdOffset(ref.offset());
+				session.setColdLength(ref.length());
+				return true;
+			});
+			if (Boolean.TRUE.equals(frozen)) {
+				sessionsFrozen.increment();
+				messagesFrozen.increment(c.messages().size());
+				done[0]++;
+				done[1] += c.messages().size();
+			}
+		}
+	}
+
+	/** Appends the candidates' records to new segments, closed (and so on disk) before returning. */
+	private List<ColdRef> write(List<Candidate> candidates) {
+		List<ColdRef> refs = new ArrayList<>(candidates.size());
+		ColdSegmentWriter writer = null;
+		try {
+			for (Candidate c : candidates) {
+				if (writer != null && writer.size() >= segmentBytes) {
+					writer.close();
+					writer = null;
+				}
+				if (writer == null) {
+					writer = coldStore.newSegment();
+				}
+				ColdRef ref = writer.append(c.id(), c.messages());
+				bytesWritten.increment(ref.length());
+				refs.add(ref);
+			}
+			writer.close();
+			return refs;
+		} catch (IOException e) {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+			}
+			throw new UncheckedIOException("Could not write cold segment", e);
+		}
+	}
+
+	/** Deletes segments past the grace period that no session on any shard refers to; returns how many. */
+	private int collectSegments() {
+		Instant graceStart = Instant.now().minus(segmentGrace);
+		int deleted = 0;
+		try {
+			for (Path path : coldStore.segments()) {
+				if (Files.getLastModifiedTime(path).toInstant().isAfter(graceStart)) {
+					continue;
+				}
+				String segment = path.getFileName().toString();
+				long refs = shardRouter.fanOut(shard -> sessionRepository.countByColdSegment(segment)).stream()
+						.mapToLong(Long::longValue).sum();
+				if (refs == 0) {
+					coldStore.delete(segment);
+					deleted++;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			log.error("Cold segment cleanup failed after {} segments", deleted, e);
+		}
+		return deleted;
+	}
+}
@@ -0,0 +1,12 @@
+package rag_chat_microservice.service;
+
+import rag_chat_microservice.model.ContextBlob;
+
+public interface ContextService {
+
+	/**
+	 * Returns the stored blob for this context, inserting it the first time the
+	 * exact content is seen. Blank contexts map to {@code null}.
+	 */
+	ContextBlob intern(String context);
+}
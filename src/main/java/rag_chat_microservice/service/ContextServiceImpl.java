@@ -0,0 +1,37 @@
+package rag_chat_microservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import rag_chat_microservice.model.ContextBlob;
+import rag_chat_microservice.repository.ContextBlobRepository;
+
+import java.util.HexFormat;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ContextServiceImpl implements ContextService {
+
+	private final ContextBlobRepository contextBlobRepository;
+
+	@Override
+	public ContextBlob intern(String context) {
+		if (context == null || context.isBlank()) {
+			return null;
+		}
+		byte[] hash = ContextBlob.hashOf(context);
+		return contextBlobRepository.findById(hash).orElseGet(() -> {
+			try {
+				ContextBlob saved = contextBlobRepository.save(ContextBlob.of(context));
+				log.debug("Stored new context blob {} ({} bytes)", HexFormat.of().formatHex(hash),
+						saved.getSizeBytes());
+				return saved;
+			} catch (DataIntegrityViolationException e) {
+				// another request stored the same content first
+				return contextBlobRepository.findById(hash).orElseThrow(() -> e);
+			}
+		});
+	}
+}
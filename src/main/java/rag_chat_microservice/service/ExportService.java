@@ -0,0 +1,20 @@
+package rag_chat_microservice.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+public interface ExportService {
+
+	/**
+	 * Writes a user's sessions and messages to {@code out} as NDJSON: a "session"
+	 * line followed by that session's "message" lines in seq order, then one "end"
+	 * line with the totals. Rows are streamed from a forward-only cursor, so memory
+	 * use does not depend on the size of the history.
+	 *
+	 * @param from inclusive lower bound on message createdAt, or null
+	 * @param to   exclusive upper bound on message createdAt, or null; with either
+	 *             bound set, sessions without messages in the range are left out
+	 */
+	void exportUser(String userId, LocalDateTime from, LocalDateTime to, OutputStream out) throws IOException;
+}
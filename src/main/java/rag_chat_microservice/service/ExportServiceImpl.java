@@ -0,0 +1,184 @@
+package rag_chat_microservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.tiering.ColdMessage;
+import rag_chat_microservice.tiering.ColdRef;
+import rag_chat_microservice.tiering.ColdStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExportServiceImpl implements ExportService {
+
+	// Scalars only: nothing enters the persistence context, so there is nothing to
+	// detach and the eager contextBlob association is joined instead of loaded per
+	// row. Content columns are selected as-is so their converter decompresses them.
+	// Tiered sessions come back as one row without a message and their cold record.
+	private static final String EXPORT_ROWS = "select s.id, s.title, s.favorite, s.deleted, s.lastSeq,"
+			+ " s.createdAt, s.updatedAt, s.deletedAt,"
+			+ " m.id, m.sender, m.content, cb.content, m.legacyContext, m.createdAt, m.seq, m.replyTo,"
+			+ " s.coldSegment, s.coldOffset, s.coldLength"
+			+ " from ChatSession s left join ChatMessage m on m.chatSession = s%s left join m.contextBlob cb"
+			+ " where s.userId = :userId order by s.id, m.seq";
+	private static final String FROM = " and m.createdAt >= :from";
+	private static final String TO = " and m.createdAt < :to";
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final ObjectMapper objectMapper;
+	private final ColdStore coldStore;
+
+	// rows per round trip; on MySQL the driver only honours it with useCursorFetch=true
+	@Value("${chat.export.fetch-size:1000}")
+	private int fetchSize;
+
+	@Value("${chat.export.flush-every:500}")
+	private int flushEvery;
+
+	private ObjectMapper lineMapper;
+
+	@PostConstruct
+	void init() {
+		// one object per line; the timestamps written through the mapper must not flush
+		// the response each time, only every flushEvery messages
+		lineMapper = objectMapper.copy().disable(SerializationFeature.INDENT_OUTPUT)
+				.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void exportUser(String userId, LocalDateTime from, LocalDateTime to, OutputStream out) throws IOException {
+		boolean ranged = from != null || to != null;
+		String jpql = String.format(EXPORT_ROWS, (from != null ? FROM : "") + (to != null ? TO : ""));
+		TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class)
+				.setParameter("userId", userId)
+				.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+				.setHint(HibernateHints.HINT_READ_ONLY, true)
+				.setHint(HibernateHints.HINT_CACHEABLE, false);
+		if (from != null) query.setParameter("from", from);
+		if (to != null) query.setParameter("to", to);
+
+		long started = System.nanoTime();
+		long sessions = 0;
+		long messages = 0;
+		UUID current = null;
+		// the generator is not closed: the caller owns the stream
+		JsonGenerator json = lineMapper.getFactory().createGenerator(out)
+				.setRootValueSeparator(null); // lines end in '\n' instead
+		// getResultStream scrolls a forward-only result set; closing it releases the cursor
+		try (Stream<Object[]> rows = query.getResultStream()) {
+			for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+				UUID sessionId = (UUID) row[0];
+				if (row[16] != null) {
+					List<ColdMessage> cold = coldStore.read(sessionId,
+							new ColdRef((String) row[16], (Long) row[17], (Integer) row[18])).stream()
+							.filter(m -> inRange(m.createdAt(), from, to)).toList();
+					if (ranged && cold.isEmpty()) {
+						continue;
+					}
+					current = sessionId;
+					writeSession(json, userId, row);
+					sessions++;
+					for (ColdMessage m : cold) {
+						writeMessage(json, sessionId, m.id(), m.sender(), m.content(), m.context(), m.createdAt(),
+								m.seq(), m.replyTo());
+						if (++messages % flushEvery == 0) {
+							json.flush();
+						}
+					}
+					continue;
+				}
+				boolean hasMessage = row[8] != null;
+				if (ranged && !hasMessage) {
+					continue;
+				}
+				if (!Objects.equals(sessionId, current)) {
+					current = sessionId;
+					writeSession(json, userId, row);
+					sessions++;
+				}
+				if (hasMessage) {
+					writeMessage(json, sessionId, row);
+					if (++messages % flushEvery == 0) {
+						json.flush();
+					}
+				}
+			}
+		}
+		json.writeStartObject();
+		json.writeStringField("type", "end");
+		json.writeNumberField("sessions", sessions);
+		json.writeNumberField("messages", messages);
+		json.writeEndObject();
+		json.writeRaw('\n');
+		json.flush();
+		log.info("Exported {} sessions, {} messages for user {} in {} ms", sessions, messages, userId,
+				(System.nanoTime() - started) / 1_000_000);
+	}
+
+	// same fields as the purge archive (SessionPurgeJob)
+	private void writeSession(JsonGenerator json, String userId, Object[] row) throws IOException {
+		json.writeStartObject();
+		json.writeStringField("type", "session");
+		json.writeStringField("id", row[0].toString());
+		json.writeStringField("userId", userId);
+		json.writeStringField("title", (String) row[1]);
+		json.writeBooleanField("favorite", (Boolean) row[2]);
+		json.writeBooleanField("deleted", Boolean.TRUE.equals(row[3]));
+		json.writeNumberField("lastSeq", (Long) row[4]);
+		json.writeObjectField("createdAt", row[5]);
+		json.writeObjectField("updatedAt", row[6]);
+		json.writeObjectField("deletedAt", row[7]);
+		json.writeEndObject();
+		json.writeRaw('\n');
+	}
+
+	private void writeMessage(JsonGenerator json, UUID sessionId, Object[] row) throws IOException {
+		String context = (row[11] != null) ? (String) row[11] : (String) row[12];
+		writeMessage(json, sessionId, (UUID) row[8], (ChatMessage.Sender) row[9], (String) row[10], context,
+				(LocalDateTime) row[13], (Long) row[14], (UUID) row[15]);
+	}
+
+	private void writeMessage(JsonGenerator json, UUID sessionId, UUID id, ChatMessage.Sender sender, String content,
+			String context, LocalDateTime createdAt, Long seq, UUID replyTo) throws IOException {
+		json.writeStartObject();
+		json.writeStringField("type", "message");
+		json.writeStringField("id", id.toString());
+		json.writeStringField("sessionId", sessionId.toString());
+		json.writeStringField("sender", sender.name());
+		json.writeStringField("content", content);
+		json.writeStringField("context", context);
+		json.writeObjectField("createdAt", createdAt);
+		json.writeObjectField("seq", seq);
+		json.writeStringField("replyTo", (replyTo != null) ? replyTo.toString() : null);
+		json.writeEndObject();
+		json.writeRaw('\n');
+	}
+
+	// same bounds as the FROM and TO conditions of the query
+	private static boolean inRange(LocalDateTime createdAt, LocalDateTime from, LocalDateTime to) {
+		return (from == null || !createdAt.isBefore(from)) && (to == null || createdAt.isBefore(to));
+	}
+}
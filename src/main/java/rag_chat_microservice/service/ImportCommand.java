@@ -0,0 +1,63 @@
+package rag_chat_microservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import rag_chat_microservice.dto.ImportReport;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command-line import: starting the application with
+ * {@code --chat.import.file=transcripts.ndjson[.gz]} loads the file, prints the
+ * report and exits (status 1 if the import stopped early). The checkpoint name
+ * defaults to the file name, so rerunning the same command resumes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("!'${chat.import.file:}'.isBlank()")
+public class ImportCommand implements ApplicationRunner {
+
+	private final ImportService importService;
+	private final ApplicationContext context;
+	private final ObjectMapper objectMapper;
+
+	@Value("${chat.import.file}")
+	private String file;
+
+	@Value("${chat.import.dry-run:false}")
+	private boolean dryRun;
+
+	@Value("${chat.import.checkpoint:}")
+	private String checkpoint;
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		Path path = Paths.get(file);
+		String name = checkpoint.isBlank() ? path.getFileName().toString() : checkpoint;
+		log.info("Importing {}{} (checkpoint '{}')", path, dryRun ? " as a dry run" : "", name);
+
+		ImportReport report;
+		try (InputStream raw = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+				InputStream in = file.endsWith(".gz") ? new GZIPInputStream(raw, 1 << 16) : raw) {
+			report = importService.importNdjson(in, dryRun, name);
+		}
+		System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+
+		int status = (report.getFailure() == null) ? 0 : 1;
+		System.exit(SpringApplication.exit(context, () -> status));
+	}
+}
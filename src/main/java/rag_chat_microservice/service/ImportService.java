@@ -0,0 +1,22 @@
+package rag_chat_microservice.service;
+
+import rag_chat_microservice.dto.ImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ImportService {
+
+	/**
+	 * Loads NDJSON transcripts in the export format: a "session" line followed by
+	 * its "message" lines ("end" lines are ignored). Lines are parsed, validated,
+	 * normalized, hashed and compressed by a worker pool; a single writer inserts
+	 * them in input order with multi-row statements, one transaction per batch.
+	 * Invalid lines are rejected and reported without stopping the import.
+	 *
+	 * @param dryRun     validate and prepare every row, but write nothing
+	 * @param checkpoint name under which progress is recorded; a later run with the
+	 *                   same name continues after the last committed batch. May be null
+	 */
+	ImportReport importNdjson(InputStream in, boolean dryRun, String checkpoint) throws IOException;
+}
@@ -0,0 +1,741 @@
+package rag_chat_microservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import rag_chat_microservice.dto.ImportReport;
+import rag_chat_microservice.invalidation.InvalidationBus;
+import rag_chat_microservice.invalidation.SessionInvalidation;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.model.CompressedTextConverter;
+import rag_chat_microservice.model.ContextBlob;
+import rag_chat_microservice.model.ImportCheckpoint;
+import rag_chat_microservice.model.UuidV7Generator;
+import rag_chat_microservice.repository.ImportCheckpointRepository;
+import rag_chat_microservice.sharding.ShardContext;
+import rag_chat_microservice.sharding.ShardKeys;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk loader behind {@code POST /api/import} and the {@code chat.import.file}
+ * command. A reader thread cuts the input into batches of lines, a worker pool
+ * turns each batch into insert-ready rows (JSON parsing, validation, content
+ * normalization, SHA-256 hashes, compression), and the calling thread writes the
+ * batches back in input order with plain JDBC: sessions one by one, context blobs
+ * and messages as multi-row INSERTs, session counters as one batched UPDATE, and
+ * the checkpoint, all in one transaction per batch.
+ * <p>
+ * Unlike {@link MessageService#addMessage}, messages are not de-duplicated
+ * against stored ones: a transcript is taken as it was.
+ * <p>
+ * With sharding, consecutive rows that land on the same shard are written in one
+ * transaction on that shard and the checkpoint commits after them on the catalog
+ * shard, so a crash can repeat part of one batch on resume: sessions whose ids
+ * are in the input are then skipped, others are rejected as title clashes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportServiceImpl implements ImportService {
+
+	private static final int MAX_ERRORS = 100;
+	private static final int MAX_TEXT = 255;
+	private static final long PROGRESS_EVERY_NANOS = 10_000_000_000L;
+
+	private static final String INSERT_SESSION = "insert into chat_sessions (id, user_id, title, version, last_seq,"
+			+ " message_count, last_activity_at, favorite, is_deleted, deleted_at, created_at, updated_at)"
+			+ " values (?, ?, ?, 0, 0, 0, ?, ?, ?, ?, ?, ?)";
+	private static final int[] SESSION_TYPES = { Types.BINARY, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP,
+			Types.BOOLEAN, Types.BOOLEAN, Types.TIMESTAMP, Types.TIMESTAMP, Types.TIMESTAMP };
+
+	private static final String INSERT_MESSAGES = "insert into chat_messages (id, session_id, seq, reply_to, sender,"
+			+ " content, content_preview, content_chars, context_hash, content_hash, created_at, is_deleted) values ";
+	private static final String MESSAGE_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false)";
+	private static final int[] MESSAGE_TYPES = { Types.BINARY, Types.BINARY, Types.BIGINT, Types.BINARY,
+			Types.VARCHAR, Types.LONGVARBINARY, Types.VARCHAR, Types.INTEGER, Types.BINARY, Types.BINARY,
+			Types.TIMESTAMP };
+
+	private static final String INSERT_CONTEXTS = "insert into context_blobs (hash, content, size_bytes, created_at)"
+			+ " values ";
+	private static final String CONTEXT_ROW = "(?, ?, ?, ?)";
+	private static final int[] CONTEXT_TYPES = { Types.BINARY, Types.LONGVARBINARY, Types.BIGINT,
+			Types.TIMESTAMP };
+
+	private static final String UPDATE_SESSION = "update chat_sessions set last_seq = ?, message_count = ?,"
+			+ " last_activity_at = ?, last_message_preview = ?, last_sender = ?, updated_at = ? where id = ?";
+	private static final int[] UPDATE_TYPES = { Types.BIGINT, Types.BIGINT, Types.TIMESTAMP, Types.VARCHAR,
+			Types.VARCHAR, Types.TIMESTAMP, Types.BINARY };
+
+	private final ObjectMapper objectMapper;
+	private final CompressedTextConverter textConverter;
+	private final JdbcTemplate jdbcTemplate;
+	private final NamedParameterJdbcTemplate namedJdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final ImportCheckpointRepository checkpointRepository;
+	private final EntityManagerFactory entityManagerFactory;
+	private final MeterRegistry meterRegistry;
+	private final ShardRouter shardRouter;
+	private final InvalidationBus invalidationBus;
+
+	// input lines per batch; one transaction each
+	@Value("${chat.import.batch-lines:2000}")
+	private int batchLines;
+
+	// rows per multi-row INSERT statement
+	@Value("${chat.import.rows-per-statement:250}")
+	private int rowsPerStatement;
+
+	// prepare workers; 0 = one per CPU
+	@Value("${chat.import.parallelism:0}")
+	private int parallelism;
+
+	private Counter sessionsImported;
+	private Counter messagesImported;
+
+	@PostConstruct
+	void init() {
+		sessionsImported = Counter.builder("chat.import.rows").tag("table", "chat_sessions")
+				.description("Rows written by bulk imports").register(meterRegistry);
+		messagesImported = Counter.builder("chat.import.rows").tag("table", "chat_messages")
+				.description("Rows written by bulk imports").register(meterRegistry);
+	}
+
+	// --- rows as prepared by the workers ---
+
+	private sealed interface Row permits SessionRow, MessageRow, Rejected {
+	}
+
+	private record SessionRow(long line, UUID id, String userId, String title, boolean favorite, boolean deleted,
+			LocalDateTime deletedAt, LocalDateTime createdAt) implements Row {
+	}
+
+	private record MessageRow(long line, UUID id, UUID sessionId, Long seq, UUID replyTo, ChatMessage.Sender sender,
+			byte[] content, String preview, int chars, byte[] contentHash, byte[] contextHash, byte[] context,
+			long contextBytes, LocalDateTime createdAt) implements Row {
+	}
+
+	private record Rejected(long line, String reason) implements Row {
+	}
+
+	private record Batch(long lastLine, List<Row> rows) {
+	}
+
+	private static final Batch END = new Batch(-1, List.of());
+
+	@Override
+	public ImportReport importNdjson(InputStream in, boolean dryRun, String checkpoint) throws IOException {
+		ImportReport report = new ImportReport();
+		report.setDryRun(dryRun);
+		report.setCheckpoint(dryRun ? null : checkpoint);
+		Load load = new Load(report);
+
+		if (report.getCheckpoint() != null) {
+			ShardContext.on(ShardRouter.CATALOG, () -> checkpointRepository.findById(checkpoint)).ifPresent(cp -> {
+				report.setResumedAfterLine(cp.getLine());
+				report.setLastLine(cp.getLine());
+				load.current = (cp.getSessionId() != null) ? reopen(cp.getSessionId()) : null;
+				log.info("Import '{}' resumes after line {}", checkpoint, cp.getLine());
+			});
+		}
+
+		int threads = (parallelism > 0) ? parallelism : Runtime.getRuntime().availableProcessors();
+		AtomicInteger workerIds = new AtomicInteger();
+		ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "import-worker-" + workerIds.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		// bounded: the reader waits while the writer is this many batches behind
+		BlockingQueue<Future<Batch>> pending = new ArrayBlockingQueue<>(threads * 2);
+		Thread reader = new Thread(() -> read(in, report.getResumedAfterLine(), workers, pending), "import-reader");
+		reader.setDaemon(true);
+
+		long started = System.nanoTime();
+		long lastProgress = started;
+		reader.start();
+		try {
+			while (true) {
+				Batch batch = pending.take().get();
+				if (batch == END) {
+					break;
+				}
+				load.write(batch);
+				if (System.nanoTime() - lastProgress > PROGRESS_EVERY_NANOS) {
+					lastProgress = System.nanoTime();
+					log.info("Import progress: line {}, {} rows/s", report.getLastLine(),
+							rowsPerSecond(report, lastProgress - started));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			report.setFailure("interrupted");
+		} catch (ExecutionException e) {
+			// the reader failed (I/O), or a worker hit something other than a bad line
+			report.setFailure(e.getCause().toString());
+		} catch (RuntimeException e) {
+			// the failed batch rolled back; lastLine is still the last committed one
+			report.setFailure(e.toString());
+		} finally {
+			reader.interrupt();
+			workers.shutdownNow();
+			long elapsed = System.nanoTime() - started;
+			report.setSeconds(Math.round(elapsed / 1e6) / 1e3);
+			report.setRowsPerSecond(rowsPerSecond(report, elapsed));
+		}
+
+		if (report.getFailure() != null) {
+			log.error("Import stopped after line {}: {}", report.getLastLine(), report.getFailure());
+		}
+		log.info("Import{} done: {} sessions, {} messages, {} skipped, {} rejected in {}s ({} rows/s)",
+				dryRun ? " (dry run)" : "", report.getSessionsImported(), report.getMessagesImported(),
+				report.getSessionsSkipped() + report.getMessagesSkipped(), report.getRejected(), report.getSeconds(),
+				report.getRowsPerSecond());
+		return report;
+	}
+
+	private static long rowsPerSecond(ImportReport report, long nanos) {
+		long rows = report.getSessionsImported() + report.getMessagesImported();
+		return Math.round(rows / Math.max(nanos / 1e9, 1e-3));
+	}
+
+	// --- reader thread ---
+
+	private void read(InputStream in, long skip, ExecutorService workers, BlockingQueue<Future<Batch>> pending) {
+		try {
+			// the caller owns the stream; it is not closed here
+			BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+			long lineNo = 0;
+			List<String> batch = new ArrayList<>(batchLines);
+			String line;
+			while ((line = lines.readLine()) != null) {
+				if (++lineNo <= skip) {
+					continue;
+				}
+				batch.add(line);
+				if (batch.size() == batchLines) {
+					submit(batch, lineNo, workers, pending);
+					batch = new ArrayList<>(batchLines);
+				}
+			}
+			if (!batch.isEmpty()) {
+				submit(batch, lineNo, workers, pending);
+			}
+			pending.put(CompletableFuture.completedFuture(END));
+		} catch (IOException e) {
+			try {
+				pending.put(CompletableFuture.failedFuture(e));
+			} catch (InterruptedException stopped) {
+				Thread.currentThread().interrupt();
+			}
+		} catch (InterruptedException e) {
+			// the writer gave up
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void submit(List<String> lines, long lastLine, ExecutorService workers,
+			BlockingQueue<Future<Batch>> pending) throws InterruptedException {
+		long first = lastLine - lines.size() + 1;
+		pending.put(CompletableFuture.supplyAsync(() -> prepare(lines, first), workers));
+	}
+
+	// --- workers: everything that does not need the database ---
+
+	private Batch prepare(List<String> lines, long firstLine) {
+		List<Row> rows = new ArrayList<>(lines.size());
+		for (int i = 0; i < lines.size(); i++) {
+			long line = firstLine + i;
+			String text = lines.get(i);
+			if (text.isBlank()) {
+				continue;
+			}
+			try {
+				Row row = parse(line, text);
+				if (row != null) {
+					rows.add(row);
+				}
+			} catch (JsonProcessingException e) {
+				rows.add(new Rejected(line, "malformed JSON"));
+			} catch (IllegalArgumentException | DateTimeParseException e) {
+				rows.add(new Rejected(line, e.getMessage()));
+			}
+		}
+		return new Batch(firstLine + lines.size() - 1, rows);
+	}
+
+	private Row parse(long line, String text) throws JsonProcessingException {
+		JsonNode node = objectMapper.readTree(text);
+		String type = text(node, "type");
+		if (type == null) {
+			throw new IllegalArgumentException("missing type");
+		}
+		return switch (type) {
+			case "session" -> session(line, node);
+			case "message" -> message(line, node);
+			case "end" -> null; // export trailer
+			default -> throw new IllegalArgumentException("unknown type '" + type + "'");
+		};
+	}
+
+	private SessionRow session(long line, JsonNode node) {
+		String userId = text(node, "userId");
+		if (userId == null || userId.isBlank() || userId.length() > MAX_TEXT) {
+			throw new IllegalArgumentException("userId must be 1.." + MAX_TEXT + " characters");
+		}
+		String title = ChatMessage.normalize(text(node, "title"));
+		if (title.isEmpty() || title.length() > MAX_TEXT) {
+			throw new IllegalArgumentException("title must be 1.." + MAX_TEXT + " characters");
+		}
+		boolean deleted = node.path("deleted").asBoolean(false);
+		LocalDateTime createdAt = time(node, "createdAt");
+		LocalDateTime deletedAt = deleted ? time(node, "deletedAt") : null;
+		return new SessionRow(line, uuid(node, "id"), userId, title, node.path("favorite").asBoolean(false), deleted,
+				deletedAt, createdAt);
+	}
+
+	private MessageRow message(long line, JsonNode node) {
+		String sender = text(node, "sender");
+		if (sender == null) {
+			throw new IllegalArgumentException("missing sender");
+		}
+		ChatMessage.Sender parsed;
+		try {
+			parsed = ChatMessage.Sender.valueOf(sender.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("unknown sender '" + sender + "'");
+		}
+		String content = ChatMessage.normalize(text(node, "content"));
+		if (content.isEmpty()) {
+			throw new IllegalArgumentException("content must not be empty");
+		}
+		Long seq = node.hasNonNull("seq") ? node.get("seq").asLong() : null;
+		if (seq != null && seq < 1) {
+			throw new IllegalArgumentException("seq must be >= 1");
+		}
+
+		// same derivations as ChatMessage.recomputeHash and ContextBlob.of, off the insert thread
+		String context = text(node, "context");
+		byte[] contextHash = null;
+		byte[] contextBytes = null;
+		long contextSize = 0;
+		if (context != null && !context.isBlank()) {
+			contextHash = ContextBlob.hashOf(context);
+			contextBytes = textConverter.convertToDatabaseColumn(context);
+			contextSize = context.getBytes(StandardCharsets.UTF_8).length;
+		}
+		return new MessageRow(line, uuid(node, "id"), uuid(node, "sessionId"), seq, uuid(node, "replyTo"), parsed,
+				textConverter.convertToDatabaseColumn(content), ChatMessage.previewOf(content),
+				content.codePointCount(0, content.length()), ChatMessage.hashOf(content), contextHash, contextBytes,
+				contextSize, time(node, "createdAt"));
+	}
+
+	private static String text(JsonNode node, String field) {
+		JsonNode value = node.get(field);
+		return (value == null || value.isNull()) ? null : value.asText();
+	}
+
+	private static UUID uuid(JsonNode node, String field) {
+		String value = text(node, field);
+		if (value == null) {
+			return null;
+		}
+		try {
+			return UUID.fromString(value);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(field + " is not a UUID");
+		}
+	}
+
+	// ISO local date-time (as exported), ISO with offset, or epoch milliseconds
+	private static LocalDateTime time(JsonNode node, String field) {
+		JsonNode value = node.get(field);
+		if (value == null || value.isNull()) {
+			return null;
+		}
+		if (value.isNumber()) {
+			return LocalDateTime.ofInstant(Instant.ofEpochMilli(value.asLong()), ZoneId.systemDefault());
+		}
+		String text = value.asText();
+		try {
+			return LocalDateTime.parse(text);
+		} catch (DateTimeParseException e) {
+			return OffsetDateTime.parse(text).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+		}
+	}
+
+	// --- writer: the calling thread, one batch at a time in input order ---
+
+	private enum Status { ACTIVE, SKIPPED, REJECTED }
+
+	private static final class OpenSession {
+		final UUID id;
+		final Status status;
+		// id the input uses for the session; differs from id when a sharded import re-keyed it
+		UUID sourceId;
+		int shard = ShardRouter.CATALOG;
+		long lastSeq;
+		long messageCount;
+		LocalDateTime lastActivityAt;
+		String lastPreview;
+		ChatMessage.Sender lastSender;
+		UUID lastUserMessage;
+
+		OpenSession(UUID id, Status status) {
+			this.id = id;
+			this.sourceId = id;
+			this.status = status;
+		}
+	}
+
+	private OpenSession reopen(UUID sessionId) {
+		int shard = shardRouter.forSession(sessionId).shard();
+		return ShardContext.on(shard, () -> {
+			OpenSession session = reopenOnShard(sessionId);
+			if (session != null) {
+				session.shard = shard;
+			}
+			return session;
+		});
+	}
+
+	private OpenSession reopenOnShard(UUID sessionId) {
+		List<OpenSession> found = jdbcTemplate.query("select last_seq, message_count, last_activity_at,"
+				+ " last_message_preview, last_sender from chat_sessions where id = ?", (rs, i) -> {
+					OpenSession s = new OpenSession(sessionId, Status.ACTIVE);
+					s.lastSeq = rs.getLong(1);
+					s.messageCount = rs.getLong(2);
+					s.lastActivityAt = rs.getObject(3, LocalDateTime.class);
+					s.lastPreview = rs.getString(4);
+					s.lastSender = (rs.getString(5) != null) ? ChatMessage.Sender.valueOf(rs.getString(5)) : null;
+					return s;
+				}, (Object) bytes(sessionId));
+		if (found.isEmpty()) {
+			return null;
+		}
+		OpenSession session = found.get(0);
+		List<byte[]> lastUser = jdbcTemplate.query("select id from chat_messages where session_id = ? and sender = ?"
+				+ " order by seq desc limit 1", (rs, i) -> rs.getBytes(1), bytes(sessionId),
+				ChatMessage.Sender.USER.name());
+		session.lastUserMessage = lastUser.isEmpty() ? null : uuid(lastUser.get(0));
+		return session;
+	}
+
+	private final class Load {
+		final ImportReport report;
+		OpenSession current;
+
+		// rows of the batch being written
+		final List<Object[]> messages = new ArrayList<>();
+		// by hash; wrapped, as arrays compare by identity
+		final Map<ByteBuffer, MessageRow> contexts = new LinkedHashMap<>();
+		final Set<OpenSession> touched = new LinkedHashSet<>();
+		long sessionsInBatch;
+
+		Load(ImportReport report) {
+			this.report = report;
+		}
+
+		void write(Batch batch) {
+			if (report.isDryRun()) {
+				for (Row row : batch.rows()) {
+					apply(row, false);
+				}
+				reset();
+			} else if (shardRouter.isEnabled()) {
+				writeSharded(batch);
+			} else {
+				transactionTemplate.executeWithoutResult(status -> {
+					for (Row row : batch.rows()) {
+						apply(row, true);
+					}
+					flush();
+					saveCheckpoint(batch.lastLine());
+				});
+				sessionsImported.increment(sessionsInBatch);
+				messagesImported.increment(messages.size());
+				evictCached();
+				reset();
+			}
+			report.setLastLine(batch.lastLine());
+		}
+
+		private void writeSharded(Batch batch) {
+			List<Row> rows = batch.rows();
+			int runShard = (current != null) ? current.shard : ShardRouter.CATALOG;
+			int from = 0;
+			for (int i = 0; i <= rows.size(); i++) {
+				int shard = runShard;
+				if (i < rows.size() && rows.get(i) instanceof SessionRow s) {
+					shard = shardRouter.forUser(s.userId()).shard();
+				}
+				if (i == rows.size() || shard != runShard) {
+					List<Row> run = rows.subList(from, i);
+					ShardContext.run(runShard, () -> transactionTemplate.executeWithoutResult(status -> {
+						for (Row row : run) {
+							apply(row, true);
+						}
+						flush();
+					}));
+					sessionsImported.increment(sessionsInBatch);
+					messagesImported.increment(messages.size());
+					evictCached();
+					reset();
+					from = i;
+					runShard = shard;
+				}
+			}
+			ShardContext.run(ShardRouter.CATALOG,
+					() -> transactionTemplate.executeWithoutResult(status -> saveCheckpoint(batch.lastLine())));
+		}
+
+		private void reset() {
+			messages.clear();
+			contexts.clear();
+			touched.clear();
+			sessionsInBatch = 0;
+		}
+
+		private void apply(Row row, boolean db) {
+			if (row instanceof MessageRow m) {
+				addMessage(m);
+			} else if (row instanceof SessionRow s) {
+				openSession(s, db);
+			} else if (row instanceof Rejected r) {
+				reject(r.line(), r.reason());
+			}
+		}
+
+		private void openSession(SessionRow s, boolean db) {
+			ShardRouter.Placement placement = shardRouter.forUser(s.userId());
+			if (db && placement.moving()) {
+				throw new IllegalStateException("bucket " + placement.bucket() + " of user " + s.userId()
+						+ " is being moved to another shard; resume the import later");
+			}
+			UUID id = s.id();
+			if (id != null && placement.bucket() != null
+					&& !Objects.equals(ShardKeys.bucketOf(id, shardRouter.sinceMillis()), placement.bucket())) {
+				// the id would route to another shard (e.g. it predates sharding)
+				id = UuidV7Generator.next(placement.bucket());
+			}
+			if (db && id != null && !jdbcTemplate.queryForList("select 1 from chat_sessions where id = ?",
+					Integer.class, (Object) bytes(id)).isEmpty()) {
+				current = new OpenSession(id, Status.SKIPPED);
+				current.sourceId = s.id();
+				report.setSessionsSkipped(report.getSessionsSkipped() + 1);
+				return;
+			}
+			// the unique key is (user_id, title, is_deleted); a clash would fail the whole batch
+			if (db && !jdbcTemplate.queryForList(
+					"select 1 from chat_sessions where user_id = ? and title = ? and is_deleted = ?",
+					Integer.class, s.userId(), s.title(), s.deleted()).isEmpty()) {
+				current = new OpenSession(id, Status.REJECTED);
+				current.sourceId = s.id();
+				reject(s.line(), "user " + s.userId() + " already has a session titled '" + s.title() + "'");
+				return;
+			}
+
+			if (id == null) {
+				id = UuidV7Generator.next(placement.bucket());
+			}
+			LocalDateTime now = LocalDateTime.now();
+			LocalDateTime createdAt = (s.createdAt() != null) ? s.createdAt() : now;
+			// the purge counts retention from deleted_at only; a deleted session without one starts now
+			LocalDateTime deletedAt = (s.deleted() && s.deletedAt() == null) ? now : s.deletedAt();
+			if (db) {
+				jdbcTemplate.update(INSERT_SESSION, new Object[] { bytes(id), s.userId(), s.title(), createdAt,
+						s.favorite(), s.deleted(), deletedAt, createdAt, now }, SESSION_TYPES);
+			}
+			current = new OpenSession(id, Status.ACTIVE);
+			current.sourceId = (s.id() != null) ? s.id() : id;
+			current.shard = placement.shard();
+			current.lastActivityAt = createdAt;
+			sessionsInBatch++;
+			report.setSessionsImported(report.getSessionsImported() + 1);
+		}
+
+		private void addMessage(MessageRow m) {
+			if (current == null) {
+				reject(m.line(), "message before any session line");
+				return;
+			}
+			if (m.sessionId() != null && current.sourceId != null && !m.sessionId().equals(current.sourceId)) {
+				reject(m.line(), "sessionId does not match the preceding session line");
+				return;
+			}
+			switch (current.status) {
+				case SKIPPED -> {
+					report.setMessagesSkipped(report.getMessagesSkipped() + 1);
+					return;
+				}
+				case REJECTED -> {
+					reject(m.line(), "its session was rejected");
+					return;
+				}
+				case ACTIVE -> { }
+			}
+			if (m.seq() != null && m.seq() <= current.lastSeq) {
+				reject(m.line(), "seq " + m.seq() + " is not after " + current.lastSeq);
+				return;
+			}
+
+			long seq = (m.seq() != null) ? m.seq() : current.lastSeq + 1;
+			UUID id = (m.id() != null) ? m.id() : UuidV7Generator.next();
+			UUID replyTo = (m.replyTo() != null) ? m.replyTo()
+					: (m.sender() == ChatMessage.Sender.AI) ? current.lastUserMessage : null;
+			LocalDateTime createdAt = (m.createdAt() != null) ? m.createdAt() : LocalDateTime.now();
+
+			if (m.contextHash() != null) {
+				contexts.putIfAbsent(ByteBuffer.wrap(m.contextHash()), m);
+			}
+			messages.add(new Object[] { bytes(id), bytes(current.id), seq, bytes(replyTo), m.sender().name(),
+					m.content(), m.preview(), m.chars(), m.contextHash(), m.contentHash(), createdAt });
+
+			current.lastSeq = seq;
+			current.messageCount++;
+			current.lastActivityAt = createdAt;
+			current.lastPreview = m.preview();
+			current.lastSender = m.sender();
+			if (m.sender() == ChatMessage.Sender.USER) {
+				current.lastUserMessage = id;
+			}
+			touched.add(current);
+			report.setMessagesImported(report.getMessagesImported() + 1);
+		}
+
+		private void reject(long line, String reason) {
+			report.setRejected(report.getRejected() + 1);
+			if (report.getErrors().size() < MAX_ERRORS) {
+				report.getErrors().add("line " + line + ": " + reason);
+			}
+		}
+
+		private void flush() {
+			if (!contexts.isEmpty()) {
+				// blobs other imports or live traffic stored already are left as they are
+				List<byte[]> hashes = contexts.keySet().stream().map(ByteBuffer::array).toList();
+				for (int i = 0; i < hashes.size(); i += rowsPerStatement) {
+					List<byte[]> part = hashes.subList(i, Math.min(i + rowsPerStatement, hashes.size()));
+					namedJdbcTemplate.queryForList("select hash from context_blobs where hash in (:hashes)",
+							Map.of("hashes", part), byte[].class).forEach(h -> contexts.remove(ByteBuffer.wrap(h)));
+				}
+				LocalDateTime now = LocalDateTime.now();
+				List<Object[]> blobs = new ArrayList<>(contexts.size());
+				for (MessageRow m : contexts.values()) {
+					blobs.add(new Object[] { m.contextHash(), m.context(), m.contextBytes(), now });
+				}
+				insertRows(INSERT_CONTEXTS, CONTEXT_ROW, CONTEXT_TYPES, blobs);
+			}
+			insertRows(INSERT_MESSAGES, MESSAGE_ROW, MESSAGE_TYPES, messages);
+
+			if (!touched.isEmpty()) {
+				LocalDateTime now = LocalDateTime.now();
+				List<Object[]> updates = new ArrayList<>(touched.size());
+				for (OpenSession s : touched) {
+					updates.add(new Object[] { s.lastSeq, s.messageCount, s.lastActivityAt, s.lastPreview,
+							(s.lastSender != null) ? s.lastSender.name() : null, now, bytes(s.id) });
+				}
+				jdbcTemplate.batchUpdate(UPDATE_SESSION, updates, UPDATE_TYPES);
+				invalidationBus.publish(SessionInvalidation.TOPIC,
+						touched.stream().map(t -> t.id.toString()).toList());
+			}
+		}
+
+		// INSERT ... VALUES (...), (...), ... with up to rowsPerStatement rows each
+		private void insertRows(String insert, String rowSql, int[] rowTypes, List<Object[]> rows) {
+			for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+				List<Object[]> part = rows.subList(from, Math.min(from + rowsPerStatement, rows.size()));
+				int width = rowTypes.length;
+				Object[] args = new Object[part.size() * width];
+				int[] types = new int[args.length];
+				for (int r = 0; r < part.size(); r++) {
+					System.arraycopy(part.get(r), 0, args, r * width, width);
+					System.arraycopy(rowTypes, 0, types, r * width, width);
+				}
+				jdbcTemplate.update(insert + String.join(", ", Collections.nCopies(part.size(), rowSql)), args, types);
+			}
+		}
+
+		private void saveCheckpoint(long line) {
+			if (report.getCheckpoint() == null) {
+				return;
+			}
+			ImportCheckpoint cp = checkpointRepository.findById(report.getCheckpoint()).orElseGet(() -> {
+				ImportCheckpoint created = new ImportCheckpoint();
+				created.setName(report.getCheckpoint());
+				return created;
+			});
+			cp.setLine(line);
+			cp.setSessionId((current != null && current.status == Status.ACTIVE) ? current.id : null);
+			cp.setUpdatedAt(LocalDateTime.now());
+			checkpointRepository.save(cp);
+		}
+
+		// the writes bypass Hibernate, so its caches have not seen them
+		private void evictCached() {
+			if (touched.isEmpty() && sessionsInBatch == 0) {
+				return;
+			}
+			org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+			for (OpenSession s : touched) {
+				cache.evictEntityData(ChatSession.class, s.id);
+			}
+			cache.evictDefaultQueryRegion();
+		}
+	}
+
+	private static byte[] bytes(UUID id) {
+		if (id == null) {
+			return null;
+		}
+		return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits())
+				.array();
+	}
+
+	private static UUID uuid(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+}
@@ -0,0 +1,97 @@
+package rag_chat_microservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process signal that a session has new messages, for requests parked until
+ * one arrives ({@link MessagePoller}). Appends publish once their transaction has
+ * committed, so a woken reader always finds the row. Appends made by other
+ * instances wake them through the invalidation log (SessionInvalidation) when it
+ * is on; otherwise they are found when the wait runs out.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageNotifier {
+
+	private final MeterRegistry meterRegistry;
+
+	// beyond this many parked requests new ones answer at once instead of waiting
+	@Value("${chat.live.max-waiters:10000}")
+	private int maxWaiters;
+
+	private final Map<UUID, Set<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	@PostConstruct
+	void init() {
+		Gauge.builder("chat.messages.live.waiting", waiting, AtomicInteger::get)
+				.description("Requests parked until their session has a new message").register(meterRegistry);
+	}
+
+	/**
+	 * A signal completed by the next append to the session, or {@code null} when
+	 * too many requests are already waiting. Call before reading, so an append
+	 * committed in between is not missed, and {@link #cancel} once done with it.
+	 */
+	public CompletableFuture<Void> await(UUID sessionId) {
+		if (waiting.incrementAndGet() > maxWaiters) {
+			waiting.decrementAndGet();
+			return null;
+		}
+		CompletableFuture<Void> signal = new CompletableFuture<>();
+		// added under the map's lock, so a concurrent publish either sees it or runs after
+		waiters.compute(sessionId, (k, set) -> {
+			Set<CompletableFuture<Void>> signals = (set != null) ? set : ConcurrentHashMap.newKeySet();
+			signals.add(signal);
+			return signals;
+		});
+		return signal;
+	}
+
+	public void cancel(UUID sessionId, CompletableFuture<Void> signal) {
+		waiters.computeIfPresent(sessionId, (k, set) -> {
+			if (set.remove(signal)) {
+				waiting.decrementAndGet();
+			}
+			return set.isEmpty() ? null : set;
+		});
+	}
+
+	/** Wakes the session's waiters after the current transaction commits, or now without one. */
+	public void publishAfterCommit(UUID sessionId) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			publish(sessionId);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				publish(sessionId);
+			}
+		});
+	}
+
+	public void publish(UUID sessionId) {
+		Set<CompletableFuture<Void>> woken = waiters.remove(sessionId);
+		if (woken == null) {
+			return;
+		}
+		waiting.addAndGet(-woken.size());
+		// readers continue on their own executor, not on the committing thread
+		woken.forEach(signal -> signal.complete(null));
+	}
+}
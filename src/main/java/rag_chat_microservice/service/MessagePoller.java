@@ -0,0 +1,110 @@
+package rag_chat_microservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.dto.MessageCursor;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delta reads of a session's history: the messages after a cursor, optionally
+ * held back until there is at least one. A request with nothing new is parked on
+ * a {@link MessageNotifier} signal and holds no thread; when a message is
+ * appended, or the wait runs out, the read is repeated on a small worker pool and
+ * the response completes. The read is the keyset query the cursor paging uses,
+ * so an idle poll costs one empty index probe and no count.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessagePoller {
+
+	private final MessageService messageService;
+	private final MessageNotifier notifier;
+	private final ShardRouter shardRouter;
+	private final ReadYourWrites readYourWrites;
+
+	@Value("${chat.live.max-wait:PT30S}")
+	private Duration maxWait;
+
+	// workers for the reads of woken requests; they only run the delta query
+	@Value("${chat.live.threads:4}")
+	private int threads;
+
+	private ExecutorService readers;
+
+	@PostConstruct
+	void start() {
+		AtomicInteger n = new AtomicInteger();
+		readers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "live-reader-" + n.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@PreDestroy
+	void stop() {
+		readers.shutdownNow();
+	}
+
+	public Duration maxWait() {
+		return maxWait;
+	}
+
+	/**
+	 * Messages after {@code since}, at most {@code size}. When there are none and
+	 * {@code wait} is positive, completes on the next append to the session or
+	 * after {@code wait} (capped at chat.live.max-wait), whichever comes first.
+	 * Called on the request thread, with its shard and read-your-writes bindings.
+	 */
+	public CompletableFuture<Slice<ChatMessageDto>> poll(UUID sessionId, MessageCursor since, int size,
+			Duration wait) {
+		CompletableFuture<Void> signal = (wait.isZero() || wait.isNegative()) ? null : notifier.await(sessionId);
+		Slice<ChatMessageDto> now;
+		try {
+			now = messageService.getMessageViews(sessionId, since, 0, size);
+		} catch (RuntimeException e) {
+			// registered before the read (see MessageNotifier#await): a failed read must not leave it parked
+			if (signal != null) {
+				notifier.cancel(sessionId, signal);
+			}
+			throw e;
+		}
+		if (signal == null || now.hasContent()) {
+			if (signal != null) {
+				notifier.cancel(sessionId, signal);
+			}
+			return CompletableFuture.completedFuture(now);
+		}
+		long millis = Math.min(wait.toMillis(), maxWait.toMillis());
+		// on timeout the read runs once more: it catches appends made on other instances
+		return signal.completeOnTimeout(null, millis, TimeUnit.MILLISECONDS)
+				.whenComplete((v, e) -> notifier.cancel(sessionId, signal))
+				.thenApplyAsync(v -> read(sessionId, since, size), readers);
+	}
+
+	// worker threads carry no request bindings: route like the request would
+	private Slice<ChatMessageDto> read(UUID sessionId, MessageCursor since, int size) {
+		shardRouter.bindSession(sessionId);
+		readYourWrites.bind(List.of(ReadYourWrites.sessionKey(sessionId)));
+		try {
+			return messageService.getMessageViews(sessionId, since, 0, size);
+		} finally {
+			readYourWrites.unbind();
+			shardRouter.unbind();
+		}
+	}
+}
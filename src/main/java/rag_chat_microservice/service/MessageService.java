@@ -2,10 +2,17 @@ package rag_chat_microservice.service;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.dto.ChatMessageSummaryDto;
+import rag_chat_microservice.dto.MessageCursor;
 import rag_chat_microservice.model.ChatMessage;
 import rag_chat_microservice.model.ChatMessage.Sender;
 import rag_chat_microservice.model.ChatSession;
+import java.util.Collection;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface MessageService {
 
@@ -13,11 +20,37 @@ public interface MessageService {
 
 	ChatMessage getAIResponse(UUID sessionId, String userMessage);
 
+	/**
+	 * Same as {@link #getAIResponse} for a USER message the caller has already
+	 * stored with {@link #addMessage}, passing the reply to {@code onChunk} while it
+	 * is generated; the stored AI message is returned once it is complete.
+	 */
+	ChatMessage streamAIResponse(UUID sessionId, ChatMessage userMessage, Consumer<String> onChunk);
+
 	Page<ChatMessage> getMessagesBySession(ChatSession session, Pageable pageable);
 
+	/**
+	 * Page of a session's history in seq order. Reads after
+	 * {@code after} when given, otherwise from offset {@code page * size}.
+	 */
+	Slice<ChatMessageDto> getMessageViews(UUID sessionId, MessageCursor after, int page, int size);
+
+	/** Same paging as {@link #getMessageViews}, returning previews instead of full bodies. */
+	Slice<ChatMessageSummaryDto> getMessageSummaries(UUID sessionId, MessageCursor after, int page, int size);
+
+	ChatMessageDto getMessageView(UUID sessionId, UUID messageId);
+
 	ChatMessage getMessageById(UUID messageId);
 
 	ChatMessage updateMessage(UUID sessionId, UUID messageId, String newContent);
 
 	void deleteMessage(UUID sessionId, UUID messageId);
+
+	/**
+	 * {@link #deleteMessage} for several messages of one session, with a single
+	 * delete statement and recount. Ids not found in the session are skipped.
+	 *
+	 * @return the ids that were deleted
+	 */
+	Set<UUID> deleteMessages(UUID sessionId, Collection<UUID> messageIds);
 }
@@ -2,23 +2,38 @@ package rag_chat_microservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.dto.ChatMessageSummaryDto;
+import rag_chat_microservice.dto.MessageCursor;
 import rag_chat_microservice.model.ChatMessage;
 import rag_chat_microservice.model.ChatMessage.Sender;
 import rag_chat_microservice.model.ChatSession;
 import rag_chat_microservice.repository.MessageRepository;
 import rag_chat_microservice.repository.SessionRepository;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.util.Formatter;
+import rag_chat_microservice.tiering.ColdMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -28,6 +43,15 @@ public class MessageServiceImpl implements MessageService {
 	private final MessageRepository messageRepository;
 	private final SessionRepository sessionRepository;
 	private final AIService aiService;
+	private final ContextService contextService;
+	private final SequenceService sequenceService;
+	private final ColdHistoryService coldHistory;
+	private final TransactionTemplate transactionTemplate;
+	// present only with chat.write-behind.enabled=true
+	private final ObjectProvider<MessageWriteBuffer> writeBuffer;
+
+	// senders that open a new turn; AI replies up to the next one belong to the previous turn
+	private static final List<Sender> TURN_STARTS = List.of(Sender.USER, Sender.SYSTEM);
 
 	/**
 	 * Adds a message. USER messages are idempotent per (sessionId, normalized
@@ -37,15 +61,17 @@ public class MessageServiceImpl implements MessageService {
 	 */
 	@Override
 	public ChatMessage addMessage(UUID sessionId, Sender sender, String content, String context) {
-		ChatSession chatSession = sessionRepository.findById(sessionId)
-				.orElseThrow(() -> new IllegalArgumentException("Session not found with ID: " + sessionId));
-
 		String normalized = normalize(content);
-		String hash = sha256(normalized);
+		byte[] hash = ChatMessage.hashOf(normalized);
+
+		// tiered history comes back before the duplicate lookup below reads it
+		if (coldHistory.isCold(sessionId)) {
+			coldHistory.thaw(sessionId);
+		}
 
 		if (sender == Sender.USER) {
-			Optional<ChatMessage> existing = messageRepository.findByChatSession_IdAndSenderAndContentHash(sessionId,
-					Sender.USER, hash);
+			Optional<ChatMessage> existing = findQueued(sessionId, hash).or(() -> messageRepository
+					.findFirstByChatSession_IdAndSenderAndContentHashOrderBySeqAsc(sessionId, Sender.USER, hash));
 			if (existing.isPresent()) {
 				log.debug("Reusing existing USER message {} for identical content in session {}",
 						existing.get().getId(), sessionId);
@@ -53,11 +79,11 @@ public class MessageServiceImpl implements MessageService {
 			}
 		}
 
-		ChatMessage msg = ChatMessage.builder().chatSession(chatSession).sender(sender).deleted(false)
-				.content(normalized) // entity @PrePersist will recompute hash too; harmless
-				.context(context).build();
+		ChatMessage msg = ChatMessage.builder().sender(sender).deleted(false)
+				.content(normalized).contentHash(hash) // entity @PrePersist will recompute hash too; harmless
+				.contextBlob(contextService.intern(context)).build();
 
-		return messageRepository.save(msg);
+		return append(sessionId, msg);
 	}
 
 	/**
@@ -69,50 +95,92 @@ public class MessageServiceImpl implements MessageService {
 	 */
 	@Override
 	public ChatMessage getAIResponse(UUID sessionId, String userMessage) {
-		log.info("Generating AI response for session: {}", sessionId);
-
-		ChatSession chatSession = sessionRepository.findById(sessionId)
-				.orElseThrow(() -> new IllegalArgumentException("Session not found with ID: " + sessionId));
-
 		// 1) Upsert USER message (prevents duplicate question rows)
 		ChatMessage userMsg = addMessage(sessionId, Sender.USER, userMessage, null);
+		return respond(sessionId, userMsg, aiService::getAIResponse);
+	}
+
+	@Override
+	public ChatMessage streamAIResponse(UUID sessionId, ChatMessage userMessage, Consumer<String> onChunk) {
+		return respond(sessionId, userMessage, prompt -> aiService.streamAIResponse(prompt, onChunk));
+	}
+
+	// steps 2-4 of the flow above for the stored userMsg; generate turns the prompt into the reply text
+	private ChatMessage respond(UUID sessionId, ChatMessage userMsg, Function<String, String> generate) {
+		log.info("Generating AI response for session: {}", sessionId);
 
 		// 2) Fetch conversation history (ordered)
-		List<ChatMessage> history = messageRepository.findByChatSession_IdOrderByCreatedAtAsc(sessionId);
+		List<ChatMessage> history = history(sessionId);
 
 		// 3) Build prompt
-		String prompt = history.stream().map(m -> {
-			StringBuilder sb = new StringBuilder();
-			sb.append(m.getSender()).append(": ").append(m.getContent());
-			if (m.getContext() != null && !m.getContext().isEmpty()) {
-				sb.append(" [Context: ").append(m.getContext()).append("]");
-			}
-			return sb.toString();
-		}).collect(Collectors.joining("\n"));
+		String prompt = buildPrompt(history);
 
 		// 4) Call AI
 		String aiResponse;
 		try {
 			log.debug("Calling AI service with prompt length {}", prompt.length());
-			aiResponse = aiService.getAIResponse(prompt);
+			aiResponse = generate.apply(prompt);
 		} catch (Exception e) {
 			log.error("AI service error for session {}", sessionId, e);
 			aiResponse = "[AI ERROR: " + e.getMessage() + "]";
 		}
 
 		// 5) Save AI reply (always append)
-		ChatMessage aiMsg = ChatMessage.builder().chatSession(chatSession).sender(Sender.AI) // or Sender.ASSISTANT if
-																								// you prefer
-				.content(aiResponse).build();
+		ChatMessage aiMsg = ChatMessage.builder().sender(Sender.AI) // or Sender.ASSISTANT if you prefer
+				.replyTo(userMsg.getId()).content(aiResponse).build();
 
-		ChatMessage saved = messageRepository.save(aiMsg);
+		ChatMessage saved = append(sessionId, aiMsg);
 		log.info("AI response saved for session: {}", sessionId);
 		return saved;
 	}
 
 	@Override
 	public Page<ChatMessage> getMessagesBySession(ChatSession session, Pageable pageable) {
-		return messageRepository.findByChatSessionOrderByCreatedAtAsc(session, pageable);
+		return messageRepository.findByChatSessionOrderBySeqAsc(session, pageable);
+	}
+
+	@Override
+	@org.springframework.transaction.annotation.Transactional(readOnly = true)
+	public Slice<ChatMessageDto> getMessageViews(UUID sessionId, MessageCursor after, int page, int size) {
+		Slice<ChatMessageDto> stored = (after == null)
+				? messageRepository.findViews(sessionId, PageRequest.of(page, size))
+				: messageRepository.findViewsAfter(sessionId, after.seq(), PageRequest.of(0, size));
+		if (stored.hasContent() || !mayBeCold(sessionId, after)) {
+			return stored;
+		}
+		// nothing in chat_messages: the session may be tiered to a cold segment
+		return coldHistory.coldMessages(sessionId)
+				.map(cold -> coldSlice(cold, after, page, size, m -> m.toDto(sessionId))).orElse(stored);
+	}
+
+	@Override
+	@org.springframework.transaction.annotation.Transactional(readOnly = true)
+	public Slice<ChatMessageSummaryDto> getMessageSummaries(UUID sessionId, MessageCursor after, int page, int size) {
+		Slice<ChatMessageSummaryDto> stored = (after == null)
+				? messageRepository.findSummaries(sessionId, PageRequest.of(page, size))
+				: messageRepository.findSummariesAfter(sessionId, after.seq(), PageRequest.of(0, size));
+		if (stored.hasContent() || !mayBeCold(sessionId, after)) {
+			return stored;
+		}
+		return coldHistory.coldMessages(sessionId)
+				.map(cold -> coldSlice(cold, after, page, size, m -> m.toSummary(sessionId))).orElse(stored);
+	}
+
+	// An empty cursor read is the usual answer to a delta or poll that is caught up; it
+	// goes to the segment only if the session row (second-level cached) says it is tiered.
+	// A first page looks it up directly, as an empty session is rare there
+	private boolean mayBeCold(UUID sessionId, MessageCursor after) {
+		return after == null || coldHistory.isCold(sessionId);
+	}
+
+	@Override
+	@org.springframework.transaction.annotation.Transactional(readOnly = true)
+	public ChatMessageDto getMessageView(UUID sessionId, UUID messageId) {
+		return messageRepository.findView(sessionId, messageId)
+				.or(() -> coldHistory.coldMessages(sessionId).flatMap(cold -> cold.stream()
+						.filter(m -> m.id().equals(messageId)).findFirst().map(m -> m.toDto(sessionId))))
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+						"Message " + messageId + " not found in session " + sessionId));
 	}
 
 	@Override
@@ -122,28 +190,65 @@ public class MessageServiceImpl implements MessageService {
 	}
 
 	@Override
+	@org.springframework.transaction.annotation.Transactional
 	public void deleteMessage(UUID sessionId, UUID messageId) {
+		// the session lock first, as appends take it: the recount below would otherwise
+		// wait for it while holding the deleted rows' locks an append may be waiting on
+		sessionRepository.findByIdForUpdate(sessionId).orElseThrow(() -> new ResponseStatusException(
+				HttpStatus.NOT_FOUND, "Session " + sessionId + " not found"));
 		ChatMessage toDelete = loadInSession(sessionId, messageId);
 
-		// If it's a USER message, delete the immediate next AI reply (your existing
-		// rule)
+		// If it's a USER message, delete its AI reply (your existing rule): the one
+		// right after it, if it answers this message or is unlinked. Replies to later
+		// repeats of the same (deduplicated) question stay with their turns.
 		if (toDelete.getSender() == Sender.USER) {
-			List<ChatMessage> messages = messageRepository
-					.findByChatSessionOrderByCreatedAtAsc(toDelete.getChatSession());
-			int idx = messages.indexOf(toDelete);
-			if (idx + 1 < messages.size()) {
-				ChatMessage next = messages.get(idx + 1);
-				if (next.getSender() == Sender.AI) {
-					messageRepository.deleteById(next.getId());
-				}
-			}
+			Long seq = toDelete.getSeq();
+			// rows written before sequencing (no seq until the backfill) only match by reply_to
+			long from = seq != null ? seq : 0L;
+			long to = seq != null ? seq + 2 : 0L;
+			messageRepository.deleteReplies(sessionId, messageId, Sender.AI, from, to);
 		}
 
 		messageRepository.deleteById(toDelete.getId());
+		sequenceService.recount(sessionId);
 	}
 
 	@Override
 	@org.springframework.transaction.annotation.Transactional
+	public Set<UUID> deleteMessages(UUID sessionId, Collection<UUID> messageIds) {
+		// session lock before any delete, as in deleteMessage
+		if (sessionRepository.findByIdForUpdate(sessionId).isEmpty()) {
+			return Set.of();
+		}
+		if (coldHistory.isCold(sessionId)) {
+			coldHistory.thaw(sessionId);
+		}
+		List<ChatMessage> found = messageRepository.findByChatSession_IdAndIdIn(sessionId, messageIds);
+		if (found.isEmpty()) {
+			return Set.of();
+		}
+		// same reply rule as deleteMessage, one statement per USER message
+		for (ChatMessage m : found) {
+			if (m.getSender() == Sender.USER) {
+				Long seq = m.getSeq();
+				messageRepository.deleteReplies(sessionId, m.getId(), Sender.AI, seq != null ? seq : 0L,
+						seq != null ? seq + 2 : 0L);
+			}
+		}
+		Set<UUID> ids = found.stream().map(ChatMessage::getId).collect(Collectors.toSet());
+		messageRepository.deleteAllByIdInBatch(ids);
+		sequenceService.recount(sessionId);
+		return ids;
+	}
+
+	/**
+	 * Edits a USER message and regenerates its reply. The reply is generated before
+	 * any lock is taken, from the history as it will read after the edit; the edit,
+	 * the stale replies' removal and the new reply are then applied in one
+	 * transaction under the session lock. If the message changed in between, the
+	 * edit is refused with 409 rather than applied over the other one.
+	 */
+	@Override
 	public ChatMessage updateMessage(UUID sessionId, UUID messageId, String newContent) {
 		// 0) Ensure (sessionId, messageId) pair is valid
 		ChatMessage message = loadInSession(sessionId, messageId); // uses repo: findByIdAndChatSession_Id
@@ -155,47 +260,27 @@ public class MessageServiceImpl implements MessageService {
 
 		// Normalize input and short-circuit if unchanged
 		String normalized = (newContent == null) ? "" : newContent.trim().replaceAll("\\s+", " ");
-		if (normalized.equals(message.getContent())) {
+		String original = message.getContent();
+		if (normalized.equals(original)) {
 			log.info("Content unchanged for message {}; skipping regeneration", messageId);
 			return message;
 		}
 
-		// 1) Update the USER message (entity @PreUpdate can recompute hash if present)
-		message.setContent(normalized);
-		ChatMessage updatedUser = messageRepository.save(message);
-
-		// 2) Remove ALL subsequent AI replies after this USER message, until next
-		// USER/SYSTEM message
-		List<ChatMessage> ordered = messageRepository
-				.findByChatSessionOrderByCreatedAtAsc(updatedUser.getChatSession());
-
-		int idx = ordered.indexOf(updatedUser);
-		if (idx >= 0) {
-			for (int i = idx + 1; i < ordered.size(); i++) {
-				ChatMessage next = ordered.get(i);
-				// stop sweep when the next turn starts
-				if (next.getSender() == ChatMessage.Sender.USER || next.getSender() == ChatMessage.Sender.SYSTEM) {
-					break;
-				}
-				if (next.getSender() == ChatMessage.Sender.AI) {
-					// hard delete; use soft-delete if your model has a flag
-					messageRepository.deleteById(next.getId());
-					log.debug("Deleted stale AI reply {} after user message {}", next.getId(), messageId);
-				}
+		// 1) Generate a fresh AI reply with no lock held: the prompt is the current
+		// history with this message edited and its stale replies left out
+		long[] range = replyRange(sessionId, message.getSeq());
+		List<ChatMessage> history = new ArrayList<>();
+		for (ChatMessage m : messageRepository.findByChatSession_IdOrderBySeqAsc(sessionId)) {
+			if (m.getId().equals(messageId)) {
+				// a detached copy; the stored row changes only in step 2
+				history.add(ChatMessage.builder().sender(Sender.USER).content(normalized)
+						.contextBlob(m.getContextBlob()).legacyContext(m.getLegacyContext()).build());
+			} else if (!isReply(m, messageId, range)) {
+				history.add(m);
 			}
 		}
 
-		// 3) Rebuild prompt from current history & generate a fresh AI reply
-		List<ChatMessage> history = messageRepository.findByChatSession_IdOrderByCreatedAtAsc(sessionId);
-
-		String prompt = history.stream().map(m -> {
-			StringBuilder sb = new StringBuilder();
-			sb.append(m.getSender()).append(": ").append(m.getContent());
-			if (m.getContext() != null && !m.getContext().isEmpty()) {
-				sb.append(" [Context: ").append(m.getContext()).append("]");
-			}
-			return sb.toString();
-		}).collect(java.util.stream.Collectors.joining("\n"));
+		String prompt = buildPrompt(history);
 
 		String aiResponse;
 		try {
@@ -204,11 +289,38 @@ public class MessageServiceImpl implements MessageService {
 			log.error("AI service error during regeneration for message {}", messageId, e);
 			aiResponse = "[AI ERROR: " + e.getMessage() + "]";
 		}
-
-		ChatMessage newAi = ChatMessage.builder().chatSession(updatedUser.getChatSession())
-				.sender(ChatMessage.Sender.AI).content(aiResponse).deleted(false).build();
-
-		messageRepository.save(newAi);
+		String reply = aiResponse;
+
+		// 2) Apply under the session lock
+		ChatMessage updatedUser = transactionTemplate.execute(status -> {
+			sessionRepository.findByIdForUpdate(sessionId).orElseThrow(() -> new ResponseStatusException(
+					HttpStatus.NOT_FOUND, "Session " + sessionId + " not found"));
+			ChatMessage locked = loadInSession(sessionId, messageId);
+			if (!original.equals(locked.getContent())) {
+				throw new ResponseStatusException(HttpStatus.CONFLICT,
+						"Message " + messageId + " was changed while its reply was generated");
+			}
+			locked.setContent(normalized);
+			ChatMessage saved = messageRepository.save(locked);
+
+			// Remove the AI replies to this USER message: linked by reply_to, or for
+			// unlinked rows everything up to the next USER/SYSTEM message. The range
+			// is read again, as a turn may have started since step 1.
+			long[] current = replyRange(sessionId, saved.getSeq());
+			// hard delete; use soft-delete if your model has a flag
+			int removed = messageRepository.deleteReplies(sessionId, messageId, Sender.AI, current[0], current[1]);
+			log.debug("Deleted {} stale AI replies after user message {}", removed, messageId);
+
+			ChatMessage newAi = ChatMessage.builder().sender(ChatMessage.Sender.AI).replyTo(saved.getId())
+					.content(reply).deleted(false).build();
+
+			// always the direct path: this transaction's reply delete holds range locks a
+			// write-behind flush for the same session would wait on
+			sequenceService.append(sessionId, newAi);
+			// the count and last message moved with the deleted replies
+			sequenceService.recount(sessionId);
+			return saved;
+		});
 		log.info("Regenerated AI reply after editing user message {}", messageId);
 
 		return updatedUser;
@@ -216,29 +328,120 @@ public class MessageServiceImpl implements MessageService {
 
 	// ---- helpers ----
 
+	/**
+	 * The exclusive seq range holding a USER message's replies: up to the next
+	 * USER/SYSTEM message. Rows written before sequencing (no seq until the backfill)
+	 * only match by reply_to.
+	 */
+	private long[] replyRange(UUID sessionId, Long seq) {
+		if (seq == null) {
+			return new long[]{0L, 0L};
+		}
+		Long nextTurn = messageRepository.findNextTurnSeq(sessionId, seq, TURN_STARTS);
+		return new long[]{seq, nextTurn != null ? nextTurn : Long.MAX_VALUE};
+	}
+
+	// the rows MessageRepository.deleteReplies removes for this range
+	private static boolean isReply(ChatMessage m, UUID messageId, long[] range) {
+		if (m.getSender() != Sender.AI || (m.getReplyTo() != null && !m.getReplyTo().equals(messageId))) {
+			return false;
+		}
+		if (m.getSeq() == null) {
+			return m.getReplyTo() != null;
+		}
+		return m.getSeq() > range[0] && m.getSeq() < range[1];
+	}
+
+	private ChatMessage append(UUID sessionId, ChatMessage message) {
+		MessageWriteBuffer buffer = writeBuffer.getIfAvailable();
+		return (buffer != null) ? buffer.append(sessionId, message) : sequenceService.append(sessionId, message);
+	}
+
+	private Optional<ChatMessage> findQueued(UUID sessionId, byte[] hash) {
+		MessageWriteBuffer buffer = writeBuffer.getIfAvailable();
+		if (buffer == null) {
+			return Optional.empty();
+		}
+		return buffer.pending(sessionId).stream()
+				.filter(m -> m.getSender() == Sender.USER && Arrays.equals(m.getContentHash(), hash)).findFirst();
+	}
+
+	/** Stored history in seq order, followed by messages still queued for write-behind. */
+	private List<ChatMessage> history(UUID sessionId) {
+		MessageWriteBuffer buffer = writeBuffer.getIfAvailable();
+		// snapshot the queue first: a message committed in between then shows up in
+		// the stored rows instead of falling through the gap
+		List<ChatMessage> queued = (buffer != null) ? buffer.pending(sessionId) : List.of();
+		List<ChatMessage> stored = messageRepository.findByChatSession_IdOrderBySeqAsc(sessionId);
+		if (queued.isEmpty()) {
+			return stored;
+		}
+		Set<UUID> storedIds = stored.stream().map(ChatMessage::getId).collect(Collectors.toSet());
+		List<ChatMessage> merged = new ArrayList<>(stored);
+		queued.stream().filter(m -> !storedIds.contains(m.getId())).forEach(merged::add);
+		return merged;
+	}
+
 	private ChatMessage loadInSession(UUID sessionId, UUID messageId) {
-		return messageRepository.findByIdAndChatSession_Id(messageId, sessionId)
-				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+		Optional<ChatMessage> found = messageRepository.findByIdAndChatSession_Id(messageId, sessionId);
+		if (found.isEmpty()) {
+			// a tiered session's rows come back on its first edit; the session lock taken
+			// here is the one the append and recount of this transaction take anyway
+			coldHistory.thaw(sessionId);
+			found = messageRepository.findByIdAndChatSession_Id(messageId, sessionId);
+		}
+		return found.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
 						"Message " + messageId + " not found in session " + sessionId));
 	}
 
-	private String normalize(String s) {
-		return (s == null) ? "" : s.trim().replaceAll("\\s+", " ");
+	/**
+	 * Renders the history as "SENDER: content" lines. Each distinct context is
+	 * included once, where it first appears; later messages carrying the same
+	 * context only reference it by number.
+	 */
+	private String buildPrompt(List<ChatMessage> history) {
+		Map<String, Integer> contextNumbers = new HashMap<>();
+		StringBuilder sb = new StringBuilder();
+		for (ChatMessage m : history) {
+			if (sb.length() > 0) {
+				sb.append('\n');
+			}
+			sb.append(m.getSender()).append(": ").append(m.getContent());
+			String key = m.getContextKey();
+			if (key == null) {
+				continue;
+			}
+			Integer n = contextNumbers.get(key);
+			if (n == null) {
+				n = contextNumbers.size() + 1;
+				contextNumbers.put(key, n);
+				sb.append(" [Context #").append(n).append(": ").append(m.getContext()).append("]");
+			} else {
+				sb.append(" [Context #").append(n).append("]");
+			}
+		}
+		return sb.toString();
 	}
 
-	private String sha256(String s) {
-		try {
-			MessageDigest md = MessageDigest.getInstance("SHA-256");
-			byte[] bytes = md.digest(s.getBytes(StandardCharsets.UTF_8));
-			StringBuilder sb = new StringBuilder(64);
-			try (Formatter fmt = new Formatter(sb)) {
-				for (byte b : bytes)
-					fmt.format("%02x", b);
-			}
-			return sb.toString();
-		} catch (Exception e) {
-			throw new IllegalStateException("Failed to compute SHA-256 hash", e);
+	/** A page of a cold session's history, with the same paging rules as the stored queries. */
+	private static <T> Slice<T> coldSlice(List<ColdMessage> cold, MessageCursor after, int page, int size,
+			Function<ColdMessage, T> view) {
+		Stream<ColdMessage> from;
+		Pageable pageable;
+		if (after == null) {
+			from = cold.stream().skip((long) page * size);
+			pageable = PageRequest.of(page, size);
+		} else {
+			from = cold.stream().filter(m -> m.seq() != null && m.seq() > after.seq());
+			pageable = PageRequest.of(0, size);
 		}
+		List<ColdMessage> window = from.limit(size + 1L).toList();
+		List<T> content = window.stream().limit(size).map(view).toList();
+		return new SliceImpl<>(content, pageable, window.size() > size);
+	}
+
+	private String normalize(String s) {
+		return (s == null) ? "" : s.trim().replaceAll("\\s+", " ");
 	}
 
 }
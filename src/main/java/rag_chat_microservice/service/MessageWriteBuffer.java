@@ -0,0 +1,306 @@
+package rag_chat_microservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.model.UuidV7Generator;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.sharding.ShardContext;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Group-commit write path for new messages. Inserts are queued and a single
+ * flusher thread writes them in one transaction per batch (JDBC-batched via
+ * hibernate.jdbc.batch_size), so a burst of N messages costs one commit instead
+ * of N. Seqs are allocated at flush time with one session row lock per session
+ * in the batch.
+ * <p>
+ * With {@code ack=flush} callers block until their batch has committed; with
+ * {@code ack=enqueue} they return as soon as the message is queued, and a crash
+ * loses whatever was still in the queue.
+ * <p>
+ * The queued instances are never persisted themselves: each attempt writes fresh
+ * copies, so a batch that rolls back leaves no session, seq or derived columns
+ * behind on them for the per-session retry, or for readers of {@link #pending}.
+ * Callers acknowledged at flush get the committed copy.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "chat.write-behind.enabled", havingValue = "true")
+public class MessageWriteBuffer {
+
+	public enum AckMode { FLUSH, ENQUEUE }
+
+	private final EntityManager entityManager;
+	private final TransactionTemplate transactionTemplate;
+	private final SessionRepository sessionRepository;
+	private final MeterRegistry meterRegistry;
+	private final ShardRouter shardRouter;
+	private final ColdHistoryService coldHistory;
+	private final MessageNotifier notifier;
+
+	@Value("${chat.write-behind.ack:flush}")
+	private String ack;
+
+	@Value("${chat.write-behind.batch-size:500}")
+	private int batchSize;
+
+	@Value("${chat.write-behind.max-delay-ms:10}")
+	private long maxDelayMs;
+
+	@Value("${chat.write-behind.capacity:50000}")
+	private int capacity;
+
+	private AckMode ackMode;
+	private BlockingQueue<Pending> queue;
+	// queued-but-uncommitted messages per session, for reads that must see them
+	private final Map<UUID, List<ChatMessage>> pendingBySession = new ConcurrentHashMap<>();
+	private Thread flusher;
+	private volatile boolean running = true;
+
+	private Timer flushTimer;
+	private DistributionSummary batchSizes;
+	private Counter written;
+	private Counter failed;
+
+	private record Pending(UUID sessionId, ChatMessage message, CompletableFuture<ChatMessage> done) {
+	}
+
+	@PostConstruct
+	void start() {
+		ackMode = AckMode.valueOf(ack.trim().toUpperCase());
+		queue = new LinkedBlockingQueue<>(capacity);
+
+		flushTimer = Timer.builder("chat.messages.write_behind.flush")
+				.description("Time to write and commit one batch").register(meterRegistry);
+		batchSizes = DistributionSummary.builder("chat.messages.write_behind.batch_size")
+				.description("Messages per committed batch").register(meterRegistry);
+		written = Counter.builder("chat.messages.write_behind.messages").tag("outcome", "written")
+				.register(meterRegistry);
+		failed = Counter.builder("chat.messages.write_behind.messages").tag("outcome", "failed")
+				.register(meterRegistry);
+		Gauge.builder("chat.messages.write_behind.queued", queue, BlockingQueue::size).register(meterRegistry);
+
+		flusher = new Thread(this::run, "message-write-behind");
+		flusher.setDaemon(true);
+		flusher.start();
+		log.info("Message write-behind enabled: ack={}, batch-size={}, max-delay={}ms", ackMode, batchSize,
+				maxDelayMs);
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+		// no interrupt: an interrupted JDBC call can close the driver's file channel
+		// (H2) or the socket; the flusher polls with a timeout and drains on its own
+		running = false;
+		flusher.join(TimeUnit.SECONDS.toMillis(30));
+	}
+
+	/**
+	 * Queues a new message; its id is assigned now, its seq when the batch commits.
+	 * Returns once the message is durable or merely queued, depending on the ack mode.
+	 */
+	public ChatMessage append(UUID sessionId, ChatMessage message) {
+		// with ack=enqueue nobody would see a flush error, so check up front
+		// (findById rather than existsById: it is answered by the second-level cache)
+		if (ackMode == AckMode.ENQUEUE && sessionRepository.findById(sessionId).isEmpty()) {
+			throw new IllegalArgumentException("Session not found with ID: " + sessionId);
+		}
+		if (message.getId() == null) {
+			message.setId(UuidV7Generator.next());
+		}
+		Pending pending = new Pending(sessionId, message, new CompletableFuture<>());
+		pendingBySession.computeIfAbsent(sessionId, k -> new CopyOnWriteArrayList<>()).add(message);
+		boolean queued;
+		try {
+			queued = running && queue.offer(pending, maxDelayMs * 10, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			queued = false;
+		}
+		if (!queued) {
+			forget(pending);
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Message write buffer is full");
+		}
+		if (ackMode == AckMode.ENQUEUE) {
+			return message;
+		}
+		try {
+			return pending.done().join();
+		} catch (CompletionException e) {
+			throw (e.getCause() instanceof RuntimeException re) ? re : e;
+		}
+	}
+
+	/** Messages of the session that are queued but not yet committed, in append order. */
+	public List<ChatMessage> pending(UUID sessionId) {
+		List<ChatMessage> list = pendingBySession.get(sessionId);
+		return (list == null) ? List.of() : List.copyOf(list);
+	}
+
+	private void run() {
+		List<Pending> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				// collect until the batch is full or the oldest entry has waited max-delay
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+				while (batch.size() < batchSize) {
+					queue.drainTo(batch, batchSize - batch.size());
+					long wait = deadline - System.nanoTime();
+					if (batch.size() >= batchSize || wait <= 0) {
+						break;
+					}
+					Pending next = queue.poll(wait, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				// treat as shutdown: write what was collected, then drain the rest
+				running = false;
+			}
+			if (!batch.isEmpty()) {
+				flush(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private void flush(List<Pending> batch) {
+		if (!shardRouter.isEnabled()) {
+			flushShard(batch);
+			return;
+		}
+		// one transaction per shard; the flusher is bound to each in turn
+		Map<Integer, List<Pending>> byShard = new LinkedHashMap<>();
+		for (Pending p : batch) {
+			byShard.computeIfAbsent(shardRouter.forSession(p.sessionId()).shard(), k -> new ArrayList<>()).add(p);
+		}
+		byShard.forEach((shard, group) -> ShardContext.run(shard, () -> flushShard(group)));
+	}
+
+	private void flushShard(List<Pending> batch) {
+		Map<UUID, List<Pending>> bySession = new LinkedHashMap<>();
+		for (Pending p : batch) {
+			bySession.computeIfAbsent(p.sessionId(), k -> new ArrayList<>()).add(p);
+		}
+		try {
+			complete(batch, flushTimer.record(() -> write(bySession)), null);
+		} catch (RuntimeException e) {
+			// one bad session (e.g. deleted meanwhile) must not fail the others
+			log.warn("Batch of {} messages failed ({}); retrying per session", batch.size(), e.toString());
+			for (List<Pending> group : bySession.values()) {
+				try {
+					complete(group, flushTimer.record(() -> write(Map.of(group.get(0).sessionId(), group))), null);
+				} catch (RuntimeException groupError) {
+					log.error("Dropping {} queued messages for session {}", group.size(), group.get(0).sessionId(),
+							groupError);
+					complete(group, Map.of(), groupError);
+				}
+			}
+		}
+	}
+
+	/** Writes the messages in one transaction; returns the committed copy of each. */
+	private Map<Pending, ChatMessage> write(Map<UUID, List<Pending>> bySession) {
+		Map<Pending, ChatMessage> written = new IdentityHashMap<>();
+		transactionTemplate.executeWithoutResult(status -> {
+			// lock every session up front with one query: a lookup between persists
+			// would auto-flush the inserts queued so far and defeat the batching
+			List<ChatSession> sessions = sessionRepository.findAllByIdForUpdate(bySession.keySet());
+			if (sessions.size() != bySession.size()) {
+				Set<UUID> found = sessions.stream().map(ChatSession::getId).collect(Collectors.toSet());
+				UUID missing = bySession.keySet().stream().filter(id -> !found.contains(id)).findFirst().orElseThrow();
+				throw new IllegalArgumentException("Session not found with ID: " + missing);
+			}
+			sessions.forEach(shardRouter::checkFence);
+			// tiered sessions get their history back before anything is appended to it;
+			// done up front, as a thaw flushes the persistence context
+			sessions.forEach(coldHistory::thawLocked);
+			for (ChatSession session : sessions) {
+				long seq = session.getLastSeq();
+				for (Pending p : bySession.get(session.getId())) {
+					ChatMessage m = copy(p.message());
+					written.put(p, m);
+					m.setChatSession(session);
+					m.setSeq(++seq);
+					entityManager.persist(m);
+					session.recordMessage(m);
+				}
+				session.setLastSeq(seq);
+			}
+			entityManager.flush();
+			entityManager.clear();
+		});
+		bySession.keySet().forEach(notifier::publish);
+		batchSizes.record(written.size());
+		return written;
+	}
+
+	// what the caller set; session, seq and the derived columns are filled in by write
+	private static ChatMessage copy(ChatMessage m) {
+		return ChatMessage.builder().id(m.getId()).replyTo(m.getReplyTo()).sender(m.getSender())
+				.content(m.getContent()).contextBlob(m.getContextBlob()).deleted(m.isDeleted()).build();
+	}
+
+	private void complete(List<Pending> group, Map<Pending, ChatMessage> committed, RuntimeException error) {
+		for (Pending p : group) {
+			forget(p);
+			if (error == null) {
+				p.done().complete(committed.get(p));
+			} else {
+				p.done().completeExceptionally(error);
+			}
+		}
+		if (error == null) {
+			written.increment(group.size());
+		} else {
+			failed.increment(group.size());
+		}
+	}
+
+	private void forget(Pending p) {
+		pendingBySession.computeIfPresent(p.sessionId(), (k, list) -> {
+			list.removeIf(m -> m == p.message());
+			return list.isEmpty() ? null : list;
+		});
+	}
+}
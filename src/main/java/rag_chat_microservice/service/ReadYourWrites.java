@@ -0,0 +1,78 @@
+package rag_chat_microservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read-your-writes window for replica routing. Writes record the chat sessions
+ * and users they touched; while a key is in the window, read-only transactions
+ * of requests about it stay on the primary instead of a replica that may lag.
+ * The keys of the current request are bound to its thread by the web layer.
+ * Without a replica configured nothing reads the marks.
+ * <p>
+ * The window is kept in this instance's memory only. With several instances
+ * behind a load balancer, a read that lands on another instance than the write
+ * does not see the mark and may go to the replica, so the guarantee holds only
+ * for a single instance or a balancer that keeps a client (or a session id) on
+ * one instance for at least the window.
+ */
+@Component
+public class ReadYourWrites {
+
+	private static final ThreadLocal<List<String>> CURRENT = new ThreadLocal<>();
+
+	private final Cache<String, Boolean> recent;
+
+	public ReadYourWrites(@Value("${chat.datasource.sticky-window:PT5S}") Duration window,
+			@Value("${chat.datasource.sticky-max-keys:100000}") long maxKeys) {
+		this.recent = Caffeine.newBuilder().expireAfterWrite(window).maximumSize(maxKeys).build();
+	}
+
+	public static String sessionKey(UUID sessionId) {
+		return "session:" + sessionId;
+	}
+
+	public static String userKey(String userId) {
+		return "user:" + userId;
+	}
+
+	/** Keys the current request reads or writes; cleared with {@link #unbind()}. */
+	public void bind(List<String> keys) {
+		CURRENT.set(keys);
+	}
+
+	public void unbind() {
+		CURRENT.remove();
+	}
+
+	public void markWritten(String key) {
+		recent.put(key, Boolean.TRUE);
+	}
+
+	public void markCurrentWritten() {
+		List<String> keys = CURRENT.get();
+		if (keys != null) {
+			keys.forEach(this::markWritten);
+		}
+	}
+
+	/** True when any key of the current request was written within the window. */
+	public boolean isCurrentSticky() {
+		List<String> keys = CURRENT.get();
+		if (keys == null) {
+			return false;
+		}
+		for (String key : keys) {
+			if (recent.getIfPresent(key) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
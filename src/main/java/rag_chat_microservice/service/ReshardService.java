@@ -0,0 +1,31 @@
+package rag_chat_microservice.service;
+
+import rag_chat_microservice.dto.ShardMoveReport;
+import rag_chat_microservice.dto.ShardStats;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.util.List;
+
+public interface ReshardService {
+
+	/** Session and message counts of every shard; a fan-out query, for operators only. */
+	List<ShardStats> stats();
+
+	ShardRouter.Placement placement(String userId);
+
+	/**
+	 * Moves every session of the bucket's users, with their messages, to shard
+	 * {@code target}. Writes to the bucket are refused while the rows are copied;
+	 * reads stay on the source until the directory points at the target, and the
+	 * source rows are deleted only after that. Fails with 409 while another move
+	 * runs on any instance.
+	 */
+	ShardMoveReport moveBucket(int bucket, int target);
+
+	/**
+	 * Moves each bucket whose placement on a ring of {@code ringShards} shards
+	 * differs from its current one, one bucket at a time. Afterwards set
+	 * chat.sharding.ring-shards to the same value.
+	 */
+	List<ShardMoveReport> rebalance(int ringShards);
+}
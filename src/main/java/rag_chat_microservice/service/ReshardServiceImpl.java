@@ -0,0 +1,492 @@
+package rag_chat_microservice.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import rag_chat_microservice.dto.ShardMoveReport;
+import rag_chat_microservice.dto.ShardStats;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.model.ShardDirectoryEntry;
+import rag_chat_microservice.repository.ShardDirectoryRepository;
+import rag_chat_microservice.sharding.ConsistentHashRing;
+import rag_chat_microservice.sharding.ShardContext;
+import rag_chat_microservice.sharding.ShardKeys;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Moves buckets between shards with plain JDBC, so it works on any database
+ * the application runs on. The copy is not one distributed transaction: the
+ * directory marks the bucket as moving first, which makes every instance refuse
+ * its writes within two refresh intervals, and the target is cleaned before the
+ * copy, so a failed move can simply be run again.
+ * <p>
+ * The directory alone does not stop a request that was routed before it changed.
+ * The source shard is therefore fenced as well: a {@code shard_fences} row for the
+ * bucket makes the append path refuse the bucket's writes under the session lock
+ * (ShardRouter.checkFence), and the move then locks and releases the bucket's
+ * sessions once, so that every write that got past the check has committed before
+ * the copy starts. After the copy the source is compared with what was copied; if
+ * anything was added meanwhile, the move fails with the bucket still fenced and
+ * moving, and is run again, before the source rows are deleted.
+ * <p>
+ * Only one move may run at a time, across all instances: a move holds a row
+ * lock on the catalog's {@code lock:reshard} directory entry for its whole
+ * duration, on a connection of its own, and a second move is refused (409)
+ * rather than queued. The database drops the lock with the connection if the
+ * instance dies.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnExpression("!'${chat.sharding.urls:}'.isBlank()")
+public class ReshardServiceImpl implements ReshardService {
+
+	private static final int PAGE = 500;
+	// buckets moved together by a rebalance; they are read-only for the whole chunk
+	private static final int MOVE_CHUNK = 32;
+	// a directory entry no route reads (ShardRouter only reads bucket: and session: keys)
+	private static final String LOCK_KEY = "lock:reshard";
+
+	private final ShardRouter shardRouter;
+	private final ShardDirectoryRepository directory;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final EntityManagerFactory entityManagerFactory;
+
+	@Override
+	public List<ShardStats> stats() {
+		Map<Integer, ShardRouter.Placement> moved = shardRouter.movedBuckets();
+		return shardRouter.fanOut(shard -> new ShardStats(shard,
+				jdbcTemplate.queryForObject("select count(*) from chat_sessions", Long.class),
+				jdbcTemplate.queryForObject("select count(*) from chat_messages", Long.class),
+				moved.values().stream().filter(p -> p.shard() == shard).count()));
+	}
+
+	@Override
+	public ShardRouter.Placement placement(String userId) {
+		return shardRouter.forUser(userId);
+	}
+
+	@Override
+	public List<ShardMoveReport> rebalance(int ringShards) {
+		if (ringShards < 1 || ringShards > shardRouter.shardCount()) {
+			throw new IllegalArgumentException("ringShards must be between 1 and " + shardRouter.shardCount());
+		}
+		return exclusively(() -> rebalanceLocked(ringShards));
+	}
+
+	private List<ShardMoveReport> rebalanceLocked(int ringShards) {
+		ConsistentHashRing ring = new ConsistentHashRing(ringShards, shardRouter.virtualNodes());
+		Map<Integer, Integer> targets = new LinkedHashMap<>();
+		for (int bucket = 0; bucket < ShardKeys.BUCKETS; bucket++) {
+			int target = ShardRouter.ringPlacement(ring, bucket);
+			if (shardRouter.forBucket(bucket).shard() != target) {
+				targets.put(bucket, target);
+			}
+		}
+		List<ShardMoveReport> reports = new ArrayList<>();
+		List<Integer> buckets = new ArrayList<>(targets.keySet());
+		for (List<Integer> chunk : partition(buckets, MOVE_CHUNK)) {
+			Map<Integer, Integer> part = new LinkedHashMap<>();
+			chunk.forEach(bucket -> part.put(bucket, targets.get(bucket)));
+			reports.addAll(move(part));
+		}
+		log.info("Rebalanced onto {} shards: {} buckets moved", ringShards, reports.size());
+		return reports;
+	}
+
+	@Override
+	public ShardMoveReport moveBucket(int bucket, int target) {
+		if (bucket < 0 || bucket >= ShardKeys.BUCKETS) {
+			throw new IllegalArgumentException("bucket must be between 0 and " + (ShardKeys.BUCKETS - 1));
+		}
+		if (target < 0 || target >= shardRouter.shardCount()) {
+			throw new IllegalArgumentException("target must be between 0 and " + (shardRouter.shardCount() - 1));
+		}
+		if (shardRouter.forBucket(bucket).shard() == target) {
+			ShardMoveReport report = new ShardMoveReport();
+			report.setBucket(bucket);
+			report.setFromShard(target);
+			report.setToShard(target);
+			return report;
+		}
+		return exclusively(() -> move(Map.of(bucket, target)).get(0));
+	}
+
+	/**
+	 * Runs {@code work} holding the cluster-wide move lock. The lock is taken
+	 * without waiting and kept in a transaction outside Spring's, so the
+	 * transactions of the move itself are unaffected.
+	 */
+	private <T> T exclusively(Supplier<T> work) {
+		ShardContext.run(ShardRouter.CATALOG, () -> {
+			try {
+				jdbcTemplate.update("insert into shard_directory (entry_key, shard, moving, updated_at)"
+						+ " values (?, ?, ?, ?)", LOCK_KEY, ShardRouter.CATALOG, false,
+						Timestamp.valueOf(LocalDateTime.now()));
+			} catch (DuplicateKeyException e) {
+				// created by an earlier move
+			}
+		});
+		DataSource dataSource = jdbcTemplate.getDataSource();
+		try (Connection connection = ShardContext.on(ShardRouter.CATALOG, () -> lock(dataSource))) {
+			try {
+				return work.get();
+			} finally {
+				connection.rollback();
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("Releasing the shard move lock failed", e);
+		}
+	}
+
+	private static Connection lock(DataSource dataSource) {
+		Connection connection = null;
+		try {
+			connection = dataSource.getConnection();
+			connection.setAutoCommit(false);
+			try (PreparedStatement ps = connection.prepareStatement(
+					"select entry_key from shard_directory where entry_key = ? for update nowait")) {
+				ps.setString(1, LOCK_KEY);
+				try (ResultSet rs = ps.executeQuery()) {
+					rs.next();
+				}
+			}
+			return connection;
+		} catch (SQLException e) {
+			close(connection);
+			throw new ResponseStatusException(HttpStatus.CONFLICT,
+					"Another shard move is running (" + e.getMessage() + ")");
+		}
+	}
+
+	private static void close(Connection connection) {
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				log.debug("Closing the shard move lock connection failed: {}", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Moves the buckets (bucket to target shard) together, so that they share the
+	 * two waits for the other instances to see the directory change.
+	 */
+	private List<ShardMoveReport> move(Map<Integer, Integer> targets) {
+		long started = System.nanoTime();
+		Map<Integer, ShardMoveReport> reports = new LinkedHashMap<>();
+		Map<Integer, List<UUID>> legacy = new HashMap<>();
+		Map<Integer, Map<Integer, List<String>>> usersByShard = new HashMap<>();
+		for (Map.Entry<Integer, Integer> e : targets.entrySet()) {
+			ShardMoveReport report = new ShardMoveReport();
+			report.setBucket(e.getKey());
+			report.setFromShard(shardRouter.forBucket(e.getKey()).shard());
+			report.setToShard(e.getValue());
+			reports.put(e.getKey(), report);
+		}
+
+		// 1. stop writes, on every instance; sessions without an embedded bucket are
+		// routed by their own directory entries, so they are marked too
+		for (ShardMoveReport report : reports.values()) {
+			List<String> users = usersByShard.computeIfAbsent(report.getFromShard(), this::usersByBucket)
+					.getOrDefault(report.getBucket(), List.of());
+			legacy.put(report.getBucket(), sessionsOf(report.getFromShard(), users).stream()
+					.filter(id -> ShardKeys.bucketOf(id, shardRouter.sinceMillis()) == null).toList());
+		}
+		point(reports.values(), legacy, true);
+		fence(reports.values(), usersByShard);
+		usersByShard.clear();
+		Map<Integer, List<UUID>> copied = new HashMap<>();
+
+		for (ShardMoveReport report : reports.values()) {
+			int bucket = report.getBucket();
+			int source = report.getFromShard();
+			int target = report.getToShard();
+
+			// 2. the bucket's sessions, now that no new ones can appear
+			List<String> users = usersByShard.computeIfAbsent(source, this::usersByBucket)
+					.getOrDefault(bucket, List.of());
+			List<UUID> sessions = sessionsOf(source, users);
+			copied.put(bucket, sessions);
+			report.setUsers(users.size());
+			report.setSessions(sessions.size());
+			report.setLegacySessions(legacy.get(bucket).size());
+			if (!sessions.isEmpty()) {
+				log.info("Moving bucket {} from shard {} to {}: {} users, {} sessions", bucket, source, target,
+						users.size(), sessions.size());
+			}
+
+			// 3. copy; leftovers of an earlier failed attempt are removed first
+			deleteSessions(target, sessions);
+			for (List<UUID> part : partition(sessions, PAGE)) {
+				copy(source, target, "chat_sessions", "id", bytes(part));
+			}
+			Set<ByteBuffer> copiedHashes = new HashSet<>();
+			Map<UUID, Long> copiedMessages = new HashMap<>();
+			for (UUID session : sessions) {
+				copiedMessages.put(session, copyMessages(session, source, target, copiedHashes, report));
+			}
+			verify(report, sessions, copiedMessages);
+		}
+
+		// 4. serve the buckets from their targets
+		point(reports.values(), legacy, false);
+
+		// 5. drop the source copies, then the fences
+		for (ShardMoveReport report : reports.values()) {
+			List<UUID> sessions = copied.get(report.getBucket());
+			deleteSessions(report.getFromShard(), sessions);
+			evict(sessions);
+			unfence(report.getFromShard(), report.getBucket());
+		}
+
+		double seconds = Math.round((System.nanoTime() - started) / 1e6) / 1e3;
+		reports.values().forEach(r -> r.setSeconds(seconds));
+		log.info("Moved {} buckets: {} sessions, {} messages in {}s", reports.size(),
+				reports.values().stream().mapToLong(ShardMoveReport::getSessions).sum(),
+				reports.values().stream().mapToLong(ShardMoveReport::getMessages).sum(), seconds);
+		return new ArrayList<>(reports.values());
+	}
+
+	/** Copies the session's messages; returns how many. */
+	private long copyMessages(UUID session, int source, int target, Set<ByteBuffer> copiedHashes,
+			ShardMoveReport report) {
+		long count = 0;
+		long after = 0;
+		while (true) {
+			long from = after;
+			List<Map<String, Object>> rows = ShardContext.on(source, () -> jdbcTemplate.queryForList(
+					"select * from chat_messages where session_id = ? and seq > ? order by seq limit " + PAGE,
+					bytes(session), from));
+			if (rows.isEmpty()) {
+				return count;
+			}
+			// blobs first: messages reference them by hash
+			// raw SHA-256 bytes, wrapped to compare by content
+			List<ByteBuffer> hashes = rows.stream().map(r -> (byte[]) r.get("context_hash"))
+					.filter(h -> h != null && copiedHashes.add(ByteBuffer.wrap(h))).map(ByteBuffer::wrap).toList();
+			if (!hashes.isEmpty()) {
+				Set<ByteBuffer> present = new HashSet<>();
+				ShardContext.on(target, () -> jdbcTemplate.queryForList(
+						"select hash from context_blobs where hash in (" + marks(hashes.size()) + ")", byte[].class,
+						hashes.stream().map(ByteBuffer::array).toArray())).forEach(h -> present.add(ByteBuffer.wrap(h)));
+				Object[] missing = hashes.stream().filter(h -> !present.contains(h)).map(ByteBuffer::array).toArray();
+				if (missing.length > 0) {
+					report.setContextBlobs(report.getContextBlobs()
+							+ copy(source, target, "context_blobs", "hash", missing));
+				}
+			}
+			insert(target, "chat_messages", rows);
+			report.setMessages(report.getMessages() + rows.size());
+			count += rows.size();
+			after = ((Number) rows.get(rows.size() - 1).get("seq")).longValue();
+			if (rows.size() < PAGE) {
+				return count;
+			}
+		}
+	}
+
+	/**
+	 * Fences the buckets on their source shards, then takes and releases the row
+	 * lock of each of their sessions: appends check the fence holding that lock, so
+	 * once the locks have been granted here no unfenced append is still open.
+	 */
+	private void fence(Collection<ShardMoveReport> moves, Map<Integer, Map<Integer, List<String>>> usersByShard) {
+		for (ShardMoveReport move : moves) {
+			ShardContext.run(move.getFromShard(), () -> {
+				try {
+					jdbcTemplate.update("insert into shard_fences (bucket, created_at) values (?, ?)",
+							move.getBucket(), Timestamp.valueOf(LocalDateTime.now()));
+				} catch (DuplicateKeyException e) {
+					// left by a failed attempt
+				}
+			});
+		}
+		for (ShardMoveReport move : moves) {
+			List<String> users = usersByShard.get(move.getFromShard()).getOrDefault(move.getBucket(), List.of());
+			for (List<String> part : partition(users, PAGE)) {
+				ShardContext.run(move.getFromShard(), () -> transactionTemplate.executeWithoutResult(status ->
+						jdbcTemplate.queryForList("select id from chat_sessions where user_id in ("
+								+ marks(part.size()) + ") for update", byte[].class, part.toArray())));
+			}
+		}
+	}
+
+	private void unfence(int shard, int bucket) {
+		ShardContext.run(shard, () -> jdbcTemplate.update("delete from shard_fences where bucket = ?", bucket));
+	}
+
+	/**
+	 * Fails the move if the source gained sessions or messages after they were
+	 * listed: the bucket stays fenced and moving, and running the move again copies
+	 * them. Nothing is deleted on the source before this passes.
+	 */
+	private void verify(ShardMoveReport report, List<UUID> sessions, Map<UUID, Long> copiedMessages) {
+		int source = report.getFromShard();
+		List<String> users = usersByBucket(source).getOrDefault(report.getBucket(), List.of());
+		Set<UUID> now = new HashSet<>(sessionsOf(source, users));
+		now.removeAll(sessions);
+		if (!now.isEmpty()) {
+			throw new IllegalStateException("Bucket " + report.getBucket() + " gained " + now.size()
+					+ " sessions on shard " + source + " during its move; run the move again");
+		}
+		for (List<UUID> part : partition(sessions, PAGE)) {
+			List<Map<String, Object>> counts = ShardContext.on(source, () -> jdbcTemplate.queryForList(
+					"select session_id, count(*) as messages from chat_messages where session_id in ("
+							+ marks(part.size()) + ") group by session_id", bytes(part)));
+			for (Map<String, Object> row : counts) {
+				UUID session = uuid((byte[]) row.get("session_id"));
+				long messages = ((Number) row.get("messages")).longValue();
+				if (messages != copiedMessages.get(session)) {
+					throw new IllegalStateException("Session " + session + " has " + messages + " messages on shard "
+							+ source + " but " + copiedMessages.get(session) + " were copied; run the move again");
+				}
+			}
+		}
+	}
+
+	/** Users with sessions on {@code shard}, by bucket. */
+	private Map<Integer, List<String>> usersByBucket(int shard) {
+		Map<Integer, List<String>> users = new HashMap<>();
+		for (String user : ShardContext.on(shard,
+				() -> jdbcTemplate.queryForList("select distinct user_id from chat_sessions", String.class))) {
+			users.computeIfAbsent(ShardKeys.bucketOf(user), b -> new ArrayList<>()).add(user);
+		}
+		return users;
+	}
+
+	private List<UUID> sessionsOf(int shard, List<String> users) {
+		List<UUID> sessions = new ArrayList<>();
+		for (List<String> part : partition(users, PAGE)) {
+			sessions.addAll(ShardContext.on(shard, () -> jdbcTemplate.queryForList(
+					"select id from chat_sessions where user_id in (" + marks(part.size()) + ")", byte[].class,
+					part.toArray())).stream().map(ReshardServiceImpl::uuid).toList());
+		}
+		return sessions;
+	}
+
+	/**
+	 * Points each bucket (and its sessions without an embedded bucket) at its source
+	 * while moving, else at its target, and waits for every instance to reload.
+	 */
+	private void point(Collection<ShardMoveReport> moves, Map<Integer, List<UUID>> legacy, boolean moving) {
+		ShardContext.run(ShardRouter.CATALOG, () -> transactionTemplate.executeWithoutResult(status -> {
+			List<ShardDirectoryEntry> entries = new ArrayList<>();
+			for (ShardMoveReport move : moves) {
+				int shard = moving ? move.getFromShard() : move.getToShard();
+				entries.add(ShardDirectoryEntry.of(ShardRouter.bucketKey(move.getBucket()), shard, moving));
+				for (UUID id : legacy.get(move.getBucket())) {
+					entries.add(ShardDirectoryEntry.of(ShardRouter.sessionKey(id), shard, moving));
+				}
+			}
+			directory.saveAll(entries);
+		}));
+		shardRouter.reload();
+		// other instances reload on their own schedule
+		try {
+			TimeUnit.MILLISECONDS.sleep(shardRouter.refreshInterval().toMillis() * 2);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while moving buckets " + legacy.keySet(), e);
+		}
+	}
+
+	private long copy(int source, int target, String table, String key, Object[] keys) {
+		List<Map<String, Object>> rows = ShardContext.on(source, () -> jdbcTemplate.queryForList(
+				"select * from " + table + " where " + key + " in (" + marks(keys.length) + ")", keys));
+		return insert(target, table, rows);
+	}
+
+	private long insert(int target, String table, List<Map<String, Object>> rows) {
+		if (rows.isEmpty()) {
+			return 0;
+		}
+		List<String> columns = new ArrayList<>(rows.get(0).keySet());
+		String sql = "insert into " + table + " (" + String.join(", ", columns) + ") values (" + marks(columns.size())
+				+ ")";
+		List<Object[]> args = new ArrayList<>(rows.size());
+		for (Map<String, Object> row : rows) {
+			args.add(columns.stream().map(row::get).toArray());
+		}
+		ShardContext.run(target,
+				() -> transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, args)));
+		return rows.size();
+	}
+
+	private void deleteSessions(int shard, List<UUID> sessions) {
+		for (List<UUID> part : partition(sessions, PAGE)) {
+			Object[] ids = bytes(part);
+			String in = " in (" + marks(ids.length) + ")";
+			ShardContext.run(shard, () -> transactionTemplate.executeWithoutResult(status -> {
+				jdbcTemplate.update("delete from chat_messages where session_id" + in, ids);
+				jdbcTemplate.update("delete from chat_sessions where id" + in, ids);
+			}));
+		}
+	}
+
+	// moved rows were written around Hibernate
+	private void evict(List<UUID> sessions) {
+		org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+		for (UUID id : sessions) {
+			cache.evictEntityData(ChatSession.class, id);
+		}
+		cache.evictDefaultQueryRegion();
+	}
+
+	private static <T> List<List<T>> partition(List<T> list, int size) {
+		List<List<T>> parts = new ArrayList<>();
+		for (int i = 0; i < list.size(); i += size) {
+			parts.add(list.subList(i, Math.min(i + size, list.size())));
+		}
+		return parts;
+	}
+
+	private static String marks(int n) {
+		return String.join(", ", Collections.nCopies(n, "?"));
+	}
+
+	private static Object[] bytes(List<UUID> ids) {
+		return ids.stream().map(ReshardServiceImpl::bytes).toArray();
+	}
+
+	private static byte[] bytes(UUID id) {
+		return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits())
+				.array();
+	}
+
+	private static UUID uuid(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+}
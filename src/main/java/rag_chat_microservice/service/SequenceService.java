@@ -0,0 +1,21 @@
+package rag_chat_microservice.service;
+
+import rag_chat_microservice.model.ChatMessage;
+
+import java.util.UUID;
+
+public interface SequenceService {
+
+	/**
+	 * Saves a new message as the next turn of its session: locks the session row,
+	 * takes {@code last_seq + 1} as the message's seq and stores both in one
+	 * transaction, so concurrent appends never share or skip a number.
+	 */
+	ChatMessage append(UUID sessionId, ChatMessage message);
+
+	/**
+	 * Recomputes the session's message count and last-message columns from its
+	 * stored messages, under the same lock. For paths that delete messages.
+	 */
+	void recount(UUID sessionId);
+}
@@ -0,0 +1,58 @@
+package rag_chat_microservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.MessageRepository;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class SequenceServiceImpl implements SequenceService {
+
+	private final SessionRepository sessionRepository;
+	private final MessageRepository messageRepository;
+	private final ColdHistoryService coldHistory;
+	private final MessageNotifier notifier;
+	private final ShardRouter shardRouter;
+
+	@Override
+	@Transactional
+	public ChatMessage append(UUID sessionId, ChatMessage message) {
+		// SELECT ... FOR UPDATE: the lock is held only until this insert commits
+		ChatSession session = sessionRepository.findByIdForUpdate(sessionId)
+				.orElseThrow(() -> new IllegalArgumentException("Session not found with ID: " + sessionId));
+		shardRouter.checkFence(session);
+		// a session's history is never split between chat_messages and a cold segment
+		coldHistory.thawLocked(session);
+
+		long seq = session.getLastSeq() + 1;
+		session.setLastSeq(seq);
+		message.setChatSession(session);
+		message.setSeq(seq);
+		ChatMessage saved = messageRepository.save(message);
+		session.recordMessage(saved);
+		notifier.publishAfterCommit(sessionId);
+		return saved;
+	}
+
+	@Override
+	@Transactional
+	public void recount(UUID sessionId) {
+		ChatSession session = sessionRepository.findByIdForUpdate(sessionId)
+				.orElseThrow(() -> new IllegalArgumentException("Session not found with ID: " + sessionId));
+		// edits and deletes recount in their own transaction, which this rolls back
+		shardRouter.checkFence(session);
+
+		session.setMessageCount(messageRepository.countByChatSession_Id(sessionId));
+		Optional<ChatMessage> last = messageRepository.findFirstByChatSession_IdOrderBySeqDesc(sessionId);
+		session.setLastMessagePreview(last.map(ChatMessage::getContentPreview).orElse(null));
+		session.setLastSender(last.map(ChatMessage::getSender).orElse(null));
+	}
+}
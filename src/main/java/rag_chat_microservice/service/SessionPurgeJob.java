@@ -0,0 +1,286 @@
+package rag_chat_microservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.MessageRepository;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.sharding.ShardRouter;
+import rag_chat_microservice.tiering.ColdMessage;
+import rag_chat_microservice.tiering.ColdRef;
+import rag_chat_microservice.tiering.ColdStore;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Removes soft-deleted sessions once they are older than the retention window.
+ * Each batch of sessions is first written to a gzipped NDJSON archive (one
+ * session line followed by its message lines), synced to disk, and only then
+ * hard-deleted: messages in short seq-range transactions, then the session row.
+ * A crash between the two steps only means the next run archives the same
+ * sessions again. A session tiered to a cold segment is archived from its
+ * record; it has no message rows to delete.
+ * <p>
+ * Run it on one instance only; concurrent purgers would archive the same rows.
+ * With sharding, each shard is purged in turn.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "chat.purge.enabled", havingValue = "true")
+public class SessionPurgeJob {
+
+	private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+	private static final UUID FIRST = new UUID(0L, 0L);
+
+	private final SessionRepository sessionRepository;
+	private final MessageRepository messageRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final ObjectMapper objectMapper;
+	private final MeterRegistry meterRegistry;
+	private final ShardRouter shardRouter;
+	private final ColdStore coldStore;
+
+	@Value("${chat.purge.retention:P30D}")
+	private Duration retention;
+
+	@Value("${chat.purge.archive-dir:./data/archive}")
+	private String archiveDir;
+
+	@Value("${chat.purge.session-batch:50}")
+	private int sessionBatch;
+
+	@Value("${chat.purge.delete-batch:500}")
+	private int deleteBatch;
+
+	@Value("${chat.purge.pause-ms:50}")
+	private long pauseMs;
+
+	@Value("${chat.purge.max-sessions-per-run:1000}")
+	private int maxSessionsPerRun;
+
+	private ObjectMapper lineMapper;
+	private Timer runTimer;
+	private Counter messagesPurged;
+	private Counter sessionsPurged;
+	// last run's throughput and the current lag, exported as gauges
+	private final AtomicLong rowsPerSecond = new AtomicLong();
+	private final AtomicLong lagSeconds = new AtomicLong();
+
+	@PostConstruct
+	void init() {
+		// one object per line
+		lineMapper = objectMapper.copy().disable(SerializationFeature.INDENT_OUTPUT);
+
+		runTimer = Timer.builder("chat.purge.run").description("Duration of one purge run").register(meterRegistry);
+		messagesPurged = Counter.builder("chat.purge.rows").tag("table", "chat_messages")
+				.description("Rows archived and hard-deleted").register(meterRegistry);
+		sessionsPurged = Counter.builder("chat.purge.rows").tag("table", "chat_sessions")
+				.description("Rows archived and hard-deleted").register(meterRegistry);
+		Gauge.builder("chat.purge.rows_per_second", rowsPerSecond, AtomicLong::get)
+				.description("Rows deleted per second during the last run").register(meterRegistry);
+		Gauge.builder("chat.purge.lag", lagSeconds, AtomicLong::get).baseUnit("seconds")
+				.description("How long the oldest soft-deleted session has been past retention")
+				.register(meterRegistry);
+		log.info("Session purge enabled: retention={}, archive-dir={}", retention, archiveDir);
+	}
+
+	@Scheduled(initialDelayString = "${chat.purge.initial-delay:PT5M}", fixedDelayString = "${chat.purge.interval:PT1H}")
+	public void run() {
+		runTimer.record(this::purge);
+	}
+
+	/** One pass over the sessions past retention, bounded by max-sessions-per-run. */
+	void purge() {
+		LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+		long started = System.nanoTime();
+		// sessions, rows; shards are purged one after the other and share the per-run budget
+		long[] done = new long[2];
+		try {
+			shardRouter.fanOut(shard -> purgeShard(shard, cutoff, done));
+		} finally {
+			double seconds = Math.max((System.nanoTime() - started) / 1e9, 1e-3);
+			rowsPerSecond.set(Math.round(done[1] / seconds));
+			updateLag();
+			if (done[0] > 0) {
+				log.info("Purge run: {} sessions, {} rows in {}s ({} rows/s), lag {}s", done[0], done[1],
+						String.format("%.1f", seconds), rowsPerSecond.get(), lagSeconds.get());
+			}
+		}
+	}
+
+	private Void purgeShard(int shard, LocalDateTime cutoff, long[] done) {
+		UUID after = FIRST;
+		try {
+			while (done[0] < maxSessionsPerRun && !Thread.currentThread().isInterrupted()) {
+				int limit = (int) Math.min(sessionBatch, maxSessionsPerRun - done[0]);
+				List<ChatSession> batch = sessionRepository.findPurgeable(cutoff, after, PageRequest.of(0, limit));
+				if (batch.isEmpty()) {
+					break;
+				}
+				after = batch.get(batch.size() - 1).getId();
+
+				Path archive = archive(batch);
+				for (ChatSession session : batch) {
+					done[1] += delete(session.getId());
+				}
+				done[0] += batch.size();
+				log.info("Purged {} sessions on shard {} (archive {})", batch.size(), shard, archive);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Purge interrupted after {} sessions", done[0]);
+		} catch (RuntimeException e) {
+			// the batch stays soft-deleted and is retried on the next run; other shards go on
+			log.error("Purge of shard {} failed after {} sessions", shard, done[0], e);
+		}
+		return null;
+	}
+
+	/** Writes the sessions and their messages to a new archive file and forces it to disk. */
+	private Path archive(List<ChatSession> batch) {
+		try {
+			Path dir = Paths.get(archiveDir);
+			Files.createDirectories(dir);
+			String name = "sessions-" + FILE_STAMP.format(LocalDateTime.now(ZoneOffset.UTC)) + "-"
+					+ batch.get(0).getId() + ".ndjson.gz";
+			Path target = dir.resolve(name);
+			Path tmp = dir.resolve(name + ".tmp");
+
+			try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+				GZIPOutputStream gzip = new GZIPOutputStream(file, 1 << 16);
+				Writer out = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+				for (ChatSession session : batch) {
+					writeSession(out, session);
+				}
+				out.flush();
+				gzip.finish();
+				// the rows are gone once the delete commits; the archive must survive a crash first
+				file.getChannel().force(true);
+			}
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+			return target;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write purge archive to " + archiveDir, e);
+		}
+	}
+
+	private void writeSession(Writer out, ChatSession session) throws IOException {
+		ObjectNode line = lineMapper.createObjectNode();
+		line.put("type", "session");
+		line.put("id", session.getId().toString());
+		line.put("userId", session.getUserId());
+		line.put("title", session.getTitle());
+		line.put("favorite", session.isFavorite());
+		line.put("lastSeq", session.getLastSeq());
+		line.set("createdAt", lineMapper.valueToTree(session.getCreatedAt()));
+		line.set("updatedAt", lineMapper.valueToTree(session.getUpdatedAt()));
+		line.set("deletedAt", lineMapper.valueToTree(session.getDeletedAt()));
+		out.write(lineMapper.writeValueAsString(line));
+		out.write('\n');
+
+		ColdRef cold = ColdRef.of(session);
+		if (cold != null) {
+			// tiered: the history is in the cold record, chat_messages has nothing to delete
+			for (ColdMessage m : coldStore.read(session.getId(), cold)) {
+				writeMessage(out, m.toDto(session.getId()));
+			}
+			return;
+		}
+		long seq = 0;
+		Slice<ChatMessageDto> page;
+		do {
+			page = messageRepository.findViewsAfter(session.getId(), seq, PageRequest.of(0, deleteBatch));
+			for (ChatMessageDto m : page) {
+				writeMessage(out, m);
+				seq = m.getSeq();
+			}
+		} while (page.hasNext());
+	}
+
+	private void writeMessage(Writer out, ChatMessageDto m) throws IOException {
+		ObjectNode msg = lineMapper.valueToTree(m);
+		ObjectNode typed = lineMapper.createObjectNode().put("type", "message");
+		typed.setAll(msg);
+		out.write(lineMapper.writeValueAsString(typed));
+		out.write('\n');
+	}
+
+	/** Hard-deletes the session's messages range by range, then the session row; returns the rows removed. */
+	private long delete(UUID sessionId) throws InterruptedException {
+		long rows = 0;
+		long from = 0;
+		while (true) {
+			List<Long> seqs = messageRepository.findSeqsAfter(sessionId, from, PageRequest.of(0, deleteBatch));
+			if (seqs.isEmpty()) {
+				break;
+			}
+			long lo = from;
+			long hi = seqs.get(seqs.size() - 1);
+			int n = transactionTemplate.execute(status -> messageRepository.deleteSeqRange(sessionId, lo, hi));
+			messagesPurged.increment(n);
+			rows += n;
+			from = hi;
+			pause();
+		}
+		// a message that arrived after the archive was written keeps the session row
+		// (foreign key) until the next run archives it too
+		int session = transactionTemplate.execute(status -> sessionRepository.deletePurged(sessionId));
+		sessionsPurged.increment(session);
+		return rows + session;
+	}
+
+	private void pause() throws InterruptedException {
+		if (pauseMs > 0) {
+			TimeUnit.MILLISECONDS.sleep(pauseMs);
+		}
+	}
+
+	private void updateLag() {
+		LocalDateTime oldest = shardRouter.fanOut(shard -> sessionRepository.findOldestDeletedAt()).stream()
+				.filter(Objects::nonNull).min(Comparator.naturalOrder()).orElse(null);
+		if (oldest == null) {
+			lagSeconds.set(0);
+			return;
+		}
+		long overdue = Duration.between(oldest.plus(retention), LocalDateTime.now()).getSeconds();
+		lagSeconds.set(Math.max(overdue, 0));
+	}
+}
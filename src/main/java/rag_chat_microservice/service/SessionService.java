@@ -1,6 +1,10 @@
 package rag_chat_microservice.service;
 
+import org.springframework.data.domain.Slice;
 import rag_chat_microservice.dto.ChatSessionDto;
+import rag_chat_microservice.dto.ChatSessionResponseDto;
+import rag_chat_microservice.dto.ChatSessionSummaryDto;
+import rag_chat_microservice.dto.SessionCursor;
 import rag_chat_microservice.dto.CreateSessionRequest;
 import rag_chat_microservice.model.ChatSession;
 
@@ -19,9 +23,12 @@ public interface SessionService {
 
 	void deleteSession(UUID sessionId);
 
-	List<ChatSession> getUserSessions(String userId);
+	List<ChatSessionResponseDto> getUserSessions(String userId);
 
-	List<ChatSession> getFavoriteSessions(String userId);
+	List<ChatSessionResponseDto> getFavoriteSessions(String userId);
+
+	/** A user's active sessions, most recent activity first, {@code size} at a time after {@code after}. */
+	Slice<ChatSessionSummaryDto> getSessionSummaries(String userId, SessionCursor after, int size);
 
 	ChatSession getSession(UUID sessionId);
 }
@@ -3,11 +3,16 @@ package rag_chat_microservice.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 import rag_chat_microservice.dto.ChatSessionDto;
+import rag_chat_microservice.dto.ChatSessionResponseDto;
+import rag_chat_microservice.dto.ChatSessionSummaryDto;
+import rag_chat_microservice.dto.SessionCursor;
 import rag_chat_microservice.dto.CreateSessionRequest;
 import rag_chat_microservice.exception.SessionNotFoundException;
 import rag_chat_microservice.model.ChatSession;
@@ -26,6 +31,7 @@ public class SessionServiceImpl implements SessionService {
 
     private final SessionRepository sessionRepository;
     private final MessageRepository messageRepository;
+    private final ReadYourWrites readYourWrites;
 
     @Override
     public ChatSession createSession(CreateSessionRequest request) {
@@ -47,6 +53,7 @@ public class SessionServiceImpl implements SessionService {
                             .build();
                     try {
                         ChatSession saved = sessionRepository.save(session);
+                        touched(userId);
                         log.info("Session created with ID: {}", saved.getId());
                         return saved;
                     } catch (DataIntegrityViolationException e) {
@@ -91,6 +98,7 @@ public class SessionServiceImpl implements SessionService {
 
         try {
             ChatSession saved = sessionRepository.save(session);
+            touched(session.getUserId());
             log.info("Session {} updated", sessionId);
             return saved;
         } catch (DataIntegrityViolationException e) {
@@ -125,9 +133,12 @@ public class SessionServiceImpl implements SessionService {
         }
 
         log.warn("Soft deleting session with ID: {}", sessionId);
+        LocalDateTime now = LocalDateTime.now();
         session.setDeleted(true);
-        session.setUpdatedAt(LocalDateTime.now());
+        session.setDeletedAt(now);
+        session.setUpdatedAt(now);
         sessionRepository.save(session);
+        touched(session.getUserId());
 
         // Soft delete all messages under this session
         messageRepository.softDeleteBySessionId(sessionId);
@@ -139,7 +150,7 @@ public class SessionServiceImpl implements SessionService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<ChatSession> getUserSessions(String userId) {
+    public List<ChatSessionResponseDto> getUserSessions(String userId) {
         log.info("Retrieving all active sessions for user: {}", userId);
 
         // Check if user exists in session history
@@ -150,7 +161,7 @@ public class SessionServiceImpl implements SessionService {
         }
 
         // Get non-deleted sessions
-        List<ChatSession> sessions = sessionRepository.findByUserIdAndDeletedFalse(userId);
+        List<ChatSessionResponseDto> sessions = sessionRepository.findViewsByUserId(userId);
         if (sessions.isEmpty()) {
             log.warn("No sessions found for user {}", userId);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND,
@@ -163,7 +174,7 @@ public class SessionServiceImpl implements SessionService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<ChatSession> getFavoriteSessions(String userId) {
+    public List<ChatSessionResponseDto> getFavoriteSessions(String userId) {
         log.info("Retrieving favorite sessions for user: {}", userId);
 
         // Check if userId exists at all (in any session)
@@ -174,7 +185,7 @@ public class SessionServiceImpl implements SessionService {
         }
 
         // Then check favorites
-        List<ChatSession> favorites = sessionRepository.findByUserIdAndFavoriteTrueAndDeletedFalse(userId);
+        List<ChatSessionResponseDto> favorites = sessionRepository.findFavoriteViewsByUserId(userId);
         if (favorites.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND,
                     "No favorite sessions found for user: " + userId);
@@ -185,6 +196,18 @@ public class SessionServiceImpl implements SessionService {
 
 
 
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<ChatSessionSummaryDto> getSessionSummaries(String userId, SessionCursor after, int size) {
+        // no existsByUserId round trip: an unknown user simply has an empty sidebar
+        if (after == null) {
+            return sessionRepository.findSummaries(userId, PageRequest.of(0, size));
+        }
+        return sessionRepository.findSummariesBefore(userId, after.lastActivityAt(), after.id(),
+                PageRequest.of(0, size));
+    }
+
+
     @Override
     public ChatSession renameSession(UUID sessionId, String newTitle) {
         log.info("Renaming session with ID: {} to: {}", sessionId, newTitle);
@@ -202,6 +225,7 @@ public class SessionServiceImpl implements SessionService {
 
         try {
             ChatSession updated = sessionRepository.save(session);
+            touched(session.getUserId());
             log.info("Session with ID: {} renamed successfully.", sessionId);
             return updated;
         } catch (DataIntegrityViolationException e) {
@@ -218,12 +242,18 @@ public class SessionServiceImpl implements SessionService {
         session.setFavorite(favorite);
         session.setUpdatedAt(LocalDateTime.now());
         ChatSession updatedSession = sessionRepository.save(session);
+        touched(session.getUserId());
         log.info("Session with ID: {} favorite status updated to {}.", sessionId, favorite);
         return updatedSession;
     }
 
     // --- helpers ---
 
+    // the user's listings read from the primary for a moment (replica routing)
+    private void touched(String userId) {
+        readYourWrites.markWritten(ReadYourWrites.userKey(userId));
+    }
+
     private String normalize(String s) {
         if (s == null) return null;
         // trim + collapse internal whitespace
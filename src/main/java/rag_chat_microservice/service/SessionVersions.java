@@ -0,0 +1,153 @@
+package rag_chat_microservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import rag_chat_microservice.invalidation.InvalidationBus;
+import rag_chat_microservice.invalidation.SessionInvalidation;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Validators for conditional GETs. Every change to a session's messages goes
+ * through its row (seq, count or preview under the row lock) and so bumps its
+ * {@code @Version}; the version alone tells whether a message read of the
+ * session can have changed.
+ * <p>
+ * Versions are kept in a small map so that a revalidation costs no query at all.
+ * Entries are dropped once a change to the session commits on this instance;
+ * changes made on another instance are seen when the entry expires after
+ * {@code chat.etag.version-ttl}, so that is how long a client may be answered
+ * 304 for a change made elsewhere, unless the invalidation log is on
+ * (SessionInvalidation).
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionVersions implements PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+	private final SessionRepository sessionRepository;
+	private final EntityManagerFactory entityManagerFactory;
+	private final InvalidationBus invalidationBus;
+
+	@Value("${chat.etag.version-ttl:PT5S}")
+	private Duration versionTtl;
+
+	@Value("${chat.etag.max-sessions:100000}")
+	private long maxSessions;
+
+	private Cache<UUID, Long> versions;
+
+	@PostConstruct
+	void init() {
+		versions = Caffeine.newBuilder().expireAfterWrite(versionTtl).maximumSize(maxSessions).build();
+		EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+				.getServiceRegistry().getService(EventListenerRegistry.class);
+		listeners.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+		listeners.appendListeners(EventType.POST_COMMIT_DELETE, this);
+	}
+
+	/** ETag of the message reads of a session, or null when there is no such live session. */
+	public String messagesTag(UUID sessionId) {
+		// a load still running when the change commits is discarded by the eviction
+		Long version = versions.get(sessionId, sessionRepository::findLiveVersion);
+		return (version == null) ? null : "\"m" + version + "\"";
+	}
+
+	/**
+	 * ETag of the session listings of a user: a digest of the ids and versions of
+	 * their live sessions, read through the query cache like the listings themselves.
+	 */
+	public String userSessionsTag(String userId) {
+		List<Object[]> rows = sessionRepository.findLiveVersionsByUserId(userId);
+		MessageDigest sha256;
+		try {
+			sha256 = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+		ByteBuffer row = ByteBuffer.allocate(24);
+		for (Object[] r : rows) {
+			UUID id = (UUID) r[0];
+			Long version = (Long) r[1];
+			row.clear();
+			row.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits())
+					.putLong((version != null) ? version : -1L);
+			sha256.update(row.array());
+		}
+		byte[] digest = Arrays.copyOf(sha256.digest(), 15);
+		return "\"u" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+	}
+
+	/**
+	 * Drops the versions of sessions changed by a bulk update, which raises no
+	 * entity events, once the current transaction commits; other instances are told
+	 * through the invalidation log.
+	 */
+	public void evictAfterCommit(Collection<UUID> sessionIds) {
+		List<UUID> ids = List.copyOf(sessionIds);
+		invalidationBus.publish(SessionInvalidation.TOPIC, ids.stream().map(UUID::toString).toList());
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				versions.invalidateAll(ids);
+			}
+		});
+	}
+
+	/** Drops the versions of sessions changed elsewhere. */
+	public void invalidate(Collection<UUID> sessionIds) {
+		versions.invalidateAll(sessionIds);
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof ChatSession session) {
+			versions.invalidate(session.getId());
+		}
+	}
+
+	@Override
+	public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+		// nothing changed, the cached version still holds
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof ChatSession session) {
+			versions.invalidate(session.getId());
+		}
+	}
+
+	@Override
+	public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return persister.getMappedClass() == ChatSession.class;
+	}
+}
@@ -0,0 +1,72 @@
+package rag_chat_microservice.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Hash ring of {@code shards} shards with {@code virtualNodes} points each. A key
+ * belongs to the first point at or after its hash, so growing the ring from N to
+ * N+1 shards moves about 1/(N+1) of the keys, all of them to the new shard.
+ * <p>
+ * The hash is fixed (FNV-1a 64 with a murmur3 finalizer) rather than
+ * {@code String.hashCode()}: placements must agree across JVMs and releases.
+ */
+public final class ConsistentHashRing {
+
+    private final int shards;
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(int shards, int virtualNodes) {
+        if (shards < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("Ring needs at least one shard and one virtual node");
+        }
+        this.shards = shards;
+        int n = shards * virtualNodes;
+        long[][] pairs = new long[n][];
+        for (int s = 0; s < shards; s++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                pairs[s * virtualNodes + v] = new long[] { hash("shard-" + s + "#" + v), s };
+            }
+        }
+        Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+        points = new long[n];
+        owners = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = pairs[i][0];
+            owners[i] = (int) pairs[i][1];
+        }
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    /** Shard owning the given point (e.g. {@link #hash} of a key). */
+    public int shardFor(long point) {
+        int i = Arrays.binarySearch(points, point);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[(i == points.length) ? 0 : i];
+    }
+
+    public static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /** murmur3 fmix64: spreads small or similar inputs over the whole ring. */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
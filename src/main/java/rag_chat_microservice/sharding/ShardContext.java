@@ -0,0 +1,55 @@
+package rag_chat_microservice.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * Shard the current thread works on, read by {@link ShardRoutingDataSource} when
+ * a connection is fetched and by the id generator to tag new session ids with
+ * their bucket. Bind before the transaction's first statement.
+ */
+public final class ShardContext {
+
+    /** @param bucket the user's bucket when known (new session ids embed it), else null */
+    public record Binding(int shard, Integer bucket) {
+    }
+
+    private static final ThreadLocal<Binding> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Binding current() {
+        return CURRENT.get();
+    }
+
+    /** Binds {@code binding} and returns the previous one, for {@link #restore}. */
+    public static Binding bind(Binding binding) {
+        Binding previous = CURRENT.get();
+        CURRENT.set(binding);
+        return previous;
+    }
+
+    public static void restore(Binding previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static <T> T on(int shard, Supplier<T> work) {
+        Binding previous = bind(new Binding(shard, null));
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public static void run(int shard, Runnable work) {
+        on(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package rag_chat_microservice.sharding;
+
+import java.util.UUID;
+
+/**
+ * Users hash into a fixed number of buckets, and buckets (not users) are placed
+ * on shards. New session ids carry their bucket in the 10 bits after the UUID
+ * variant, so a request naming only a session id is routed without a lookup:
+ * <pre>
+ *   lsb = 10 (variant) | bucket (10 bits) | random (52 bits)
+ * </pre>
+ * BUCKETS can never change once ids have been issued.
+ */
+public final class ShardKeys {
+
+    public static final int BUCKETS = 1024;
+
+    private static final int BUCKET_SHIFT = 52;
+    private static final long RANDOM_MASK = (1L << BUCKET_SHIFT) - 1;
+
+    private ShardKeys() {
+    }
+
+    public static int bucketOf(String userId) {
+        return (int) Long.remainderUnsigned(ConsistentHashRing.hash(userId), BUCKETS);
+    }
+
+    /** Least significant UUID bits with {@code bucket} embedded (variant bits included). */
+    public static long tag(long random, int bucket) {
+        return 0x8000000000000000L | ((long) bucket << BUCKET_SHIFT) | (random & RANDOM_MASK);
+    }
+
+    /**
+     * Bucket embedded in a session id, or null for ids issued before sharding was
+     * enabled ({@code sinceMillis}) or that are not UUIDv7 at all.
+     */
+    public static Integer bucketOf(UUID id, long sinceMillis) {
+        if (id.version() != 7 || (id.getMostSignificantBits() >>> 16) < sinceMillis) {
+            return null;
+        }
+        return (int) ((id.getLeastSignificantBits() >>> BUCKET_SHIFT) & (BUCKETS - 1));
+    }
+}
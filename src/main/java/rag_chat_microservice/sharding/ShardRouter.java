@@ -0,0 +1,229 @@
+package rag_chat_microservice.sharding;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.model.ShardDirectoryEntry;
+import rag_chat_microservice.repository.ShardDirectoryRepository;
+import rag_chat_microservice.repository.ShardFenceRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Decides which shard holds a user's or a session's rows. A user hashes into one
+ * of {@link ShardKeys#BUCKETS} buckets; a bucket lives on the shard the
+ * consistent-hash ring assigns it, unless the shard directory says it was moved.
+ * Session ids embed their bucket, so both lookups are in memory: the directory's
+ * bucket entries are reloaded every {@code chat.sharding.directory-refresh}.
+ * Sessions created before sharding was enabled carry no bucket; they live on the
+ * catalog shard unless the directory has an entry for them.
+ * <p>
+ * With no {@code chat.sharding.urls} configured every method is a no-op and
+ * nothing is bound: the application runs on its single data source.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShardRouter {
+
+    public static final int CATALOG = 0;
+    static final String BUCKET_KEY = "bucket:";
+    static final String SESSION_KEY = "session:";
+
+    /** Where a bucket's rows are; {@code moving} while they are being copied to another shard. */
+    public record Placement(int shard, Integer bucket, boolean moving) {
+    }
+
+    private static final Placement UNSHARDED = new Placement(CATALOG, null, false);
+
+    private final ShardDirectoryRepository directory;
+    private final ShardFenceRepository fences;
+
+    @Value("${chat.sharding.urls:}")
+    private List<String> urls;
+
+    // shards on the ring; lower than the number of urls while a new shard is being filled
+    @Value("${chat.sharding.ring-shards:0}")
+    private int ringShards;
+
+    @Value("${chat.sharding.virtual-nodes:160}")
+    private int virtualNodes;
+
+    // session ids issued before this instant carry no bucket; no default, as any
+    // guess would read the random bits of older UUIDv7 ids as a bucket
+    @Value("${chat.sharding.since:}")
+    private String since;
+
+    @Value("${chat.sharding.directory-refresh:PT5S}")
+    private Duration refresh;
+
+    private int shardCount;
+    private ConsistentHashRing ring;
+    private volatile Map<Integer, Placement> movedBuckets = Map.of();
+    private LoadingCache<UUID, Placement> legacySessions;
+    private long sinceMillis;
+
+    @PostConstruct
+    void init() {
+        shardCount = (int) urls.stream().filter(u -> !u.isBlank()).count();
+        if (shardCount == 0) {
+            return;
+        }
+        if (since == null || since.isBlank()) {
+            throw new IllegalStateException("chat.sharding.since (DB_SHARD_SINCE) must be set to the instant"
+                    + " sharding was first enabled when chat.sharding.urls is");
+        }
+        sinceMillis = Instant.parse(since.trim()).toEpochMilli();
+        ring = new ConsistentHashRing((ringShards > 0) ? ringShards : shardCount, virtualNodes);
+        legacySessions = Caffeine.newBuilder().maximumSize(100_000).expireAfterWrite(refresh)
+                .build(id -> ShardContext.on(CATALOG, () -> directory.findById(SESSION_KEY + id)
+                        .map(e -> new Placement(e.getShard(), null, e.isMoving()))
+                        .orElse(new Placement(CATALOG, null, false))));
+        reload();
+        log.info("Sharding over {} databases ({} on the ring, {} buckets moved)", shardCount, ring.shards(),
+                movedBuckets.size());
+    }
+
+    public boolean isEnabled() {
+        return shardCount > 0;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public Duration refreshInterval() {
+        return refresh;
+    }
+
+    public int virtualNodes() {
+        return virtualNodes;
+    }
+
+    /** Buckets the directory places off the ring, by bucket. */
+    public Map<Integer, Placement> movedBuckets() {
+        return movedBuckets;
+    }
+
+    public long sinceMillis() {
+        return sinceMillis;
+    }
+
+    public Placement forUser(String userId) {
+        return isEnabled() ? forBucket(ShardKeys.bucketOf(userId)) : UNSHARDED;
+    }
+
+    public Placement forBucket(int bucket) {
+        Placement moved = movedBuckets.get(bucket);
+        return (moved != null) ? moved : new Placement(ringPlacement(ring, bucket), bucket, false);
+    }
+
+    /** Shard of {@code bucket} on the ring alone, ignoring the directory. */
+    public static int ringPlacement(ConsistentHashRing ring, int bucket) {
+        return ring.shardFor(ConsistentHashRing.mix(bucket));
+    }
+
+    public Placement forSession(UUID sessionId) {
+        if (!isEnabled()) {
+            return UNSHARDED;
+        }
+        Integer bucket = ShardKeys.bucketOf(sessionId, sinceMillis());
+        return (bucket != null) ? forBucket(bucket) : legacySessions.get(sessionId);
+    }
+
+    /** Binds the thread to the user's shard (and bucket, for new session ids). */
+    public Placement bindUser(String userId) {
+        return bind(forUser(userId));
+    }
+
+    public Placement bindSession(UUID sessionId) {
+        return bind(forSession(sessionId));
+    }
+
+    private Placement bind(Placement placement) {
+        if (isEnabled()) {
+            ShardContext.bind(new ShardContext.Binding(placement.shard(), placement.bucket()));
+        }
+        return placement;
+    }
+
+    public void unbind() {
+        ShardContext.restore(null);
+    }
+
+    /**
+     * Runs {@code work} once per shard, bound to it, and collects the results.
+     * Reserved for admin queries and maintenance jobs: request paths address one
+     * user or session and must stay on one shard. Without sharding it runs once.
+     */
+    public <T> List<T> fanOut(IntFunction<T> work) {
+        if (!isEnabled()) {
+            return Collections.singletonList(work.apply(CATALOG));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int s = shard;
+            results.add(ShardContext.on(s, () -> work.apply(s)));
+        }
+        return results;
+    }
+
+    /**
+     * Refuses a write to {@code locked} while its bucket is fenced on the shard the
+     * caller is bound to, i.e. being copied elsewhere. Called with the session row
+     * locked: the mover drains those locks after fencing, so a write that got past
+     * this check has committed before the copy starts.
+     */
+    public void checkFence(ChatSession locked) {
+        if (isEnabled() && fences.findLocked(ShardKeys.bucketOf(locked.getUserId())).isPresent()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Data is being moved to another shard, retry shortly");
+        }
+    }
+
+    @Scheduled(initialDelayString = "${chat.sharding.directory-refresh:PT5S}",
+            fixedDelayString = "${chat.sharding.directory-refresh:PT5S}")
+    public void reload() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            List<ShardDirectoryEntry> entries = ShardContext.on(CATALOG,
+                    () -> directory.findByKeyPrefix(BUCKET_KEY));
+            Map<Integer, Placement> moved = new HashMap<>();
+            for (ShardDirectoryEntry e : entries) {
+                int bucket = Integer.parseInt(e.getKey().substring(BUCKET_KEY.length()));
+                moved.put(bucket, new Placement(e.getShard(), bucket, e.isMoving()));
+            }
+            movedBuckets = Map.copyOf(moved);
+            legacySessions.invalidateAll();
+        } catch (RuntimeException e) {
+            // keep routing with the last known directory
+            log.warn("Shard directory reload failed: {}", e.toString());
+        }
+    }
+
+    public static String bucketKey(int bucket) {
+        return BUCKET_KEY + bucket;
+    }
+
+    public static String sessionKey(UUID sessionId) {
+        return SESSION_KEY + sessionId;
+    }
+}
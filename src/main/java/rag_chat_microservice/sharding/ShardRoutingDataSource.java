@@ -0,0 +1,56 @@
+package rag_chat_microservice.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out connections of the shard bound in {@link ShardContext}. Must sit
+ * behind a LazyConnectionDataSourceProxy so that a transaction begun before the
+ * binding still reaches the right database at its first statement.
+ * <p>
+ * Until {@link #setStrict} is called (after startup) unbound requests go to the
+ * catalog shard 0, where schema management and the shard directory live; after
+ * that they fail, so a code path that forgot to pick a shard cannot silently
+ * read or write the wrong one.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final List<DataSource> shards;
+    private volatile boolean strict;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public List<DataSource> shards() {
+        return shards;
+    }
+
+    public void setStrict(boolean strict) {
+        this.strict = strict;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        ShardContext.Binding binding = ShardContext.current();
+        if (binding != null) {
+            return binding.shard();
+        }
+        if (strict) {
+            throw new IllegalStateException("No shard bound to this thread (see ShardRouter)");
+        }
+        return 0;
+    }
+}
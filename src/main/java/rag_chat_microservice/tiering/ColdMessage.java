@@ -0,0 +1,33 @@
+package rag_chat_microservice.tiering;
+
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.dto.ChatMessageSummaryDto;
+import rag_chat_microservice.model.ChatMessage;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One message of a tiered session as kept in its cold record. The context is
+ * stored resolved (blob or legacy column), so a record never depends on
+ * context_blobs rows that may be gone or on another shard by the time it is read.
+ */
+public record ColdMessage(UUID id, Long seq, UUID replyTo, ChatMessage.Sender sender, String content,
+                          String context, LocalDateTime createdAt, boolean deleted) {
+
+    public static ColdMessage of(ChatMessage m) {
+        return new ColdMessage(m.getId(), m.getSeq(), m.getReplyTo(), m.getSender(), m.getContent(), m.getContext(),
+                m.getCreatedAt(), m.isDeleted());
+    }
+
+    public ChatMessageDto toDto(UUID sessionId) {
+        return new ChatMessageDto(id, sessionId, sender.name(), content, context, createdAt, seq, replyTo);
+    }
+
+    public ChatMessageSummaryDto toSummary(UUID sessionId) {
+        String preview = ChatMessage.previewOf(content);
+        int chars = content.codePointCount(0, content.length());
+        return new ChatMessageSummaryDto(id, sessionId, sender.name(), preview, chars,
+                chars > preview.codePointCount(0, preview.length()), context != null, createdAt, seq);
+    }
+}
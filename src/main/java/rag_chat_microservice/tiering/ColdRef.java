@@ -0,0 +1,15 @@
+package rag_chat_microservice.tiering;
+
+import rag_chat_microservice.model.ChatSession;
+
+/** Where a tiered session's history is: one record of one segment file. */
+public record ColdRef(String segment, long offset, int length) {
+
+    /** The session's record, or {@code null} while its messages are in chat_messages. */
+    public static ColdRef of(ChatSession session) {
+        if (session.getColdSegment() == null) {
+            return null;
+        }
+        return new ColdRef(session.getColdSegment(), session.getColdOffset(), session.getColdLength());
+    }
+}
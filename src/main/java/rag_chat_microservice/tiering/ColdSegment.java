@@ -0,0 +1,191 @@
+package rag_chat_microservice.tiering;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import rag_chat_microservice.model.ChatMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Byte format of one session's record in a cold segment file. A segment is a
+ * plain concatenation of records; each record is found through the offset and
+ * length stored on its session row, so a segment needs no index of its own.
+ *
+ * <pre>
+ * header   (40 bytes)  magic, version, session id msb/lsb, message count,
+ *                      raw body length, payload length, CRC32 of the payload
+ * payload              LZ4 (high compression) of the body
+ * body                 per message in seq order:
+ *                      id msb/lsb, seq (Long.MIN_VALUE = none), reply-to flag + msb/lsb,
+ *                      sender ordinal, created-at epoch second + nanos (UTC),
+ *                      deleted flag, content, context (int32 length, -1 = null, UTF-8)
+ * </pre>
+ *
+ * All multi-byte values are little-endian. The whole session is compressed as
+ * one block, so the repeated phrasing of a conversation compresses far better
+ * than the per-row compression of chat_messages.content.
+ */
+public final class ColdSegment {
+
+    static final int MAGIC = 0x314d4352; // "RCM1" little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 40;
+
+    private static final long NO_SEQ = Long.MIN_VALUE;
+    private static final ChatMessage.Sender[] SENDERS = ChatMessage.Sender.values();
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+    // written once, read rarely: spend the CPU on the ratio
+    private static final LZ4Compressor COMPRESSOR = LZ4.highCompressor();
+    // bounds-checked: a damaged record fails instead of reading past the buffer
+    private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4.safeDecompressor();
+
+    private ColdSegment() {
+    }
+
+    /** The complete record (header and payload) for a session's messages, in seq order. */
+    public static byte[] encode(UUID sessionId, List<ColdMessage> messages) {
+        List<byte[]> contents = new ArrayList<>(messages.size());
+        List<byte[]> contexts = new ArrayList<>(messages.size());
+        long size = 0;
+        for (ColdMessage m : messages) {
+            byte[] content = utf8(m.content());
+            byte[] context = utf8(m.context());
+            contents.add(content);
+            contexts.add(context);
+            size += 16 + 8 + 17 + 1 + 12 + 1 + length(content) + length(context);
+        }
+        if (size > Integer.MAX_VALUE - HEADER_BYTES) {
+            throw new IllegalArgumentException("Session " + sessionId + " is too large for a cold record");
+        }
+
+        ByteBuffer body = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < messages.size(); i++) {
+            ColdMessage m = messages.get(i);
+            body.putLong(m.id().getMostSignificantBits()).putLong(m.id().getLeastSignificantBits());
+            body.putLong((m.seq() != null) ? m.seq() : NO_SEQ);
+            UUID replyTo = m.replyTo();
+            body.put((byte) ((replyTo != null) ? 1 : 0));
+            body.putLong((replyTo != null) ? replyTo.getMostSignificantBits() : 0L);
+            body.putLong((replyTo != null) ? replyTo.getLeastSignificantBits() : 0L);
+            body.put((byte) m.sender().ordinal());
+            body.putLong(m.createdAt().toEpochSecond(ZoneOffset.UTC)).putInt(m.createdAt().getNano());
+            body.put((byte) (m.deleted() ? 1 : 0));
+            putString(body, contents.get(i));
+            putString(body, contexts.get(i));
+        }
+
+        byte[] raw = body.array();
+        byte[] record = new byte[HEADER_BYTES + COMPRESSOR.maxCompressedLength(raw.length)];
+        int payload = COMPRESSOR.compress(raw, 0, raw.length, record, HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(record, HEADER_BYTES, payload);
+        ByteBuffer.wrap(record, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(sessionId.getMostSignificantBits())
+                .putLong(sessionId.getLeastSignificantBits())
+                .putInt(messages.size())
+                .putInt(raw.length)
+                .putInt(payload)
+                .putInt((int) crc.getValue());
+        return Arrays.copyOf(record, HEADER_BYTES + payload);
+    }
+
+    /**
+     * Decodes the record at {@code offset} of a mapped segment, checking that it
+     * belongs to {@code sessionId} and is intact.
+     */
+    public static List<ColdMessage> decode(ByteBuffer segment, long offset, int length, UUID sessionId)
+            throws IOException {
+        if (offset < 0 || length < HEADER_BYTES || offset + length > segment.capacity()) {
+            throw new IOException("Cold record out of bounds: offset " + offset + ", length " + length
+                    + ", segment " + segment.capacity() + " bytes");
+        }
+        ByteBuffer header = segment.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int at = (int) offset;
+        if (header.getInt(at) != MAGIC) {
+            throw new IOException("No cold record at offset " + offset);
+        }
+        int version = header.getInt(at + 4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported cold record version " + version);
+        }
+        UUID owner = new UUID(header.getLong(at + 8), header.getLong(at + 16));
+        if (!owner.equals(sessionId)) {
+            throw new IOException("Cold record at offset " + offset + " belongs to session " + owner);
+        }
+        int count = header.getInt(at + 24);
+        int rawLength = header.getInt(at + 28);
+        int payload = header.getInt(at + 32);
+        if (HEADER_BYTES + payload != length) {
+            throw new IOException("Cold record length " + length + " does not match its payload of " + payload);
+        }
+
+        byte[] packed = new byte[payload];
+        segment.get(at + HEADER_BYTES, packed);
+        CRC32 crc = new CRC32();
+        crc.update(packed);
+        if ((int) crc.getValue() != header.getInt(at + 36)) {
+            throw new IOException("Cold record of session " + sessionId + " is corrupt (CRC mismatch)");
+        }
+        byte[] raw = new byte[rawLength];
+        if (DECOMPRESSOR.decompress(packed, 0, payload, raw, 0) != rawLength) {
+            throw new IOException("Cold record of session " + sessionId + " is corrupt (length mismatch)");
+        }
+
+        ByteBuffer body = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        List<ColdMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(body.getLong(), body.getLong());
+            long seq = body.getLong();
+            boolean hasReply = body.get() != 0;
+            UUID replyTo = new UUID(body.getLong(), body.getLong());
+            ChatMessage.Sender sender = SENDERS[body.get()];
+            LocalDateTime createdAt = LocalDateTime.ofEpochSecond(body.getLong(), body.getInt(), ZoneOffset.UTC);
+            boolean deleted = body.get() != 0;
+            String content = getString(body);
+            String context = getString(body);
+            messages.add(new ColdMessage(id, (seq != NO_SEQ) ? seq : null, hasReply ? replyTo : null, sender,
+                    content, context, createdAt, deleted));
+        }
+        return messages;
+    }
+
+    private static byte[] utf8(String s) {
+        return (s == null) ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return 4 + ((bytes == null) ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer body, byte[] bytes) {
+        if (bytes == null) {
+            body.putInt(-1);
+        } else {
+            body.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer body) {
+        int n = body.getInt();
+        if (n < 0) {
+            return null;
+        }
+        String s = new String(body.array(), body.position(), n, StandardCharsets.UTF_8);
+        body.position(body.position() + n);
+        return s;
+    }
+}
@@ -0,0 +1,62 @@
+package rag_chat_microservice.tiering;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Appends session records ({@link ColdSegment}) to a new segment file. Nothing
+ * is ever rewritten: a record's offset is final once appended, and
+ * {@link #close()} forces the file to disk. Point session rows at the returned
+ * {@link ColdRef}s only after closing, so a crash leaves at worst an unreferenced
+ * segment for the tiering job to collect.
+ */
+public final class ColdSegmentWriter implements Closeable {
+
+    private final Path path;
+    private final FileChannel channel;
+    private long size;
+
+    ColdSegmentWriter(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /** Bytes appended so far. */
+    public long size() {
+        return size;
+    }
+
+    public ColdRef append(UUID sessionId, List<ColdMessage> messages) throws IOException {
+        byte[] record = ColdSegment.encode(sessionId, messages);
+        if (size + record.length > Integer.MAX_VALUE) {
+            // segments are mapped whole, and a MappedByteBuffer is limited to 2 GiB
+            throw new IOException("Segment " + path.getFileName() + " is full");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        ColdRef ref = new ColdRef(path.getFileName().toString(), size, record.length);
+        size += record.length;
+        return ref;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package rag_chat_microservice.tiering;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Segment files of tiered session history under {@code chat.tiering.dir}.
+ * Segments are mapped read-only on first use and the mappings kept in a bounded
+ * cache, so reopening an old session costs a page-cache read and one LZ4 decode;
+ * decoded sessions are cached as well, for the paging that usually follows.
+ * <p>
+ * Always active, whether or not the tiering job runs on this instance: any
+ * instance may be asked for a session another one has tiered. With several
+ * instances the directory must be shared between them.
+ */
+@Slf4j
+@Component
+public class ColdStore {
+
+    static final String SEGMENT_SUFFIX = ".cold";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("seg-\\d{8}T\\d{6}Z-[0-9a-f]{8}\\" + SEGMENT_SUFFIX);
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    @Value("${chat.tiering.dir:./data/cold}")
+    private String dir;
+
+    @Value("${chat.tiering.mapped-segments:128}")
+    private int mappedSegments;
+
+    @Value("${chat.tiering.cache-sessions:256}")
+    private int cacheSessions;
+
+    private Path root;
+    private LoadingCache<String, MappedByteBuffer> mappings;
+    private Cache<ColdRef, List<ColdMessage>> decoded;
+
+    @PostConstruct
+    void init() {
+        root = Paths.get(dir);
+        // an evicted mapping is unmapped once the GC collects it
+        mappings = Caffeine.newBuilder().maximumSize(mappedSegments).build(this::map);
+        decoded = Caffeine.newBuilder().maximumSize(cacheSessions).expireAfterAccess(Duration.ofMinutes(10)).build();
+    }
+
+    /** The messages of a tiered session, in seq order. */
+    public List<ColdMessage> read(UUID sessionId, ColdRef ref) {
+        return decoded.get(ref, r -> {
+            try {
+                return ColdSegment.decode(mappings.get(r.segment()), r.offset(), r.length(), sessionId);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read session " + sessionId + " from " + r.segment(), e);
+            }
+        });
+    }
+
+    /** A new, empty segment; the caller appends to it and closes it. */
+    public ColdSegmentWriter newSegment() throws IOException {
+        Files.createDirectories(root);
+        String name = "seg-" + FILE_STAMP.format(LocalDateTime.now(ZoneOffset.UTC)) + "-"
+                + String.format("%08x", ThreadLocalRandom.current().nextInt()) + SEGMENT_SUFFIX;
+        return new ColdSegmentWriter(root.resolve(name));
+    }
+
+    /** Segment files on disk, oldest name first. */
+    public List<Path> segments() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(root)) {
+            return files.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches()).sorted().toList();
+        }
+    }
+
+    /** Removes a segment no session refers to any more. */
+    public void delete(String segment) throws IOException {
+        mappings.invalidate(segment);
+        decoded.asMap().keySet().removeIf(ref -> ref.segment().equals(segment));
+        if (Files.deleteIfExists(resolve(segment))) {
+            log.info("Deleted cold segment {}", segment);
+        }
+    }
+
+    private MappedByteBuffer map(String segment) {
+        try (FileChannel ch = FileChannel.open(resolve(segment), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (NoSuchFileException e) {
+            throw new UncheckedIOException("Cold segment " + segment + " is missing from " + root.toAbsolutePath(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map cold segment " + segment, e);
+        }
+    }
+
+    private Path resolve(String segment) {
+        // names come from the database; never let one point outside the directory
+        if (!SEGMENT_NAME.matcher(segment).matches()) {
+            throw new IllegalArgumentException("Not a cold segment name: " + segment);
+        }
+        return root.resolve(segment);
+    }
+}
@@ -0,0 +1,11 @@
+package rag_chat_microservice.vector;
+
+/**
+ * Turns text into a fixed-size embedding.
+ */
+public interface Embedder {
+
+    int dimension();
+
+    float[] embed(String text);
+}
@@ -0,0 +1,57 @@
+package rag_chat_microservice.vector;
+
+import java.util.Locale;
+
+/**
+ * Local, deterministic embedder based on signed feature hashing of unigrams and
+ * bigrams. It needs no model download or network access, which makes it the
+ * default for offline evaluation and tests; quality is lexical, not semantic.
+ */
+public class HashingEmbedder implements Embedder {
+
+    private static final float BIGRAM_WEIGHT = 0.5f;
+
+    private final int dimension;
+
+    public HashingEmbedder(int dimension) {
+        if (dimension <= 0) throw new IllegalArgumentException("dimension must be positive");
+        this.dimension = dimension;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] v = new float[dimension];
+        if (text == null || text.isBlank()) return v;
+        String[] tokens = text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+        String prev = null;
+        for (String t : tokens) {
+            if (t.isEmpty()) continue;
+            add(v, mix(t.hashCode()), 1f);
+            if (prev != null) {
+                add(v, mix(prev.hashCode() * 31 + t.hashCode()), BIGRAM_WEIGHT);
+            }
+            prev = t;
+        }
+        return ScalarQuantizer.normalize(v);
+    }
+
+    private void add(float[] v, int h, float weight) {
+        int bucket = Math.floorMod(h, dimension);
+        v[bucket] += (h & 0x80000000) == 0 ? weight : -weight;
+    }
+
+    // murmur3 fmix32: spreads String.hashCode over all bits
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,125 @@
+package rag_chat_microservice.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SIMD kernels on top of {@code jdk.incubator.vector}. Only loaded by
+ * {@link SimilarityKernels} when the module is present, i.e. the JVM was started
+ * with {@code --add-modules jdk.incubator.vector}. Tails shorter than one
+ * vector fall back to scalar loops.
+ */
+final class PanamaSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+    // byte lanes must match int lanes so B2I widening stays within one shape
+    private static final VectorSpecies<Byte> B = I.length() >= 16 ? ByteVector.SPECIES_128 : ByteVector.SPECIES_64;
+    private static final boolean INT8_SIMD = I.length() >= 8 && B.length() == I.length();
+
+    private final ScalarSimilarityKernel scalar = new ScalarSimilarityKernel();
+
+    @Override
+    public String name() {
+        return "panama-" + F.vectorBitSize();
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        FloatVector acc = FloatVector.zero(F);
+        int i = 0;
+        int bound = F.loopBound(a.length);
+        for (; i < bound; i += F.length()) {
+            acc = FloatVector.fromArray(F, a, i).fma(FloatVector.fromArray(F, b, i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] query, ByteBuffer vectors, int offset) {
+        FloatVector acc = FloatVector.zero(F);
+        int i = 0;
+        int bound = F.loopBound(query.length);
+        for (; i < bound; i += F.length()) {
+            FloatVector v = FloatVector.fromByteBuffer(F, vectors, offset + (i << 2), ByteOrder.LITTLE_ENDIAN);
+            acc = FloatVector.fromArray(F, query, i).fma(v, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            sum += query[i] * vectors.getFloat(offset + (i << 2));
+        }
+        return sum;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        FloatVector dot = FloatVector.zero(F);
+        FloatVector na = FloatVector.zero(F);
+        FloatVector nb = FloatVector.zero(F);
+        int i = 0;
+        int bound = F.loopBound(a.length);
+        for (; i < bound; i += F.length()) {
+            FloatVector va = FloatVector.fromArray(F, a, i);
+            FloatVector vb = FloatVector.fromArray(F, b, i);
+            dot = va.fma(vb, dot);
+            na = va.fma(va, na);
+            nb = vb.fma(vb, nb);
+        }
+        float d = dot.reduceLanes(VectorOperators.ADD);
+        float sa = na.reduceLanes(VectorOperators.ADD);
+        float sb = nb.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            d += a[i] * b[i];
+            sa += a[i] * a[i];
+            sb += b[i] * b[i];
+        }
+        return ScalarSimilarityKernel.cosine(d, sa, sb);
+    }
+
+    @Override
+    public int dotInt8(byte[] a, byte[] b) {
+        if (!INT8_SIMD) return scalar.dotInt8(a, b);
+        IntVector acc = IntVector.zero(I);
+        int i = 0;
+        int bound = B.loopBound(a.length);
+        for (; i < bound; i += B.length()) {
+            IntVector va = (IntVector) ByteVector.fromArray(B, a, i).convertShape(VectorOperators.B2I, I, 0);
+            IntVector vb = (IntVector) ByteVector.fromArray(B, b, i).convertShape(VectorOperators.B2I, I, 0);
+            acc = acc.add(va.mul(vb));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int dotInt8(byte[] query, ByteBuffer codes, int offset) {
+        if (!INT8_SIMD) return scalar.dotInt8(query, codes, offset);
+        IntVector acc = IntVector.zero(I);
+        int i = 0;
+        int bound = B.loopBound(query.length);
+        for (; i < bound; i += B.length()) {
+            IntVector vq = (IntVector) ByteVector.fromArray(B, query, i).convertShape(VectorOperators.B2I, I, 0);
+            IntVector vc = (IntVector) ByteVector.fromByteBuffer(B, codes, offset + i, ByteOrder.LITTLE_ENDIAN)
+                    .convertShape(VectorOperators.B2I, I, 0);
+            acc = acc.add(vq.mul(vc));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            sum += query[i] * codes.get(offset + i);
+        }
+        return sum;
+    }
+}
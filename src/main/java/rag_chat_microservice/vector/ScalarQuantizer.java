@@ -0,0 +1,53 @@
+package rag_chat_microservice.vector;
+
+import java.util.Arrays;
+
+/**
+ * Symmetric int8 scalar quantization with one scale per vector.
+ * A float vector v is stored as codes q[i] = round(v[i] / scale) with
+ * scale = max|v| / 127, so dot(a, b) ~= scaleA * scaleB * dot(qa, qb).
+ */
+public final class ScalarQuantizer {
+
+    private ScalarQuantizer() {
+    }
+
+    /**
+     * Quantizes {@code vector} into {@code codes} and returns the scale needed to
+     * map the int8 dot product back to float space.
+     */
+    public static float quantize(float[] vector, byte[] codes) {
+        if (codes.length != vector.length) {
+            throw new IllegalArgumentException("codes length " + codes.length + " != dimension " + vector.length);
+        }
+        float maxAbs = 0f;
+        for (float f : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(f));
+        }
+        if (maxAbs == 0f) {
+            Arrays.fill(codes, (byte) 0);
+            return 0f;
+        }
+        float scale = maxAbs / 127f;
+        float inv = 1f / scale;
+        for (int i = 0; i < vector.length; i++) {
+            int q = Math.round(vector[i] * inv);
+            codes[i] = (byte) Math.max(-127, Math.min(127, q));
+        }
+        return scale;
+    }
+
+    /** Scales {@code vector} in place to unit length so dot product == cosine. */
+    public static float[] normalize(float[] vector) {
+        double sum = 0d;
+        for (float f : vector) {
+            sum += (double) f * f;
+        }
+        if (sum == 0d) return vector;
+        float inv = (float) (1d / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= inv;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,67 @@
+package rag_chat_microservice.vector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Plain Java loops; the fallback when the Vector API module is not available.
+ * Vectors on disk are read with absolute gets, so nothing is copied onto the heap.
+ */
+final class ScalarSimilarityKernel implements SimilarityKernel {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] query, ByteBuffer vectors, int offset) {
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * vectors.getFloat(offset + (i << 2));
+        }
+        return sum;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        float dot = 0f, na = 0f, nb = 0f;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return cosine(dot, na, nb);
+    }
+
+    @Override
+    public int dotInt8(byte[] a, byte[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int dotInt8(byte[] query, ByteBuffer codes, int offset) {
+        int sum = 0;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * codes.get(offset + i);
+        }
+        return sum;
+    }
+
+    static float cosine(float dot, float na, float nb) {
+        if (na == 0f || nb == 0f) return 0f;
+        return (float) (dot / Math.sqrt((double) na * nb));
+    }
+}
@@ -0,0 +1,25 @@
+package rag_chat_microservice.vector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Similarity primitives on the retrieval hot path. Buffers passed in must be
+ * little-endian; offsets are absolute byte offsets into the buffer.
+ * Use {@link SimilarityKernels#get()} to obtain the implementation selected at startup.
+ */
+public interface SimilarityKernel {
+
+    String name();
+
+    float dot(float[] a, float[] b);
+
+    /** Dot product of {@code query} with the float32 vector stored at {@code offset}. */
+    float dot(float[] query, ByteBuffer vectors, int offset);
+
+    float cosine(float[] a, float[] b);
+
+    int dotInt8(byte[] a, byte[] b);
+
+    /** Dot product of int8 {@code query} codes with the codes stored at {@code offset}. */
+    int dotInt8(byte[] query, ByteBuffer codes, int offset);
+}
@@ -0,0 +1,53 @@
+package rag_chat_microservice.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Picks the similarity kernel once per JVM. The Vector API implementation is used
+ * when {@code jdk.incubator.vector} is in the boot layer; otherwise, or with
+ * {@code -Dvector.kernel=scalar}, the plain Java loops are used.
+ */
+@Slf4j
+public final class SimilarityKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final SimilarityKernel SCALAR = new ScalarSimilarityKernel();
+    private static final SimilarityKernel SELECTED = select(System.getProperty("vector.kernel", "auto"));
+
+    private SimilarityKernels() {
+    }
+
+    public static SimilarityKernel get() {
+        return SELECTED;
+    }
+
+    public static SimilarityKernel scalar() {
+        return SCALAR;
+    }
+
+    /** The Vector API kernel, or {@code null} if the module isn't available in this JVM. */
+    public static SimilarityKernel panama() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) return null;
+        try {
+            // loaded reflectively so this class links even without the module
+            return (SimilarityKernel) Class.forName(SimilarityKernels.class.getPackageName() + ".PanamaSimilarityKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Vector API kernel unavailable, using scalar fallback: {}", e.toString());
+            return null;
+        }
+    }
+
+    static SimilarityKernel select(String mode) {
+        SimilarityKernel kernel = "scalar".equalsIgnoreCase(mode) ? null : panama();
+        if (kernel == null) {
+            if ("panama".equalsIgnoreCase(mode)) {
+                log.warn("vector.kernel=panama requested but {} is not available; start the JVM with --add-modules {}",
+                        VECTOR_MODULE, VECTOR_MODULE);
+            }
+            kernel = SCALAR;
+        }
+        log.info("Using {} similarity kernel", kernel.name());
+        return kernel;
+    }
+}
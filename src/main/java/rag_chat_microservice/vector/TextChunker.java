@@ -0,0 +1,31 @@
+package rag_chat_microservice.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits text into overlapping windows of whitespace-separated words.
+ */
+public final class TextChunker {
+
+    private TextChunker() {
+    }
+
+    public static List<String> chunk(String text, int chunkWords, int overlapWords) {
+        if (chunkWords <= 0) throw new IllegalArgumentException("chunkWords must be positive");
+        if (overlapWords < 0 || overlapWords >= chunkWords) {
+            throw new IllegalArgumentException("overlapWords must be in [0, chunkWords)");
+        }
+        String[] words = text.trim().split("\\s+");
+        List<String> chunks = new ArrayList<>();
+        if (words.length == 1 && words[0].isEmpty()) return chunks;
+        int step = chunkWords - overlapWords;
+        for (int start = 0; start < words.length; start += step) {
+            int end = Math.min(words.length, start + chunkWords);
+            chunks.add(String.join(" ", Arrays.copyOfRange(words, start, end)));
+            if (end == words.length) break;
+        }
+        return chunks;
+    }
+}
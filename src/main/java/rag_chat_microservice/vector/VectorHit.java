@@ -0,0 +1,9 @@
+package rag_chat_microservice.vector;
+
+import java.util.UUID;
+
+/**
+ * A single search result: the id of the stored vector and its similarity to the query.
+ */
+public record VectorHit(UUID id, float score) {
+}
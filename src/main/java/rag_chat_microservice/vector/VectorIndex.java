@@ -0,0 +1,141 @@
+package rag_chat_microservice.vector;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Vector store made of immutable memory-mapped segments plus a small on-heap
+ * write buffer. The buffer is snapshotted into a new segment file on flush, so a
+ * restart only has to map the existing files instead of re-embedding chunks.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "vector.index.enabled", havingValue = "true")
+public class VectorIndex {
+
+    static final String SEGMENT_SUFFIX = ".vseg";
+
+    @Value("${vector.index.dir:./data/vectors}")
+    private String dir;
+
+    @Value("${vector.index.dimension:768}")
+    private int dimension;
+
+    @Value("${vector.index.flush-threshold:50000}")
+    private int flushThreshold;
+
+    @Value("${vector.index.rerank-depth:100}")
+    private int rerankDepth;
+
+    private final List<VectorSegment> segments = new CopyOnWriteArrayList<>();
+    private final Map<UUID, float[]> buffer = new LinkedHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    void open() throws IOException {
+        Path root = Paths.get(dir);
+        Files.createDirectories(root);
+        long start = System.nanoTime();
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path p : files.filter(f -> f.toString().endsWith(SEGMENT_SUFFIX)).sorted().toList()) {
+                VectorSegment seg = VectorSegment.open(p);
+                if (seg.dimension() != dimension) {
+                    throw new IllegalStateException("Segment " + p + " has dimension " + seg.dimension()
+                            + " but vector.index.dimension=" + dimension);
+                }
+                segments.add(seg);
+            }
+        }
+        log.info("Mapped {} vector segments ({} vectors) from {} in {} ms", segments.size(), size(), root,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    void close() {
+        flush();
+    }
+
+    /** Adds a vector; it becomes searchable immediately and durable on the next flush. */
+    public void add(UUID id, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension " + vector.length + " != " + dimension);
+        }
+        boolean full;
+        lock.writeLock().lock();
+        try {
+            buffer.put(id, ScalarQuantizer.normalize(vector.clone()));
+            full = buffer.size() >= flushThreshold;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (full) flush();
+    }
+
+    /** Writes the buffered vectors into a new immutable segment and maps it. */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            if (buffer.isEmpty()) return;
+            Path target = Paths.get(dir).resolve(String.format("segment-%013d-%04d%s",
+                    System.currentTimeMillis(), segments.size(), SEGMENT_SUFFIX));
+            VectorSegmentWriter.write(target, dimension, new ArrayList<>(buffer.keySet()),
+                    new ArrayList<>(buffer.values()));
+            segments.add(VectorSegment.open(target));
+            log.info("Flushed {} vectors to {}", buffer.size(), target.getFileName());
+            buffer.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to flush vector segment", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Cosine top-k across all mapped segments and the write buffer. */
+    public List<VectorHit> search(float[] query, int k) {
+        float[] q = ScalarQuantizer.normalize(query.clone());
+        SimilarityKernel kernel = SimilarityKernels.get();
+        List<VectorHit> all = new ArrayList<>();
+        // hold the read lock across segments and buffer so a concurrent flush
+        // can't move vectors between them mid-search
+        lock.readLock().lock();
+        try {
+            for (VectorSegment seg : segments) {
+                all.addAll(seg.search(q, k, rerankDepth));
+            }
+            buffer.forEach((id, v) -> all.add(new VectorHit(id, kernel.dot(q, v))));
+        } finally {
+            lock.readLock().unlock();
+        }
+        all.sort(Comparator.comparingDouble(VectorHit::score).reversed());
+        return all.size() > k ? new ArrayList<>(all.subList(0, k)) : all;
+    }
+
+    public int size() {
+        int n = segments.stream().mapToInt(VectorSegment::size).sum();
+        lock.readLock().lock();
+        try {
+            return n + buffer.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
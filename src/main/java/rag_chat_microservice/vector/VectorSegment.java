@@ -0,0 +1,198 @@
+package rag_chat_microservice.vector;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read-only, memory-mapped view of a segment written by {@link VectorSegmentWriter}.
+ * Opening a segment only maps the file; vectors stay in the page cache and never
+ * touch the Java heap. Search scans the int8 codes and re-ranks the best
+ * candidates against the float32 originals.
+ */
+public final class VectorSegment {
+
+    static final int MAGIC = 0x31535652; // "RVS1" little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+
+    private final Path path;
+    private final MappedByteBuffer buf;
+    private final int dimension;
+    private final int count;
+    private final int idsOffset;
+    private final int scalesOffset;
+    private final int codesOffset;
+    private final int floatsOffset;
+
+    private VectorSegment(Path path, MappedByteBuffer buf) throws IOException {
+        this.path = path;
+        this.buf = buf;
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a vector segment: " + path);
+        }
+        int version = buf.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported segment version " + version + " in " + path);
+        }
+        this.dimension = buf.getInt(8);
+        this.count = buf.getInt(12);
+        this.idsOffset = (int) buf.getLong(16);
+        this.scalesOffset = (int) buf.getLong(24);
+        this.codesOffset = (int) buf.getLong(32);
+        this.floatsOffset = (int) buf.getLong(40);
+        long expected = floatsOffset + 4L * dimension * count;
+        if (buf.capacity() != expected) {
+            throw new IOException("Truncated segment " + path + ": " + buf.capacity() + " bytes, expected " + expected);
+        }
+    }
+
+    public static VectorSegment open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new VectorSegment(path, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public UUID idAt(int ordinal) {
+        int off = idsOffset + (ordinal << 4);
+        return new UUID(buf.getLong(off), buf.getLong(off + 8));
+    }
+
+    /**
+     * Approximate search over the quantized codes followed by exact float re-ranking.
+     *
+     * @param query       unit-length query vector
+     * @param k           number of hits to return
+     * @param rerankDepth number of int8 candidates re-scored in float32 (at least k)
+     */
+    public List<VectorHit> search(float[] query, int k, int rerankDepth) {
+        return search(query, k, rerankDepth, SimilarityKernels.get());
+    }
+
+    /** Same as {@link #search(float[], int, int)} with an explicit kernel, e.g. for benchmarks. */
+    public List<VectorHit> search(float[] query, int k, int rerankDepth, SimilarityKernel kernel) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Query dimension " + query.length + " != segment dimension " + dimension);
+        }
+        if (count == 0 || k <= 0) return List.of();
+
+        byte[] q = new byte[dimension];
+        float qScale = ScalarQuantizer.quantize(query, q);
+
+        TopK candidates = new TopK(Math.min(count, Math.max(k, rerankDepth)));
+        for (int i = 0; i < count; i++) {
+            float approx = buf.getFloat(scalesOffset + (i << 2)) * qScale
+                    * kernel.dotInt8(q, buf, codesOffset + i * dimension);
+            candidates.offer(approx, i);
+        }
+
+        TopK exact = new TopK(Math.min(k, candidates.size()));
+        for (int j = 0; j < candidates.size(); j++) {
+            int ordinal = candidates.ordinal(j);
+            exact.offer(kernel.dot(query, buf, floatsOffset + ordinal * dimension * 4), ordinal);
+        }
+
+        List<VectorHit> hits = new ArrayList<>(exact.size());
+        for (int j : exact.sortedDescending()) {
+            hits.add(new VectorHit(idAt(exact.ordinal(j)), exact.score(j)));
+        }
+        return hits;
+    }
+
+    /** Bounded min-heap over (score, ordinal) pairs without boxing. */
+    static final class TopK {
+        private final float[] scores;
+        private final int[] ordinals;
+        private int size;
+
+        TopK(int capacity) {
+            this.scores = new float[capacity];
+            this.ordinals = new int[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float score(int j) {
+            return scores[j];
+        }
+
+        int ordinal(int j) {
+            return ordinals[j];
+        }
+
+        void offer(float score, int ordinal) {
+            if (scores.length == 0) return;
+            if (size < scores.length) {
+                scores[size] = score;
+                ordinals[size] = ordinal;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                scores[0] = score;
+                ordinals[0] = ordinal;
+                siftDown(0);
+            }
+        }
+
+        /** Heap slots ordered by score, best first. */
+        int[] sortedDescending() {
+            Integer[] idx = new Integer[size];
+            for (int i = 0; i < size; i++) idx[i] = i;
+            Arrays.sort(idx, (a, b) -> Float.compare(scores[b], scores[a]));
+            int[] out = new int[size];
+            for (int i = 0; i < size; i++) out[i] = idx[i];
+            return out;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[i] >= scores[parent]) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1, r = l + 1, min = i;
+                if (l < size && scores[l] < scores[min]) min = l;
+                if (r < size && scores[r] < scores[min]) min = r;
+                if (min == i) return;
+                swap(i, min);
+                i = min;
+            }
+        }
+
+        private void swap(int a, int b) {
+            float s = scores[a];
+            scores[a] = scores[b];
+            scores[b] = s;
+            int o = ordinals[a];
+            ordinals[a] = ordinals[b];
+            ordinals[b] = o;
+        }
+    }
+}
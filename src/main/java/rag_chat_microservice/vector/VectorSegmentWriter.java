@@ -0,0 +1,129 @@
+package rag_chat_microservice.vector;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes an immutable vector segment file. The file is written next to its final
+ * name, forced to disk and atomically renamed, and the directory is forced after
+ * the rename, so a crash never leaves a half-written segment that
+ * {@link VectorSegment#open(Path)} would pick up, nor loses one already returned.
+ *
+ * <pre>
+ * header  (64 bytes)  magic, version, dimension, count, section offsets
+ * ids     count * 16  UUID msb/lsb
+ * scales  count * 4   float32 quantization scale per vector
+ * codes   count * dim int8 codes (padded to 8 bytes)
+ * floats  count * dim * 4  float32 originals, read only when re-ranking
+ * </pre>
+ *
+ * All multi-byte values are little-endian.
+ */
+public final class VectorSegmentWriter {
+
+    private VectorSegmentWriter() {
+    }
+
+    public static Path write(Path target, int dimension, List<UUID> ids, List<float[]> vectors) throws IOException {
+        if (ids.size() != vectors.size()) {
+            throw new IllegalArgumentException("ids and vectors must have the same size");
+        }
+        final int count = ids.size();
+
+        long idsOffset = VectorSegment.HEADER_BYTES;
+        long scalesOffset = idsOffset + 16L * count;
+        long codesOffset = scalesOffset + 4L * count;
+        long floatsOffset = align8(codesOffset + (long) dimension * count);
+        long totalBytes = floatsOffset + 4L * dimension * count;
+        if (totalBytes > Integer.MAX_VALUE) {
+            // a single MappedByteBuffer is limited to 2 GiB; flush more often instead
+            throw new IllegalArgumentException("Segment too large (" + totalBytes + " bytes); lower the flush threshold");
+        }
+
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+
+            ByteBuffer header = ByteBuffer.allocate(VectorSegment.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(VectorSegment.MAGIC)
+                    .putInt(VectorSegment.VERSION)
+                    .putInt(dimension)
+                    .putInt(count)
+                    .putLong(idsOffset)
+                    .putLong(scalesOffset)
+                    .putLong(codesOffset)
+                    .putLong(floatsOffset);
+            out.write(header.array());
+
+            ByteBuffer idBuf = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            for (UUID id : ids) {
+                idBuf.clear();
+                idBuf.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+                out.write(idBuf.array());
+            }
+
+            // quantize once; keep codes around for the codes section
+            byte[][] codes = new byte[count][];
+            ByteBuffer scaleBuf = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < count; i++) {
+                float[] v = vectors.get(i);
+                if (v.length != dimension) {
+                    throw new IllegalArgumentException("Vector " + ids.get(i) + " has dimension " + v.length
+                            + ", expected " + dimension);
+                }
+                codes[i] = new byte[dimension];
+                float scale = ScalarQuantizer.quantize(v, codes[i]);
+                scaleBuf.clear();
+                out.write(scaleBuf.putFloat(scale).array());
+            }
+
+            for (byte[] c : codes) {
+                out.write(c);
+            }
+            out.write(new byte[(int) (floatsOffset - codesOffset - (long) dimension * count)]);
+
+            ByteBuffer floatBuf = ByteBuffer.allocate(4 * dimension).order(ByteOrder.LITTLE_ENDIAN);
+            for (float[] v : vectors) {
+                floatBuf.clear();
+                floatBuf.asFloatBuffer().put(v);
+                out.write(floatBuf.array());
+            }
+            out.flush();
+            // without this the rename can reach the disk before the data does
+            file.getChannel().force(true);
+        }
+
+        Path moved = Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(moved.toAbsolutePath().getParent());
+        return moved;
+    }
+
+    /** Makes a rename in {@code dir} durable. */
+    private static void forceDirectory(Path dir) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Windows cannot open a directory; NTFS journals the rename itself
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static long align8(long v) {
+        return (v + 7) & ~7L;
+    }
+}
@@ -0,0 +1,12 @@
+-- Moves inline chat_messages.context values into the content-addressed context_blobs table.
+-- Hibernate (ddl-auto=update) creates context_blobs and chat_messages.context_hash on startup;
+-- run this once afterwards. Rows not yet migrated keep working through the legacy column.
+
+INSERT IGNORE INTO context_blobs (hash, content, size_bytes, created_at)
+SELECT SHA2(context, 256), context, OCTET_LENGTH(context), NOW()
+FROM chat_messages
+WHERE context IS NOT NULL AND context <> '' AND context_hash IS NULL;
+
+UPDATE chat_messages
+SET context_hash = SHA2(context, 256), context = NULL
+WHERE context IS NOT NULL AND context <> '' AND context_hash IS NULL;
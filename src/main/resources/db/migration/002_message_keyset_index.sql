@@ -0,0 +1,4 @@
+-- Kept for numbering only. It used to create a (session_id, created_at, id) index for
+-- keyset pagination of message history; history now pages by seq (004), whose unique
+-- (session_id, seq) key serves that, so a fresh series no longer builds an index that
+-- a later script drops again (MySQL 8).
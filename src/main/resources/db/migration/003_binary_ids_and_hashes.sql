@@ -0,0 +1,41 @@
+-- Converts text keys to the binary layout used by the entities (MySQL 8):
+--   chat_sessions.id, chat_messages.id, chat_messages.session_id  CHAR(36)    -> BINARY(16)
+--   chat_messages.content_hash                                    VARCHAR(64) -> BINARY(32)
+-- UUID_TO_BIN without the swap flag matches Hibernate's byte order (msb then lsb).
+-- Existing random ids are kept; only new rows get time-ordered UUIDv7 ids.
+-- ddl-auto=update never changes column types, so run this with the app stopped.
+-- Schemas first created by Hibernate 6 may already have BINARY(16) ids; if
+-- SHOW CREATE TABLE chat_sessions says so, run only step 3.
+
+-- 1. drop the foreign key so the referenced key can be rebuilt
+SET @fk := (SELECT CONSTRAINT_NAME FROM information_schema.KEY_COLUMN_USAGE
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages'
+              AND COLUMN_NAME = 'session_id' AND REFERENCED_TABLE_NAME = 'chat_sessions');
+SET @sql := CONCAT('ALTER TABLE chat_messages DROP FOREIGN KEY ', @fk);
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. ids
+ALTER TABLE chat_sessions ADD COLUMN id_bin BINARY(16);
+UPDATE chat_sessions SET id_bin = UUID_TO_BIN(id);
+ALTER TABLE chat_sessions DROP PRIMARY KEY, DROP COLUMN id;
+ALTER TABLE chat_sessions RENAME COLUMN id_bin TO id;
+ALTER TABLE chat_sessions MODIFY id BINARY(16) NOT NULL, ADD PRIMARY KEY (id);
+
+ALTER TABLE chat_messages ADD COLUMN id_bin BINARY(16), ADD COLUMN session_id_bin BINARY(16);
+UPDATE chat_messages SET id_bin = UUID_TO_BIN(id), session_id_bin = UUID_TO_BIN(session_id);
+ALTER TABLE chat_messages DROP PRIMARY KEY, DROP COLUMN id, DROP COLUMN session_id;
+ALTER TABLE chat_messages RENAME COLUMN id_bin TO id, RENAME COLUMN session_id_bin TO session_id;
+ALTER TABLE chat_messages
+    MODIFY id BINARY(16) NOT NULL,
+    MODIFY session_id BINARY(16) NOT NULL,
+    ADD PRIMARY KEY (id),
+    ADD CONSTRAINT fk_chat_messages_session FOREIGN KEY (session_id) REFERENCES chat_sessions (id);
+
+-- 3. content hashes
+ALTER TABLE chat_messages ADD COLUMN content_hash_bin BINARY(32);
+UPDATE chat_messages SET content_hash_bin = UNHEX(content_hash);
+ALTER TABLE chat_messages DROP COLUMN content_hash;
+ALTER TABLE chat_messages RENAME COLUMN content_hash_bin TO content_hash;
+ALTER TABLE chat_messages MODIFY content_hash BINARY(32) NOT NULL;
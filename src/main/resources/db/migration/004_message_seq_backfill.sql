@@ -0,0 +1,29 @@
+-- Per-session turn sequence (chat_messages.seq, chat_sessions.last_seq) and AI reply links
+-- (chat_messages.reply_to). Run once with the app stopped, before starting the version
+-- that allocates seqs, so new messages continue after the backfilled numbers (MySQL 8).
+
+ALTER TABLE chat_sessions ADD COLUMN last_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE chat_messages ADD COLUMN seq BIGINT NULL, ADD COLUMN reply_to BINARY(16) NULL;
+
+-- number existing messages in their old (created_at, id) order
+UPDATE chat_messages m
+JOIN (SELECT id, ROW_NUMBER() OVER (PARTITION BY session_id ORDER BY created_at, id) AS rn
+      FROM chat_messages) r ON r.id = m.id
+SET m.seq = r.rn;
+
+-- link each AI message to the closest USER message before it
+UPDATE chat_messages a
+JOIN (SELECT id, session_id,
+             MAX(CASE WHEN sender = 'USER' THEN seq END)
+                 OVER (PARTITION BY session_id ORDER BY seq ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING) AS user_seq
+      FROM chat_messages) p ON p.id = a.id
+JOIN chat_messages u ON u.session_id = p.session_id AND u.seq = p.user_seq
+SET a.reply_to = u.id
+WHERE a.sender = 'AI' AND a.reply_to IS NULL;
+
+UPDATE chat_sessions s
+SET s.last_seq = COALESCE((SELECT MAX(m.seq) FROM chat_messages m WHERE m.session_id = s.id), 0);
+
+ALTER TABLE chat_messages
+    ADD CONSTRAINT uk_chat_messages_session_seq UNIQUE (session_id, seq),
+    ADD INDEX idx_chat_messages_reply_to (reply_to);
@@ -0,0 +1,8 @@
+-- Soft-delete timestamp for the purge retention window (chat_sessions.deleted_at).
+-- Sessions deleted before this column existed take their last update time (MySQL 8).
+
+ALTER TABLE chat_sessions ADD COLUMN deleted_at DATETIME(6) NULL;
+
+UPDATE chat_sessions SET deleted_at = updated_at WHERE is_deleted = TRUE AND deleted_at IS NULL;
+
+ALTER TABLE chat_sessions ADD INDEX idx_chat_sessions_deleted_at (is_deleted, deleted_at);
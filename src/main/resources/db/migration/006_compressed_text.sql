@@ -0,0 +1,16 @@
+-- Compressed message content and context bodies (MySQL 8). Run once with the app stopped,
+-- before starting the version that writes compressed values.
+-- Listing previews move to their own columns first, while content is still text; the
+-- LONGTEXT -> LONGBLOB change then keeps every existing value as its UTF-8 bytes, which the
+-- codec reads as uncompressed.
+
+ALTER TABLE chat_messages ADD COLUMN content_preview VARCHAR(200) NULL, ADD COLUMN content_chars INT NULL;
+
+UPDATE chat_messages SET content_preview = LEFT(content, 200), content_chars = CHAR_LENGTH(content)
+WHERE content_chars IS NULL;
+
+ALTER TABLE chat_messages MODIFY content LONGBLOB NOT NULL;
+ALTER TABLE context_blobs MODIFY content LONGBLOB NOT NULL;
+
+-- Existing rows stay uncompressed until rewritten; new and edited values are compressed
+-- above chat.compression.threshold. OPTIMIZE TABLE afterwards returns the freed pages.
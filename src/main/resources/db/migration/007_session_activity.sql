@@ -0,0 +1,23 @@
+-- Denormalized turn activity on chat_sessions for the sidebar listing
+-- (GET /api/sessions/user/{userId}/summaries). Maintained by the application on
+-- every append; this backfills existing sessions (MySQL 8). Run with the service stopped.
+
+ALTER TABLE chat_sessions
+    ADD COLUMN message_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN last_activity_at DATETIME(6) NULL,
+    ADD COLUMN last_message_preview VARCHAR(200) NULL,
+    ADD COLUMN last_sender VARCHAR(16) NULL;
+
+UPDATE chat_sessions s
+    JOIN (SELECT session_id, COUNT(*) AS n, MAX(seq) AS max_seq
+          FROM chat_messages GROUP BY session_id) agg ON agg.session_id = s.id
+    JOIN chat_messages m ON m.session_id = s.id AND m.seq = agg.max_seq
+SET s.message_count        = agg.n,
+    s.last_activity_at     = m.created_at,
+    s.last_message_preview = m.content_preview,
+    s.last_sender          = m.sender;
+
+-- sessions without messages sort by creation time
+UPDATE chat_sessions SET last_activity_at = created_at WHERE last_activity_at IS NULL;
+
+ALTER TABLE chat_sessions ADD INDEX idx_chat_sessions_user_activity (user_id, is_deleted, last_activity_at, id);
@@ -0,0 +1,9 @@
+-- Resume points of named bulk imports (ImportService), written with each batch (MySQL 8).
+
+CREATE TABLE IF NOT EXISTS import_checkpoints (
+    name       VARCHAR(191) NOT NULL,
+    line_no    BIGINT       NOT NULL,
+    session_id BINARY(16)   NULL,
+    updated_at DATETIME(6)  NOT NULL,
+    PRIMARY KEY (name)
+);
@@ -0,0 +1,10 @@
+-- Placements that override the hash ring (ShardRouter), on the catalog shard only (MySQL 8).
+-- Every other shard needs migrations 001-008 applied before it is added to DB_SHARD_URLS.
+
+CREATE TABLE IF NOT EXISTS shard_directory (
+    entry_key  VARCHAR(64) NOT NULL,   -- bucket:<n> or session:<uuid>
+    shard      INT         NOT NULL,
+    moving     BOOLEAN     NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (entry_key)
+);
@@ -0,0 +1,10 @@
+-- Pointer from a session to its cold record (ColdTieringJob): the segment file,
+-- and the record's offset and length in it. NULL while the messages are in
+-- chat_messages (MySQL 8). With sharding, apply to every shard.
+
+ALTER TABLE chat_sessions
+    ADD COLUMN cold_segment VARCHAR(64) NULL,
+    ADD COLUMN cold_offset BIGINT NULL,
+    ADD COLUMN cold_length INT NULL;
+
+ALTER TABLE chat_sessions ADD INDEX idx_chat_sessions_tiering (cold_segment, is_deleted, last_activity_at);
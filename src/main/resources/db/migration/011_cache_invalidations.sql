@@ -0,0 +1,13 @@
+-- Invalidation log tailed by every instance (InvalidationBus), on every shard (MySQL 8).
+-- Only needed with CHAT_INVALIDATION_ENABLED=true. Ids must be consecutive: keep
+-- auto_increment_increment at 1.
+
+CREATE TABLE IF NOT EXISTS cache_invalidations (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    topic      VARCHAR(64)  NOT NULL,
+    cache_key  VARCHAR(191) NOT NULL,
+    origin     VARCHAR(36)  NOT NULL,
+    created_at DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_cache_invalidations_created_at (created_at)
+);
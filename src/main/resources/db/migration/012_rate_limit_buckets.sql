@@ -0,0 +1,11 @@
+-- Rate limit buckets shared by all instances (JdbcBucketProxyManager), in the catalog
+-- database (MySQL 8). Only needed with RATE_LIMIT_BACKEND=jdbc.
+
+CREATE TABLE IF NOT EXISTS rate_limit_buckets (
+    bucket_key VARCHAR(64)     NOT NULL,
+    state      VARBINARY(1024) NOT NULL,
+    version    BIGINT          NOT NULL,
+    expires_at DATETIME(6)     NOT NULL,
+    PRIMARY KEY (bucket_key),
+    INDEX idx_rate_limit_buckets_expires_at (expires_at)
+);
@@ -0,0 +1,27 @@
+-- Converts the context hashes to the layout of content_hash (MySQL 8), on every shard:
+--   context_blobs.hash, chat_messages.context_hash  VARCHAR(64) hex -> BINARY(32) raw SHA-256
+-- ddl-auto=update never changes column types, so run this with the app stopped.
+
+-- 1. drop the foreign key so the referenced key can be rebuilt
+SET @fk := (SELECT CONSTRAINT_NAME FROM information_schema.KEY_COLUMN_USAGE
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages'
+              AND COLUMN_NAME = 'context_hash' AND REFERENCED_TABLE_NAME = 'context_blobs');
+SET @sql := IF(@fk IS NULL, 'DO 0', CONCAT('ALTER TABLE chat_messages DROP FOREIGN KEY ', @fk));
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. blobs
+ALTER TABLE context_blobs ADD COLUMN hash_bin BINARY(32);
+UPDATE context_blobs SET hash_bin = UNHEX(hash);
+ALTER TABLE context_blobs DROP PRIMARY KEY, DROP COLUMN hash;
+ALTER TABLE context_blobs RENAME COLUMN hash_bin TO hash;
+ALTER TABLE context_blobs MODIFY hash BINARY(32) NOT NULL, ADD PRIMARY KEY (hash);
+
+-- 3. references
+ALTER TABLE chat_messages ADD COLUMN context_hash_bin BINARY(32);
+UPDATE chat_messages SET context_hash_bin = UNHEX(context_hash) WHERE context_hash IS NOT NULL;
+ALTER TABLE chat_messages DROP COLUMN context_hash;
+ALTER TABLE chat_messages RENAME COLUMN context_hash_bin TO context_hash;
+ALTER TABLE chat_messages
+    ADD CONSTRAINT fk_chat_messages_context FOREIGN KEY (context_hash) REFERENCES context_blobs (hash);
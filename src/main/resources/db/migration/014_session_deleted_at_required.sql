@@ -0,0 +1,6 @@
+-- The purge now selects on deleted_at alone (idx_chat_sessions_deleted_at), without
+-- falling back to updated_at. Backfill the soft-deleted rows that still have no
+-- deleted_at (imports without one, rows deleted by instances older than 005) before
+-- deploying, or they are never purged (MySQL 8).
+
+UPDATE chat_sessions SET deleted_at = updated_at WHERE is_deleted = TRUE AND deleted_at IS NULL;
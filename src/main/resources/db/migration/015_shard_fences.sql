@@ -0,0 +1,9 @@
+-- Buckets whose rows are being copied off this shard (ReshardServiceImpl). Appends
+-- check for their bucket's row under the session lock and are refused while it
+-- exists (MySQL 8). With sharding, apply to every shard.
+
+CREATE TABLE IF NOT EXISTS shard_fences (
+    bucket     INT         NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (bucket)
+);
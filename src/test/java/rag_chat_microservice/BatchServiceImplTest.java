@@ -0,0 +1,87 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import rag_chat_microservice.dto.BatchOperation;
+import rag_chat_microservice.dto.BatchOperation.Op;
+import rag_chat_microservice.dto.BatchResult;
+import rag_chat_microservice.repository.MessageRepository;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.BatchServiceImpl;
+import rag_chat_microservice.service.MessageService;
+import rag_chat_microservice.service.ReadYourWrites;
+import rag_chat_microservice.service.SessionVersions;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchServiceImplTest {
+
+    @InjectMocks
+    private BatchServiceImpl batchService;
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private SessionVersions sessionVersions;
+
+    @Mock
+    private ReadYourWrites readYourWrites;
+
+    private final UUID a = UUID.randomUUID();
+    private final UUID b = UUID.randomUUID();
+    private final UUID c = UUID.randomUUID();
+
+    @Test
+    void apply_shouldUpdateFavoritesAndDeletesWithOneStatementEach() {
+        when(sessionRepository.findLiveTitles(eq("u"), anyCollection()))
+                .thenReturn(List.of(new Object[] {a, "a"}, new Object[] {b, "b"}, new Object[] {c, "c"}));
+
+        List<BatchResult> results = batchService.apply("u", List.of(
+                new BatchOperation(Op.FAVORITE, a, null, true, null),
+                new BatchOperation(Op.FAVORITE, b, null, true, null),
+                new BatchOperation(Op.DELETE, b, null, null, null),
+                new BatchOperation(Op.DELETE, c, null, null, null)));
+
+        assertTrue(results.stream().allMatch(r -> r.getStatus() == 200));
+        verify(sessionRepository).updateFavorite(eq("u"), eq(List.of(a, b)), eq(true), any());
+        verify(sessionRepository).softDeleteAll(eq("u"), eq(List.of(b, c)), any());
+        verify(messageRepository).softDeleteBySessionIds(List.of(b, c));
+        verify(sessionVersions).evictAfterCommit(argThat(ids -> ids.size() == 3));
+    }
+
+    @Test
+    void apply_shouldReportEachFailedItemAndApplyTheRest() {
+        UUID foreign = UUID.randomUUID();
+        when(sessionRepository.findLiveTitles(eq("u"), anyCollection()))
+                .thenReturn(List.of(new Object[] {a, "a"}, new Object[] {b, "b"}, new Object[] {c, "c"}));
+        when(sessionRepository.findTakenTitles(eq("u"), anyCollection())).thenReturn(List.of("c"));
+
+        List<BatchResult> results = batchService.apply("u", List.of(
+                new BatchOperation(Op.RENAME, a, null, null, "  new   title "),
+                new BatchOperation(Op.RENAME, b, null, null, "c"),
+                new BatchOperation(Op.RENAME, c, null, null, "new title"),
+                new BatchOperation(Op.DELETE, foreign, null, null, null),
+                new BatchOperation(Op.FAVORITE, a, null, null, null),
+                new BatchOperation(Op.RENAME, a, null, null, "again")));
+
+        assertEquals(List.of(200, 409, 409, 404, 400, 400), results.stream().map(BatchResult::getStatus).toList());
+        verify(sessionRepository).updateTitle(eq("u"), eq(a), eq("new title"), any());
+        verify(sessionRepository, never()).softDeleteAll(any(), any(), any());
+    }
+}
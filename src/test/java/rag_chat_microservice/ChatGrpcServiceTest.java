@@ -0,0 +1,140 @@
+package rag_chat_microservice;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.MetadataUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import rag_chat_microservice.grpc.GrpcServer;
+import rag_chat_microservice.grpc.v1.ChatServiceGrpc;
+import rag_chat_microservice.grpc.v1.CreateSessionRequest;
+import rag_chat_microservice.grpc.v1.ListMessagesRequest;
+import rag_chat_microservice.grpc.v1.ListMessagesResponse;
+import rag_chat_microservice.grpc.v1.Message;
+import rag_chat_microservice.grpc.v1.SendMessageEvent;
+import rag_chat_microservice.grpc.v1.SendMessageRequest;
+import rag_chat_microservice.grpc.v1.Session;
+import rag_chat_microservice.security.RateLimitBackend;
+import rag_chat_microservice.service.AIService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "chat.grpc.enabled=true",
+        "chat.grpc.port=0"
+})
+class ChatGrpcServiceTest {
+
+    @Autowired
+    private GrpcServer grpcServer;
+
+    @MockBean
+    private AIService aiService;
+
+    @MockBean
+    private RateLimitBackend rateLimitBackend;
+
+    @Value("${api.key}")
+    private String apiKey;
+
+    private ManagedChannel channel;
+    private ChatServiceGrpc.ChatServiceBlockingStub stub;
+
+    @BeforeEach
+    void connect() {
+        when(rateLimitBackend.tryConsume(anyString())).thenReturn(new RateLimitBackend.Decision(true, 9, 0));
+        channel = NettyChannelBuilder.forAddress("localhost", grpcServer.port()).usePlaintext().build();
+        Metadata headers = new Metadata();
+        headers.put(Metadata.Key.of("x-api-key", Metadata.ASCII_STRING_MARSHALLER), apiKey);
+        stub = ChatServiceGrpc.newBlockingStub(channel)
+                .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+    }
+
+    @AfterEach
+    void disconnect() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void sendMessageStreamsTheUserMessageTheChunksAndTheStoredReply() {
+        when(aiService.streamAIResponse(anyString(), any())).thenAnswer(call -> {
+            Consumer<String> onChunk = call.getArgument(1);
+            onChunk.accept("Hel");
+            onChunk.accept("lo");
+            return "Hello";
+        });
+        Session session = stub.createSession(CreateSessionRequest.newBuilder().setUserId("grpc-user")
+                .setTitle("streaming").build());
+        assertTrue(session.getCreated());
+
+        List<SendMessageEvent> events = new ArrayList<>();
+        stub.sendMessage(SendMessageRequest.newBuilder().setSessionId(session.getId()).setContent("  Hi   there ")
+                .build()).forEachRemaining(events::add);
+
+        assertEquals(4, events.size());
+        assertEquals("Hi there", events.get(0).getUserMessage().getContent());
+        assertEquals(1, events.get(0).getUserMessage().getSeq());
+        assertEquals("Hel", events.get(1).getChunk());
+        assertEquals("lo", events.get(2).getChunk());
+        assertEquals(SendMessageEvent.EventCase.AI_MESSAGE, events.get(3).getEventCase());
+        assertEquals("Hello", events.get(3).getAiMessage().getContent());
+        assertEquals("AI", events.get(3).getAiMessage().getSender());
+        assertEquals(events.get(0).getUserMessage().getId(), events.get(3).getAiMessage().getReplyTo());
+
+        ListMessagesResponse stored = stub.listMessages(ListMessagesRequest.newBuilder()
+                .setSessionId(session.getId()).build());
+        assertEquals(List.of("Hi there", "Hello"), stored.getMessagesList().stream()
+                .map(Message::getContent).toList());
+        assertEquals("", stored.getNextPageToken());
+    }
+
+    @Test
+    void failuresMapToStatusCodes() {
+        StatusRuntimeException notFound = assertThrows(StatusRuntimeException.class, () -> stub.sendMessage(
+                SendMessageRequest.newBuilder().setSessionId(UUID.randomUUID().toString()).setContent("hi")
+                        .build()).hasNext());
+        assertEquals(Status.Code.NOT_FOUND, notFound.getStatus().getCode());
+
+        StatusRuntimeException invalid = assertThrows(StatusRuntimeException.class, () -> stub.listMessages(
+                ListMessagesRequest.newBuilder().setSessionId("not-a-uuid").build()));
+        assertEquals(Status.Code.INVALID_ARGUMENT, invalid.getStatus().getCode());
+
+        StatusRuntimeException tooLarge = assertThrows(StatusRuntimeException.class, () -> stub.listMessages(
+                ListMessagesRequest.newBuilder().setSessionId(UUID.randomUUID().toString()).setPageSize(101).build()));
+        assertEquals(Status.Code.INVALID_ARGUMENT, tooLarge.getStatus().getCode());
+
+        ChatServiceGrpc.ChatServiceBlockingStub anonymous = ChatServiceGrpc.newBlockingStub(channel);
+        StatusRuntimeException unauthenticated = assertThrows(StatusRuntimeException.class, () -> anonymous
+                .createSession(CreateSessionRequest.newBuilder().setUserId("grpc-user").setTitle("x").build()));
+        assertEquals(Status.Code.UNAUTHENTICATED, unauthenticated.getStatus().getCode());
+    }
+
+    @Test
+    void callsOverTheRateLimitAreRejected() {
+        when(rateLimitBackend.tryConsume(apiKey)).thenReturn(new RateLimitBackend.Decision(false, 0,
+                TimeUnit.SECONDS.toNanos(7)));
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class, () -> stub.createSession(
+                CreateSessionRequest.newBuilder().setUserId("grpc-user").setTitle("limited").build()));
+
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, e.getStatus().getCode());
+        assertEquals("7", e.getTrailers().get(Metadata.Key.of("retry-after", Metadata.ASCII_STRING_MARSHALLER)));
+    }
+}
@@ -0,0 +1,64 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.tiering.ColdMessage;
+import rag_chat_microservice.tiering.ColdSegment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColdSegmentTest {
+
+    @Test
+    void recordsRoundTripFromAnySegmentOffset() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        List<ColdMessage> history = conversation(40);
+        byte[] a = ColdSegment.encode(first, history);
+        byte[] b = ColdSegment.encode(second, List.of(history.get(0)));
+        ByteBuffer segment = ByteBuffer.allocate(a.length + b.length).put(a).put(b);
+
+        assertEquals(history, ColdSegment.decode(segment, 0, a.length, first));
+        assertEquals(List.of(history.get(0)), ColdSegment.decode(segment, a.length, b.length, second));
+
+        // one block per session: repeated phrasing compresses across messages
+        int plain = history.stream().mapToInt(m -> m.content().length() + 40).sum();
+        assertTrue(a.length * 2 < plain, a.length + " of " + plain);
+    }
+
+    @Test
+    void rejectsRecordsOfOtherSessionsAndDamagedBytes() {
+        UUID id = UUID.randomUUID();
+        byte[] record = ColdSegment.encode(id, conversation(3));
+
+        assertThrows(IOException.class, () -> ColdSegment.decode(ByteBuffer.wrap(record), 0, record.length,
+                UUID.randomUUID()));
+        record[record.length - 1] ^= 0x55;
+        assertThrows(IOException.class, () -> ColdSegment.decode(ByteBuffer.wrap(record), 0, record.length, id));
+        assertThrows(IOException.class, () -> ColdSegment.decode(ByteBuffer.wrap(record), 8, record.length, id));
+    }
+
+    private static List<ColdMessage> conversation(int turns) {
+        List<ColdMessage> messages = new ArrayList<>();
+        LocalDateTime at = LocalDateTime.of(2026, 3, 1, 12, 0, 0, 123_456_000);
+        long seq = 0;
+        for (int i = 0; i < turns; i++) {
+            UUID question = UUID.randomUUID();
+            messages.add(new ColdMessage(question, ++seq, null, ChatMessage.Sender.USER,
+                    "What did the quarterly report say about revenue in region " + i + "?",
+                    (i % 3 == 0) ? "Quarterly report, section " + i : null, at.plusMinutes(seq), false));
+            messages.add(new ColdMessage(UUID.randomUUID(), ++seq, question, ChatMessage.Sender.AI,
+                    "The quarterly report says revenue in region " + i + " grew by " + i
+                            + " percent compared with the previous quarter. Résumé 😀",
+                    null, at.plusMinutes(seq), false));
+        }
+        return messages;
+    }
+}
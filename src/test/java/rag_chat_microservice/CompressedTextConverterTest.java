@@ -0,0 +1,63 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.model.CompressedTextConverter;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.MessageService;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Rows as migration 006 leaves them: LONGTEXT turned LONGBLOB, i.e. plain UTF-8 with no header. */
+@SpringBootTest
+class CompressedTextConverterTest {
+
+    // above chat.compression.threshold, so the same text written today is stored compressed
+    private static final String LEGACY = "a reply from before compression, é and 💬 included. ".repeat(20);
+
+    @Autowired
+    private CompressedTextConverter converter;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void preCompressionRowsReadBackThroughTheConverter() {
+        byte[] plain = LEGACY.getBytes(StandardCharsets.UTF_8);
+        assertEquals(LEGACY, converter.convertToEntityAttribute(plain));
+        assertNotEquals(plain[0], converter.convertToDatabaseColumn(LEGACY)[0], "new values carry the header");
+
+        UUID session = sessionRepository.save(ChatSession.builder().userId("legacy-user")
+                .title(UUID.randomUUID().toString()).deleted(false).build()).getId();
+        ChatMessage message = messageService.addMessage(session, Sender.USER, "placeholder", "placeholder context");
+        // what the LONGTEXT -> LONGBLOB change leaves in both columns
+        jdbcTemplate.update("update chat_messages set content = ? where id = ?", plain, bytes(message.getId()));
+        jdbcTemplate.update("update context_blobs set content = ? where hash = ?", plain,
+                message.getContextBlob().getHash());
+
+        ChatMessageDto view = messageService.getMessageView(session, message.getId());
+        assertEquals(LEGACY, view.getContent());
+        assertEquals(LEGACY, view.getContext());
+    }
+
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits())
+                .array();
+    }
+}
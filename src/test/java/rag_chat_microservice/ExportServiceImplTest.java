@@ -0,0 +1,136 @@
+package rag_chat_microservice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.ExportService;
+import rag_chat_microservice.service.MessageService;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "chat.export.flush-every=2")
+class ExportServiceImplTest {
+
+    private static final String LONG_REPLY = "A reply long enough to be stored compressed. ".repeat(30).trim();
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void sessionsAndMessagesAreStreamedAsLinesAndFlushedAsTheyGo() throws Exception {
+        String user = "export-" + UUID.randomUUID();
+        UUID full = session(user);
+        ChatMessage question = messageService.addMessage(full, Sender.USER, "first question", "shared context");
+        messageService.addMessage(full, Sender.AI, LONG_REPLY, "shared context");
+        messageService.addMessage(full, Sender.USER, "second question", null);
+        UUID empty = session(user);
+        session("someone-else");
+
+        RecordingStream out = new RecordingStream();
+        exportService.exportUser(user, null, null, out);
+
+        List<JsonNode> lines = lines(out.toString(StandardCharsets.UTF_8));
+        assertEquals(6, lines.size());
+        JsonNode end = lines.get(5);
+        assertEquals("end", end.get("type").asText());
+        assertEquals(2, end.get("sessions").asLong());
+        assertEquals(3, end.get("messages").asLong());
+
+        List<JsonNode> messages = new ArrayList<>();
+        for (JsonNode line : lines.subList(0, 5)) {
+            if (line.get("type").asText().equals("message")) {
+                assertEquals(full.toString(), line.get("sessionId").asText());
+                messages.add(line);
+            } else {
+                assertEquals(user, line.get("userId").asText());
+            }
+        }
+        assertEquals(List.of(1L, 2L, 3L), messages.stream().map(m -> m.get("seq").asLong()).toList());
+        assertEquals(LONG_REPLY, messages.get(1).get("content").asText());
+        assertEquals("shared context", messages.get(1).get("context").asText());
+        assertTrue(messages.get(2).get("context").isNull());
+        assertEquals(question.getId().toString(), messages.get(0).get("id").asText());
+        assertTrue(lines.stream().anyMatch(l -> l.get("id") != null && l.get("id").asText().equals(empty.toString())));
+
+        // the second message was flushed out before the trailer was written
+        assertEquals(1, out.flushedBeforeEnd.size(), "flushed per value, not every second message");
+        String first = out.flushedBeforeEnd.get(0);
+        assertEquals(2, first.split("\"type\":\"message\"", -1).length - 1, first);
+    }
+
+    @Test
+    void aRangedExportLeavesOutSessionsWithoutMessagesInTheRange() throws Exception {
+        String user = "export-" + UUID.randomUUID();
+        UUID old = session(user);
+        ChatMessage stale = messageService.addMessage(old, Sender.USER, "old question", null);
+        jdbcTemplate.update("update chat_messages set created_at = ? where id = ?",
+                LocalDateTime.now().minusDays(30), stale.getId());
+        UUID recent = session(user);
+        messageService.addMessage(recent, Sender.USER, "new question", null);
+        session(user); // no messages at all
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportUser(user, LocalDateTime.now().minusDays(1), null, out);
+
+        List<JsonNode> lines = lines(out.toString(StandardCharsets.UTF_8));
+        assertEquals(3, lines.size());
+        assertEquals(recent.toString(), lines.get(0).get("id").asText());
+        assertEquals("new question", lines.get(1).get("content").asText());
+        assertEquals(1, lines.get(2).get("sessions").asLong());
+        assertEquals(1, lines.get(2).get("messages").asLong());
+    }
+
+    private UUID session(String user) {
+        return sessionRepository.save(ChatSession.builder().userId(user).title(UUID.randomUUID().toString())
+                .deleted(false).build()).getId();
+    }
+
+    private List<JsonNode> lines(String ndjson) throws Exception {
+        assertTrue(ndjson.endsWith("\n"));
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : ndjson.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    /** Keeps what had been written at each flush until the end line shows up. */
+    private static final class RecordingStream extends ByteArrayOutputStream {
+
+        final List<String> flushedBeforeEnd = new ArrayList<>();
+
+        @Override
+        public void flush() {
+            String written = toString(StandardCharsets.UTF_8);
+            if (!written.contains("\"type\":\"end\"")) {
+                flushedBeforeEnd.add(written);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rag_chat_microservice.dto.ImportReport;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.repository.MessageRepository;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.ImportService;
+import rag_chat_microservice.service.MessageService;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "chat.import.batch-lines=3", // rows of one session span batches
+        "chat.import.parallelism=2"
+})
+class ImportServiceImplTest {
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void invalidLinesAreRejectedWithTheirLineNumbersAndTheRestIsWritten() throws Exception {
+        UUID id = UUID.randomUUID();
+        String title = UUID.randomUUID().toString();
+        String input = String.join("\n",
+                message(id, "USER", "orphan", null),
+                session(id, title),
+                message(id, "USER", "  hello   there ", 1L),
+                "{not json",
+                message(id, "ROBOT", "beep", null),
+                "{\"type\":\"bogus\"}",
+                message(id, "USER", "again", 1L),
+                message(id, "AI", "hi", null),
+                message(UUID.randomUUID(), "USER", "elsewhere", null),
+                session(UUID.randomUUID(), title), // same user and title as line 2
+                message(null, "USER", "lost", null),
+                "{\"type\":\"end\"}");
+
+        ImportReport report = run(input);
+
+        assertNull(report.getFailure());
+        assertEquals(12, report.getLastLine());
+        assertEquals(1, report.getSessionsImported());
+        assertEquals(2, report.getMessagesImported());
+        assertEquals(8, report.getRejected());
+        assertEquals(List.of(
+                "line 1: message before any session line",
+                "line 4: malformed JSON",
+                "line 5: unknown sender 'ROBOT'",
+                "line 6: unknown type 'bogus'",
+                "line 7: seq 1 is not after 1",
+                "line 9: sessionId does not match the preceding session line",
+                "line 10: user import-user already has a session titled '" + title + "'",
+                "line 11: its session was rejected"), report.getErrors());
+
+        List<ChatMessage> stored = messageRepository.findByChatSession_IdOrderBySeqAsc(id);
+        assertEquals(List.of("hello there", "hi"), stored.stream().map(ChatMessage::getContent).toList());
+        assertEquals(List.of(1L, 2L), stored.stream().map(ChatMessage::getSeq).toList());
+        assertEquals(stored.get(0).getId(), stored.get(1).getReplyTo());
+        Map<String, Object> counters = jdbcTemplate.queryForMap(
+                "select last_seq, message_count, last_sender from chat_sessions where id = ?", id);
+        assertEquals(2L, ((Number) counters.get("last_seq")).longValue());
+        assertEquals(2L, ((Number) counters.get("message_count")).longValue());
+        assertEquals("AI", counters.get("last_sender"));
+    }
+
+    @Test
+    void aDryRunReportsTheSameRowsAndWritesNothing() throws Exception {
+        UUID id = UUID.randomUUID();
+        String input = String.join("\n",
+                session(id, UUID.randomUUID().toString()),
+                message(id, "USER", "question", null),
+                message(id, "USER", "", null),
+                message(id, "AI", "answer", null));
+
+        ImportReport dry = importService.importNdjson(stream(input), true, "ignored-by-dry-runs");
+        assertTrue(dry.isDryRun());
+        assertNull(dry.getCheckpoint());
+        assertEquals(1, dry.getSessionsImported());
+        assertEquals(2, dry.getMessagesImported());
+        assertEquals(List.of("line 3: content must not be empty"), dry.getErrors());
+        assertFalse(sessionRepository.existsById(id));
+
+        // a session already present is skipped with its messages, not rejected
+        run(input);
+        ImportReport again = run(input);
+        assertEquals(0, again.getSessionsImported());
+        assertEquals(1, again.getSessionsSkipped());
+        assertEquals(2, again.getMessagesSkipped());
+        assertEquals(List.of("line 3: content must not be empty"), again.getErrors());
+        assertEquals(2, messageRepository.findByChatSession_IdOrderBySeqAsc(id).size());
+    }
+
+    @Test
+    void aQuestionRepeatedInAnImportCanBeAskedAgain() throws Exception {
+        UUID id = UUID.randomUUID();
+        run(String.join("\n",
+                session(id, UUID.randomUUID().toString()),
+                message(id, "USER", "same question", null),
+                message(id, "AI", "first answer", null),
+                message(id, "USER", "same question", null),
+                message(id, "AI", "second answer", null)));
+        List<ChatMessage> stored = messageRepository.findByChatSession_IdOrderBySeqAsc(id);
+        assertEquals(4, stored.size());
+
+        // two rows share the content hash; the earliest is reused, nothing is added
+        ChatMessage asked = messageService.addMessage(id, ChatMessage.Sender.USER, "same question", null);
+        assertEquals(stored.get(0).getId(), asked.getId());
+        assertEquals(4, messageRepository.findByChatSession_IdOrderBySeqAsc(id).size());
+    }
+
+    private ImportReport run(String input) throws Exception {
+        return importService.importNdjson(stream(input), false, null);
+    }
+
+    private static ByteArrayInputStream stream(String input) {
+        return new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String session(UUID id, String title) {
+        return "{\"type\":\"session\",\"id\":\"" + id + "\",\"userId\":\"import-user\",\"title\":\"" + title
+                + "\",\"createdAt\":\"2024-05-01T10:00:00\"}";
+    }
+
+    private static String message(UUID sessionId, String sender, String content, Long seq) {
+        return "{\"type\":\"message\"" + (sessionId != null ? ",\"sessionId\":\"" + sessionId + "\"" : "")
+                + ",\"sender\":\"" + sender + "\",\"content\":\"" + content + "\""
+                + (seq != null ? ",\"seq\":" + seq : "") + "}";
+    }
+}
@@ -0,0 +1,124 @@
+package rag_chat_microservice;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import rag_chat_microservice.invalidation.InvalidationBus;
+import rag_chat_microservice.invalidation.SessionInvalidation;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "chat.invalidation.enabled=true",
+        "chat.invalidation.poll-interval=PT1H" // polled by the tests
+})
+class InvalidationBusTest {
+
+    private static final String TOPIC = "bus-test";
+    private static final String OTHER = "00000000-0000-0000-0000-000000000001";
+
+    @Autowired
+    private InvalidationBus bus;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Set<String>> received = new CopyOnWriteArrayList<>();
+    private long next;
+
+    @BeforeEach
+    void tail() {
+        bus.subscribe(TOPIC, received::add);
+        poll(); // catch up with whatever earlier tests left in the log
+        received.clear();
+        next = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from cache_invalidations", Long.class) + 1;
+    }
+
+    @Test
+    void entriesCommittedOutOfIdOrderAreDeliveredOnceTheyShowUp() {
+        insert(next, "a", OTHER);
+        insert(next + 2, "c", OTHER);
+        poll();
+        assertEquals(List.of(Set.of("a", "c")), received);
+
+        // the transaction that took next + 1 commits late
+        insert(next + 1, "b", OTHER);
+        poll();
+        assertEquals(List.of(Set.of("a", "c"), Set.of("b")), received);
+
+        poll();
+        assertEquals(2, received.size(), "delivered twice");
+    }
+
+    @Test
+    void ownEntriesAreSkippedAndAbandonedGapsExpire() {
+        String origin = (String) ReflectionTestUtils.getField(bus, "origin");
+        Duration gapTimeout = (Duration) ReflectionTestUtils.getField(bus, "gapTimeout");
+        ReflectionTestUtils.setField(bus, "gapTimeout", Duration.ZERO);
+        try {
+            insert(next, "mine", origin);
+            insert(next + 2, "theirs", OTHER);
+            poll(); // next + 1 becomes a gap, given up at once
+            poll();
+            insert(next + 1, "rolled back", OTHER);
+            poll();
+        } finally {
+            ReflectionTestUtils.setField(bus, "gapTimeout", gapTimeout);
+        }
+        assertEquals(List.of(Set.of("theirs")), received);
+    }
+
+    @Test
+    void aRemoteSessionChangeRetiresTheSessionListingsAndTheEntry() {
+        ChatSession session = sessionRepository.save(ChatSession.builder().userId("bus-user")
+                .title(UUID.randomUUID().toString()).deleted(false).build());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        sessionRepository.findViewsByUserId("bus-user");
+        sessionRepository.findById(session.getId());
+        assertTrue(entityManagerFactory.getCache().contains(ChatSession.class, session.getId()));
+        long hits = statistics.getQueryCacheHitCount();
+        sessionRepository.findViewsByUserId("bus-user");
+        assertEquals(hits + 1, statistics.getQueryCacheHitCount());
+
+        jdbcTemplate.update("insert into cache_invalidations (topic, cache_key, origin, created_at)"
+                + " values (?, ?, ?, ?)", SessionInvalidation.TOPIC, session.getId().toString(), OTHER,
+                Timestamp.valueOf(LocalDateTime.now()));
+        poll();
+
+        assertFalse(entityManagerFactory.getCache().contains(ChatSession.class, session.getId()));
+        long misses = statistics.getQueryCacheMissCount();
+        sessionRepository.findViewsByUserId("bus-user");
+        assertEquals(misses + 1, statistics.getQueryCacheMissCount());
+    }
+
+    private void insert(long id, String key, String origin) {
+        jdbcTemplate.update("insert into cache_invalidations (id, topic, cache_key, origin, created_at)"
+                + " values (?, ?, ?, ?, ?)", id, TOPIC, key, origin, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private void poll() {
+        ReflectionTestUtils.invokeMethod(bus, "poll");
+    }
+}
@@ -0,0 +1,120 @@
+package rag_chat_microservice;
+
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.distributed.BucketProxy;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rag_chat_microservice.security.JdbcBucketProxyManager;
+import rag_chat_microservice.security.RateLimitBackend;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcBucketProxyManagerTest {
+
+    private static final BucketConfiguration CONFIGURATION = BucketConfiguration.builder()
+            .addLimit(RateLimitBackend.limit(20, 3600))
+            .build();
+
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void table() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:buckets_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("create table rate_limit_buckets (bucket_key varchar(64) primary key,"
+                + " state varbinary(1024) not null, version bigint not null, expires_at timestamp(6) not null)");
+    }
+
+    @Test
+    void aWriteBetweenReadAndSwapMakesTheSwapFailAndTheConsumptionRetry() {
+        JdbcBucketProxyManager other = new JdbcBucketProxyManager(jdbc);
+        bucket(other).tryConsume(1); // the row exists, version 0
+        Interleaved manager = new Interleaved(jdbc, () -> bucket(other).tryConsume(5));
+
+        assertTrue(bucket(manager).tryConsume(1));
+
+        assertEquals(2, manager.swaps);
+        assertEquals(1, manager.conflicts);
+        assertEquals(20 - 1 - 5 - 1, bucket(other).getAvailableTokens());
+        assertEquals(2L, jdbc.queryForObject("select version from rate_limit_buckets", Long.class));
+    }
+
+    @Test
+    void twoInstancesCreatingTheSameBucketDoNotOverwriteEachOther() {
+        JdbcBucketProxyManager other = new JdbcBucketProxyManager(jdbc);
+        // both see no row; the other inserts first
+        Interleaved manager = new Interleaved(jdbc, () -> bucket(other).tryConsume(3));
+
+        assertTrue(bucket(manager).tryConsume(2));
+
+        assertEquals(1, manager.conflicts);
+        assertEquals(20 - 3 - 2, bucket(other).getAvailableTokens());
+        assertEquals(1, jdbc.queryForObject("select count(*) from rate_limit_buckets", Integer.class));
+    }
+
+    @Test
+    void removedAndRefilledBucketsAreDeleted() {
+        JdbcBucketProxyManager manager = new JdbcBucketProxyManager(jdbc);
+        bucket(manager).tryConsume(1);
+        assertEquals(0, manager.deleteExpired(), "not refilled yet");
+        jdbc.update("update rate_limit_buckets set expires_at = timestampadd(second, -1, current_timestamp)");
+        assertEquals(1, manager.deleteExpired());
+
+        bucket(manager).tryConsume(1);
+        manager.removeProxy("key");
+        assertEquals(0, jdbc.queryForObject("select count(*) from rate_limit_buckets", Integer.class));
+        assertFalse(manager.isAsyncModeSupported());
+    }
+
+    private static BucketProxy bucket(JdbcBucketProxyManager manager) {
+        return manager.builder().build("key", () -> CONFIGURATION);
+    }
+
+    /** Runs {@code meanwhile} between this instance's first read and its first swap. */
+    private static final class Interleaved extends JdbcBucketProxyManager {
+
+        private Runnable meanwhile;
+        int swaps;
+        int conflicts;
+
+        Interleaved(JdbcTemplate jdbcTemplate, Runnable meanwhile) {
+            super(jdbcTemplate);
+            this.meanwhile = meanwhile;
+        }
+
+        @Override
+        protected CompareAndSwapOperation beginCompareAndSwapOperation(String key) {
+            CompareAndSwapOperation operation = super.beginCompareAndSwapOperation(key);
+            return new CompareAndSwapOperation() {
+                @Override
+                public Optional<byte[]> getStateData(Optional<Long> timeoutNanos) {
+                    return operation.getStateData(timeoutNanos);
+                }
+
+                @Override
+                public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState,
+                                              Optional<Long> timeoutNanos) {
+                    if (meanwhile != null) {
+                        Runnable r = meanwhile;
+                        meanwhile = null;
+                        r.run();
+                    }
+                    swaps++;
+                    boolean swapped = operation.compareAndSwap(originalData, newData, newState, timeoutNanos);
+                    if (!swapped) {
+                        conflicts++;
+                    }
+                    return swapped;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package rag_chat_microservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rag_chat_microservice.security.JdbcRateLimitBackend;
+import rag_chat_microservice.security.RateLimitBackend;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcRateLimitBackendTest {
+
+    @Test
+    void instancesSharingTheDatabaseTogetherLetThroughTheLimitOnce() {
+        JdbcTemplate jdbc = h2("ratelimit_" + System.nanoTime());
+        jdbc.execute("create table rate_limit_buckets (bucket_key varchar(64) primary key,"
+                + " state varbinary(1024) not null, version bigint not null, expires_at timestamp(6) not null)");
+        RateLimitBackend a = backend(jdbc);
+        RateLimitBackend b = backend(jdbc);
+
+        int allowed = 0;
+        for (int i = 0; i < 60; i++) {
+            if (((i % 2 == 0) ? a : b).tryConsume("key-1").allowed()) {
+                allowed++;
+            }
+        }
+        // 20 per window, leases of 3: the tokens still leased when the bucket ran dry are stranded
+        assertTrue(allowed <= 20 && allowed >= 20 - 2 * 3, "allowed " + allowed);
+
+        RateLimitBackend.Decision rejected = a.tryConsume("key-1");
+        assertFalse(rejected.allowed());
+        assertTrue(rejected.nanosToRetry() > 0);
+        assertTrue(a.tryConsume("key-2").allowed(), "keys have their own buckets");
+
+        // a new instance starts from the stored bucket, not a full one
+        assertFalse(backend(jdbc).tryConsume("key-1").allowed());
+    }
+
+    @Test
+    void leasesAreSpentLocallyAndShrinkAsTheBucketRunsLow() {
+        JdbcTemplate jdbc = h2("ratelimit_" + System.nanoTime());
+        jdbc.execute("create table rate_limit_buckets (bucket_key varchar(64) primary key,"
+                + " state varbinary(1024) not null, version bigint not null, expires_at timestamp(6) not null)");
+        MeterRegistry meters = new SimpleMeterRegistry();
+        RateLimitBackend backend = new JdbcRateLimitBackend(jdbc, meters, 20, 3600, 5, 100);
+
+        RateLimitBackend.Decision first = backend.tryConsume("key");
+        assertTrue(first.allowed());
+        assertEquals(19, first.remaining(), "4 leased here, 15 left in the bucket");
+        int allowed = 1;
+        for (int i = 0; i < 24; i++) {
+            if (backend.tryConsume("key").allowed()) {
+                allowed++;
+            }
+        }
+
+        assertEquals(20, allowed);
+        // claims of 5, 5, 5, then half of what is left: 2, 1, 1, 1
+        assertEquals(7, decisions(meters, "database"));
+        assertEquals(13, decisions(meters, "lease"));
+        // once a claim left the bucket empty, no more round trips until the window ends
+        assertEquals(5, decisions(meters, "blocked"));
+    }
+
+    private static double decisions(MeterRegistry meters, String source) {
+        return meters.get("ratelimit.decisions").tag("source", source).counter().count();
+    }
+
+    private static RateLimitBackend backend(JdbcTemplate jdbc) {
+        return new JdbcRateLimitBackend(jdbc, new SimpleMeterRegistry(), 20, 3600, 3, 100);
+    }
+
+    private static JdbcTemplate h2(String name) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        return new JdbcTemplate(ds);
+    }
+}
@@ -0,0 +1,35 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import rag_chat_microservice.dto.MessageCursor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageCursorTest {
+
+    @Test
+    void encode_roundTripsThroughOpaqueToken() {
+        MessageCursor cursor = new MessageCursor(4711L);
+
+        String token = cursor.encode();
+
+        assertFalse(token.contains("4711"), "token should not expose raw values");
+        assertEquals(cursor, MessageCursor.decode(token));
+    }
+
+    @Test
+    void decode_rejectsGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode("not-a-cursor"));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode("%%%"));
+    }
+
+    @Test
+    void decode_rejectsOldCreatedAtCursors() {
+        String v1 = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "v1|2024-05-01T12:30:15|6f1c1e1e-0000-7000-8000-000000000000".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> MessageCursor.decode(v1));
+    }
+}
@@ -0,0 +1,127 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.MessageService;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "ratelimit.permits=1000")
+@AutoConfigureMockMvc
+class MessageETagTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Value("${api.key}")
+    private String apiKey;
+
+    @Test
+    void anUnchangedSessionIsAnswered304() throws Exception {
+        UUID session = session(2);
+        String etag = messages(session).andExpect(status().isOk())
+                .andExpect(header().string("ETag", startsWith("\"m")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        MvcResult revalidated = messages(session, "If-None-Match", etag).andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag)).andReturn();
+        assertEquals(0, revalidated.getResponse().getContentAsByteArray().length);
+
+        // the summaries share the validator
+        summaries(session, etag).andExpect(status().isNotModified());
+    }
+
+    @Test
+    void theWeakETagOfAnEncodedResponseStillRevalidates() throws Exception {
+        UUID session = session(6); // well over chat.http.compression.min-size
+        MvcResult encoded = mockMvc.perform(get("/api/sessions/{id}/messages", session)
+                        .header("X-API-KEY", apiKey).header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk()).andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().stringValues("Vary", hasItem("Accept-Encoding")))
+                .andReturn();
+        String weak = encoded.getResponse().getHeader("ETag");
+        assertTrue(weak.startsWith("W/\"m"), weak);
+
+        mockMvc.perform(get("/api/sessions/{id}/messages", session).header("X-API-KEY", apiKey)
+                        .header("Accept-Encoding", "gzip").header("If-None-Match", weak))
+                .andExpect(status().isNotModified());
+        // and the strong tag of an identity response matches the same version
+        messages(session, "If-None-Match", weak.substring(2)).andExpect(status().isNotModified());
+    }
+
+    @Test
+    void anAppendChangesTheETagOnceItCommits() throws Exception {
+        UUID session = session(1);
+        String before = messages(session).andReturn().getResponse().getHeader("ETag");
+
+        messageService.addMessage(session, Sender.USER, "one more", null);
+
+        String after = messages(session, "If-None-Match", before).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(before, after);
+        messages(session, "If-None-Match", after).andExpect(status().isNotModified());
+    }
+
+    @Test
+    void anUnknownSessionIs404NotA304() throws Exception {
+        UUID unknown = UUID.randomUUID();
+        messages(unknown, "If-None-Match", "\"m0\"").andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist("ETag"));
+        messages(unknown, "If-None-Match", "*").andExpect(status().isNotFound());
+
+        // nor does a deleted one revalidate: it has no version, so its messages are read again
+        UUID deleted = session(1);
+        String etag = messages(deleted).andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(delete("/api/sessions/{id}", deleted).header("X-API-KEY", apiKey))
+                .andExpect(status().is2xxSuccessful());
+        messages(deleted, "If-None-Match", etag).andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+    }
+
+    private UUID session(int messages) {
+        ChatSession session = sessionRepository.save(ChatSession.builder().userId("etag-user")
+                .title(UUID.randomUUID().toString()).deleted(false).build());
+        for (int m = 0; m < messages; m++) {
+            messageService.addMessage(session.getId(), Sender.USER, "message " + m + " " + "text ".repeat(60),
+                    null);
+        }
+        return session.getId();
+    }
+
+    private ResultActions messages(UUID session, String... headers) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/sessions/{id}/messages", session)
+                .header("X-API-KEY", apiKey);
+        for (int i = 0; i < headers.length; i += 2) {
+            request.header(headers[i], headers[i + 1]);
+        }
+        return mockMvc.perform(request);
+    }
+
+    private ResultActions summaries(UUID session, String etag) throws Exception {
+        return mockMvc.perform(get("/api/sessions/{id}/messages/summaries", session).header("X-API-KEY", apiKey)
+                .header("If-None-Match", etag));
+    }
+}
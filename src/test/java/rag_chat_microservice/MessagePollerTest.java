@@ -0,0 +1,144 @@
+package rag_chat_microservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.dto.MessageCursor;
+import rag_chat_microservice.service.MessageNotifier;
+import rag_chat_microservice.service.MessagePoller;
+import rag_chat_microservice.service.MessageService;
+import rag_chat_microservice.service.ReadYourWrites;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessagePollerTest {
+
+    private static final UUID SESSION = UUID.randomUUID();
+    private static final MessageCursor SINCE = new MessageCursor(4);
+
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private ShardRouter shardRouter;
+
+    @Mock
+    private ReadYourWrites readYourWrites;
+
+    private MessageNotifier notifier;
+    private MessagePoller poller;
+
+    @BeforeEach
+    void setUp() {
+        notifier = new MessageNotifier(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(notifier, "maxWaiters", 100);
+        ReflectionTestUtils.invokeMethod(notifier, "init");
+        poller = new MessagePoller(messageService, notifier, shardRouter, readYourWrites);
+        ReflectionTestUtils.setField(poller, "maxWait", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(poller, "threads", 1);
+        ReflectionTestUtils.invokeMethod(poller, "start");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(poller, "stop");
+    }
+
+    @Test
+    void newMessagesAreReturnedAtOnce() {
+        when(messageService.getMessageViews(SESSION, SINCE, 0, 10)).thenReturn(slice(message(5)));
+
+        CompletableFuture<Slice<ChatMessageDto>> result = poller.poll(SESSION, SINCE, 10, Duration.ofSeconds(5));
+
+        assertTrue(result.isDone());
+        assertEquals(5L, result.join().getContent().get(0).getSeq());
+        assertEquals(0, waiting());
+    }
+
+    @Test
+    void anAppendWakesTheParkedRequest() {
+        when(messageService.getMessageViews(SESSION, SINCE, 0, 10)).thenReturn(slice(), slice(message(5)));
+
+        CompletableFuture<Slice<ChatMessageDto>> result = poller.poll(SESSION, SINCE, 10, Duration.ofSeconds(20));
+        assertFalse(result.isDone());
+        assertEquals(1, waiting());
+
+        notifier.publish(SESSION);
+
+        assertEquals(5L, result.orTimeout(5, TimeUnit.SECONDS).join().getContent().get(0).getSeq());
+        assertEquals(0, waiting());
+        verify(shardRouter).bindSession(SESSION); // the second read is routed like the request
+        verify(shardRouter).unbind();
+    }
+
+    @Test
+    void aWaitThatRunsOutReturnsAnEmptySlice() {
+        when(messageService.getMessageViews(SESSION, SINCE, 0, 10)).thenReturn(slice());
+
+        long started = System.nanoTime();
+        Slice<ChatMessageDto> result = poller.poll(SESSION, SINCE, 10, Duration.ofMillis(200))
+                .orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertFalse(result.hasContent());
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(200));
+        verify(messageService, times(2)).getMessageViews(SESSION, SINCE, 0, 10);
+        assertEquals(0, waiting());
+    }
+
+    @Test
+    void aFailedFirstReadDoesNotLeaveTheRequestParked() {
+        when(messageService.getMessageViews(SESSION, SINCE, 0, 10)).thenThrow(new IllegalStateException("down"));
+
+        assertThrows(IllegalStateException.class, () -> poller.poll(SESSION, SINCE, 10, Duration.ofSeconds(20)));
+
+        assertEquals(0, waiting());
+    }
+
+    @Test
+    void aFailedWakeUpReadCompletesExceptionally() {
+        when(messageService.getMessageViews(SESSION, SINCE, 0, 10)).thenReturn(slice())
+                .thenThrow(new IllegalStateException("down"));
+
+        CompletableFuture<Slice<ChatMessageDto>> result = poller.poll(SESSION, SINCE, 10, Duration.ofSeconds(20));
+        notifier.publish(SESSION);
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> result.orTimeout(5, TimeUnit.SECONDS).join());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        verify(readYourWrites).unbind();
+        assertEquals(0, waiting());
+    }
+
+    private int waiting() {
+        return ((AtomicInteger) ReflectionTestUtils.getField(notifier, "waiting")).get();
+    }
+
+    private static Slice<ChatMessageDto> slice(ChatMessageDto... messages) {
+        return new SliceImpl<>(List.of(messages), PageRequest.of(0, 10), false);
+    }
+
+    private static ChatMessageDto message(long seq) {
+        return new ChatMessageDto(UUID.randomUUID(), SESSION, "USER", "hi", null, LocalDateTime.now(), seq, null);
+    }
+}
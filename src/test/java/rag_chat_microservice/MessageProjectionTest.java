@@ -0,0 +1,108 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import rag_chat_microservice.dto.ChatMessageDto;
+import rag_chat_microservice.dto.ChatMessageSummaryDto;
+import rag_chat_microservice.dto.ChatSessionResponseDto;
+import rag_chat_microservice.dto.MessageCursor;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.MessageService;
+import rag_chat_microservice.service.SessionService;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class MessageProjectionTest {
+
+    // 250 characters; H2 sizes VARCHAR in UTF-16 units, so no surrogate pairs here
+    private static final String LONG = "abcdé".repeat(50);
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Test
+    void summariesCarryAPreviewTheLengthAndAContextFlagInsteadOfTheBody() {
+        UUID session = session("projection-user", false);
+        ChatMessage question = messageService.addMessage(session, Sender.USER, "short question", "a passage");
+        messageService.addMessage(session, Sender.AI, LONG, null);
+
+        Slice<ChatMessageSummaryDto> page = messageService.getMessageSummaries(session, null, 0, 10);
+
+        assertFalse(page.hasNext());
+        ChatMessageSummaryDto first = page.getContent().get(0);
+        assertEquals(question.getId(), first.getId());
+        assertEquals(session, first.getSessionId());
+        assertEquals("USER", first.getSender());
+        assertEquals("short question", first.getPreview());
+        assertEquals(14, first.getContentLength());
+        assertFalse(first.isTruncated());
+        assertTrue(first.isHasContext());
+        assertEquals(1L, first.getSeq());
+
+        ChatMessageSummaryDto reply = page.getContent().get(1);
+        assertEquals(250, reply.getContentLength());
+        assertEquals(ChatMessage.PREVIEW_CHARS, reply.getPreview().codePointCount(0, reply.getPreview().length()));
+        assertTrue(LONG.startsWith(reply.getPreview()));
+        assertTrue(reply.isTruncated());
+        assertFalse(reply.isHasContext());
+    }
+
+    @Test
+    void viewsPageByCursorWithTheFullContentAndContext() {
+        UUID session = session("projection-user", false);
+        for (int i = 1; i <= 3; i++) {
+            messageService.addMessage(session, Sender.USER, "question " + i, (i == 2) ? "shared passage" : null);
+        }
+
+        Slice<ChatMessageDto> first = messageService.getMessageViews(session, null, 0, 2);
+        assertTrue(first.hasNext());
+        assertEquals(List.of("question 1", "question 2"), first.map(ChatMessageDto::getContent).toList());
+        assertEquals("shared passage", first.getContent().get(1).getContext());
+
+        MessageCursor after = new MessageCursor(first.getContent().get(1).getSeq());
+        Slice<ChatMessageDto> rest = messageService.getMessageViews(session, after, 0, 2);
+        assertFalse(rest.hasNext());
+        assertEquals(List.of("question 3"), rest.map(ChatMessageDto::getContent).toList());
+        assertNull(rest.getContent().get(0).getContext());
+    }
+
+    @Test
+    void sessionListingsLeaveOutDeletedSessions() {
+        String user = "projection-" + UUID.randomUUID();
+        UUID live = session(user, false);
+        UUID favorite = session(user, true);
+        UUID deleted = session(user, true);
+        sessionRepository.findById(deleted).ifPresent(s -> {
+            s.setDeleted(true);
+            sessionRepository.save(s);
+        });
+
+        assertEquals(List.of(favorite, live).stream().sorted().toList(), sessionService.getUserSessions(user)
+                .stream().map(ChatSessionResponseDto::getSessionId).sorted().toList());
+        List<ChatSessionResponseDto> favorites = sessionService.getFavoriteSessions(user);
+        assertEquals(1, favorites.size());
+        assertEquals(favorite, favorites.get(0).getSessionId());
+        assertEquals(user, favorites.get(0).getUserId());
+        assertTrue(favorites.get(0).isFavorite());
+    }
+
+    private UUID session(String user, boolean favorite) {
+        return sessionRepository.save(ChatSession.builder().userId(user).title(UUID.randomUUID().toString())
+                .favorite(favorite).deleted(false).build()).getId();
+    }
+}
@@ -0,0 +1,113 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.MessageRepository;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.AIService;
+import rag_chat_microservice.service.MessageService;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+class MessageServiceImplTest {
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @MockBean
+    private AIService aiService;
+
+    @Test
+    void anEditGeneratesItsReplyWithoutHoldingTheSessionLock() {
+        UUID session = session();
+        when(aiService.getAIResponse(anyString())).thenReturn("first answer");
+        ChatMessage question = messageService.addMessage(session, Sender.USER, "first question", null);
+        messageService.getAIResponse(session, "first question");
+
+        when(aiService.getAIResponse(anyString())).thenAnswer(call -> {
+            assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+            // another writer appends to the session while the reply is generated
+            CompletableFuture.runAsync(() -> messageService.addMessage(session, Sender.SYSTEM, "meanwhile", null))
+                    .get(5, TimeUnit.SECONDS);
+            return "edited answer";
+        });
+        messageService.updateMessage(session, question.getId(), "edited   question");
+
+        assertEquals(List.of("USER: edited question", "SYSTEM: meanwhile", "AI: edited answer"), rows(session));
+    }
+
+    @Test
+    void repliesToLaterRepeatsOfAQuestionStayWithTheirTurns() {
+        UUID session = session();
+        when(aiService.getAIResponse(anyString())).thenReturn("a1", "a2", "a3", "regenerated");
+        ChatMessage question = messageService.getAIResponse(session, "same question");
+        messageService.getAIResponse(session, "other question");
+        messageService.getAIResponse(session, "same question"); // reuses the first USER row
+        assertEquals(List.of("USER: same question", "AI: a1", "USER: other question", "AI: a2", "AI: a3"),
+                rows(session));
+        UUID questionId = question.getReplyTo();
+
+        messageService.updateMessage(session, questionId, "changed question");
+        assertEquals(List.of("USER: changed question", "USER: other question", "AI: a2", "AI: a3",
+                "AI: regenerated"), rows(session));
+
+        messageService.deleteMessage(session, questionId);
+        // only the reply right after it went; a3 and the regenerated one are not at seq + 1
+        assertEquals(List.of("USER: other question", "AI: a2", "AI: a3", "AI: regenerated"), rows(session));
+    }
+
+    @Test
+    void eachDistinctContextIsPromptedOnceAndReferencedByNumberAfterwards() {
+        UUID session = session();
+        messageService.addMessage(session, Sender.USER, "q1", "alpha passage");
+        messageService.addMessage(session, Sender.AI, "r1", null);
+        messageService.addMessage(session, Sender.USER, "q2", "alpha passage");
+        messageService.addMessage(session, Sender.USER, "q3", "beta passage");
+        messageService.addMessage(session, Sender.AI, "r3", "alpha passage");
+        when(aiService.getAIResponse(anyString())).thenReturn("r4");
+
+        messageService.getAIResponse(session, "q4");
+
+        ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+        verify(aiService).getAIResponse(prompt.capture());
+        assertEquals(String.join("\n",
+                "USER: q1 [Context #1: alpha passage]",
+                "AI: r1",
+                "USER: q2 [Context #1]",
+                "USER: q3 [Context #2: beta passage]",
+                "AI: r3 [Context #1]",
+                "USER: q4"), prompt.getValue());
+    }
+
+    private UUID session() {
+        return sessionRepository.save(ChatSession.builder().userId("message-user")
+                .title(UUID.randomUUID().toString()).deleted(false).build()).getId();
+    }
+
+    private List<String> rows(UUID session) {
+        return messageRepository.findByChatSession_IdOrderBySeqAsc(session).stream()
+                .map(m -> m.getSender() + ": " + m.getContent()).toList();
+    }
+}
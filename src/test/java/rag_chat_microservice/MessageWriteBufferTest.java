@@ -0,0 +1,156 @@
+package rag_chat_microservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import rag_chat_microservice.model.ChatMessage;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.model.ContextBlob;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.ColdHistoryService;
+import rag_chat_microservice.service.MessageNotifier;
+import rag_chat_microservice.service.MessageWriteBuffer;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "chat.write-behind.enabled=true",
+        "chat.write-behind.max-delay-ms=300",
+        "chat.grpc.enabled=false"
+})
+class MessageWriteBufferTest {
+
+    @Autowired
+    private MessageWriteBuffer buffer;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ColdHistoryService coldHistory;
+
+    @Autowired
+    private MessageNotifier notifier;
+
+    @Test
+    void aFailingSessionDoesNotTakeTheRestOfTheBatchWithIt() throws Exception {
+        UUID healthy = session();
+        UUID poisoned = session();
+        UUID unknown = UUID.randomUUID();
+        // the blob was never saved, so the poisoned session's insert fails after seqs were handed out
+        ChatMessage broken = message("broken");
+        broken.setContextBlob(ContextBlob.of("never stored"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<ChatMessage> first = pool.submit(() -> buffer.append(healthy, message("one")));
+            Future<ChatMessage> second = pool.submit(() -> buffer.append(healthy, message("two")));
+            Future<ChatMessage> failing = pool.submit(() -> buffer.append(poisoned, broken));
+            Future<ChatMessage> missing = pool.submit(() -> buffer.append(unknown, message("lost")));
+
+            assertEquals(List.of(1L, 2L), List.of(first.get(5, TimeUnit.SECONDS).getSeq(),
+                    second.get(5, TimeUnit.SECONDS).getSeq()).stream().sorted().toList());
+            ExecutionException notFound = assertThrows(ExecutionException.class,
+                    () -> missing.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, notFound.getCause());
+            assertEquals("Session not found with ID: " + unknown, notFound.getCause().getMessage());
+            assertInstanceOf(RuntimeException.class,
+                    assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS)).getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(2, messages(healthy));
+        assertEquals(2L, sessionRepository.findById(healthy).orElseThrow().getLastSeq());
+        assertEquals(0, messages(poisoned));
+        assertEquals(0L, sessionRepository.findById(poisoned).orElseThrow().getLastSeq());
+        // the rolled-back attempts left nothing on the caller's instance
+        assertNull(broken.getSeq());
+        assertNull(broken.getChatSession());
+        assertTrue(buffer.pending(poisoned).isEmpty());
+    }
+
+    @Test
+    void withAckEnqueueUnknownSessionsAreRejectedUpFrontAndQueuedMessagesArePending() throws Exception {
+        MessageWriteBuffer enqueue = new MessageWriteBuffer(entityManager, transactionTemplate, sessionRepository,
+                meterRegistry, shardRouter, coldHistory, notifier);
+        ReflectionTestUtils.setField(enqueue, "ack", "enqueue");
+        ReflectionTestUtils.setField(enqueue, "batchSize", 100);
+        ReflectionTestUtils.setField(enqueue, "maxDelayMs", 500L);
+        ReflectionTestUtils.setField(enqueue, "capacity", 100);
+        ReflectionTestUtils.invokeMethod(enqueue, "start");
+        try {
+            UUID unknown = UUID.randomUUID();
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> enqueue.append(unknown, message("nowhere")));
+            assertEquals("Session not found with ID: " + unknown, e.getMessage());
+            assertTrue(enqueue.pending(unknown).isEmpty());
+
+            UUID kept = session();
+            UUID deleted = session();
+            ChatMessage queued = enqueue.append(kept, message("queued"));
+            enqueue.append(deleted, message("orphaned"));
+            assertNotNull(queued.getId());
+            assertNull(queued.getSeq());
+            assertEquals(List.of(queued), enqueue.pending(kept));
+            // gone before the batch is written
+            jdbcTemplate.update("delete from chat_sessions where id = ?", deleted);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!enqueue.pending(kept).isEmpty() || !enqueue.pending(deleted).isEmpty()) {
+                assertTrue(System.nanoTime() < deadline, "batch was not written");
+                Thread.sleep(20);
+            }
+            assertEquals(1, messages(kept));
+            assertEquals(1L, jdbcTemplate.queryForObject("select seq from chat_messages where id = ?", Long.class,
+                    queued.getId()));
+            assertNull(queued.getSeq());
+        } finally {
+            ReflectionTestUtils.invokeMethod(enqueue, "stop");
+        }
+    }
+
+    private UUID session() {
+        return sessionRepository.save(ChatSession.builder().userId("buffer-user")
+                .title(UUID.randomUUID().toString()).deleted(false).build()).getId();
+    }
+
+    private static ChatMessage message(String content) {
+        return ChatMessage.builder().sender(Sender.USER).content(content).build();
+    }
+
+    private long messages(UUID sessionId) {
+        return jdbcTemplate.queryForObject("select count(*) from chat_messages where session_id = ?", Long.class,
+                sessionId);
+    }
+}
@@ -0,0 +1,75 @@
+package rag_chat_microservice;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import rag_chat_microservice.config.ReadWriteRoutingDataSource;
+import rag_chat_microservice.service.ReadYourWrites;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Two local H2 databases stand in for a primary and its replica; each query reports which one answered. */
+class ReplicaRoutingTest {
+
+    private final ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofMinutes(1), 1000);
+    private JdbcTemplate jdbc;
+    private TransactionTemplate writes;
+    private TransactionTemplate reads;
+
+    @BeforeEach
+    void setUp() {
+        LazyConnectionDataSourceProxy ds = new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(h2("rw_primary"), h2("rw_replica"), readYourWrites));
+        DataSourceTransactionManager tm = new DataSourceTransactionManager(ds);
+        jdbc = new JdbcTemplate(ds);
+        writes = new TransactionTemplate(tm);
+        reads = new TransactionTemplate(tm);
+        reads.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        readYourWrites.unbind();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplicaAndEverythingElseToThePrimary() {
+        assertEquals("RW_REPLICA", reads.execute(s -> database()));
+        assertEquals("RW_PRIMARY", writes.execute(s -> database()));
+        assertEquals("RW_PRIMARY", database()); // no transaction at all
+    }
+
+    @Test
+    void recentlyWrittenKeysStayOnThePrimary() {
+        String session = ReadYourWrites.sessionKey(UUID.randomUUID());
+        readYourWrites.bind(List.of(session));
+        assertEquals("RW_REPLICA", reads.execute(s -> database()));
+
+        readYourWrites.markWritten(session);
+        assertEquals("RW_PRIMARY", reads.execute(s -> database()));
+
+        // other sessions are unaffected
+        readYourWrites.bind(List.of(ReadYourWrites.sessionKey(UUID.randomUUID())));
+        assertEquals("RW_REPLICA", reads.execute(s -> database()));
+    }
+
+    private String database() {
+        return jdbc.queryForObject("select database()", String.class);
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        return ds;
+    }
+}
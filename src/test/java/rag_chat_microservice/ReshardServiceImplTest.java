@@ -0,0 +1,169 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import rag_chat_microservice.dto.ShardMoveReport;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.MessageService;
+import rag_chat_microservice.service.ReshardService;
+import rag_chat_microservice.sharding.ShardContext;
+import rag_chat_microservice.sharding.ShardKeys;
+import rag_chat_microservice.sharding.ShardRouter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "chat.sharding.urls=" + ReshardServiceImplTest.SHARD_0 + "," + ReshardServiceImplTest.SHARD_1,
+        "chat.sharding.username=sa",
+        "chat.sharding.password=",
+        "chat.sharding.since=2000-01-01T00:00:00Z",
+        "chat.sharding.ring-shards=1",
+        "chat.sharding.directory-refresh=PT0.05S",
+        "chat.grpc.enabled=false"
+})
+class ReshardServiceImplTest {
+
+    static final String SHARD_0 = "jdbc:h2:mem:reshard0;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1 = "jdbc:h2:mem:reshard1;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private ReshardService reshardService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void rebalanceMovesRowsToTheirNewShardAndDeletesTheSourceCopies() {
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String user = "reshard-" + i;
+            users.add(user);
+            seed(user, 3);
+        }
+        assertEquals(20, sessions(0, "reshard-%"));
+        assertEquals(60, messages(0, "reshard-%"));
+
+        List<ShardMoveReport> reports = reshardService.rebalance(2);
+
+        long movedUsers = users.stream().filter(u -> shardRouter.forUser(u).shard() == 1).count();
+        assertTrue(movedUsers > 0 && movedUsers < users.size(), "moved " + movedUsers);
+        assertEquals(movedUsers, reports.stream().mapToLong(ShardMoveReport::getSessions).sum());
+        assertEquals(movedUsers * 3, reports.stream().mapToLong(ShardMoveReport::getMessages).sum());
+        for (String user : users) {
+            int shard = shardRouter.forUser(user).shard();
+            assertEquals(1, sessions(shard, user), user + " on " + shard);
+            assertEquals(0, sessions(1 - shard, user), user + " left behind on " + (1 - shard));
+        }
+        assertEquals(60, messages(0, "reshard-%") + messages(1, "reshard-%"));
+        // the moved messages found their context blobs on the new shard
+        assertTrue(reports.stream().mapToLong(ShardMoveReport::getContextBlobs).sum() >= movedUsers);
+        assertEquals(movedUsers * 3, ShardContext.on(1, () -> jdbcTemplate.queryForObject("select count(*)"
+                + " from chat_messages m join chat_sessions s on s.id = m.session_id"
+                + " join context_blobs b on b.hash = m.context_hash where s.user_id like 'reshard-%'", Long.class)));
+
+        // and back, one bucket
+        String user = users.stream().filter(u -> shardRouter.forUser(u).shard() == 1).findFirst().orElseThrow();
+        ShardMoveReport report = reshardService.moveBucket(ShardKeys.bucketOf(user), 0);
+        assertEquals(1, report.getFromShard());
+        assertEquals(0, shardRouter.forUser(user).shard());
+        assertFalse(shardRouter.forUser(user).moving());
+        assertEquals(1, sessions(0, user));
+        assertEquals(0, sessions(1, user));
+    }
+
+    @Test
+    void aSecondMoveIsRefusedWhileTheLockIsHeld() throws Exception {
+        String user = "locked-user";
+        seed(user, 1);
+        int bucket = ShardKeys.bucketOf(user);
+        int target = 1 - shardRouter.forUser(user).shard();
+        // make sure the lock row exists, then hold it as another instance's move would
+        reshardService.moveBucket(bucket, target);
+        try (Connection other = DriverManager.getConnection(SHARD_0, "sa", "")) {
+            other.setAutoCommit(false);
+            other.createStatement().executeQuery(
+                    "select entry_key from shard_directory where entry_key = 'lock:reshard' for update").next();
+
+            ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                    () -> reshardService.moveBucket(bucket, 1 - target));
+            assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+            assertEquals(target, shardRouter.forUser(user).shard());
+            other.rollback();
+        }
+        assertEquals(1 - target, reshardService.moveBucket(bucket, 1 - target).getToShard());
+    }
+
+    @Test
+    void appendsToAFencedBucketAreRefusedOnTheSourceShard() {
+        String user = "fenced-user";
+        seed(user, 1);
+        int bucket = ShardKeys.bucketOf(user);
+        int shard = shardRouter.forUser(user).shard();
+        UUID session = ShardContext.on(shard, () -> sessionRepository.findByUserIdAndDeletedFalse(user)).get(0).getId();
+        // as a move does before copying; requests routed earlier still reach this shard
+        ShardContext.run(shard, () -> jdbcTemplate.update(
+                "insert into shard_fences (bucket, created_at) values (?, current_timestamp)", bucket));
+        try {
+            ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                    () -> ShardContext.run(shard, () -> messageService.addMessage(session, Sender.USER, "late", null)));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+            assertEquals(1, messages(shard, user));
+        } finally {
+            ShardContext.run(shard, () -> jdbcTemplate.update("delete from shard_fences where bucket = ?", bucket));
+        }
+
+        // a completed move leaves no fence behind, on either shard
+        reshardService.moveBucket(bucket, 1 - shard);
+        for (int s = 0; s < 2; s++) {
+            assertEquals(0, ShardContext.on(s, () -> jdbcTemplate.queryForObject(
+                    "select count(*) from shard_fences", Long.class)));
+        }
+        assertEquals(1, messages(1 - shard, user));
+    }
+
+    private void seed(String user, int messages) {
+        shardRouter.bindUser(user);
+        try {
+            ChatSession session = sessionRepository.save(ChatSession.builder().userId(user).title("t")
+                    .deleted(false).build());
+            for (int m = 0; m < messages; m++) {
+                // one context shared by every user, one of their own
+                messageService.addMessage(session.getId(), Sender.USER, "message " + m,
+                        (m == 0) ? "shared context" : "context of " + user);
+            }
+        } finally {
+            shardRouter.unbind();
+        }
+    }
+
+    private long sessions(int shard, String users) {
+        return ShardContext.on(shard, () -> jdbcTemplate.queryForObject(
+                "select count(*) from chat_sessions where user_id like ?", Long.class, users));
+    }
+
+    private long messages(int shard, String users) {
+        return ShardContext.on(shard, () -> jdbcTemplate.queryForObject("select count(*) from chat_messages m"
+                + " join chat_sessions s on s.id = m.session_id where s.user_id like ?", Long.class, users));
+    }
+}
@@ -0,0 +1,166 @@
+package rag_chat_microservice;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import rag_chat_microservice.config.ResponseCompressionFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCompressionFilterTest {
+
+    private static final String BODY = "{\"content\":\"" + "chat ".repeat(400) + "\"}";
+
+    private final ResponseCompressionFilter filter = new ResponseCompressionFilter();
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "minSize", DataSize.ofKilobytes(1));
+        ReflectionTestUtils.setField(filter, "mimeTypes", List.of(MediaType.APPLICATION_JSON));
+        ReflectionTestUtils.setField(filter, "brotliQuality", 4);
+        ReflectionTestUtils.setField(filter, "gzipLevel", 6);
+        ReflectionTestUtils.invokeMethod(filter, "init");
+        ReflectionTestUtils.setField(filter, "brotli", false); // gzip is readable here
+    }
+
+    @Test
+    void largeBodiesAreEncodedWithAWeakETag() throws Exception {
+        MockHttpServletResponse response = run("gzip, deflate", json(BODY, "\"v1\""));
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("W/\"v1\"", response.getHeader("ETag"));
+        assertEquals(List.of("Accept-Encoding"), response.getHeaders("Vary"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals(BODY, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void compressibleResponsesVaryOnAcceptEncodingEvenWhenNotEncoded() throws Exception {
+        MockHttpServletResponse small = run("gzip", json("{}", "\"v1\""));
+        assertNull(small.getHeader("Content-Encoding"));
+        assertEquals("\"v1\"", small.getHeader("ETag"));
+        assertEquals(2, small.getContentLength());
+        assertEquals(List.of("Accept-Encoding"), small.getHeaders("Vary"));
+
+        MockHttpServletResponse identity = run(null, json(BODY, null));
+        assertNull(identity.getHeader("Content-Encoding"));
+        assertEquals(BODY, identity.getContentAsString());
+        assertEquals(List.of("Accept-Encoding"), identity.getHeaders("Vary"));
+
+        MockHttpServletResponse image = run("gzip", (req, res) -> {
+            res.setContentType("image/png");
+            res.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+        });
+        assertNull(image.getHeader("Content-Encoding"));
+        assertTrue(image.getHeaders("Vary").isEmpty());
+    }
+
+    @Test
+    void notModifiedAnswersCarryTheWeakTagOfTheEncodedVariant() throws Exception {
+        FilterChain notModified = (req, res) -> {
+            HttpServletResponse http = (HttpServletResponse) res;
+            http.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            http.setHeader("ETag", "\"v1\"");
+        };
+
+        MockHttpServletResponse encoded = run("gzip", notModified);
+        assertEquals("W/\"v1\"", encoded.getHeader("ETag"));
+        assertEquals(List.of("Accept-Encoding"), encoded.getHeaders("Vary"));
+
+        assertEquals("\"v1\"", run(null, notModified).getHeader("ETag"));
+    }
+
+    @Test
+    void nonBlockingWritesGoStraightToTheContainerStream() throws Exception {
+        ListeningResponse response = new ListeningResponse();
+        WriteListener listener = new WriteListener() {
+            @Override
+            public void onWritePossible() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/sessions");
+        request.addHeader("Accept-Encoding", "gzip");
+
+        filter.doFilter(request, response, (req, res) -> {
+            res.setContentType("application/json");
+            ServletOutputStream out = res.getOutputStream();
+            out.write("{".getBytes(StandardCharsets.UTF_8));
+            out.setWriteListener(listener);
+            assertTrue(out.isReady());
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertSame(listener, response.listener);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("{" + BODY, response.written.toString(StandardCharsets.UTF_8));
+    }
+
+    private MockHttpServletResponse run(String acceptEncoding, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/sessions");
+        if (acceptEncoding != null) {
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static FilterChain json(String body, String etag) {
+        return (req, res) -> {
+            HttpServletResponse http = (HttpServletResponse) res;
+            http.setContentType("application/json");
+            if (etag != null) {
+                http.setHeader("ETag", etag);
+            }
+            http.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    /** A container stream that accepts a write listener, as Tomcat's does. */
+    private static final class ListeningResponse extends MockHttpServletResponse {
+
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        WriteListener listener;
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    listener = writeListener;
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    written.write(b);
+                }
+            };
+        }
+    }
+}
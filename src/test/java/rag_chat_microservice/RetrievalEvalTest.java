@@ -0,0 +1,41 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rag_chat_microservice.bench.RetrievalEvalHarness;
+import rag_chat_microservice.bench.RetrievalEvalHarness.ChunkIndex;
+import rag_chat_microservice.bench.RetrievalEvalHarness.Config;
+import rag_chat_microservice.bench.RetrievalEvalHarness.Corpus;
+import rag_chat_microservice.bench.RetrievalEvalHarness.Result;
+import rag_chat_microservice.vector.HashingEmbedder;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Quality gate on a small synthetic corpus, so retrieval regressions fail the build.
+ * The full grid and latency report come from running {@link RetrievalEvalHarness} directly.
+ */
+class RetrievalEvalTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void syntheticCorpus_meetsRecallAndMrrFloor() throws Exception {
+        Corpus corpus = RetrievalEvalHarness.syntheticCorpus(7L, 300, 100);
+        HashingEmbedder embedder = new HashingEmbedder(256);
+        ChunkIndex index = RetrievalEvalHarness.buildIndex(corpus, 128, embedder, tmp);
+
+        Result scalar = RetrievalEvalHarness.evaluate(corpus, index, new Config(128, 10, 50, "scalar"), embedder);
+        Result panama = RetrievalEvalHarness.evaluate(corpus, index, new Config(128, 10, 50, "panama"), embedder);
+
+        assertTrue(scalar.recallAtK() >= 0.95, "recall@10 = " + scalar.recallAtK());
+        assertTrue(scalar.mrr() >= 0.85, "MRR = " + scalar.mrr());
+        // kernels may differ by float rounding only, never in ranking quality
+        assertNotNull(panama);
+        assertEquals(scalar.recallAtK(), panama.recallAtK(), 0.02);
+        assertTrue(scalar.p99Micros() >= scalar.p50Micros());
+    }
+}
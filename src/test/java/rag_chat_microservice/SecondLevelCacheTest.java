@@ -0,0 +1,114 @@
+package rag_chat_microservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import rag_chat_microservice.dto.ChatSessionResponseDto;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SecondLevelCacheTest {
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+    private CacheRegionStatistics region;
+
+    @BeforeEach
+    void statistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        region = statistics.getDomainDataRegionStatistics(ChatSession.CACHE_REGION);
+    }
+
+    @Test
+    void sessionsAreServedFromTheEntityRegionUntilABulkUpdateEvictsIt() {
+        String user = "cache-" + UUID.randomUUID();
+        ChatSession saved = session(user);
+        assertTrue(entityManagerFactory.getCache().contains(ChatSession.class, saved.getId()));
+
+        long hits = region.getHitCount();
+        long misses = region.getMissCount();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(saved.getTitle(), sessionRepository.findById(saved.getId()).orElseThrow().getTitle());
+        }
+        assertEquals(hits + 3, region.getHitCount());
+        assertEquals(misses, region.getMissCount());
+
+        // a save through Hibernate updates the entry in place
+        ChatSession loaded = sessionRepository.findById(saved.getId()).orElseThrow();
+        loaded.setFavorite(true);
+        sessionRepository.save(loaded);
+        hits = region.getHitCount();
+        assertTrue(sessionRepository.findById(saved.getId()).orElseThrow().isFavorite());
+        assertEquals(hits + 1, region.getHitCount());
+
+        // a bulk JPQL update evicts, and the next read goes to the database
+        transactionTemplate.executeWithoutResult(status -> assertEquals(1, entityManager
+                .createQuery("update ChatSession s set s.title = :title where s.id = :id")
+                .setParameter("title", "renamed").setParameter("id", saved.getId()).executeUpdate()));
+        assertFalse(entityManagerFactory.getCache().contains(ChatSession.class, saved.getId()));
+        misses = region.getMissCount();
+        assertEquals("renamed", sessionRepository.findById(saved.getId()).orElseThrow().getTitle());
+        assertEquals(misses + 1, region.getMissCount());
+
+        assertFalse(Double.isNaN(meterRegistry.get("hibernate.second.level.cache.hit_ratio")
+                .tag("region", ChatSession.CACHE_REGION).gauge().value()));
+    }
+
+    @Test
+    void listingsComeFromTheQueryCacheUntilASessionOfTheTableChanges() {
+        String user = "cache-" + UUID.randomUUID();
+        ChatSession first = session(user);
+
+        assertEquals(List.of(first.getId()), ids(sessionRepository.findViewsByUserId(user)));
+        long hits = statistics.getQueryCacheHitCount();
+        assertEquals(List.of(first.getId()), ids(sessionRepository.findViewsByUserId(user)));
+        assertEquals(hits + 1, statistics.getQueryCacheHitCount());
+
+        // any chat_sessions write makes the cached result stale
+        ChatSession second = session(user);
+        long misses = statistics.getQueryCacheMissCount();
+        assertEquals(List.of(first.getId(), second.getId()).stream().sorted().toList(),
+                ids(sessionRepository.findViewsByUserId(user)).stream().sorted().toList());
+        assertEquals(misses + 1, statistics.getQueryCacheMissCount());
+
+        assertFalse(Double.isNaN(meterRegistry.get("hibernate.cache.query.hit_ratio").gauge().value()));
+    }
+
+    private ChatSession session(String user) {
+        return sessionRepository.save(ChatSession.builder().userId(user).title(UUID.randomUUID().toString())
+                .deleted(false).build());
+    }
+
+    private static List<UUID> ids(List<ChatSessionResponseDto> views) {
+        return views.stream().map(ChatSessionResponseDto::getSessionId).toList();
+    }
+}
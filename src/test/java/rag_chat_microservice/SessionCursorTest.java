@@ -0,0 +1,30 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import rag_chat_microservice.dto.MessageCursor;
+import rag_chat_microservice.dto.SessionCursor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionCursorTest {
+
+    @Test
+    void encode_roundTripsThroughOpaqueToken() {
+        SessionCursor cursor = new SessionCursor(LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_456_000),
+                UUID.fromString("0190f3a2-1c2d-7000-8000-00000000abcd"));
+
+        String token = cursor.encode();
+
+        assertFalse(token.contains("abcd"), "token should not expose raw values");
+        assertEquals(cursor, SessionCursor.decode(token));
+    }
+
+    @Test
+    void decode_rejectsGarbageAndMessageCursors() {
+        assertThrows(IllegalArgumentException.class, () -> SessionCursor.decode("not-a-cursor"));
+        assertThrows(IllegalArgumentException.class, () -> SessionCursor.decode(new MessageCursor(7L).encode()));
+    }
+}
@@ -0,0 +1,121 @@
+package rag_chat_microservice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.MessageService;
+import rag_chat_microservice.service.SessionPurgeJob;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "chat.purge.enabled=true",
+        "chat.purge.initial-delay=PT1H", // run by the test
+        "chat.purge.retention=P1D",
+        "chat.purge.archive-dir=" + SessionPurgeJobTest.ARCHIVE_DIR,
+        "chat.purge.delete-batch=2",
+        "chat.purge.pause-ms=0"
+})
+class SessionPurgeJobTest {
+
+    static final String ARCHIVE_DIR = "target/purge-test";
+
+    @Autowired
+    private SessionPurgeJob purgeJob;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void sessionsDeletedBeforeTheRetentionWindowAreArchivedThenDeleted() throws Exception {
+        UUID expired = session(3, LocalDateTime.now().minusDays(2));
+        UUID recent = session(1, LocalDateTime.now().minusHours(1));
+        UUID live = session(1, null);
+        List<Path> before = archives();
+
+        ReflectionTestUtils.invokeMethod(purgeJob, "purge");
+
+        assertFalse(sessionRepository.existsById(expired));
+        assertEquals(0, messages(expired));
+        assertTrue(sessionRepository.existsById(recent));
+        assertEquals(1, messages(recent));
+        assertTrue(sessionRepository.existsById(live));
+
+        List<Path> written = archives();
+        written.removeAll(before);
+        assertEquals(1, written.size());
+        List<JsonNode> lines = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(written.get(0))), StandardCharsets.UTF_8))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        assertEquals(4, lines.size());
+        assertEquals("session", lines.get(0).get("type").asText());
+        assertEquals(expired.toString(), lines.get(0).get("id").asText());
+        assertFalse(lines.get(0).get("deletedAt").isNull());
+        for (int i = 1; i < 4; i++) {
+            assertEquals("message", lines.get(i).get("type").asText());
+            assertEquals(i, lines.get(i).get("seq").asLong());
+            assertEquals("message " + (i - 1), lines.get(i).get("content").asText());
+        }
+    }
+
+    private UUID session(int messages, LocalDateTime deletedAt) {
+        ChatSession session = sessionRepository.save(ChatSession.builder().userId("purge-user")
+                .title(UUID.randomUUID().toString()).deleted(false).build());
+        for (int m = 0; m < messages; m++) {
+            messageService.addMessage(session.getId(), Sender.USER, "message " + m, null);
+        }
+        if (deletedAt != null) {
+            jdbcTemplate.update("update chat_sessions set is_deleted = true, deleted_at = ? where id = ?", deletedAt,
+                    session.getId());
+        }
+        return session.getId();
+    }
+
+    private long messages(UUID sessionId) {
+        return jdbcTemplate.queryForObject("select count(*) from chat_messages where session_id = ?", Long.class,
+                sessionId);
+    }
+
+    private static List<Path> archives() throws Exception {
+        Path dir = Paths.get(ARCHIVE_DIR);
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return new ArrayList<>(files.filter(f -> f.toString().endsWith(".ndjson.gz")).toList());
+        }
+    }
+}
@@ -11,6 +11,7 @@ import rag_chat_microservice.dto.CreateSessionRequest;
 import rag_chat_microservice.model.ChatSession;
 import rag_chat_microservice.repository.MessageRepository;
 import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.ReadYourWrites;
 import rag_chat_microservice.service.SessionServiceImpl;
 
 import java.util.Optional;
@@ -31,6 +32,9 @@ class SessionServiceImplTest {
     @Mock
     private MessageRepository messageRepository;
 
+    @Mock
+    private ReadYourWrites readYourWrites;
+
 
     private CreateSessionRequest createRequest;
     private UUID testSessionId;
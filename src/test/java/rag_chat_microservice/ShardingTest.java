@@ -0,0 +1,125 @@
+package rag_chat_microservice;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.util.ReflectionTestUtils;
+import rag_chat_microservice.model.ShardDirectoryEntry;
+import rag_chat_microservice.model.UuidV7Generator;
+import rag_chat_microservice.repository.ShardDirectoryRepository;
+import rag_chat_microservice.repository.ShardFenceRepository;
+import rag_chat_microservice.sharding.ConsistentHashRing;
+import rag_chat_microservice.sharding.ShardContext;
+import rag_chat_microservice.sharding.ShardKeys;
+import rag_chat_microservice.sharding.ShardRouter;
+import rag_chat_microservice.sharding.ShardRoutingDataSource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ShardingTest {
+
+    @Test
+    void growingTheRingMovesAboutOneNthOfTheBucketsAllToTheNewShard() {
+        ConsistentHashRing three = new ConsistentHashRing(3, 160);
+        ConsistentHashRing four = new ConsistentHashRing(4, 160);
+        int[] perShard = new int[3];
+        int moved = 0;
+        for (int bucket = 0; bucket < ShardKeys.BUCKETS; bucket++) {
+            int before = ShardRouter.ringPlacement(three, bucket);
+            int after = ShardRouter.ringPlacement(four, bucket);
+            perShard[before]++;
+            if (before != after) {
+                assertEquals(3, after, "bucket " + bucket + " moved between old shards");
+                moved++;
+            }
+        }
+        for (int count : perShard) {
+            assertTrue(count > ShardKeys.BUCKETS / 3 * 0.7 && count < ShardKeys.BUCKETS / 3 * 1.3, "skewed: " + count);
+        }
+        assertTrue(moved > ShardKeys.BUCKETS / 4 * 0.6 && moved < ShardKeys.BUCKETS / 4 * 1.4, "moved " + moved);
+    }
+
+    @Test
+    void sessionIdsCarryTheirUsersBucket() {
+        int bucket = ShardKeys.bucketOf("alice");
+        long since = System.currentTimeMillis() - 1000;
+        UUID id = UuidV7Generator.next(bucket);
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(bucket, ShardKeys.bucketOf(id, since));
+
+        // ids issued before sharding was enabled carry no bucket
+        assertNull(ShardKeys.bucketOf(id, System.currentTimeMillis() + 1000));
+        assertNull(ShardKeys.bucketOf(UUID.randomUUID(), 0));
+    }
+
+    @Test
+    void v7IdsFromBeforeShardingAreRoutedByTheDirectoryNotTheirBits() {
+        ShardDirectoryRepository directory = mock(ShardDirectoryRepository.class);
+        when(directory.findByKeyPrefix(anyString())).thenReturn(List.of());
+        // issued now, an hour before sharding is enabled
+        UUID moved = UuidV7Generator.next(ShardKeys.bucketOf("alice"));
+        UUID stayed = UuidV7Generator.next(ShardKeys.bucketOf("alice"));
+        when(directory.findById(ShardRouter.sessionKey(moved)))
+                .thenReturn(Optional.of(ShardDirectoryEntry.of(ShardRouter.sessionKey(moved), 2, false)));
+        when(directory.findById(ShardRouter.sessionKey(stayed))).thenReturn(Optional.empty());
+        ShardRouter router = router(directory, Instant.now().plus(Duration.ofHours(1)).toString());
+
+        assertEquals(new ShardRouter.Placement(2, null, false), router.forSession(moved));
+        assertEquals(new ShardRouter.Placement(ShardRouter.CATALOG, null, false), router.forSession(stayed));
+
+        // ids issued after it carry their bucket and follow the user's placement
+        ShardRouter later = router(directory, Instant.now().minus(Duration.ofHours(1)).toString());
+        assertEquals(later.forUser("alice"), later.forSession(moved));
+    }
+
+    @Test
+    void shardingWithoutASinceInstantDoesNotStart() {
+        ShardDirectoryRepository directory = mock(ShardDirectoryRepository.class);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> router(directory, ""));
+        assertTrue(e.getMessage().contains("chat.sharding.since"));
+    }
+
+    private static ShardRouter router(ShardDirectoryRepository directory, String since) {
+        ShardRouter router = new ShardRouter(directory, mock(ShardFenceRepository.class));
+        ReflectionTestUtils.setField(router, "urls", List.of("jdbc:a", "jdbc:b", "jdbc:c"));
+        ReflectionTestUtils.setField(router, "virtualNodes", 160);
+        ReflectionTestUtils.setField(router, "since", since);
+        ReflectionTestUtils.setField(router, "refresh", Duration.ofSeconds(5));
+        ReflectionTestUtils.invokeMethod(router, "init");
+        return router;
+    }
+
+    @Test
+    void connectionsComeFromTheBoundShard() {
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(List.of(h2("shard_a"), h2("shard_b")));
+        JdbcTemplate jdbc = new JdbcTemplate(new LazyConnectionDataSourceProxy(routing));
+
+        assertEquals("SHARD_A", database(jdbc)); // startup: unbound goes to the catalog shard
+        assertEquals("SHARD_B", ShardContext.on(1, () -> database(jdbc)));
+        assertEquals("SHARD_A", ShardContext.on(0, () -> database(jdbc)));
+
+        routing.setStrict(true);
+        assertThrows(IllegalStateException.class, () -> database(jdbc));
+        assertNull(ShardContext.current());
+    }
+
+    private static String database(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("select database()", String.class);
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        return ds;
+    }
+}
@@ -0,0 +1,48 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import rag_chat_microservice.vector.SimilarityKernel;
+import rag_chat_microservice.vector.SimilarityKernels;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimilarityKernelTest {
+
+    private final SimilarityKernel scalar = SimilarityKernels.scalar();
+    private final SimilarityKernel panama = SimilarityKernels.panama();
+
+    // odd sizes exercise the scalar tail after the last full vector
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 256, 385, 768, 1536})
+    void panamaKernel_matchesScalarWithinFloatTolerance(int dim) {
+        assertNotNull(panama, "surefire runs with --add-modules jdk.incubator.vector");
+
+        Random rnd = new Random(dim);
+        float[] a = new float[dim];
+        float[] b = new float[dim];
+        byte[] qa = new byte[dim];
+        byte[] qb = new byte[dim];
+        for (int i = 0; i < dim; i++) {
+            a[i] = (float) rnd.nextGaussian();
+            b[i] = (float) rnd.nextGaussian();
+            qa[i] = (byte) (rnd.nextInt(255) - 127);
+            qb[i] = (byte) (rnd.nextInt(255) - 127);
+        }
+        ByteBuffer floats = ByteBuffer.allocate(4 * dim + 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < dim; i++) floats.putFloat(8 + 4 * i, b[i]);
+        ByteBuffer codes = ByteBuffer.allocate(dim + 3).order(ByteOrder.LITTLE_ENDIAN);
+        codes.put(3, qb);
+
+        float tol = 1e-4f * dim;
+        assertEquals(scalar.dot(a, b), panama.dot(a, b), tol);
+        assertEquals(scalar.dot(a, floats, 8), panama.dot(a, floats, 8), tol);
+        assertEquals(scalar.cosine(a, b), panama.cosine(a, b), 1e-5f);
+        assertEquals(scalar.dotInt8(qa, qb), panama.dotInt8(qa, qb));
+        assertEquals(scalar.dotInt8(qa, codes, 3), panama.dotInt8(qa, codes, 3));
+    }
+}
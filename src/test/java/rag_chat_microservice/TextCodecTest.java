@@ -0,0 +1,75 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import rag_chat_microservice.model.TextCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextCodecTest {
+
+    private static final String REPLY = "The retrieval step found three passages about quarterly revenue. ".repeat(40)
+            + "Résumé: ümlauts and emoji 😀 survive the round trip.";
+
+    @Test
+    void roundTripsWithEveryCodecAndShrinksRepetitiveText() {
+        int plain = REPLY.getBytes(StandardCharsets.UTF_8).length;
+        for (TextCodec.Codec c : TextCodec.Codec.values()) {
+            byte[] stored = new TextCodec(c, 512, 6).encode(REPLY);
+            assertEquals(REPLY, TextCodec.decode(stored), c.name());
+            if (c != TextCodec.Codec.NONE) {
+                assertEquals((byte) 0xFF, stored[0]);
+                assertTrue(stored.length * 4 < plain, c + ": " + stored.length + " of " + plain);
+            }
+        }
+    }
+
+    @Test
+    void shortAndIncompressibleValuesStayPlainUtf8() {
+        TextCodec deflate = new TextCodec(TextCodec.Codec.DEFLATE, 512, 6);
+        assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), deflate.encode("hello"));
+
+        byte[] noise = new byte[2048];
+        new Random(1).nextBytes(noise);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : noise) sb.append((char) ('!' + (b & 0x3f)));
+        String random = sb.toString();
+        // no repeated substrings for LZ4 to reference, so the header would only add bytes
+        TextCodec lz4 = new TextCodec(TextCodec.Codec.LZ4, 512, 6);
+        assertArrayEquals(random.getBytes(StandardCharsets.UTF_8), lz4.encode(random));
+    }
+
+    @Test
+    void decodesRowsWrittenBeforeCompression() {
+        // existing LONGTEXT rows become plain UTF-8 bytes once the column is LONGBLOB
+        assertEquals(REPLY, TextCodec.decode(REPLY.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("", TextCodec.decode(new byte[0]));
+    }
+
+    @Test
+    void aHeaderClaimingMoreThanThePayloadCanHoldIsRejectedBeforeAllocating() {
+        for (TextCodec.Codec c : new TextCodec.Codec[]{TextCodec.Codec.DEFLATE, TextCodec.Codec.LZ4}) {
+            byte[] stored = new TextCodec(c, 512, 6).encode(REPLY);
+            ByteBuffer.wrap(stored, 2, 4).putInt(Integer.MAX_VALUE - 8);
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> TextCodec.decode(stored));
+            assertTrue(e.getMessage().startsWith("Corrupt compressed value"), e.getMessage());
+            ByteBuffer.wrap(stored, 2, 4).putInt(-1);
+            assertThrows(IllegalStateException.class, () -> TextCodec.decode(stored), c.name());
+        }
+
+        // within the expansion ratio but over the configured limit
+        byte[] large = new TextCodec(TextCodec.Codec.DEFLATE, 512, 6).encode(REPLY);
+        assertThrows(IllegalStateException.class, () -> TextCodec.decode(large, 1024));
+        assertEquals(REPLY, TextCodec.decode(large, 1 << 20));
+    }
+
+    @Test
+    void valuesOverTheLimitAreStoredPlain() {
+        byte[] stored = new TextCodec(TextCodec.Codec.DEFLATE, 512, 6, 1024).encode(REPLY);
+        assertArrayEquals(REPLY.getBytes(StandardCharsets.UTF_8), stored);
+        assertEquals(REPLY, TextCodec.decode(stored, 1024));
+    }
+}
@@ -0,0 +1,32 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import rag_chat_microservice.model.UuidV7Generator;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7GeneratorTest {
+
+    @Test
+    void idsAreVersion7AndStrictlyIncreasing() {
+        long before = System.currentTimeMillis();
+        UUID prev = UuidV7Generator.next();
+        for (int i = 0; i < 100_000; i++) {
+            UUID next = UuidV7Generator.next();
+            assertEquals(7, next.version());
+            assertEquals(2, next.variant());
+            // unsigned comparison of the msb matches BINARY(16) byte order
+            int cmp = Long.compareUnsigned(next.getMostSignificantBits(), prev.getMostSignificantBits());
+            assertTrue(cmp > 0, prev + " !< " + next);
+            prev = next;
+        }
+        assertTrue(UuidV7Generator.timestampOf(prev) >= before);
+    }
+
+    @Test
+    void timestampOfRejectsRandomUuids() {
+        assertThrows(IllegalArgumentException.class, () -> UuidV7Generator.timestampOf(UUID.randomUUID()));
+    }
+}
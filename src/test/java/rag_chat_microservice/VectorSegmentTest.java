@@ -0,0 +1,76 @@
+package rag_chat_microservice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rag_chat_microservice.vector.ScalarQuantizer;
+import rag_chat_microservice.vector.VectorHit;
+import rag_chat_microservice.vector.VectorSegment;
+import rag_chat_microservice.vector.VectorSegmentWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorSegmentTest {
+
+    private static final int DIM = 64;
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void writtenSegment_reopensAndFindsExactNeighbour() throws Exception {
+        Random rnd = new Random(42);
+        List<UUID> ids = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            ids.add(UUID.randomUUID());
+            vectors.add(randomUnit(rnd));
+        }
+
+        Path file = VectorSegmentWriter.write(tmp.resolve("s.vseg"), DIM, ids, vectors);
+        VectorSegment segment = VectorSegment.open(file);
+
+        assertEquals(500, segment.size());
+        assertEquals(DIM, segment.dimension());
+        assertEquals(ids.get(123), segment.idAt(123));
+
+        // querying with a stored vector must return it first, with float (re-ranked) score ~1
+        List<VectorHit> hits = segment.search(vectors.get(123), 5, 50);
+        assertEquals(5, hits.size());
+        assertEquals(ids.get(123), hits.get(0).id());
+        assertEquals(1.0f, hits.get(0).score(), 1e-4);
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).score() >= hits.get(i).score(), "hits must be sorted by score");
+        }
+    }
+
+    @Test
+    void quantize_roundTripsWithinOneStep() {
+        float[] v = randomUnit(new Random(7));
+        byte[] codes = new byte[DIM];
+        float scale = ScalarQuantizer.quantize(v, codes);
+        for (int i = 0; i < DIM; i++) {
+            assertEquals(v[i], codes[i] * scale, scale);
+        }
+    }
+
+    @Test
+    void open_rejectsForeignFile() throws Exception {
+        Path junk = tmp.resolve("junk.vseg");
+        Files.write(junk, new byte[128]);
+        assertThrows(IOException.class, () -> VectorSegment.open(junk));
+    }
+
+    private static float[] randomUnit(Random rnd) {
+        float[] v = new float[DIM];
+        for (int i = 0; i < DIM; i++) v[i] = (float) rnd.nextGaussian();
+        return ScalarQuantizer.normalize(v);
+    }
+}
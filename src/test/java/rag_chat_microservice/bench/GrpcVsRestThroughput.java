@@ -0,0 +1,167 @@
+package rag_chat_microservice.bench;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.MetadataUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import rag_chat_microservice.RagChatMicroserviceApplication;
+import rag_chat_microservice.grpc.GrpcServer;
+import rag_chat_microservice.grpc.v1.ChatServiceGrpc;
+import rag_chat_microservice.grpc.v1.ListMessagesRequest;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.MessageService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads of one page of a session's messages per second, over gRPC
+ * (ListMessages) and over REST (GET /api/sessions/{id}/messages, JSON), against
+ * the same in-process instance and data. Both clients keep their connections
+ * open: one HTTP/2 channel for gRPC, HTTP/1.1 keep-alive for REST.
+ *
+ * <pre>
+ * mvn -Pbench test-compile exec:exec -Dbench.main=rag_chat_microservice.bench.GrpcVsRestThroughput \
+ *     -Dbench.args="--threads=16 --requests=20000"
+ * </pre>
+ *
+ * Options (all {@code --key=value}): {@code threads}, {@code requests}, {@code sessions}, {@code messages}
+ * (per session), {@code page} (page size), {@code content} (characters per message).
+ */
+public class GrpcVsRestThroughput {
+
+    private static final String KEY = "bench";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        int threads = Integer.parseInt(opts.getOrDefault("threads", "16"));
+        int requests = Integer.parseInt(opts.getOrDefault("requests", "20000"));
+        int sessions = Integer.parseInt(opts.getOrDefault("sessions", "50"));
+        int messages = Integer.parseInt(opts.getOrDefault("messages", "20"));
+        int page = Integer.parseInt(opts.getOrDefault("page", "10"));
+        int content = Integer.parseInt(opts.getOrDefault("content", "400"));
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("spring.datasource.url",
+                "jdbc:h2:file:./target/bench/grpc-rest-" + System.nanoTime() + ";MODE=MySQL");
+        props.put("spring.datasource.username", "sa");
+        props.put("spring.datasource.password", "");
+        props.put("API_KEY", KEY);
+        props.put("GEMINI_API_KEY", KEY);
+        props.put("server.port", 0);
+        props.put("chat.grpc.enabled", true);
+        props.put("chat.grpc.port", 0);
+        props.put("ratelimit.permits", Integer.MAX_VALUE);
+        props.put("logging.level.root", "WARN");
+        String[] appArgs = props.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(RagChatMicroserviceApplication.class)
+                .run(appArgs)) {
+            UUID[] ids = seed(ctx, sessions, messages, content);
+            int restPort = Integer.parseInt(ctx.getEnvironment().getProperty("local.server.port"));
+            int grpcPort = ctx.getBean(GrpcServer.class).port();
+
+            ManagedChannel channel = NettyChannelBuilder.forAddress("localhost", grpcPort).usePlaintext().build();
+            Metadata headers = new Metadata();
+            headers.put(Metadata.Key.of("x-api-key", Metadata.ASCII_STRING_MARSHALLER), KEY);
+            ChatServiceGrpc.ChatServiceBlockingStub stub = ChatServiceGrpc.newBlockingStub(channel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+            HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            Call grpc = i -> stub.listMessages(ListMessagesRequest.newBuilder()
+                    .setSessionId(ids[i % ids.length].toString()).setPageSize(page).build()).getSerializedSize();
+            Call rest = i -> http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + restPort
+                            + "/api/sessions/" + ids[i % ids.length] + "/messages?size=" + page))
+                    .header("X-API-KEY", KEY).build(), HttpResponse.BodyHandlers.ofByteArray()).body().length;
+
+            List<String> report = new ArrayList<>();
+            for (int round = 0; round < 2; round++) {
+                // the first round warms up both paths
+                String grpcLine = run("grpc", grpc, threads, requests);
+                String restLine = run("rest", rest, threads, requests);
+                if (round == 1) {
+                    report.add(grpcLine);
+                    report.add(restLine);
+                }
+            }
+            channel.shutdownNow();
+            report.forEach(System.out::println);
+        }
+    }
+
+    private static UUID[] seed(ConfigurableApplicationContext ctx, int sessions, int messages, int content) {
+        SessionRepository sessionRepository = ctx.getBean(SessionRepository.class);
+        MessageService messageService = ctx.getBean(MessageService.class);
+        String text = "lorem ipsum dolor sit amet ".repeat(content / 27 + 1).substring(0, content);
+        UUID[] ids = new UUID[sessions];
+        for (int s = 0; s < sessions; s++) {
+            ids[s] = sessionRepository.save(ChatSession.builder().userId("bench-" + (s % 10))
+                    .title("bench " + s).deleted(false).build()).getId();
+            for (int m = 0; m < messages; m++) {
+                messageService.addMessage(ids[s], (m % 2 == 0) ? Sender.USER : Sender.AI, m + " " + text, null);
+            }
+        }
+        return ids;
+    }
+
+    private static String run(String name, Call call, int threads, int requests) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long[] latencies = new long[requests];
+        long[] bytes = new long[1];
+        List<Callable<Integer>> tasks = new ArrayList<>(requests);
+        for (int r = 0; r < requests; r++) {
+            final int i = r;
+            tasks.add(() -> {
+                long t0 = System.nanoTime();
+                int size = call.invoke(i);
+                latencies[i] = System.nanoTime() - t0;
+                return size;
+            });
+        }
+        long start = System.nanoTime();
+        for (Future<Integer> f : pool.invokeAll(tasks)) {
+            bytes[0] += f.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        return String.format("%-5s threads=%d requests=%d  %.2fs  %,.0f req/s  p50=%.2fms p99=%.2fms  %d bytes/response",
+                name, threads, requests, seconds, requests / seconds, latencies[requests / 2] / 1e6,
+                latencies[(int) (requests * 0.99)] / 1e6, bytes[0] / requests);
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        int invoke(int i) throws Exception;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String a : String.join(" ", args).trim().split("\\s+")) {
+            if (a.isEmpty()) continue;
+            if (!a.startsWith("--") || !a.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got: " + a);
+            }
+            opts.put(a.substring(2, a.indexOf('=')), a.substring(a.indexOf('=') + 1));
+        }
+        return opts;
+    }
+}
@@ -0,0 +1,118 @@
+package rag_chat_microservice.bench;
+
+import org.openjdk.jmh.annotations.*;
+import rag_chat_microservice.model.UuidV7Generator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput of chat_messages-shaped rows by key layout: random UUIDv4 as
+ * CHAR(36) with a hex hash (the old schema), random UUIDv4 as BINARY(16), and
+ * UUIDv7 as BINARY(16) with a BINARY(32) hash (the current schema).
+ * <p>
+ * The table keeps growing across iterations, which is where random keys start to
+ * hurt. Defaults to an on-disk H2 stand-in; point it at a local MySQL with
+ * {@code -Dbench.args="IdInsertBenchmark -p jdbcUrl=jdbc:mysql://localhost:3306/bench -p user=root -p password=..."}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdInsertBenchmark {
+
+    static final int BATCH = 500;
+
+    @Param({"random-char36", "random-binary16", "v7-binary16"})
+    String layout;
+
+    @Param("jdbc:h2:file:./target/bench/ids;MODE=MySQL")
+    String jdbcUrl;
+
+    @Param("sa")
+    String user;
+
+    @Param("")
+    String password;
+
+    private Connection conn;
+    private PreparedStatement insert;
+    private final UUID session = UuidV7Generator.next();
+    private long seq;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        conn = DriverManager.getConnection(jdbcUrl, user, password);
+        boolean text = layout.endsWith("char36");
+        String key = text ? "CHAR(36)" : "BINARY(16)";
+        String hash = text ? "VARCHAR(64)" : "BINARY(32)";
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS bench_messages");
+            st.execute("CREATE TABLE bench_messages (id " + key + " NOT NULL PRIMARY KEY, session_id " + key
+                    + " NOT NULL, content VARCHAR(255) NOT NULL, content_hash " + hash
+                    + " NOT NULL, created_at TIMESTAMP(6) NOT NULL)");
+            st.execute("CREATE INDEX idx_bench_session_created_id ON bench_messages (session_id, created_at, id)");
+        }
+        conn.setAutoCommit(false);
+        insert = conn.prepareStatement(
+                "INSERT INTO bench_messages (id, session_id, content, content_hash, created_at) VALUES (?, ?, ?, ?, ?)");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE bench_messages");
+        }
+        conn.commit();
+        conn.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int[] insertBatch() throws Exception {
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        for (int i = 0; i < BATCH; i++) {
+            String content = "message " + (seq++);
+            byte[] digest = sha.digest(content.getBytes(StandardCharsets.UTF_8));
+            switch (layout) {
+                case "random-char36" -> {
+                    insert.setString(1, UUID.randomUUID().toString());
+                    insert.setString(2, session.toString());
+                    insert.setString(4, HexFormat.of().formatHex(digest));
+                }
+                case "random-binary16" -> {
+                    insert.setBytes(1, bytes(UUID.randomUUID()));
+                    insert.setBytes(2, bytes(session));
+                    insert.setBytes(4, digest);
+                }
+                default -> {
+                    insert.setBytes(1, bytes(UuidV7Generator.next()));
+                    insert.setBytes(2, bytes(session));
+                    insert.setBytes(4, digest);
+                }
+            }
+            insert.setString(3, content);
+            insert.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+            insert.addBatch();
+        }
+        int[] counts = insert.executeBatch();
+        conn.commit();
+        return counts;
+    }
+
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+}
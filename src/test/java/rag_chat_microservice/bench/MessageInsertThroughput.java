@@ -0,0 +1,125 @@
+package rag_chat_microservice.bench;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import rag_chat_microservice.RagChatMicroserviceApplication;
+import rag_chat_microservice.model.ChatMessage.Sender;
+import rag_chat_microservice.model.ChatSession;
+import rag_chat_microservice.repository.SessionRepository;
+import rag_chat_microservice.service.MessageService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Message inserts per second through {@link MessageService#addMessage}, once with
+ * the direct path (one transaction per insert) and once with the write-behind
+ * buffer. Every turn is a USER question followed by its AI answer.
+ *
+ * <pre>
+ * mvn -Pbench test-compile exec:exec -Dbench.main=rag_chat_microservice.bench.MessageInsertThroughput \
+ *     -Dbench.args="--threads=64 --turns=5000"
+ * </pre>
+ *
+ * Options (all {@code --key=value}): {@code modes} (default {@code direct,write-behind}), {@code threads},
+ * {@code turns}, {@code sessions}, {@code ack}, {@code jdbc-url}, {@code user}, {@code password}.
+ * Without {@code jdbc-url} each mode gets a fresh H2 file database under target/bench.
+ */
+public class MessageInsertThroughput {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        int threads = Integer.parseInt(opts.getOrDefault("threads", "64"));
+        int turns = Integer.parseInt(opts.getOrDefault("turns", "5000"));
+        int sessions = Integer.parseInt(opts.getOrDefault("sessions", "500"));
+
+        List<String> report = new ArrayList<>();
+        for (String mode : opts.getOrDefault("modes", "direct,write-behind").split(",")) {
+            Map<String, Object> props = new HashMap<>();
+            props.put("spring.datasource.url", opts.getOrDefault("jdbc-url",
+                    "jdbc:h2:file:./target/bench/insert-" + mode + "-" + System.nanoTime() + ";MODE=MySQL"));
+            props.put("spring.datasource.username", opts.getOrDefault("user", "sa"));
+            props.put("spring.datasource.password", opts.getOrDefault("password", ""));
+            props.put("API_KEY", "bench");
+            props.put("GEMINI_API_KEY", "bench");
+            props.put("server.port", 0);
+            props.put("logging.level.root", "WARN");
+            props.put("chat.write-behind.enabled", mode.equals("write-behind"));
+            props.put("chat.write-behind.ack", opts.getOrDefault("ack", "flush"));
+
+            // as command-line args so they override application.properties
+            String[] appArgs = props.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue())
+                    .toArray(String[]::new);
+            try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(RagChatMicroserviceApplication.class)
+                    .run(appArgs)) {
+                report.add(run(ctx, mode, threads, turns, sessions));
+            }
+        }
+        report.forEach(System.out::println);
+    }
+
+    private static String run(ConfigurableApplicationContext ctx, String mode, int threads, int turns, int sessions)
+            throws Exception {
+        SessionRepository sessionRepository = ctx.getBean(SessionRepository.class);
+        MessageService messageService = ctx.getBean(MessageService.class);
+
+        String run = Long.toString(System.nanoTime(), 36);
+        UUID[] ids = new UUID[sessions];
+        for (int i = 0; i < sessions; i++) {
+            ids[i] = sessionRepository.save(ChatSession.builder().userId("bench-" + (i % 50))
+                    .title("bench " + run + " " + i).deleted(false).build()).getId();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(turns);
+        for (int t = 0; t < turns; t++) {
+            final int turn = t;
+            futures.add(pool.submit(() -> {
+                UUID sessionId = ids[turn % sessions];
+                messageService.addMessage(sessionId, Sender.USER, "question " + turn + " of run " + run, null);
+                messageService.addMessage(sessionId, Sender.AI, "answer " + turn + " of run " + run, null);
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        // with ack=enqueue, stop the clock only once everything is committed
+        MeterRegistry meters = ctx.getBean(MeterRegistry.class);
+        while (meters.find("chat.messages.write_behind.messages").counters().stream()
+                .mapToDouble(Counter::count).sum() < (mode.equals("write-behind") ? 2 * turns : 0)) {
+            Thread.sleep(5);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        String batches = "";
+        DistributionSummary batchSize = meters.find("chat.messages.write_behind.batch_size").summary();
+        if (batchSize != null) {
+            batches = String.format("  batches=%d mean-batch=%.1f", batchSize.count(), batchSize.mean());
+        }
+        return String.format("%-13s threads=%d inserts=%d  %.2fs  %,.0f inserts/s%s", mode, threads, 2 * turns,
+                seconds, 2 * turns / seconds, batches);
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String a : String.join(" ", args).trim().split("\\s+")) {
+            if (a.isEmpty()) continue;
+            if (!a.startsWith("--") || !a.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got: " + a);
+            }
+            opts.put(a.substring(2, a.indexOf('=')), a.substring(a.indexOf('=') + 1));
+        }
+        return opts;
+    }
+}
@@ -0,0 +1,270 @@
+package rag_chat_microservice.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import rag_chat_microservice.vector.Embedder;
+import rag_chat_microservice.vector.HashingEmbedder;
+import rag_chat_microservice.vector.SimilarityKernel;
+import rag_chat_microservice.vector.SimilarityKernels;
+import rag_chat_microservice.vector.TextChunker;
+import rag_chat_microservice.vector.VectorHit;
+import rag_chat_microservice.vector.VectorSegment;
+import rag_chat_microservice.vector.VectorSegmentWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Offline retrieval evaluation: chunks a labeled corpus, embeds it with the local
+ * {@link HashingEmbedder}, writes real segment files and measures recall@k, MRR
+ * and query latency for each retriever configuration. Results are written as JSON.
+ *
+ * <pre>
+ * mvn -Pbench test-compile exec:exec -Dbench.main=rag_chat_microservice.bench.RetrievalEvalHarness \
+ *     -Dbench.args="--out=target/retrieval-eval.json --min-recall=0.8"
+ * </pre>
+ *
+ * Options (all {@code --key=value}): {@code docs}, {@code queries} (JSONL files; a synthetic
+ * corpus is generated when omitted), {@code chunk-words}, {@code top-k}, {@code rerank-depth},
+ * {@code kernels} (comma-separated lists), {@code dimension}, {@code out}, {@code min-recall}.
+ * The process exits with status 1 if any configuration's recall@k is below {@code min-recall}.
+ */
+public class RetrievalEvalHarness {
+
+    public record Document(String id, String text) {
+    }
+
+    public record LabeledQuery(String text, Set<String> relevantDocIds) {
+    }
+
+    public record Corpus(String name, List<Document> docs, List<LabeledQuery> queries) {
+    }
+
+    public record Config(int chunkWords, int topK, int rerankDepth, String kernel) {
+    }
+
+    /** One segment file holding every chunk of the corpus at a given chunk size. */
+    public record ChunkIndex(int chunkWords, VectorSegment segment, long buildMillis) {
+    }
+
+    public record Result(Config config, int chunks, double recallAtK, double mrr,
+                         double p50Micros, double p99Micros, double meanMicros, long indexBuildMillis) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        int dimension = Integer.parseInt(opts.getOrDefault("dimension", "512"));
+        Path out = Paths.get(opts.getOrDefault("out", "target/retrieval-eval.json"));
+        double minRecall = Double.parseDouble(opts.getOrDefault("min-recall", "0"));
+
+        Corpus corpus = opts.containsKey("docs")
+                ? loadCorpus(Paths.get(opts.get("docs")), Paths.get(opts.get("queries")))
+                : syntheticCorpus(42L, 2000, 400);
+
+        List<Config> configs = new ArrayList<>();
+        for (int chunk : ints(opts.getOrDefault("chunk-words", "64,128,256")))
+            for (int k : ints(opts.getOrDefault("top-k", "1,5,10")))
+                for (int depth : ints(opts.getOrDefault("rerank-depth", "10,50,200")))
+                    for (String kernel : opts.getOrDefault("kernels", "scalar,panama").split(","))
+                        configs.add(new Config(chunk, k, depth, kernel.trim()));
+
+        Embedder embedder = new HashingEmbedder(dimension);
+        Path work = Files.createTempDirectory("retrieval-eval");
+        Map<Integer, ChunkIndex> indexes = new HashMap<>();
+        List<Result> results = new ArrayList<>();
+        for (Config c : configs) {
+            ChunkIndex index = indexes.get(c.chunkWords());
+            if (index == null) {
+                index = buildIndex(corpus, c.chunkWords(), embedder, work);
+                indexes.put(c.chunkWords(), index);
+            }
+            Result r = evaluate(corpus, index, c, embedder);
+            if (r == null) {
+                System.out.printf("skip   %s (kernel unavailable)%n", c);
+                continue;
+            }
+            results.add(r);
+            System.out.printf("chunk=%-4d k=%-3d depth=%-4d %-7s recall@k=%.3f mrr=%.3f p50=%.0fus p99=%.0fus%n",
+                    c.chunkWords(), c.topK(), c.rerankDepth(), c.kernel(), r.recallAtK(), r.mrr(),
+                    r.p50Micros(), r.p99Micros());
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", Instant.now().toString());
+        report.put("corpus", Map.of("name", corpus.name(), "documents", corpus.docs().size(),
+                "queries", corpus.queries().size()));
+        report.put("embedder", Map.of("type", "hashing", "dimension", dimension));
+        report.put("results", results);
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out.toFile(), report);
+        System.out.println("Report written to " + out.toAbsolutePath());
+
+        List<Result> failing = results.stream().filter(r -> r.recallAtK() < minRecall).toList();
+        if (!failing.isEmpty()) {
+            System.err.printf("%d configuration(s) below min-recall %.3f%n", failing.size(), minRecall);
+            System.exit(1);
+        }
+    }
+
+    public static ChunkIndex buildIndex(Corpus corpus, int chunkWords, Embedder embedder, Path workDir)
+            throws IOException {
+        // chunk ids encode (document index, chunk index) so hits map back to documents
+        long buildStart = System.nanoTime();
+        List<UUID> ids = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        for (int d = 0; d < corpus.docs().size(); d++) {
+            List<String> chunks = TextChunker.chunk(corpus.docs().get(d).text(), chunkWords, chunkWords / 8);
+            for (int c = 0; c < chunks.size(); c++) {
+                ids.add(new UUID(d, c));
+                vectors.add(embedder.embed(chunks.get(c)));
+            }
+        }
+        Path file = workDir.resolve("eval-" + chunkWords + "-" + embedder.dimension() + ".vseg");
+        VectorSegmentWriter.write(file, embedder.dimension(), ids, vectors);
+        return new ChunkIndex(chunkWords, VectorSegment.open(file), (System.nanoTime() - buildStart) / 1_000_000);
+    }
+
+    /**
+     * Runs every query of the corpus against the index with the given configuration.
+     * Returns {@code null} if the requested kernel is unavailable in this JVM.
+     */
+    public static Result evaluate(Corpus corpus, ChunkIndex index, Config config, Embedder embedder) {
+        SimilarityKernel kernel = "panama".equals(config.kernel()) ? SimilarityKernels.panama()
+                : SimilarityKernels.scalar();
+        if (kernel == null) return null;
+        VectorSegment segment = index.segment();
+
+        // chunks of one document compete for slots, so over-fetch and dedupe by document
+        int fetch = config.topK() * 4;
+        int depth = Math.max(config.rerankDepth(), fetch);
+
+        for (LabeledQuery q : corpus.queries()) { // warm-up
+            segment.search(embedder.embed(q.text()), fetch, depth, kernel);
+        }
+
+        long[] latencies = new long[corpus.queries().size()];
+        int hits = 0;
+        double reciprocalRanks = 0;
+        for (int i = 0; i < corpus.queries().size(); i++) {
+            LabeledQuery q = corpus.queries().get(i);
+            long t0 = System.nanoTime();
+            List<VectorHit> result = segment.search(embedder.embed(q.text()), fetch, depth, kernel);
+            latencies[i] = System.nanoTime() - t0;
+
+            List<String> rankedDocs = new ArrayList<>();
+            for (VectorHit h : result) {
+                String docId = corpus.docs().get((int) h.id().getMostSignificantBits()).id();
+                if (!rankedDocs.contains(docId)) rankedDocs.add(docId);
+                if (rankedDocs.size() == config.topK()) break;
+            }
+            for (int rank = 0; rank < rankedDocs.size(); rank++) {
+                if (q.relevantDocIds().contains(rankedDocs.get(rank))) {
+                    hits++;
+                    reciprocalRanks += 1.0 / (rank + 1);
+                    break;
+                }
+            }
+        }
+
+        Arrays.sort(latencies);
+        double n = corpus.queries().size();
+        return new Result(config, segment.size(), hits / n, reciprocalRanks / n,
+                percentile(latencies, 0.50) / 1_000.0, percentile(latencies, 0.99) / 1_000.0,
+                Arrays.stream(latencies).average().orElse(0) / 1_000.0, index.buildMillis());
+    }
+
+    /**
+     * Topic-structured synthetic corpus: every document mixes words from one topic
+     * with shared filler words; each query samples words from a single document
+     * and is labeled with it.
+     */
+    public static Corpus syntheticCorpus(long seed, int docCount, int queryCount) {
+        Random rnd = new Random(seed);
+        int topics = Math.max(10, docCount / 20);
+        int topicVocab = 300;
+        int commonVocab = 3000;
+
+        List<Document> docs = new ArrayList<>(docCount);
+        List<String[]> docWords = new ArrayList<>(docCount);
+        for (int d = 0; d < docCount; d++) {
+            int topic = rnd.nextInt(topics);
+            int len = 200 + rnd.nextInt(600);
+            String[] words = new String[len];
+            for (int w = 0; w < len; w++) {
+                words[w] = rnd.nextDouble() < 0.6
+                        ? "t" + topic + "w" + rnd.nextInt(topicVocab)
+                        : "c" + (int) Math.abs(rnd.nextGaussian() * commonVocab / 3) % commonVocab;
+            }
+            docWords.add(words);
+            docs.add(new Document("doc-" + d, String.join(" ", words)));
+        }
+
+        List<LabeledQuery> queries = new ArrayList<>(queryCount);
+        for (int q = 0; q < queryCount; q++) {
+            int d = rnd.nextInt(docCount);
+            String[] words = docWords.get(d);
+            // a short contiguous passage, as a user quoting part of a document would
+            int len = 8 + rnd.nextInt(8);
+            int start = rnd.nextInt(Math.max(1, words.length - len));
+            String text = String.join(" ", Arrays.copyOfRange(words, start, Math.min(words.length, start + len)));
+            queries.add(new LabeledQuery(text, Set.of(docs.get(d).id())));
+        }
+        return new Corpus("synthetic-" + seed, docs, queries);
+    }
+
+    /**
+     * Loads a bundled corpus: {@code docs} lines are {"id": ..., "text": ...},
+     * {@code queries} lines are {"query": ..., "relevant": [docId, ...]}.
+     */
+    public static Corpus loadCorpus(Path docsFile, Path queriesFile) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Document> docs = new ArrayList<>();
+        try (BufferedReader r = Files.newBufferedReader(docsFile)) {
+            for (String line; (line = r.readLine()) != null; ) {
+                if (line.isBlank()) continue;
+                JsonNode n = mapper.readTree(line);
+                docs.add(new Document(n.path("id").asText(), n.path("text").asText()));
+            }
+        }
+        List<LabeledQuery> queries = new ArrayList<>();
+        try (Stream<String> lines = Files.lines(queriesFile)) {
+            for (String line : lines.filter(l -> !l.isBlank()).toList()) {
+                JsonNode n = mapper.readTree(line);
+                Set<String> relevant = new HashSet<>();
+                n.path("relevant").forEach(id -> relevant.add(id.asText()));
+                queries.add(new LabeledQuery(n.path("query").asText(), relevant));
+            }
+        }
+        return new Corpus(docsFile.getFileName().toString(), docs, queries);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        // arguments may also arrive as one whitespace-separated string
+        for (String a : String.join(" ", args).trim().split("\\s+")) {
+            if (a.isEmpty()) continue;
+            if (!a.startsWith("--") || !a.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got: " + a);
+            }
+            opts.put(a.substring(2, a.indexOf('=')), a.substring(a.indexOf('=') + 1));
+        }
+        return opts;
+    }
+}
@@ -0,0 +1,86 @@
+package rag_chat_microservice.bench;
+
+import org.openjdk.jmh.annotations.*;
+import rag_chat_microservice.vector.SimilarityKernel;
+import rag_chat_microservice.vector.SimilarityKernels;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar vs Vector API similarity kernels across common embedding sizes.
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.args=SimilarityKernelBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SimilarityKernelBenchmark {
+
+    @Param({"256", "384", "768", "1024", "1536"})
+    int dimension;
+
+    @Param({"scalar", "panama"})
+    String kernelName;
+
+    private SimilarityKernel kernel;
+    private float[] a;
+    private float[] b;
+    private byte[] qa;
+    private byte[] qb;
+    private ByteBuffer floats;
+    private ByteBuffer codes;
+
+    @Setup
+    public void setup() {
+        kernel = "panama".equals(kernelName) ? SimilarityKernels.panama() : SimilarityKernels.scalar();
+        if (kernel == null) {
+            throw new IllegalStateException("Vector API not available; add --add-modules jdk.incubator.vector");
+        }
+        Random rnd = new Random(1);
+        a = new float[dimension];
+        b = new float[dimension];
+        qa = new byte[dimension];
+        qb = new byte[dimension];
+        for (int i = 0; i < dimension; i++) {
+            a[i] = (float) rnd.nextGaussian();
+            b[i] = (float) rnd.nextGaussian();
+            qa[i] = (byte) (rnd.nextInt(255) - 127);
+            qb[i] = (byte) (rnd.nextInt(255) - 127);
+        }
+        // direct buffers stand in for memory-mapped segments
+        floats = ByteBuffer.allocateDirect(4 * dimension).order(ByteOrder.LITTLE_ENDIAN);
+        floats.asFloatBuffer().put(b);
+        codes = ByteBuffer.allocateDirect(dimension).order(ByteOrder.LITTLE_ENDIAN);
+        codes.put(0, qb);
+    }
+
+    @Benchmark
+    public float dot() {
+        return kernel.dot(a, b);
+    }
+
+    @Benchmark
+    public float dotMapped() {
+        return kernel.dot(a, floats, 0);
+    }
+
+    @Benchmark
+    public float cosine() {
+        return kernel.cosine(a, b);
+    }
+
+    @Benchmark
+    public int dotInt8() {
+        return kernel.dotInt8(qa, qb);
+    }
+
+    @Benchmark
+    public int dotInt8Mapped() {
+        return kernel.dotInt8(qa, codes, 0);
+    }
+}
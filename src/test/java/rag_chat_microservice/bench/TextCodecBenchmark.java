@@ -0,0 +1,64 @@
+package rag_chat_microservice.bench;
+
+import org.openjdk.jmh.annotations.*;
+import rag_chat_microservice.model.TextCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message cost of the content/context codecs on chat-like text (a small
+ * vocabulary, so roughly the redundancy of prose). The compressed size is printed
+ * once per trial. Run with
+ * {@code mvn -Pbench test-compile exec:exec -Dbench.args=TextCodecBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextCodecBenchmark {
+
+    private static final String[] WORDS = ("the a of to and in is for on that with as by this retrieval context model "
+            + "answer question document passage revenue quarter customer report source result however because "
+            + "which would should could summary section table figure data value growth").split(" ");
+
+    @Param({"1024", "4096", "32768"})
+    int bytes;
+
+    @Param({"deflate-1", "deflate-6", "lz4"})
+    String codecName;
+
+    private TextCodec codec;
+    private String text;
+    private byte[] stored;
+
+    @Setup
+    public void setup() {
+        TextCodec.Codec c = codecName.startsWith("deflate") ? TextCodec.Codec.DEFLATE : TextCodec.Codec.LZ4;
+        int level = codecName.startsWith("deflate") ? Integer.parseInt(codecName.substring(8)) : 6;
+        codec = new TextCodec(c, 0, level);
+
+        Random rnd = new Random(7);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < bytes) {
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]).append(rnd.nextInt(12) == 0 ? ". " : " ");
+        }
+        text = sb.substring(0, bytes);
+        stored = codec.encode(text);
+        System.out.printf("%n%s %d bytes -> %d stored (%.1fx)%n", codecName, bytes, stored.length,
+                (double) text.getBytes(StandardCharsets.UTF_8).length / stored.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(text);
+    }
+
+    @Benchmark
+    public String decode() {
+        return TextCodec.decode(stored);
+    }
+}
@@ -0,0 +1,121 @@
+package rag_chat_microservice.bench;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import rag_chat_microservice.dto.ChatMessageDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size and CPU of one message-list response (the default page of 10 and a
+ * long conversation of 50) per wire format and content coding, with the
+ * settings of ResponseCompressionFilter (Brotli quality 4, gzip level 6). The
+ * time covers serialization plus compression; the body size is printed once per
+ * trial. Run with
+ * {@code mvn -Pbench test-compile exec:exec -Dbench.args=WireFormatBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final String[] WORDS = ("the a of to and in is for on that with as by this retrieval context model "
+            + "answer question document passage revenue quarter customer report source result however because "
+            + "which would should could summary section table figure data value growth").split(" ");
+
+    @Param({"10", "50"})
+    int messages;
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    @Param({"identity", "gzip", "br"})
+    String coding;
+
+    private ObjectWriter writer;
+    private List<ChatMessageDto> page;
+
+    @Setup
+    public void setup() throws IOException {
+        Jackson2ObjectMapperBuilder builder = switch (format) {
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile();
+            default -> Jackson2ObjectMapperBuilder.json();
+        };
+        ObjectMapper mapper = builder.build();
+        page = conversation(messages);
+        writer = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, ChatMessageDto.class));
+        if (coding.equals("br")) {
+            Brotli4jLoader.ensureAvailability();
+        }
+
+        int json = Jackson2ObjectMapperBuilder.json().build().writeValueAsBytes(page).length;
+        int body = response().length;
+        System.out.printf("%n%d messages, %s + %s: %d bytes (%.1f%% of plain JSON's %d)%n", messages, format,
+                coding, body, 100.0 * body / json, json);
+    }
+
+    @Benchmark
+    public byte[] response() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        try (OutputStream out = encoder(bytes)) {
+            writer.writeValue(out, page);
+        }
+        return bytes.toByteArray();
+    }
+
+    private OutputStream encoder(OutputStream out) throws IOException {
+        return switch (coding) {
+            case "br" -> new BrotliOutputStream(out, new Encoder.Parameters().setQuality(4));
+            case "gzip" -> new GZIPOutputStream(out, 8192, true) {
+                {
+                    def.setLevel(6);
+                }
+            };
+            default -> out;
+        };
+    }
+
+    // alternating questions and long answers, every third question with retrieval context
+    private static List<ChatMessageDto> conversation(int count) {
+        Random rnd = new Random(7);
+        UUID sessionId = UUID.randomUUID();
+        LocalDateTime at = LocalDateTime.of(2026, 3, 1, 12, 0, 0, 123_456_000);
+        List<ChatMessageDto> list = new ArrayList<>(count);
+        UUID question = null;
+        for (int i = 0; i < count; i++) {
+            boolean user = i % 2 == 0;
+            UUID id = UUID.randomUUID();
+            String context = (user && i % 3 == 0) ? prose(rnd, 600) : null;
+            list.add(new ChatMessageDto(id, sessionId, user ? "USER" : "AI", prose(rnd, user ? 120 : 1500), context,
+                    at.plusSeconds(i * 40L), (long) i + 1, user ? null : question));
+            question = id;
+        }
+        return list;
+    }
+
+    private static String prose(Random rnd, int chars) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < chars) {
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]).append(rnd.nextInt(12) == 0 ? ". " : " ");
+        }
+        return sb.substring(0, chars);
+    }
+}